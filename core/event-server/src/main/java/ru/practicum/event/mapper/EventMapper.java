@@ -13,6 +13,7 @@ import java.util.List;
 @Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
 public interface EventMapper {
     @Mapping(target = "category", expression = "java(null)")
+    @Mapping(target = "syncedViews", ignore = true)
     Event newEventDtoToEvent(NewEventDto newEventDto);
 
     EventFullDto eventToEventFullDto(Event event);
@@ -84,6 +84,13 @@ public class Event {
     @Transient
     Long views;
 
+    /**
+     * Views as of the last sync from stats-server, kept so that the database can sort by views; written only by
+     * {@code EventViewSync}.
+     */
+    @Column(name = "synced_views", insertable = false, updatable = false)
+    Long syncedViews;
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
@@ -0,0 +1,44 @@
+package ru.practicum.event.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * State of {@code EventViewSync} in the database: the synced views of events, written as one JDBC batch per run,
+ * and the stats-server watermark the next run asks from, which outlives restarts and is shared by all instances.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EventViewSyncRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public void updateSyncedViews(Map<Long, Long> views) {
+        List<Object[]> rows = views.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList();
+        jdbcTemplate.batchUpdate("UPDATE events SET synced_views = ? WHERE id = ?", rows);
+    }
+
+    /**
+     * The watermark saved by the last successful run, or nothing before the first one.
+     */
+    public Optional<LocalDateTime> findWatermark() {
+        return jdbcTemplate.queryForList("SELECT watermark FROM event_view_sync WHERE id = 1", Timestamp.class)
+                .stream()
+                .filter(Objects::nonNull)
+                .map(Timestamp::toLocalDateTime)
+                .findFirst();
+    }
+
+    public void saveWatermark(LocalDateTime watermark) {
+        jdbcTemplate.update("UPDATE event_view_sync SET watermark = ? WHERE id = 1", Timestamp.valueOf(watermark));
+    }
+}
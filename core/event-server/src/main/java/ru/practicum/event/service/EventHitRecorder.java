@@ -0,0 +1,59 @@
+package ru.practicum.event.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.StatRequestDto;
+import ru.practicum.feign.StatsServerHttpClient;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers the hits of a request with stats-server in one {@code /hits/batch} call, off the request thread.
+ * Batches wait in a bounded queue; when it is full, or when stats-server fails, the batch is dropped with a
+ * warning, so listings neither wait for stats-server nor fail with it.
+ */
+@Slf4j
+@Component
+public class EventHitRecorder {
+    private final StatsServerHttpClient statClient;
+    private final ThreadPoolExecutor executor;
+
+    public EventHitRecorder(StatsServerHttpClient statClient,
+                            @Value("${event-server.hits.sender-threads:2}") int senderThreads,
+                            @Value("${event-server.hits.queue-capacity:1000}") int queueCapacity) {
+        this.statClient = statClient;
+        this.executor = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("event-hit-sender-", 0).daemon().factory(),
+                (task, pool) -> log.warn("Too many hit batches waiting for stats-server, dropping one"));
+    }
+
+    public void record(List<StatRequestDto> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> send(hits));
+    }
+
+    private void send(List<StatRequestDto> hits) {
+        try {
+            statClient.registerHits(hits);
+            log.debug("Registered {} stat hits", hits.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to register {} stat hits: {}", hits.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("{} hit batches were not sent to stats-server", executor.shutdownNow().size());
+        }
+    }
+}
@@ -16,7 +16,6 @@ import ru.practicum.category.repository.CategoryRepository;
 import ru.practicum.client.request.RequestClient;
 import ru.practicum.client.user.UserClient;
 import ru.practicum.dto.StatRequestDto;
-import ru.practicum.dto.StatResponseDto;
 import ru.practicum.dto.event.*;
 import ru.practicum.dto.request.EventRequestStatusUpdateRequestDto;
 import ru.practicum.dto.request.EventRequestStatusUpdateResultDto;
@@ -39,15 +38,18 @@ import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import static ru.practicum.Constants.DEFAULT_SEARCH_START_DATE;
-
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EventServiceImpl implements EventService {
+    private static final String EVENTS_URL = "/events";
+
     private final EventRepository eventRepository;
     private final CategoryRepository categoryRepository;
     private final StatsServerHttpClient statClient;
+    private final EventViewCounter eventViewCounter;
+    private final EventViewCache eventViewCache;
+    private final EventHitRecorder eventHitRecorder;
     private final UserClient userClient;
     private final RequestClient requestClient;
     private final EventMapper eventMapper;
@@ -136,9 +138,8 @@ public class EventServiceImpl implements EventService {
 
     private long fetchEventViews(Event event, String requestURL) {
         log.debug("Fetching view stats for event id={}", event.getId());
-        List<StatResponseDto> viewStats = getViewStats(List.of(event), requestURL);
-        if (!CollectionUtils.isEmpty(viewStats)) {
-            long views = viewStats.get(0).getHits();
+        Long views = getViewStats(List.of(event), requestURL).get(event.getId());
+        if (views != null) {
             log.debug("Fetched views: {}", views);
             return views;
         }
@@ -322,23 +323,22 @@ public class EventServiceImpl implements EventService {
         PageRequest pageRequest = buildPageRequest(from, size, sort, Sort.Direction.ASC);
         Page<Event> events = fetchPublicEventsWithFilters(
                 text, categories, paid, rangeStart, rangeEnd, onlyAvailable, pageRequest);
+        // With sort=VIEWS the page is picked by the synced views; the views shown are fresh from stats-server.
         setEventViews(events.getContent(), request.getRequestURI());
         List<EventShortDto> eventShortDtos = mapToEventShortDto(events.getContent());
         log.info("Successfully found {} public events with filters: text={}, categories={}, paid={}, rangeStart={}, " +
                         "rangeEnd={}, onlyAvailable={}, sort={}",
                 eventShortDtos.size(), text, categories, paid, rangeStart, rangeEnd, onlyAvailable, sort);
 
-        events.getContent().forEach(
-                event -> {
-                    StatRequestDto statRequest = StatRequestDto.builder()
-                            .app(appName)
-                            .uri(request.getRequestURI() + "/" + event.getId())
-                            .ip(request.getRemoteAddr())
-                            .timestamp(LocalDateTime.now())
-                            .build();
-                    statClient.registerHit(statRequest);
-                }
-        );
+        LocalDateTime now = LocalDateTime.now();
+        eventHitRecorder.record(events.getContent().stream()
+                .map(event -> StatRequestDto.builder()
+                        .app(appName)
+                        .uri(request.getRequestURI() + "/" + event.getId())
+                        .ip(request.getRemoteAddr())
+                        .timestamp(now)
+                        .build())
+                .toList());
         return eventShortDtos;
     }
 
@@ -398,6 +398,7 @@ public class EventServiceImpl implements EventService {
                 .ip(request.getRemoteAddr())
                 .timestamp(LocalDateTime.now())
                 .build();
+        // Registered before answering, unlike listing hits, so that the next request for the event counts this view.
         statClient.registerHit(statRequest);
         log.debug("Registered stat hit: {}", statRequest);
         log.info("Successfully retrieved public event with id={} and dto={}", id, eventFullDto);
@@ -414,7 +415,7 @@ public class EventServiceImpl implements EventService {
 
     private void setEventViews(Event event) {
         log.debug("Setting views for event with id={}", event.getId());
-        setViews(List.of(event), "/events");
+        setViews(List.of(event), EVENTS_URL);
         log.debug("Views successfully set for event with id={}", event.getId());
     }
 
@@ -602,7 +603,7 @@ public class EventServiceImpl implements EventService {
         }
         return switch (sort) {
             case EVENT_DATE -> createSortedPageRequest(from, size, "eventDate", Sort.Direction.ASC);
-            case VIEWS -> createSortedPageRequest(from, size, "views", Sort.Direction.ASC);
+            case VIEWS -> createSortedPageRequest(from, size, "syncedViews", Sort.Direction.ASC);
             default -> {
                 log.warn("Unknown sort type provided: {}", sort);
                 throw new IllegalArgumentException("Unknown sort type: " + sort);
@@ -616,22 +617,29 @@ public class EventServiceImpl implements EventService {
         return PageRequest.of(from, size, Sort.by(direction, sortField));
     }
 
-    private List<StatResponseDto> getViewStats(List<Event> events, String requestURL) {
+    /**
+     * Views by event id. Events listed under {@code /events} come from {@link EventViewCache}, which reads the stats
+     * entity counters by id; under other urls, such as a user's events, they are matched as uris.
+     */
+    private Map<Long, Long> getViewStats(List<Event> events, String requestURL) {
         if (CollectionUtils.isEmpty(events)) {
             log.warn("No events provided to fetch view statistics");
-            return Collections.emptyList();
+            return Collections.emptyMap();
         }
-        List<String> url = events.stream()
-                .map(event -> requestURL + "/" + event.getId())
+        List<Long> ids = events.stream()
+                .map(Event::getId)
                 .toList();
-        log.debug("Fetching stats for event URLs: {}", url);
-        return Optional.ofNullable(
-                statClient.getStats(DEFAULT_SEARCH_START_DATE,
-                        LocalDateTime.now(),
-                        url.toArray(String[]::new),
-                        true
-                )
-        ).orElse(Collections.emptyList());
+        if (EVENTS_URL.equals(requestURL)) {
+            log.debug("Fetching cached views for ids: {}", ids);
+            return eventViewCache.getViews(ids);
+        }
+        Map<String, Long> idByUri = new HashMap<>();
+        ids.forEach(id -> idByUri.put(requestURL + "/" + id, id));
+        log.debug("Fetching stats for event URLs: {}", idByUri.keySet());
+        Map<Long, Long> views = new HashMap<>();
+        eventViewCounter.getUniqueViews(idByUri.keySet())
+                .forEach((uri, hits) -> views.put(idByUri.get(uri), hits));
+        return views;
     }
 
     private void setViews(List<Event> events, String requestURL) {
@@ -639,10 +647,9 @@ public class EventServiceImpl implements EventService {
             log.warn("No events to set views");
             return;
         }
-        Map<String, Long> mapUriAndHits = getViewStats(events, requestURL).stream()
-                .collect(Collectors.toMap(StatResponseDto::getUri, StatResponseDto::getHits));
+        Map<Long, Long> viewsById = getViewStats(events, requestURL);
         for (Event event : events) {
-            long views = mapUriAndHits.getOrDefault(requestURL + "/" + event.getId(), 0L);
+            long views = viewsById.getOrDefault(event.getId(), 0L);
             event.setViews(views);
             log.debug("Set {} views for event id={}", views, event.getId());
         }
@@ -690,7 +697,7 @@ public class EventServiceImpl implements EventService {
                             sortField, sortDirection);
                     break;
                 case VIEWS:
-                    sortField = "views";
+                    sortField = "syncedViews";
                     sortDirection = Sort.Direction.ASC;
                     log.debug("Sort type VIEWS selected. sortField={}, sortDirection={}", sortField, sortDirection);
                     break;
@@ -700,7 +707,12 @@ public class EventServiceImpl implements EventService {
             }
         }
 
-        PageRequest pageRequest = PageRequest.of(from / size, size, Sort.by(sortDirection, sortField));
+        Sort pageSort = Sort.by(sortDirection, sortField);
+        if (sort == EventPublicSort.VIEWS) {
+            // Synced views tie often; the id makes the order, and so the pages, stable. Both are in the index.
+            pageSort = pageSort.and(Sort.by(sortDirection, "id"));
+        }
+        PageRequest pageRequest = PageRequest.of(from / size, size, pageSort);
         log.debug("Created PageRequest: {}", pageRequest);
 
         return pageRequest;
@@ -0,0 +1,276 @@
+package ru.practicum.event.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unique views of events by id, kept in memory so that listings do not wait for stats-server. A cached count
+ * older than {@code refresh-after} is still returned, and reloaded in the background; one older than
+ * {@code max-staleness} is not returned but loaded first, so no count is ever served staler than that. Counts
+ * missing from the cache are loaded with one entity stats call for all of them, and an id already being loaded
+ * by another request is waited for instead of being asked for again.
+ * <p>
+ * When a load fails, the stale count is returned if there is one. {@link EventViewSync} feeds the cache with the
+ * counts it syncs, which keeps the events hit lately fresh without a load.
+ * <p>
+ * This is off by default ({@code event-server.views.cache.enabled=false}): every call then asks stats-server, so
+ * views are never stale. The dev config turns it on.
+ */
+@Slf4j
+@Component
+public class EventViewCache {
+    private static final String EVENT_TYPE = "events";
+
+    private final EventViewCounter eventViewCounter;
+    private final boolean enabled;
+    private final long refreshAfterNanos;
+    private final long maxStalenessNanos;
+    private final int maxSize;
+    private final Map<Long, CachedViews> views = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Long>> loading = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor refresher;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Timer refreshLagTimer;
+
+    public EventViewCache(EventViewCounter eventViewCounter,
+                          MeterRegistry meterRegistry,
+                          @Value("${event-server.views.cache.enabled:false}") boolean enabled,
+                          @Value("${event-server.views.cache.refresh-after:PT5S}") Duration refreshAfter,
+                          @Value("${event-server.views.cache.max-staleness:PT1M}") Duration maxStaleness,
+                          @Value("${event-server.views.cache.max-size:100000}") int maxSize,
+                          @Value("${event-server.views.cache.refresh-threads:2}") int refreshThreads,
+                          @Value("${event-server.views.cache.refresh-queue-capacity:100}") int refreshQueueCapacity) {
+        this.eventViewCounter = eventViewCounter;
+        this.enabled = enabled;
+        this.refreshAfterNanos = refreshAfter.toNanos();
+        this.maxStalenessNanos = Math.max(refreshAfterNanos, maxStaleness.toNanos());
+        this.maxSize = maxSize;
+        this.refresher = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(refreshQueueCapacity),
+                Thread.ofPlatform().name("event-view-refresher-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.hitCounter = Counter.builder("events.views.cache.lookups").tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("events.views.cache.lookups").tag("result", "miss")
+                .description("Event view counts not in the cache or staler than max-staleness, loaded on request")
+                .register(meterRegistry);
+        Gauge.builder("events.views.cache.hit.rate", this, EventViewCache::getHitRate)
+                .description("Share of event view counts served from the cache")
+                .register(meterRegistry);
+        Gauge.builder("events.views.cache.size", views, Map::size)
+                .register(meterRegistry);
+        this.refreshLagTimer = Timer.builder("events.views.cache.refresh.lag")
+                .description("Age of a cached event view count when it was replaced by a fresh one")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Unique views of the events with {@code ids}; an event without views is missing from the result.
+     */
+    public Map<Long, Long> getViews(Collection<Long> ids) {
+        if (!enabled) {
+            return eventViewCounter.getUniqueEntityViews(EVENT_TYPE, ids);
+        }
+        long now = System.nanoTime();
+        Map<Long, Long> result = new HashMap<>();
+        Map<Long, CachedViews> stale = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        List<Long> toRefresh = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            CachedViews cached = views.get(id);
+            long age = cached == null ? Long.MAX_VALUE : now - cached.loadedAt();
+            if (age > maxStalenessNanos) {
+                missing.add(id);
+                if (cached != null) {
+                    stale.put(id, cached);
+                }
+                continue;
+            }
+            result.put(id, cached.views());
+            if (age > refreshAfterNanos) {
+                toRefresh.add(id);
+            }
+        }
+        hitCounter.increment(result.size());
+        missCounter.increment(missing.size());
+        if (!missing.isEmpty()) {
+            result.putAll(loadNow(missing, stale));
+        }
+        if (!toRefresh.isEmpty()) {
+            refreshLater(toRefresh);
+        }
+        result.values().removeIf(count -> count == 0);
+        return result;
+    }
+
+    /**
+     * Stores counts loaded elsewhere, such as by the view sync.
+     */
+    public void putAll(Map<Long, Long> counts, long loadedAt) {
+        if (enabled) {
+            counts.forEach((id, count) -> store(id, count, loadedAt));
+        }
+    }
+
+    /**
+     * Loads {@code ids} and waits for them: the ids nobody is loading yet in one call on this thread, the others by
+     * waiting for the loads already running.
+     */
+    private Map<Long, Long> loadNow(List<Long> ids, Map<Long, CachedViews> stale) {
+        Map<Long, CompletableFuture<Long>> claimed = new HashMap<>();
+        Map<Long, CompletableFuture<Long>> running = new HashMap<>();
+        claim(ids, claimed, running);
+        if (!claimed.isEmpty()) {
+            load(claimed);
+        }
+        Map<Long, Long> result = new HashMap<>();
+        RuntimeException failure = null;
+        claimed.putAll(running);
+        for (Map.Entry<Long, CompletableFuture<Long>> entry : claimed.entrySet()) {
+            try {
+                result.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                CachedViews cached = stale.get(entry.getKey());
+                if (cached != null) {
+                    result.put(entry.getKey(), cached.views());
+                } else if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return result;
+    }
+
+    /**
+     * Reloads {@code ids} on the refresher, skipping those being loaded already. When the refresher is busy the
+     * ids are left as they are and reloaded on a later request.
+     */
+    private void refreshLater(List<Long> ids) {
+        Map<Long, CompletableFuture<Long>> claimed = new HashMap<>();
+        claim(ids, claimed, new HashMap<>());
+        if (claimed.isEmpty()) {
+            return;
+        }
+        try {
+            refresher.execute(() -> load(claimed));
+        } catch (RejectedExecutionException e) {
+            log.debug("View refresher busy, not refreshing {} events", claimed.size());
+            claimed.forEach((id, future) -> {
+                loading.remove(id, future);
+                CachedViews cached = views.get(id);
+                if (cached != null) {
+                    future.complete(cached.views());
+                } else {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+    }
+
+    private void claim(List<Long> ids,
+                       Map<Long, CompletableFuture<Long>> claimed,
+                       Map<Long, CompletableFuture<Long>> running) {
+        for (Long id : ids) {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            CompletableFuture<Long> other = loading.putIfAbsent(id, future);
+            if (other == null) {
+                claimed.put(id, future);
+            } else {
+                running.put(id, other);
+            }
+        }
+    }
+
+    /**
+     * Loads the claimed ids in one call, stores the counts and completes the futures, releasing the claims.
+     */
+    private void load(Map<Long, CompletableFuture<Long>> claimed) {
+        long loadedAt = System.nanoTime();
+        try {
+            Map<Long, Long> counts = eventViewCounter.getUniqueEntityViews(EVENT_TYPE, claimed.keySet());
+            claimed.forEach((id, future) -> {
+                long count = counts.getOrDefault(id, 0L);
+                store(id, count, loadedAt);
+                loading.remove(id, future);
+                future.complete(count);
+            });
+            log.debug("Loaded views of {} events", claimed.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to load views of {} events: {}", claimed.size(), e.getMessage());
+            claimed.forEach((id, future) -> {
+                loading.remove(id, future);
+                future.completeExceptionally(e);
+            });
+        }
+    }
+
+    /**
+     * Keeps the newer of the stored and the given count, by the time their loads started.
+     */
+    private void store(Long id, long count, long loadedAt) {
+        CachedViews previous = views.get(id);
+        CachedViews current = views.merge(id, new CachedViews(count, loadedAt),
+                (kept, loaded) -> loaded.loadedAt() - kept.loadedAt() > 0 ? loaded : kept);
+        if (previous != null && current.loadedAt() == loadedAt) {
+            refreshLagTimer.record(Math.max(0, loadedAt - previous.loadedAt()), TimeUnit.NANOSECONDS);
+        }
+        evictIfFull();
+    }
+
+    /**
+     * Once the cache holds more than {@code max-size} events, drops the counts loaded longest ago down to nine
+     * tenths of it, so that the events hit lately stay cached.
+     */
+    private void evictIfFull() {
+        int excess = views.size() - maxSize * 9 / 10;
+        if (views.size() <= maxSize || excess <= 0) {
+            return;
+        }
+        log.debug("Caching views of {} events, more than {}; dropping the {} loaded longest ago", views.size(),
+                maxSize, excess);
+        views.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue(
+                        (first, second) -> Long.signum(first.loadedAt() - second.loadedAt())))
+                .limit(excess)
+                .toList()
+                .forEach(oldest -> views.remove(oldest.getKey(), oldest.getValue()));
+    }
+
+    private double getHitRate() {
+        double total = hitCounter.count() + missCounter.count();
+        return total == 0 ? 0 : hitCounter.count() / total;
+    }
+
+    @PreDestroy
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    private record CachedViews(long views, long loadedAt) {
+    }
+}
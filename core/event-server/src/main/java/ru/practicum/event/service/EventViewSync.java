@@ -0,0 +1,75 @@
+package ru.practicum.event.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.StatDeltaDto;
+import ru.practicum.dto.StatDeltaRowDto;
+import ru.practicum.event.repository.EventViewSyncRepository;
+import ru.practicum.feign.StatsServerHttpClient;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static ru.practicum.Constants.DEFAULT_SEARCH_START_DATE;
+
+/**
+ * Copies the views of events into {@code events.synced_views}, which {@code sort=VIEWS} orders by. Every run asks
+ * {@code /stats/delta} which uris were hit since the last watermark, and rewrites the views of just the events
+ * among them from the stats entity counters, in one batch. The synced views lag behind by at most
+ * {@code event-server.views.sync-interval} plus the time a run takes. The watermark is saved in the database after
+ * the views, so a restart carries on from where the last run stopped, and a failed run leaves it where it was, so
+ * the next one catches up on everything missed. The synced views are also put into {@link EventViewCache}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventViewSync {
+    private static final String EVENT_TYPE = "events";
+    private static final Pattern EVENT_URI = Pattern.compile("^/" + EVENT_TYPE + "/([0-9]{1,18})$");
+
+    private final StatsServerHttpClient statClient;
+    private final EventViewCounter eventViewCounter;
+    private final EventViewCache eventViewCache;
+    private final EventViewSyncRepository eventViewSyncRepository;
+
+    @Scheduled(fixedDelayString = "${event-server.views.sync-interval:PT1M}",
+            initialDelayString = "${event-server.views.sync-initial-delay:PT10S}")
+    public void sync() {
+        LocalDateTime watermark = DEFAULT_SEARCH_START_DATE;
+        try {
+            watermark = eventViewSyncRepository.findWatermark().orElse(DEFAULT_SEARCH_START_DATE);
+            StatDeltaDto delta = statClient.getStatsDelta(watermark, null, false);
+            Set<Long> ids = new TreeSet<>();
+            Stream.of(delta.getSettled(), delta.getPending())
+                    .filter(Objects::nonNull)
+                    .flatMap(List::stream)
+                    .map(StatDeltaRowDto::getUri)
+                    .filter(Objects::nonNull)
+                    .map(EVENT_URI::matcher)
+                    .filter(Matcher::matches)
+                    .forEach(matcher -> ids.add(Long.parseLong(matcher.group(1))));
+            if (!ids.isEmpty()) {
+                long loadedAt = System.nanoTime();
+                Map<Long, Long> views = new HashMap<>();
+                eventViewCounter.getUniqueEntityViews(EVENT_TYPE, ids).forEach(views::put);
+                ids.forEach(id -> views.putIfAbsent(id, 0L));
+                eventViewSyncRepository.updateSyncedViews(views);
+                eventViewCache.putAll(views, loadedAt);
+                log.debug("Synced views of {} events hit since {}", ids.size(), watermark);
+            }
+            eventViewSyncRepository.saveWatermark(delta.getWatermark());
+        } catch (RuntimeException e) {
+            log.warn("Failed to sync event views since {}: {}", watermark, e.getMessage());
+        }
+    }
+}
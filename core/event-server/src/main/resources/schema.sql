@@ -1,4 +1,4 @@
-drop table if exists categories, location, events, compilations, compilations_events;
+drop table if exists categories, location, events, event_view_sync, compilations, compilations_events;
 
 create table if not exists categories
 (
@@ -29,9 +29,22 @@ create table if not exists events
     request_moderation BOOLEAN   NOT NULL,
     state              varchar   NOT NULL,
     title              varchar   NOT NULL,
-    confirmed_requests INTEGER   NOT NULL
+    confirmed_requests INTEGER   NOT NULL,
+    synced_views       bigint    NOT NULL DEFAULT 0
 );
 
+create index if not exists events_synced_views_idx on events (synced_views, id);
+
+create table if not exists event_view_sync
+(
+    id        INTEGER PRIMARY KEY CHECK (id = 1),
+    watermark TIMESTAMP
+);
+
+insert into event_view_sync (id)
+select 1
+where not exists (select 1 from event_view_sync);
+
 create table if not exists compilations
 (
     id     bigint GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
@@ -0,0 +1,180 @@
+package ru.practicum.event.service;
+
+import feign.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EntityStatsRequestDto;
+import ru.practicum.dto.StatDeltaDto;
+import ru.practicum.dto.StatRequestDto;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.feign.StatsServerHttpClient;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * {@link EventHitRecorder} against a stats-server that can be held back or made to fail: batches are sent whole,
+ * a failed batch does not stop the next one, a full queue drops batches and closing sends what was queued.
+ */
+class EventHitRecorderTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 10, 12, 0);
+
+    private final RecordingServer server = new RecordingServer();
+    private EventHitRecorder recorder;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.gate.countDown();
+        recorder.close();
+    }
+
+    @Test
+    void sendsTheHitsOfOneRequestInOneBatch() throws InterruptedException {
+        recorder = new EventHitRecorder(server, 2, 10);
+        List<StatRequestDto> hits = List.of(hit("/events/1"), hit("/events/2"), hit("/events/3"));
+
+        recorder.record(hits);
+        recorder.record(List.of());
+
+        await(() -> server.batches.size() == 1);
+        recorder.close();
+        assertEquals(List.of(hits), server.batches);
+    }
+
+    @Test
+    void keepsSendingAfterAFailedBatch() throws InterruptedException {
+        recorder = new EventHitRecorder(server, 1, 10);
+        server.failing = true;
+        recorder.record(List.of(hit("/events/1")));
+        await(() -> server.attempts.size() == 1);
+        server.failing = false;
+
+        recorder.record(List.of(hit("/events/2")));
+
+        await(() -> server.batches.size() == 1);
+        assertEquals(List.of(List.of(hit("/events/2"))), server.batches);
+    }
+
+    @Test
+    void dropsBatchesThatFindTheQueueFull() throws InterruptedException {
+        recorder = new EventHitRecorder(server, 1, 1);
+        server.gate = new CountDownLatch(1);
+        recorder.record(List.of(hit("/events/1")));
+        await(() -> server.attempts.size() == 1);
+
+        recorder.record(List.of(hit("/events/2")));
+        recorder.record(List.of(hit("/events/3")));
+        server.gate.countDown();
+        recorder.close();
+
+        assertEquals(List.of(List.of(hit("/events/1")), List.of(hit("/events/2"))), server.batches);
+    }
+
+    @Test
+    void closeWaitsForQueuedBatches() throws InterruptedException {
+        recorder = new EventHitRecorder(server, 1, 10);
+        server.gate = new CountDownLatch(1);
+        recorder.record(List.of(hit("/events/1")));
+        recorder.record(List.of(hit("/events/2")));
+        await(() -> server.attempts.size() == 1);
+
+        Thread.ofPlatform().daemon().start(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            server.gate.countDown();
+        });
+        recorder.close();
+
+        assertEquals(List.of(List.of(hit("/events/1")), List.of(hit("/events/2"))), server.batches);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static StatRequestDto hit(String uri) {
+        return StatRequestDto.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(NOW)
+                .build();
+    }
+
+    /**
+     * Records every batch it is sent. A batch waits for {@link #gate} first, and fails while {@link #failing}.
+     */
+    private static class RecordingServer implements StatsServerHttpClient {
+        private final List<List<StatRequestDto>> attempts = new CopyOnWriteArrayList<>();
+        private final List<List<StatRequestDto>> batches = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private volatile boolean failing;
+
+        @Override
+        public void registerHits(List<StatRequestDto> statRequestDtos) {
+            attempts.add(statRequestDtos);
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            if (failing) {
+                throw new IllegalStateException("Stats server is down");
+            }
+            batches.add(statRequestDtos);
+        }
+
+        @Override
+        public StatRequestDto registerHit(StatRequestDto statRequestDto) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<StatResponseDto> getStats(LocalDateTime start, LocalDateTime end, String[] uris,
+                                              Boolean unique) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<StatResponseDto> getStats(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique,
+                                              Integer limit, Integer offset) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StatDeltaDto getStatsDelta(LocalDateTime since, String[] uris, Boolean unique) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<Long, Long> getEntityStats(EntityStatsRequestDto request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Response getStatsStream(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique,
+                                       Integer limit, Integer offset) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package ru.practicum.event.service;
+
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EntityStatsRequestDto;
+import ru.practicum.dto.StatDeltaDto;
+import ru.practicum.dto.StatRequestDto;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.feign.StatsServerHttpClient;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * {@link EventViewCache} with counts aged by hand through {@link EventViewCache#putAll}: fresh counts are served
+ * as they are, counts past {@code refresh-after} are served and reloaded in the background, and counts past
+ * {@code max-staleness} are loaded before answering.
+ */
+class EventViewCacheTest {
+    private static final Duration REFRESH_AFTER = Duration.ofMinutes(1);
+    private static final Duration MAX_STALENESS = Duration.ofMinutes(10);
+
+    private final FakeStatsServer server = new FakeStatsServer();
+    private EventViewCache cache;
+
+    @AfterEach
+    void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    void disabledCacheAsksStatsServerEveryTime() {
+        cache = newCache(false);
+        server.entityViews = Map.of(1L, 5L, 2L, 0L);
+        cache.putAll(Map.of(1L, 3L), System.nanoTime());
+
+        assertEquals(Map.of(1L, 5L, 2L, 0L), cache.getViews(List.of(1L, 2L)));
+        assertEquals(Map.of(1L, 5L, 2L, 0L), cache.getViews(List.of(1L, 2L)));
+        assertEquals(List.of(List.of(1L, 2L), List.of(1L, 2L)), server.entityIds);
+    }
+
+    @Test
+    void missingCountsAreLoadedInOneCallAndThenServedFromTheCache() {
+        cache = newCache(true);
+        server.entityViews = Map.of(1L, 5L);
+
+        assertEquals(Map.of(1L, 5L), cache.getViews(List.of(1L, 2L, 1L)));
+        assertEquals(Map.of(1L, 5L), cache.getViews(List.of(2L, 1L)));
+        assertEquals(1, server.entityIds.size());
+        assertEquals(List.of(1L, 2L), server.entityIds.get(0).stream().sorted().toList());
+    }
+
+    @Test
+    void countsPastRefreshAfterAreServedAndReloadedInTheBackground() throws InterruptedException {
+        cache = newCache(true);
+        cache.putAll(Map.of(1L, 5L), System.nanoTime() - REFRESH_AFTER.multipliedBy(2).toNanos());
+        server.entityViews = Map.of(1L, 9L);
+
+        assertEquals(Map.of(1L, 5L), cache.getViews(List.of(1L)));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!cache.getViews(List.of(1L)).equals(Map.of(1L, 9L))) {
+            if (System.nanoTime() > deadline) {
+                fail("Count was not refreshed in time");
+            }
+            Thread.sleep(5);
+        }
+        assertEquals(List.of(List.of(1L)), server.entityIds);
+    }
+
+    @Test
+    void countsPastMaxStalenessAreLoadedBeforeAnswering() {
+        cache = newCache(true);
+        cache.putAll(Map.of(1L, 5L, 2L, 6L), System.nanoTime() - MAX_STALENESS.plusSeconds(1).toNanos());
+        cache.putAll(Map.of(3L, 7L), System.nanoTime());
+        server.entityViews = Map.of(1L, 9L, 2L, 10L);
+
+        assertEquals(Map.of(1L, 9L, 2L, 10L, 3L, 7L), cache.getViews(List.of(1L, 2L, 3L)));
+        assertEquals(1, server.entityIds.size());
+        assertEquals(List.of(1L, 2L), server.entityIds.get(0).stream().sorted().toList());
+    }
+
+    @Test
+    void staleCountsAreServedWhenALoadFails() {
+        cache = newCache(true);
+        cache.putAll(Map.of(1L, 5L), System.nanoTime() - MAX_STALENESS.plusSeconds(1).toNanos());
+        server.entityViews = null;
+
+        assertEquals(Map.of(1L, 5L), cache.getViews(List.of(1L)));
+        assertThrows(IllegalStateException.class, () -> cache.getViews(List.of(1L, 2L)));
+    }
+
+    @Test
+    void olderCountsDoNotReplaceNewerOnes() {
+        cache = newCache(true);
+        long now = System.nanoTime();
+        cache.putAll(Map.of(1L, 5L), now);
+        cache.putAll(Map.of(1L, 3L), now - REFRESH_AFTER.toNanos() / 2);
+
+        assertEquals(Map.of(1L, 5L), cache.getViews(List.of(1L)));
+        assertEquals(List.of(), server.entityIds);
+    }
+
+    private EventViewCache newCache(boolean enabled) {
+        return new EventViewCache(new EventViewCounter(server), new SimpleMeterRegistry(), enabled, REFRESH_AFTER,
+                MAX_STALENESS, 100, 1, 10);
+    }
+
+    /**
+     * Answers entity stats with {@link #entityViews}, failing while that is {@code null}.
+     */
+    private static class FakeStatsServer implements StatsServerHttpClient {
+        private final List<List<Long>> entityIds = new CopyOnWriteArrayList<>();
+        private volatile Map<Long, Long> entityViews = Map.of();
+
+        @Override
+        public Map<Long, Long> getEntityStats(EntityStatsRequestDto request) {
+            Map<Long, Long> views = entityViews;
+            if (views == null) {
+                throw new IllegalStateException("Stats server is down");
+            }
+            entityIds.add(request.getIds());
+            return views;
+        }
+
+        @Override
+        public StatRequestDto registerHit(StatRequestDto statRequestDto) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void registerHits(List<StatRequestDto> statRequestDtos) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<StatResponseDto> getStats(LocalDateTime start, LocalDateTime end, String[] uris,
+                                              Boolean unique) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<StatResponseDto> getStats(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique,
+                                              Integer limit, Integer offset) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StatDeltaDto getStatsDelta(LocalDateTime since, String[] uris, Boolean unique) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Response getStatsStream(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique,
+                                       Integer limit, Integer offset) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package ru.practicum.event.service;
+
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.practicum.dto.EntityStatsRequestDto;
+import ru.practicum.dto.StatDeltaDto;
+import ru.practicum.dto.StatDeltaRowDto;
+import ru.practicum.dto.StatRequestDto;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.event.repository.EventViewSyncRepository;
+import ru.practicum.feign.StatsServerHttpClient;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.practicum.Constants.DEFAULT_SEARCH_START_DATE;
+
+/**
+ * {@link EventViewSync} over the event-server schema on an in-memory database: only the events whose uris were hit
+ * since the watermark are rewritten, and the watermark is kept in the database, so a new instance and a run after
+ * a failure both ask from where the last successful run stopped.
+ */
+class EventViewSyncTest {
+    private static final LocalDateTime FIRST_WATERMARK = LocalDateTime.of(2024, 1, 10, 12, 0);
+    private static final LocalDateTime SECOND_WATERMARK = FIRST_WATERMARK.plusMinutes(1);
+
+    private final FakeStatsServer server = new FakeStatsServer();
+    private JdbcTemplate jdbcTemplate;
+    private EventViewSyncRepository repository;
+    private EventViewCache cache;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:events-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new EventViewSyncRepository(jdbcTemplate);
+        for (int i = 0; i < 4; i++) {
+            jdbcTemplate.update("""
+                    INSERT INTO events (created_on, description, event_date, initiator_id, paid, participant_limit,
+                                        request_moderation, state, title, confirmed_requests)
+                    VALUES (?, 'description', ?, 1, false, 0, false, 'PUBLISHED', 'title', 0)
+                    """, FIRST_WATERMARK, FIRST_WATERMARK.plusDays(1));
+        }
+        jdbcTemplate.update("UPDATE events SET synced_views = 7 WHERE id = 4");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+        cache.close();
+    }
+
+    @Test
+    void rewritesTheViewsOfEventsHitSinceTheWatermark() {
+        server.deltas.add(delta(FIRST_WATERMARK, List.of("/events/1", "/events", "/events/2/requests"),
+                List.of("/events/2", "/events/3", "/users/3")));
+        server.entityViews = Map.of(1L, 5L, 2L, 3L);
+
+        newSync(false).sync();
+
+        assertEquals(List.of(DEFAULT_SEARCH_START_DATE), server.deltaSince);
+        assertEquals(List.of(List.of(1L, 2L, 3L)), server.entityIds);
+        assertEquals(Map.of(1L, 5L, 2L, 3L, 3L, 0L, 4L, 7L), syncedViews());
+        assertEquals(Optional.of(FIRST_WATERMARK), repository.findWatermark());
+    }
+
+    @Test
+    void aNewInstanceAsksFromTheSavedWatermark() {
+        server.deltas.add(delta(FIRST_WATERMARK, List.of("/events/1"), List.of()));
+        server.deltas.add(delta(SECOND_WATERMARK, List.of("/events/2"), List.of()));
+        server.entityViews = Map.of(1L, 1L, 2L, 2L);
+
+        newSync(false).sync();
+        newSync(false).sync();
+
+        assertEquals(List.of(DEFAULT_SEARCH_START_DATE, FIRST_WATERMARK), server.deltaSince);
+        assertEquals(List.of(List.of(1L), List.of(2L)), server.entityIds);
+        assertEquals(Optional.of(SECOND_WATERMARK), repository.findWatermark());
+    }
+
+    @Test
+    void aFailedRunLeavesTheWatermarkAndViewsAsTheyWere() {
+        EventViewSync sync = newSync(false);
+        server.deltas.add(delta(FIRST_WATERMARK, List.of("/events/1"), List.of()));
+        server.entityViews = Map.of(1L, 1L);
+        sync.sync();
+        server.deltas.add(delta(SECOND_WATERMARK, List.of("/events/1", "/events/4"), List.of()));
+        server.deltas.add(delta(SECOND_WATERMARK, List.of("/events/1", "/events/4"), List.of()));
+        server.entityViews = null;
+
+        sync.sync();
+
+        assertEquals(Optional.of(FIRST_WATERMARK), repository.findWatermark());
+        assertEquals(Map.of(1L, 1L, 2L, 0L, 3L, 0L, 4L, 7L), syncedViews());
+
+        server.entityViews = Map.of(1L, 2L, 4L, 8L);
+        sync.sync();
+
+        assertEquals(List.of(DEFAULT_SEARCH_START_DATE, FIRST_WATERMARK, FIRST_WATERMARK), server.deltaSince);
+        assertEquals(Map.of(1L, 2L, 2L, 0L, 3L, 0L, 4L, 8L), syncedViews());
+        assertEquals(Optional.of(SECOND_WATERMARK), repository.findWatermark());
+    }
+
+    @Test
+    void runsWithoutEventHitsOnlyMoveTheWatermark() {
+        server.deltas.add(delta(FIRST_WATERMARK, List.of("/events", "/compilations/1"), List.of()));
+
+        newSync(false).sync();
+
+        assertEquals(List.of(), server.entityIds);
+        assertEquals(Map.of(1L, 0L, 2L, 0L, 3L, 0L, 4L, 7L), syncedViews());
+        assertEquals(Optional.of(FIRST_WATERMARK), repository.findWatermark());
+    }
+
+    @Test
+    void syncedViewsAreServedFromTheCache() {
+        server.deltas.add(delta(FIRST_WATERMARK, List.of("/events/1", "/events/2"), List.of()));
+        server.entityViews = Map.of(1L, 5L);
+
+        newSync(true).sync();
+
+        assertEquals(Map.of(1L, 5L), cache.getViews(List.of(1L, 2L)));
+        assertEquals(1, server.entityIds.size());
+    }
+
+    private EventViewSync newSync(boolean cacheEnabled) {
+        if (cache != null) {
+            cache.close();
+        }
+        EventViewCounter counter = new EventViewCounter(server);
+        cache = new EventViewCache(counter, new SimpleMeterRegistry(), cacheEnabled, Duration.ofMinutes(1),
+                Duration.ofMinutes(5), 100, 1, 10);
+        return new EventViewSync(server, counter, cache, repository);
+    }
+
+    private Map<Long, Long> syncedViews() {
+        Map<Long, Long> views = new HashMap<>();
+        jdbcTemplate.query("SELECT id, synced_views FROM events",
+                (RowCallbackHandler) row -> views.put(row.getLong("id"), row.getLong("synced_views")));
+        return views;
+    }
+
+    private static StatDeltaDto delta(LocalDateTime watermark, List<String> settled, List<String> pending) {
+        return StatDeltaDto.builder()
+                .watermark(watermark)
+                .settled(settled.stream().map(EventViewSyncTest::row).toList())
+                .pending(pending.stream().map(EventViewSyncTest::row).toList())
+                .build();
+    }
+
+    private static StatDeltaRowDto row(String uri) {
+        return StatDeltaRowDto.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .hits(1L)
+                .build();
+    }
+
+    /**
+     * Answers each delta request with the next of {@link #deltas}, and entity stats with {@link #entityViews},
+     * failing while that is {@code null}.
+     */
+    private static class FakeStatsServer implements StatsServerHttpClient {
+        private final List<StatDeltaDto> deltas = new ArrayList<>();
+        private final List<LocalDateTime> deltaSince = new ArrayList<>();
+        private final List<List<Long>> entityIds = new ArrayList<>();
+        private Map<Long, Long> entityViews = Map.of();
+
+        @Override
+        public StatDeltaDto getStatsDelta(LocalDateTime since, String[] uris, Boolean unique) {
+            deltaSince.add(since);
+            return deltas.remove(0);
+        }
+
+        @Override
+        public Map<Long, Long> getEntityStats(EntityStatsRequestDto request) {
+            if (entityViews == null) {
+                throw new IllegalStateException("Stats server is down");
+            }
+            entityIds.add(request.getIds());
+            return entityViews;
+        }
+
+        @Override
+        public StatRequestDto registerHit(StatRequestDto statRequestDto) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void registerHits(List<StatRequestDto> statRequestDtos) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<StatResponseDto> getStats(LocalDateTime start, LocalDateTime end, String[] uris,
+                                              Boolean unique) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<StatResponseDto> getStats(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique,
+                                              Integer limit, Integer offset) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Response getStatsStream(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique,
+                                       Integer limit, Integer offset) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
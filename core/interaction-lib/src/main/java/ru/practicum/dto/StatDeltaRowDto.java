@@ -0,0 +1,27 @@
+package ru.practicum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Hits of one app and uri within a {@link StatDeltaDto} range.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatDeltaRowDto {
+    private String app;
+    private String uri;
+    /**
+     * Hits in the range; for unique requests, the estimated distinct ips of the range alone.
+     */
+    private Long hits;
+    /**
+     * For unique requests, the serialized HyperLogLog sketch of the ips of the range. Sketches of adjacent ranges
+     * merge by taking the register-wise maximum, which is how unique counts are carried across deltas.
+     */
+    private byte[] sketch;
+}
@@ -1,17 +1,23 @@
 package ru.practicum.feign;
 
+import feign.Response;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import ru.practicum.Constants;
+import ru.practicum.dto.EntityStatsRequestDto;
+import ru.practicum.dto.StatDeltaDto;
 import ru.practicum.dto.StatRequestDto;
 import ru.practicum.dto.StatResponseDto;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @FeignClient(name = "stats-server")
 public interface StatsServerHttpClient {
@@ -19,9 +25,63 @@ public interface StatsServerHttpClient {
     @PostMapping("/hit")
     StatRequestDto registerHit(@RequestBody StatRequestDto statRequestDto);
 
+    /**
+     * Registers several hits in one request.
+     */
+    @PostMapping("/hits/batch")
+    void registerHits(@RequestBody List<StatRequestDto> statRequestDtos);
+
     @GetMapping("/stats")
     List<StatResponseDto> getStats(@RequestParam("start") @DateTimeFormat(pattern = Constants.DATE_TIME_FORMAT) LocalDateTime start,
                                    @RequestParam("end") @DateTimeFormat(pattern = Constants.DATE_TIME_FORMAT) LocalDateTime end,
                                    @RequestParam(value = "uris", required = false) String[] uris,
                                    @RequestParam(value = "unique", defaultValue = "false") Boolean unique);
+
+    @GetMapping("/stats")
+    List<StatResponseDto> getStats(@RequestParam("start") @DateTimeFormat(pattern = Constants.DATE_TIME_FORMAT) LocalDateTime start,
+                                   @RequestParam("end") @DateTimeFormat(pattern = Constants.DATE_TIME_FORMAT) LocalDateTime end,
+                                   @RequestParam(value = "uris", required = false) String[] uris,
+                                   @RequestParam(value = "unique", defaultValue = "false") Boolean unique,
+                                   @RequestParam(value = "limit", required = false) Integer limit,
+                                   @RequestParam(value = "offset", defaultValue = "0") Integer offset);
+
+    /**
+     * Hits since {@code since}: a settled part to add to running totals, the watermark to ask from next time
+     * and a pending part up to now.
+     */
+    @GetMapping("/stats/delta")
+    StatDeltaDto getStatsDelta(@RequestParam("since") @DateTimeFormat(pattern = Constants.DATE_TIME_FORMAT) LocalDateTime since,
+                               @RequestParam(value = "uris", required = false) String[] uris,
+                               @RequestParam(value = "unique", defaultValue = "false") Boolean unique);
+
+    /**
+     * All-time hits of entities of one type by id; ids never hit are missing from the map.
+     */
+    @PostMapping("/stats/entities")
+    Map<Long, Long> getEntityStats(@RequestBody EntityStatsRequestDto request);
+
+    /**
+     * Raw newline-delimited JSON response of {@code /stats}; prefer {@link #streamStats(LocalDateTime,
+     * LocalDateTime, String[], Boolean, Integer, Integer, Consumer)}, which reads and closes it.
+     */
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Response getStatsStream(@RequestParam("start") @DateTimeFormat(pattern = Constants.DATE_TIME_FORMAT) LocalDateTime start,
+                            @RequestParam("end") @DateTimeFormat(pattern = Constants.DATE_TIME_FORMAT) LocalDateTime end,
+                            @RequestParam(value = "uris", required = false) String[] uris,
+                            @RequestParam(value = "unique", defaultValue = "false") Boolean unique,
+                            @RequestParam(value = "limit", required = false) Integer limit,
+                            @RequestParam(value = "offset", defaultValue = "0") Integer offset);
+
+    /**
+     * Hands the rows of {@code /stats} to {@code consumer} as they arrive, without collecting them.
+     */
+    default void streamStats(LocalDateTime start,
+                             LocalDateTime end,
+                             String[] uris,
+                             Boolean unique,
+                             Integer limit,
+                             Integer offset,
+                             Consumer<StatResponseDto> consumer) {
+        StatsStreamReader.read(getStatsStream(start, end, uris, unique, limit, offset), consumer);
+    }
 }
@@ -0,0 +1,259 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatRequestDto;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.feign.StatsServerHttpClient;
+import ru.practicum.routing.StatsServerRing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Takes hit sending off the request path: {@link #sendHit} only puts the hit into a bounded lock-free queue, and a
+ * background virtual thread ships the queue to {@code /hits/batch} whenever a batch fills up or the oldest queued
+ * hit has waited {@code flush-interval}. A batch that fails is retried with a growing pause and then dropped; one
+ * the server refused as invalid is dropped right away.
+ * When the queue is full the {@link AsyncBatchingProperties.OverflowPolicy} decides whether the oldest hit is
+ * discarded or the caller waits for room. Under {@code DROP_OLDEST} a caller evicts at most
+ * {@value #MAX_EVICTION_ATTEMPTS} times; when other callers keep taking the freed room, its own hit is dropped
+ * instead. Every dropped hit is counted in {@code stats.client.hits.dropped}, tagged with the reason.
+ * {@link #close()} stops accepting hits and sends what is still queued.
+ * When the delegate is a {@link SpoolingHttpStatsClient}, batches that keep failing go to its spool instead. With a
+ * {@link StatsServerRing} a batch is split by the instance owning the uris of its hits, so every instance receives
+ * the hits of its own uris.
+ * <p>
+ * Stats reads are passed to the delegate unchanged.
+ */
+@Slf4j
+public class AsyncBatchingHttpStatsClient implements HttpStatsClient, AutoCloseable {
+    static final int MAX_EVICTION_ATTEMPTS = 16;
+    private static final long BLOCKED_CALLER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final String DROPPED = "stats.client.hits.dropped";
+
+    private final HttpStatsClient delegate;
+    private final StatsServerHttpClient statsServerHttpClient;
+    private final AsyncBatchingProperties properties;
+    private final StatsServerRing ring;
+    private final Queue<HitDto> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Counter sentCounter;
+    private final Counter overflowCounter;
+    private final Counter closedCounter;
+    private final Counter refusedCounter;
+    private final Counter failedCounter;
+    private final Counter retriedCounter;
+    private final Thread sender;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param ring ring to split batches by, or {@code null} to send every batch as it is
+     */
+    public AsyncBatchingHttpStatsClient(HttpStatsClient delegate,
+                                        StatsServerHttpClient statsServerHttpClient,
+                                        AsyncBatchingProperties properties,
+                                        MeterRegistry meterRegistry,
+                                        StatsServerRing ring) {
+        this.delegate = delegate;
+        this.statsServerHttpClient = statsServerHttpClient;
+        this.properties = properties;
+        this.ring = ring;
+        Gauge.builder("stats.client.hits.queued", queued, AtomicInteger::get)
+                .description("Hits waiting to be sent to the stats server")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("stats.client.hits.sent").register(meterRegistry);
+        this.overflowCounter = Counter.builder(DROPPED).tag("reason", "overflow")
+                .description("Hits discarded, by reason")
+                .register(meterRegistry);
+        this.closedCounter = Counter.builder(DROPPED).tag("reason", "closed").register(meterRegistry);
+        this.refusedCounter = Counter.builder(DROPPED).tag("reason", "refused").register(meterRegistry);
+        this.failedCounter = Counter.builder(DROPPED).tag("reason", "failed").register(meterRegistry);
+        this.retriedCounter = Counter.builder("stats.client.hits.retried").register(meterRegistry);
+        this.sender = Thread.ofVirtual().name("stats-hit-sender").start(this::sendLoop);
+        log.info("Async hit sending started: capacity={}, batchSize={}, flushInterval={}, overflowPolicy={}",
+                properties.getQueueCapacity(), properties.getBatchSize(), properties.getFlushInterval(),
+                properties.getOverflowPolicy());
+    }
+
+    @Override
+    public List<StatResponseDto> getStats(String start, String end, List<String> uris, Boolean unique) {
+        return delegate.getStats(start, end, uris, unique);
+    }
+
+    @Override
+    public <R> Optional<R> getStats(StatsParameters<R> params) {
+        return delegate.getStats(params);
+    }
+
+    @Override
+    public void streamStats(StatsParameters<?> params, Consumer<StatResponseDto> consumer) {
+        delegate.streamStats(params, consumer);
+    }
+
+    @Override
+    public List<List<StatResponseDto>> getStatsBatch(List<StatsParameters<?>> params) {
+        return delegate.getStatsBatch(params);
+    }
+
+    /**
+     * Queues the hit and returns at once. The server's answer is never waited for, so the result is the queued hit
+     * itself when {@code responseType} can hold it, and empty when the hit was not queued.
+     */
+    @Override
+    public <R> Optional<R> sendHit(HitDto hitDto, Class<R> responseType) {
+        if (!running) {
+            log.warn("Hit dropped, async hit sending is closed: {}", hitDto);
+            closedCounter.increment();
+            return Optional.empty();
+        }
+        if (!enqueue(hitDto)) {
+            overflowCounter.increment();
+            return Optional.empty();
+        }
+        return responseType.isInstance(hitDto) ? Optional.of(responseType.cast(hitDto)) : Optional.empty();
+    }
+
+    private boolean enqueue(HitDto hit) {
+        int capacity = properties.getQueueCapacity();
+        if (properties.getOverflowPolicy() == AsyncBatchingProperties.OverflowPolicy.DROP_OLDEST) {
+            for (int attempt = 0; !tryReserve(capacity); attempt++) {
+                if (attempt >= MAX_EVICTION_ATTEMPTS) {
+                    return false;
+                }
+                if (queue.poll() != null) {
+                    queued.decrementAndGet();
+                    overflowCounter.increment();
+                } else {
+                    // The sender took the hits but has not given back their room yet.
+                    Thread.onSpinWait();
+                }
+            }
+        } else {
+            long deadline = System.nanoTime() + properties.getOfferTimeout().toNanos();
+            while (!tryReserve(capacity)) {
+                if (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                LockSupport.unpark(sender);
+                LockSupport.parkNanos(BLOCKED_CALLER_PARK_NANOS);
+            }
+        }
+        queue.offer(hit);
+        if (queued.get() >= properties.getBatchSize()) {
+            LockSupport.unpark(sender);
+        }
+        return true;
+    }
+
+    private boolean tryReserve(int capacity) {
+        int size;
+        do {
+            size = queued.get();
+            if (size >= capacity) {
+                return false;
+            }
+        } while (!queued.compareAndSet(size, size + 1));
+        return true;
+    }
+
+    private void sendLoop() {
+        int batchSize = properties.getBatchSize();
+        long flushIntervalNanos = properties.getFlushInterval().toNanos();
+        List<HitDto> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            long deadline = System.nanoTime() + flushIntervalNanos;
+            while (running && queued.get() < batchSize && deadline - System.nanoTime() > 0) {
+                LockSupport.parkNanos(deadline - System.nanoTime());
+            }
+            HitDto hit;
+            while (batch.size() < batchSize && (hit = queue.poll()) != null) {
+                queued.decrementAndGet();
+                batch.add(hit);
+            }
+            send(batch);
+        }
+        log.info("Hit sender stopped");
+    }
+
+    private void send(List<HitDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<StatRequestDto> requests = batch.stream().map(StatRequestDto::from).toList();
+            if (ring == null) {
+                sendWithRetries(requests);
+            } else {
+                ring.groupByOwner(requests, StatRequestDto::getUri).forEach(this::sendWithRetries);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void sendWithRetries(List<StatRequestDto> batch) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                statsServerHttpClient.registerHits(batch);
+                sentCounter.increment(batch.size());
+                log.debug("Sent batch of {} hits", batch.size());
+                return;
+            } catch (RuntimeException e) {
+                if (!SpoolingHttpStatsClient.isServerUnavailable(e)) {
+                    refusedCounter.increment(batch.size());
+                    log.error("Stats server refused batch of {} hits, dropping it: {}", batch.size(), e.getMessage());
+                    return;
+                }
+                if (attempt >= properties.getMaxRetries() || !running) {
+                    giveUp(batch, attempt + 1, e);
+                    return;
+                }
+                retriedCounter.increment(batch.size());
+                log.warn("Failed to send batch of {} hits, retrying: {}", batch.size(), e.getMessage());
+                LockSupport.parkNanos(properties.getRetryBackoff().toNanos() << Math.min(attempt, 10));
+            }
+        }
+    }
+
+    private void giveUp(List<StatRequestDto> batch, int attempts, RuntimeException e) {
+        if (delegate instanceof SpoolingHttpStatsClient spooling) {
+            log.warn("Failed to send batch of {} hits after {} attempts, spooling it: {}", batch.size(), attempts,
+                    e.getMessage());
+            spooling.spool(List.copyOf(batch));
+            return;
+        }
+        failedCounter.increment(batch.size());
+        log.error("Failed to send batch of {} hits after {} attempts: {}", batch.size(), attempts, e.getMessage(), e);
+    }
+
+    @Override
+    public void close() throws Exception {
+        running = false;
+        LockSupport.unpark(sender);
+        try {
+            sender.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (sender.isAlive()) {
+            log.error("Hit sender did not finish in {}, {} hits are lost",
+                    properties.getShutdownTimeout(), queued.get());
+            sender.interrupt();
+        }
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
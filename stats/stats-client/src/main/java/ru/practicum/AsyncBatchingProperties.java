@@ -0,0 +1,45 @@
+package ru.practicum;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats-client.async")
+public class AsyncBatchingProperties {
+    /**
+     * Send hits in the background through {@link AsyncBatchingHttpStatsClient} instead of on the caller's thread.
+     */
+    private boolean enabled = false;
+    private int queueCapacity = 10_000;
+    private int batchSize = 500;
+    /**
+     * Longest time a queued hit waits for its batch to fill up.
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    /**
+     * How long {@link OverflowPolicy#BLOCK} waits for space before the hit is dropped.
+     */
+    private Duration offerTimeout = Duration.ofMillis(100);
+    private int maxRetries = 3;
+    private Duration retryBackoff = Duration.ofMillis(200);
+    /**
+     * How long closing the client waits for queued hits to be sent.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+    public enum OverflowPolicy {
+        /**
+         * Discard the oldest queued hit to make room; the caller never waits.
+         */
+        DROP_OLDEST,
+        /**
+         * Make the caller wait up to {@code offer-timeout} for room, then discard the new hit.
+         */
+        BLOCK
+    }
+}
@@ -0,0 +1,236 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatResponseDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static ru.practicum.constants.DataTransferConvention.DATE_TIME_FORMATTER;
+
+/**
+ * Caches {@link #getStats(String, String, List, Boolean)} per uri for {@code ttl}. A lookup of several uris is
+ * split: cached uris are answered locally and only the missing ones are sent to the server, in one request.
+ * Lookups of a uri that another caller is already fetching wait for that fetch instead of sending their own. When
+ * the server fails, entries up to {@code max-staleness} past their ttl are served instead of the error.
+ * <p>
+ * Lookups without uris, lookups with a glob such as {@code /events/*} among their uris and lookups starting with
+ * {@code /events}, which the server reads as all uris, are passed to the delegate unchanged: their rows are not the
+ * rows of each uri they list, so caching them per uri would answer later lookups with nothing. So are the other
+ * methods.
+ */
+@Slf4j
+public class CachingHttpStatsClient implements HttpStatsClient, AutoCloseable {
+    private static final String ALL_EVENTS = "/events";
+    private static final Comparator<StatResponseDto> HITS_DESC =
+            Comparator.comparing(StatResponseDto::getHits, Comparator.reverseOrder());
+
+    private final HttpStatsClient delegate;
+    private final StatsCacheProperties properties;
+    private final Map<UriKey, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<UriKey, CompletableFuture<List<StatResponseDto>>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter staleCounter;
+    private final Counter coalescedCounter;
+
+    public CachingHttpStatsClient(HttpStatsClient delegate,
+                                  StatsCacheProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.hitCounter = Counter.builder("stats.client.cache.requests").tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("stats.client.cache.requests").tag("result", "miss")
+                .register(meterRegistry);
+        this.staleCounter = Counter.builder("stats.client.cache.requests").tag("result", "stale")
+                .description("Uris answered from expired entries because the server failed")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("stats.client.cache.coalesced")
+                .description("Uris that waited for a fetch already in flight instead of asking the server")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.cache.entries", entries, Map::size).register(meterRegistry);
+        Gauge.builder("stats.client.cache.hit-ratio", this, CachingHttpStatsClient::getHitRatio)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<StatResponseDto> getStats(String start, String end, List<String> uris, Boolean unique) {
+        if (uris == null || uris.isEmpty() || ALL_EVENTS.equals(uris.get(0))
+                || uris.stream().anyMatch(CachingHttpStatsClient::isPattern)) {
+            return delegate.getStats(start, end, uris, unique);
+        }
+        long now = System.currentTimeMillis();
+        String endKey = isOpen(end) ? null : end;
+        boolean isUnique = Boolean.TRUE.equals(unique);
+        Map<String, List<StatResponseDto>> answered = new LinkedHashMap<>();
+        Map<UriKey, CompletableFuture<List<StatResponseDto>>> awaited = new LinkedHashMap<>();
+        Map<UriKey, CompletableFuture<List<StatResponseDto>>> owned = new LinkedHashMap<>();
+        for (String uri : new LinkedHashSet<>(uris)) {
+            UriKey key = new UriKey(start, endKey, isUnique, uri);
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.loadedAt() <= properties.getTtl().toMillis()) {
+                hitCounter.increment();
+                answered.put(uri, entry.rows());
+                continue;
+            }
+            missCounter.increment();
+            CompletableFuture<List<StatResponseDto>> fetch = new CompletableFuture<>();
+            CompletableFuture<List<StatResponseDto>> running = inFlight.putIfAbsent(key, fetch);
+            if (running != null) {
+                coalescedCounter.increment();
+                awaited.put(key, running);
+            } else {
+                owned.put(key, fetch);
+            }
+        }
+        if (!owned.isEmpty()) {
+            fetch(start, end, isUnique, owned);
+        }
+        awaited.putAll(owned);
+        awaited.forEach((key, fetch) -> answered.put(key.uri(), await(key, fetch)));
+        List<StatResponseDto> result = new ArrayList<>();
+        answered.values().forEach(result::addAll);
+        result.sort(HITS_DESC);
+        return result;
+    }
+
+    /**
+     * Asks the server for the uris of {@code owned} and completes their fetches, so coalesced callers get the
+     * answer too. A failure completes them exceptionally.
+     */
+    private void fetch(String start,
+                       String end,
+                       boolean unique,
+                       Map<UriKey, CompletableFuture<List<StatResponseDto>>> owned) {
+        try {
+            List<String> uris = owned.keySet().stream().map(UriKey::uri).toList();
+            Map<String, List<StatResponseDto>> rowsByUri = new HashMap<>();
+            List<StatResponseDto> rows = delegate.getStats(start, end, uris, unique);
+            if (rows != null) {
+                rows.forEach(row -> rowsByUri.computeIfAbsent(row.getUri(), uri -> new ArrayList<>()).add(row));
+            }
+            long loadedAt = System.currentTimeMillis();
+            owned.forEach((key, fetch) -> {
+                List<StatResponseDto> uriRows = List.copyOf(rowsByUri.getOrDefault(key.uri(), List.of()));
+                entries.put(key, new Entry(uriRows, loadedAt));
+                inFlight.remove(key, fetch);
+                fetch.complete(uriRows);
+            });
+            evictIfFull(loadedAt);
+        } catch (RuntimeException e) {
+            owned.forEach((key, fetch) -> {
+                inFlight.remove(key, fetch);
+                fetch.completeExceptionally(e);
+            });
+        }
+    }
+
+    private List<StatResponseDto> await(UriKey key, CompletableFuture<List<StatResponseDto>> fetch) {
+        try {
+            return fetch.join();
+        } catch (CompletionException e) {
+            RuntimeException cause = e.getCause() instanceof RuntimeException runtime ? runtime : e;
+            Entry entry = entries.get(key);
+            long maxAge = properties.getTtl().plus(properties.getMaxStaleness()).toMillis();
+            if (entry == null || System.currentTimeMillis() - entry.loadedAt() > maxAge) {
+                throw cause;
+            }
+            staleCounter.increment();
+            log.warn("Serving stale stats of {} because the server failed: {}", key.uri(), cause.getMessage());
+            return entry.rows();
+        }
+    }
+
+    private boolean isOpen(String end) {
+        LocalDateTime settled = LocalDateTime.now().minus(properties.getTtl());
+        return !LocalDateTime.parse(end, DATE_TIME_FORMATTER).isBefore(settled);
+    }
+
+    /**
+     * Same wildcards as the server's uri globs.
+     */
+    private static boolean isPattern(String uri) {
+        return uri != null && (uri.indexOf('*') >= 0 || uri.indexOf('?') >= 0);
+    }
+
+    /**
+     * Drops entries too old to be served even as stale ones and, if the cache is still over {@code max-entries},
+     * the least recently loaded entries down to nine tenths of it, so it is not sorted again on every fetch.
+     */
+    private void evictIfFull(long now) {
+        int maxEntries = properties.getMaxEntries();
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        long maxAge = properties.getTtl().plus(properties.getMaxStaleness()).toMillis();
+        entries.values().removeIf(entry -> now - entry.loadedAt() > maxAge);
+        int excess = entries.size() - maxEntries * 9 / 10;
+        if (entries.size() <= maxEntries || excess <= 0) {
+            return;
+        }
+        log.debug("Stats cache holds {} live entries, more than {}; evicting the {} oldest", entries.size(),
+                maxEntries, excess);
+        entries.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue(Comparator.comparingLong(Entry::loadedAt)))
+                .limit(excess)
+                .toList()
+                .forEach(oldest -> entries.remove(oldest.getKey(), oldest.getValue()));
+    }
+
+    private double getHitRatio() {
+        double total = hitCounter.count() + missCounter.count();
+        return total == 0 ? 0 : hitCounter.count() / total;
+    }
+
+    @Override
+    public <R> Optional<R> getStats(StatsParameters<R> params) {
+        return delegate.getStats(params);
+    }
+
+    @Override
+    public void streamStats(StatsParameters<?> params, Consumer<StatResponseDto> consumer) {
+        delegate.streamStats(params, consumer);
+    }
+
+    @Override
+    public List<List<StatResponseDto>> getStatsBatch(List<StatsParameters<?>> params) {
+        return delegate.getStatsBatch(params);
+    }
+
+    @Override
+    public <R> Optional<R> sendHit(HitDto hitDto, Class<R> responseType) {
+        return delegate.sendHit(hitDto, responseType);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * @param end request end, or {@code null} for requests ending about now
+     */
+    private record UriKey(String start, String end, boolean unique, String uri) {
+    }
+
+    private record Entry(List<StatResponseDto> rows, long loadedAt) {
+    }
+}
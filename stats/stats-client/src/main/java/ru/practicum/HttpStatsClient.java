@@ -1,14 +1,29 @@
 package ru.practicum;
 
+import ru.practicum.dto.HitDto;
 import ru.practicum.dto.StatResponseDto;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface HttpStatsClient {
     List<StatResponseDto> getStats(String start, String end, List<String> uris, Boolean unique);
 
     <R> Optional<R> getStats(StatsParameters<R> params);
 
-    <T, R> Optional<R> sendHit(T hitDto, Class<R> responseType);
+    /**
+     * Hands the rows selected by {@code params} to {@code consumer} while the server is still sending them.
+     * {@link StatsParameters#getResponseType()} is ignored.
+     */
+    void streamStats(StatsParameters<?> params, Consumer<StatResponseDto> consumer);
+
+    /**
+     * Results of several queries in one request, in the order of {@code params}. The server answers identical
+     * queries once and lets queries over the same range share a scan. {@link StatsParameters#getResponseType()}
+     * is ignored.
+     */
+    List<List<StatResponseDto>> getStatsBatch(List<StatsParameters<?>> params);
+
+    <R> Optional<R> sendHit(HitDto hitDto, Class<R> responseType);
 }
\ No newline at end of file
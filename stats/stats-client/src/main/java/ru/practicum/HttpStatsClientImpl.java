@@ -3,6 +3,8 @@ package ru.practicum;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatQueryDto;
 import ru.practicum.dto.StatRequestDto;
 import ru.practicum.dto.StatResponseDto;
 import ru.practicum.feign.StatsServerHttpClient;
@@ -10,6 +12,7 @@ import ru.practicum.feign.StatsServerHttpClient;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static ru.practicum.constants.DataTransferConvention.*;
 
@@ -35,11 +38,40 @@ public class HttpStatsClientImpl implements HttpStatsClient {
                 .queryParam("end", param.getEnd())
                 .queryParam("uris", param.getUris())
                 .queryParam("unique", param.isUnique())
+                .queryParamIfPresent("limit", Optional.ofNullable(param.getLimit()))
+                .queryParam("offset", param.getOffset())
                 .build().toUri(), param.getResponseType()));
     }
 
     @Override
-    public <T, R> Optional<R> sendHit(T hit, Class<R> responseType) {
-        return Optional.ofNullable(responseType.cast(statsServerHttpClient.registerHit((StatRequestDto) hit)));
+    public void streamStats(StatsParameters<?> params, Consumer<StatResponseDto> consumer) {
+        statsServerHttpClient.streamStats(LocalDateTime.parse(params.getStart(), DATE_TIME_FORMATTER),
+                LocalDateTime.parse(params.getEnd(), DATE_TIME_FORMATTER),
+                params.getUris() == null ? null : params.getUris().toArray(new String[0]),
+                params.isUnique(),
+                params.getLimit(),
+                params.getOffset(),
+                consumer
+        );
+    }
+
+    @Override
+    public List<List<StatResponseDto>> getStatsBatch(List<StatsParameters<?>> params) {
+        List<StatQueryDto> queries = params.stream()
+                .map(param -> StatQueryDto.builder()
+                        .start(LocalDateTime.parse(param.getStart(), DATE_TIME_FORMATTER))
+                        .end(LocalDateTime.parse(param.getEnd(), DATE_TIME_FORMATTER))
+                        .uris(param.getUris())
+                        .unique(param.isUnique())
+                        .limit(param.getLimit())
+                        .offset(param.getOffset())
+                        .build())
+                .toList();
+        return statsServerHttpClient.getStatsBatch(queries);
+    }
+
+    @Override
+    public <R> Optional<R> sendHit(HitDto hit, Class<R> responseType) {
+        return Optional.ofNullable(responseType.cast(statsServerHttpClient.registerHit(StatRequestDto.from(hit))));
     }
 }
\ No newline at end of file
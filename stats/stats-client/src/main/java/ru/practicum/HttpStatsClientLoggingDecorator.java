@@ -2,13 +2,15 @@ package ru.practicum;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.client.RestClientException;
+import ru.practicum.dto.HitDto;
 import ru.practicum.dto.StatResponseDto;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Slf4j
-public class HttpStatsClientLoggingDecorator implements HttpStatsClient {
+public class HttpStatsClientLoggingDecorator implements HttpStatsClient, AutoCloseable {
 
     private final HttpStatsClient delegate;
 
@@ -39,7 +41,26 @@ public class HttpStatsClientLoggingDecorator implements HttpStatsClient {
     }
 
     @Override
-    public <T, R> Optional<R> sendHit(T hitDto, Class<R> responseType) {
+    public void streamStats(StatsParameters<?> params, Consumer<StatResponseDto> consumer) {
+        log.info("Streaming stats: {}", params.toString());
+        long[] rows = {0};
+        delegate.streamStats(params, row -> {
+            rows[0]++;
+            consumer.accept(row);
+        });
+        log.info("Stats stream finished: {} rows", rows[0]);
+    }
+
+    @Override
+    public List<List<StatResponseDto>> getStatsBatch(List<StatsParameters<?>> params) {
+        log.info("Getting batch of {} stats queries", params.size());
+        List<List<StatResponseDto>> results = delegate.getStatsBatch(params);
+        log.info("Stats batch received: {} results", results.size());
+        return results;
+    }
+
+    @Override
+    public <R> Optional<R> sendHit(HitDto hitDto, Class<R> responseType) {
         log.info("Sending hitDto: {}", hitDto);
         try {
             var optResult = delegate.sendHit(hitDto, responseType);
@@ -54,4 +75,11 @@ public class HttpStatsClientLoggingDecorator implements HttpStatsClient {
             return Optional.empty();
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
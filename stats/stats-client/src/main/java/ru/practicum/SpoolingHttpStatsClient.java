@@ -0,0 +1,169 @@
+package ru.practicum;
+
+import feign.FeignException;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatRequestDto;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.feign.StatsServerHttpClient;
+import ru.practicum.spool.HitSpool;
+import ru.practicum.spool.SpoolProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Keeps hits that cannot be sent in a {@link HitSpool} on disk instead of losing them. Once a send fails, later
+ * hits go straight to the spool, so callers do not wait for the server to time out again; a background virtual
+ * thread sends the spool to {@code /hits/batch} every {@code replay-interval} and goes back to sending directly
+ * once the spool is empty.
+ * <p>
+ * Only failures that sending again can fix are spooled: no connection, 5xx and 429. Any other refusal, such as a
+ * 400 for an invalid hit, is the caller's to see on a direct send; a spooled batch refused that way is dropped with
+ * a warning, so that it does not hold up the hits behind it forever.
+ * <p>
+ * Stats reads are passed to the delegate unchanged.
+ */
+@Slf4j
+public class SpoolingHttpStatsClient implements HttpStatsClient, AutoCloseable {
+    private final HttpStatsClient delegate;
+    private final StatsServerHttpClient statsServerHttpClient;
+    private final SpoolProperties properties;
+    private final HitSpool spool;
+    private final Thread replayer;
+
+    private volatile boolean running = true;
+    private volatile boolean serverAvailable = true;
+
+    public SpoolingHttpStatsClient(HttpStatsClient delegate,
+                                   StatsServerHttpClient statsServerHttpClient,
+                                   SpoolProperties properties,
+                                   HitSpool spool) {
+        this.delegate = delegate;
+        this.statsServerHttpClient = statsServerHttpClient;
+        this.properties = properties;
+        this.spool = spool;
+        this.serverAvailable = spool.isEmpty();
+        this.replayer = Thread.ofVirtual().name("stats-hit-replayer").start(this::replayLoop);
+    }
+
+    @Override
+    public List<StatResponseDto> getStats(String start, String end, List<String> uris, Boolean unique) {
+        return delegate.getStats(start, end, uris, unique);
+    }
+
+    @Override
+    public <R> Optional<R> getStats(StatsParameters<R> params) {
+        return delegate.getStats(params);
+    }
+
+    @Override
+    public void streamStats(StatsParameters<?> params, Consumer<StatResponseDto> consumer) {
+        delegate.streamStats(params, consumer);
+    }
+
+    @Override
+    public List<List<StatResponseDto>> getStatsBatch(List<StatsParameters<?>> params) {
+        return delegate.getStatsBatch(params);
+    }
+
+    /**
+     * Sends the hit, or spools it when the server is unavailable; a spooled hit yields an empty result.
+     */
+    @Override
+    public <R> Optional<R> sendHit(HitDto hitDto, Class<R> responseType) {
+        if (serverAvailable) {
+            try {
+                return delegate.sendHit(hitDto, responseType);
+            } catch (RuntimeException e) {
+                if (!isServerUnavailable(e)) {
+                    throw e;
+                }
+                serverAvailable = false;
+                log.warn("Stats server unavailable, spooling hits: {}", e.getMessage());
+            }
+        }
+        spool.append(List.of(StatRequestDto.from(hitDto)));
+        return Optional.empty();
+    }
+
+    private void replayLoop() {
+        while (running) {
+            LockSupport.parkNanos(properties.getReplayInterval().toNanos());
+            if (!serverAvailable || !spool.isEmpty()) {
+                replay();
+            }
+        }
+        log.info("Hit replayer stopped");
+    }
+
+    private void replay() {
+        long replayed = 0;
+        while (running) {
+            HitSpool.Batch batch = spool.peek(properties.getReplayBatchSize());
+            if (batch.isEmpty()) {
+                serverAvailable = true;
+                break;
+            }
+            try {
+                statsServerHttpClient.registerHits(batch.hits());
+            } catch (RuntimeException e) {
+                if (isServerUnavailable(e)) {
+                    log.debug("Stats server still unavailable: {}", e.getMessage());
+                    break;
+                }
+                log.warn("Stats server refused {} spooled hits, dropping them: {}", batch.hits().size(),
+                        e.getMessage());
+                spool.reject(batch);
+                continue;
+            }
+            spool.acknowledge(batch);
+            replayed += batch.hits().size();
+        }
+        if (replayed > 0) {
+            log.info("Replayed {} spooled hits", replayed);
+        }
+    }
+
+    /**
+     * Whether {@code e} means the server could not take a request right now, so that it is worth sending again
+     * later: no connection or a read timeout, a 5xx, including the 503 of a full ingest queue or of no known
+     * instance, or a 429.
+     */
+    static boolean isServerUnavailable(RuntimeException e) {
+        if (e instanceof FeignException feignException) {
+            int status = feignException.status();
+            return status < 0 || status >= 500 || status == 429;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || cause instanceof UncheckedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Spools hits that were already taken off the caller, such as a batch that kept failing.
+     */
+    void spool(List<StatRequestDto> hits) {
+        serverAvailable = false;
+        spool.append(hits);
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(replayer);
+        try {
+            replayer.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        spool.close();
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats-client.cache")
+public class StatsCacheProperties {
+    /**
+     * Answer uri stats lookups from {@link CachingHttpStatsClient} instead of asking the server every time.
+     */
+    private boolean enabled = false;
+    /**
+     * How long the counts of one uri are served without asking the server again. Requests ending less than this
+     * long ago are treated as ending now, so lookups up to "now" share entries.
+     */
+    private Duration ttl = Duration.ofSeconds(5);
+    /**
+     * How much older than {@code ttl} an entry may be when it is served because the server failed.
+     */
+    private Duration maxStaleness = Duration.ZERO;
+    private int maxEntries = 100_000;
+}
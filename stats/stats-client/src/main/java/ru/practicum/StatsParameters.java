@@ -20,5 +20,10 @@ public class StatsParameters<R> {
     String end;
     List<String> uris;
     boolean unique;
+    /**
+     * Maximum number of rows, or {@code null} for all of them.
+     */
+    Integer limit;
+    int offset;
     Class<R> responseType;
 }
@@ -1,16 +1,36 @@
 package ru.practicum.configs;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.web.client.RestTemplate;
+import ru.practicum.AsyncBatchingHttpStatsClient;
+import ru.practicum.AsyncBatchingProperties;
+import ru.practicum.CachingHttpStatsClient;
 import ru.practicum.HttpStatsClient;
 import ru.practicum.HttpStatsClientImpl;
 import ru.practicum.HttpStatsClientLoggingDecorator;
+import ru.practicum.SpoolingHttpStatsClient;
+import ru.practicum.StatsCacheProperties;
 import ru.practicum.feign.StatsServerHttpClient;
+import ru.practicum.routing.RoutingConfig;
+import ru.practicum.routing.RoutingProperties;
+import ru.practicum.routing.StatsServerRing;
+import ru.practicum.spool.HitSpool;
+import ru.practicum.spool.SpoolProperties;
+
+import java.io.IOException;
 
 @Configuration
 @EnableFeignClients(basePackages = "ru.practicum.feign")
+@EnableConfigurationProperties({AsyncBatchingProperties.class, SpoolProperties.class, StatsCacheProperties.class,
+        RoutingProperties.class})
+@Import(RoutingConfig.class)
 public class CommonConfig {
 
     @Bean
@@ -18,10 +38,36 @@ public class CommonConfig {
         return new RestTemplate();
     }
 
+    /**
+     * With {@code stats-client.spool.enabled} hits that cannot be sent are kept on disk by
+     * {@link SpoolingHttpStatsClient}; with {@code stats-client.async.enabled} hits are queued and sent in batches by
+     * {@link AsyncBatchingHttpStatsClient}; with {@code stats-client.cache.enabled} uri stats lookups are cached by
+     * {@link CachingHttpStatsClient}; with {@code stats-client.routing.enabled} queued hits are sent in one batch per
+     * stats server instance owning their uris, see {@link RoutingConfig}. The context closes the decorator chain on
+     * shutdown, which flushes the queue into the server or the spool.
+     */
     @Bean
     public HttpStatsClient createHttpStatsServer(RestTemplate restTemplate,
-                                                 StatsServerHttpClient statsServerHttpClient) {
-        var httpStatsServer = new HttpStatsClientImpl(restTemplate, statsServerHttpClient);
+                                                 StatsServerHttpClient statsServerHttpClient,
+                                                 AsyncBatchingProperties asyncBatchingProperties,
+                                                 SpoolProperties spoolProperties,
+                                                 StatsCacheProperties statsCacheProperties,
+                                                 ObjectProvider<MeterRegistry> meterRegistryProvider,
+                                                 ObjectProvider<StatsServerRing> statsServerRingProvider)
+            throws IOException {
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        HttpStatsClient httpStatsServer = new HttpStatsClientImpl(restTemplate, statsServerHttpClient);
+        if (spoolProperties.isEnabled()) {
+            httpStatsServer = new SpoolingHttpStatsClient(httpStatsServer, statsServerHttpClient, spoolProperties,
+                    new HitSpool(spoolProperties, meterRegistry));
+        }
+        if (asyncBatchingProperties.isEnabled()) {
+            httpStatsServer = new AsyncBatchingHttpStatsClient(httpStatsServer, statsServerHttpClient,
+                    asyncBatchingProperties, meterRegistry, statsServerRingProvider.getIfAvailable());
+        }
+        if (statsCacheProperties.isEnabled()) {
+            httpStatsServer = new CachingHttpStatsClient(httpStatsServer, statsCacheProperties, meterRegistry);
+        }
         return new HttpStatsClientLoggingDecorator(httpStatsServer);
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,26 @@
 package ru.practicum.feign;
 
+import feign.Response;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import ru.practicum.constants.DataTransferConvention;
+import ru.practicum.dto.EntityStatsRequestDto;
+import ru.practicum.dto.StatDeltaDto;
+import ru.practicum.dto.StatQueryDto;
 import ru.practicum.dto.StatRequestDto;
 import ru.practicum.dto.StatResponseDto;
+import ru.practicum.dto.StatTimeSeriesDto;
+import ru.practicum.enums.StatGranularity;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @FeignClient(name = "stats-server")
 public interface StatsServerHttpClient {
@@ -19,9 +28,77 @@ public interface StatsServerHttpClient {
     @PostMapping("/hit")
     StatRequestDto registerHit(@RequestBody StatRequestDto statRequestDto);
 
+    @PostMapping(DataTransferConvention.HIT_BATCH_PATH)
+    void registerHits(@RequestBody List<StatRequestDto> statRequestDtos);
+
     @GetMapping("/stats")
     List<StatResponseDto> getStats(@RequestParam("start") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime start,
                                    @RequestParam("end") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime end,
                                    @RequestParam(value = "uris", required = false) String[] uris,
                                    @RequestParam(value = "unique", defaultValue = "false") Boolean unique);
+
+    @GetMapping("/stats")
+    List<StatResponseDto> getStats(@RequestParam("start") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime start,
+                                   @RequestParam("end") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime end,
+                                   @RequestParam(value = "uris", required = false) String[] uris,
+                                   @RequestParam(value = "unique", defaultValue = "false") Boolean unique,
+                                   @RequestParam(value = "limit", required = false) Integer limit,
+                                   @RequestParam(value = "offset", defaultValue = "0") Integer offset);
+
+    /**
+     * Results of several {@code /stats} queries, in the order of {@code queries}.
+     */
+    @PostMapping(DataTransferConvention.STATS_BATCH_PATH)
+    List<List<StatResponseDto>> getStatsBatch(@RequestBody List<StatQueryDto> queries);
+
+    /**
+     * Hits since {@code since}: a settled part to add to running totals, the watermark to ask from next time
+     * and a pending part up to now.
+     */
+    @GetMapping(DataTransferConvention.STATS_DELTA_PATH)
+    StatDeltaDto getStatsDelta(@RequestParam("since") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime since,
+                               @RequestParam(value = "uris", required = false) String[] uris,
+                               @RequestParam(value = "unique", defaultValue = "false") Boolean unique);
+
+    /**
+     * Hits per bucket over {@code [start, end]}, one series per app and uri. Without {@code granularity} the server
+     * picks the finest one that fits the range.
+     */
+    @GetMapping(DataTransferConvention.STATS_TIMESERIES_PATH)
+    StatTimeSeriesDto getTimeSeries(@RequestParam("start") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime start,
+                                    @RequestParam("end") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime end,
+                                    @RequestParam(value = "uris", required = false) String[] uris,
+                                    @RequestParam(value = "unique", defaultValue = "false") Boolean unique,
+                                    @RequestParam(value = "granularity", required = false) StatGranularity granularity);
+
+    /**
+     * All-time hits of entities of one type by id; ids never hit are missing from the map.
+     */
+    @PostMapping(DataTransferConvention.STATS_ENTITIES_PATH)
+    Map<Long, Long> getEntityStats(@RequestBody EntityStatsRequestDto request);
+
+    /**
+     * Raw newline-delimited JSON response of {@code /stats}; prefer {@link #streamStats(LocalDateTime,
+     * LocalDateTime, String[], Boolean, Integer, Integer, Consumer)}, which reads and closes it.
+     */
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Response getStatsStream(@RequestParam("start") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime start,
+                            @RequestParam("end") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime end,
+                            @RequestParam(value = "uris", required = false) String[] uris,
+                            @RequestParam(value = "unique", defaultValue = "false") Boolean unique,
+                            @RequestParam(value = "limit", required = false) Integer limit,
+                            @RequestParam(value = "offset", defaultValue = "0") Integer offset);
+
+    /**
+     * Hands the rows of {@code /stats} to {@code consumer} as they arrive, without collecting them.
+     */
+    default void streamStats(LocalDateTime start,
+                             LocalDateTime end,
+                             String[] uris,
+                             Boolean unique,
+                             Integer limit,
+                             Integer offset,
+                             Consumer<StatResponseDto> consumer) {
+        StatsStreamReader.read(getStatsStream(start, end, uris, unique, limit, offset), consumer);
+    }
 }
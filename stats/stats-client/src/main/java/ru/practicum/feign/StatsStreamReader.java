@@ -0,0 +1,42 @@
+package ru.practicum.feign;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
+import ru.practicum.dto.StatResponseDto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Reads a newline-delimited JSON {@code /stats} response row by row, so the whole result is never held in
+ * memory.
+ */
+final class StatsStreamReader {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private StatsStreamReader() {
+    }
+
+    static void read(Response response, Consumer<StatResponseDto> consumer) {
+        try (response) {
+            if (response.status() != 200 || response.body() == null) {
+                throw new IllegalStateException("Stats stream failed with status " + response.status());
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    response.body().asInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        consumer.accept(OBJECT_MAPPER.readValue(line, StatResponseDto.class));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
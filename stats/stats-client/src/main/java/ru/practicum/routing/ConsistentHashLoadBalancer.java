@@ -0,0 +1,71 @@
+package ru.practicum.routing;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.RetryableRequestContext;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the stats server instance for a request by its {@link RouteKeyInterceptor#ROUTE_KEY_HEADER} on the
+ * {@link StatsServerRing}, which it keeps in step with the instances the discovery client reports. A retry skips
+ * the instance that just failed and goes to the next one on the ring. Requests without a key, and every request
+ * while the ring has no usable instance, go to any instance in turn.
+ */
+public class ConsistentHashLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+    private final StatsServerRing ring;
+    private final AtomicInteger position = new AtomicInteger(ThreadLocalRandom.current().nextInt(1000));
+
+    public ConsistentHashLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+                                      StatsServerRing ring) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.ring = ring;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider
+                .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(instances -> choose(instances, request));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Response<ServiceInstance> choose(List<ServiceInstance> instances, Request request) {
+        if (instances.isEmpty()) {
+            return new EmptyResponse();
+        }
+        ring.update(instances);
+        String routeKey = routeKey(request);
+        if (routeKey != null) {
+            ServiceInstance previous = request.getContext() instanceof RetryableRequestContext retry
+                    ? retry.getPreviousServiceInstance()
+                    : null;
+            ServiceInstance owner = ring.get(routeKey, previous);
+            if (owner != null) {
+                return new DefaultResponse(owner);
+            }
+        }
+        return new DefaultResponse(instances.get(Math.floorMod(position.incrementAndGet(), instances.size())));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static String routeKey(Request request) {
+        if (request.getContext() instanceof RequestDataContext context && context.getClientRequest() != null) {
+            return context.getClientRequest().getHeaders().getFirst(RouteKeyInterceptor.ROUTE_KEY_HEADER);
+        }
+        return null;
+    }
+}
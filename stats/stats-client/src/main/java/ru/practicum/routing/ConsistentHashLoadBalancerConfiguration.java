@@ -0,0 +1,23 @@
+package ru.practicum.routing;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load balancer configuration of the {@code stats-server} client, registered by {@link RoutingConfig}. It is not
+ * a {@code @Configuration} so that component scanning does not apply it to every client.
+ */
+public class ConsistentHashLoadBalancerConfiguration {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> consistentHashLoadBalancer(Environment environment,
+                                                                           LoadBalancerClientFactory factory,
+                                                                           StatsServerRing ring) {
+        String name = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new ConsistentHashLoadBalancer(factory.getLazyProvider(name, ServiceInstanceListSupplier.class), ring);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.practicum.routing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.util.UriUtils;
+import ru.practicum.constants.DataTransferConvention;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tells {@link ConsistentHashLoadBalancer} which uri a {@code stats-server} request is about: the uri of a hit,
+ * the uri of a batch of hits that all have the same owner, or the only uri of a query. Requests about several
+ * uris with different owners get no key and may go to any instance.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RouteKeyInterceptor implements RequestInterceptor {
+    public static final String ROUTE_KEY_HEADER = "X-Stats-Route-Key";
+
+    private final StatsServerRing ring;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public void apply(RequestTemplate template) {
+        if (!StatsServerRing.SERVICE_ID.equals(template.feignTarget().name())
+                || template.headers().containsKey(ROUTE_KEY_HEADER)) {
+            return;
+        }
+        String routeKey = routeKey(template);
+        if (routeKey != null) {
+            template.header(ROUTE_KEY_HEADER, routeKey);
+        }
+    }
+
+    private String routeKey(RequestTemplate template) {
+        Collection<String> uris = template.queries().get("uris");
+        if (uris != null) {
+            return uris.size() == 1 ? UriUtils.decode(uris.iterator().next(), StandardCharsets.UTF_8) : null;
+        }
+        if (template.body() == null) {
+            return null;
+        }
+        String path = template.path();
+        try {
+            if (path.endsWith(DataTransferConvention.HIT_PATH)) {
+                return textOf(objectMapper.readTree(template.body()).get("uri"));
+            }
+            if (path.endsWith(DataTransferConvention.HIT_BATCH_PATH)) {
+                return commonOwnerKey(objectMapper.readTree(template.body()));
+            }
+        } catch (IOException e) {
+            log.debug("Could not read the uri of a {} request: {}", path, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * The uri of the first hit when every hit has the same owner.
+     */
+    private String commonOwnerKey(JsonNode hits) {
+        Set<String> owners = new HashSet<>();
+        String first = null;
+        for (JsonNode hit : hits) {
+            String uri = textOf(hit.get("uri"));
+            if (uri == null) {
+                return null;
+            }
+            if (first == null) {
+                first = uri;
+            }
+            owners.add(ring.ownerOf(uri));
+            if (owners.size() > 1) {
+                return null;
+            }
+        }
+        return first;
+    }
+
+    private static String textOf(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+}
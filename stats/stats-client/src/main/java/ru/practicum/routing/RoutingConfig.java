@@ -0,0 +1,30 @@
+package ru.practicum.routing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * With {@code stats-client.routing.enabled} requests to {@code stats-server} are routed by uri on a
+ * {@link StatsServerRing} instead of round-robin.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "stats-client.routing", name = "enabled", havingValue = "true")
+@LoadBalancerClient(name = StatsServerRing.SERVICE_ID, configuration = ConsistentHashLoadBalancerConfiguration.class)
+public class RoutingConfig {
+
+    @Bean
+    public StatsServerRing statsServerRing(RoutingProperties routingProperties,
+                                           ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        return new StatsServerRing(routingProperties, meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    @Bean
+    public RouteKeyInterceptor routeKeyInterceptor(StatsServerRing statsServerRing) {
+        return new RouteKeyInterceptor(statsServerRing);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.routing;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats-client.routing")
+public class RoutingProperties {
+    /**
+     * Send the hits and queries of a uri to the same stats server instance, picked on a consistent-hash ring of
+     * the registered instances, instead of to any instance in turn. Only clients built on this module are routed;
+     * the core services' {@code StatsServerHttpClient} still goes to any instance in turn.
+     */
+    private boolean enabled = false;
+    /**
+     * Points every instance has on the ring; more points spread the uris more evenly.
+     */
+    private int virtualNodes = 160;
+}
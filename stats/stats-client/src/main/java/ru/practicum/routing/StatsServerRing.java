@@ -0,0 +1,140 @@
+package ru.practicum.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Consistent-hash ring over the registered stats server instances. Every instance is put on the ring at
+ * {@code virtual-nodes} points and a uri belongs to the first instance at or after its own point, so when an
+ * instance joins or leaves only the uris next to its points change owner. The ring is rebuilt whenever the load
+ * balancer sees a different set of instances; in between, lookups read an immutable snapshot.
+ */
+@Slf4j
+public class StatsServerRing {
+    public static final String SERVICE_ID = "stats-server";
+
+    private final int virtualNodes;
+    private final Counter rebuiltCounter;
+
+    private volatile Snapshot snapshot = new Snapshot(Set.of(), new TreeMap<>());
+
+    public StatsServerRing(RoutingProperties properties, MeterRegistry meterRegistry) {
+        this.virtualNodes = properties.getVirtualNodes();
+        this.rebuiltCounter = Counter.builder("stats.client.routing.rebuilds")
+                .description("Times the ring was rebuilt because stats server instances joined or left")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.routing.instances", this, ring -> ring.snapshot.instanceIds().size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rebuilds the ring if {@code instances} are not the ones it was built from.
+     */
+    public void update(List<ServiceInstance> instances) {
+        Set<String> instanceIds = instances.stream().map(StatsServerRing::idOf).collect(Collectors.toSet());
+        if (instanceIds.equals(snapshot.instanceIds())) {
+            return;
+        }
+        synchronized (this) {
+            if (instanceIds.equals(snapshot.instanceIds())) {
+                return;
+            }
+            TreeMap<Long, ServiceInstance> nodes = new TreeMap<>();
+            for (ServiceInstance instance : instances) {
+                for (int i = 0; i < virtualNodes; i++) {
+                    nodes.put(hash(idOf(instance) + "#" + i), instance);
+                }
+            }
+            log.info("Stats server instances changed from {} to {}, rebuilding the ring", snapshot.instanceIds(),
+                    instanceIds);
+            snapshot = new Snapshot(Set.copyOf(instanceIds), nodes);
+            rebuiltCounter.increment();
+        }
+    }
+
+    /**
+     * The instance owning {@code key}, or the next one on the ring when the owner is {@code excluded}, as after a
+     * failed attempt on it; {@code null} when the ring has no other instance.
+     */
+    public ServiceInstance get(String key, ServiceInstance excluded) {
+        TreeMap<Long, ServiceInstance> nodes = snapshot.nodes();
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        String excludedId = excluded == null ? null : idOf(excluded);
+        long point = hash(key);
+        for (ServiceInstance instance : nodes.tailMap(point, true).values()) {
+            if (!idOf(instance).equals(excludedId)) {
+                return instance;
+            }
+        }
+        for (ServiceInstance instance : nodes.headMap(point, false).values()) {
+            if (!idOf(instance).equals(excludedId)) {
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Id of the instance owning {@code key}, or {@code null} before any instance is known.
+     */
+    public String ownerOf(String key) {
+        ServiceInstance owner = get(key, null);
+        return owner == null ? null : idOf(owner);
+    }
+
+    /**
+     * {@code items} split by the owner of their key, keeping their order within each part.
+     */
+    public <T> Collection<List<T>> groupByOwner(List<T> items, Function<T, String> key) {
+        if (snapshot.instanceIds().size() < 2) {
+            return List.of(items);
+        }
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        items.forEach(item -> groups.computeIfAbsent(String.valueOf(ownerOf(key.apply(item))),
+                owner -> new ArrayList<>()).add(item));
+        return groups.values();
+    }
+
+    private static String idOf(ServiceInstance instance) {
+        return instance.getInstanceId() != null
+                ? instance.getInstanceId()
+                : instance.getHost() + ":" + instance.getPort();
+    }
+
+    /**
+     * 64-bit FNV-1a followed by the MurmurHash3 finalizer, which spreads the points of one instance around the
+     * whole ring.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb3fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private record Snapshot(Set<String> instanceIds, TreeMap<Long, ServiceInstance> nodes) {
+    }
+}
@@ -0,0 +1,241 @@
+package ru.practicum.spool;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.StatRequestDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Durable FIFO of hits that could not be sent, kept in a directory of {@link SpoolSegment} files. Hits are
+ * appended to the newest segment and a new one is started when it is full; segments are deleted once every hit in
+ * them was delivered. When the spool would outgrow {@code max-disk-bytes} the oldest segment is deleted with the
+ * hits it still holds.
+ * <p>
+ * Delivery is at least once: a batch is acknowledged only after the server accepted it, so a crash in between
+ * sends the batch again after restart.
+ */
+@Slf4j
+public class HitSpool implements Closeable {
+    private static final String SEGMENT_PREFIX = "spool-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final SpoolProperties properties;
+    private final List<SpoolSegment> segments = new ArrayList<>();
+    private final Counter appendedCounter;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+
+    private long nextSequence;
+
+    public HitSpool(SpoolProperties properties, MeterRegistry meterRegistry) throws IOException {
+        this.properties = properties;
+        Path directory = properties.getDirectory();
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segmentFiles = files
+                    .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+            for (Path file : segmentFiles) {
+                openSegment(file);
+                nextSequence = sequenceOf(file) + 1;
+            }
+        }
+        this.appendedCounter = Counter.builder("stats.client.spool.appended").register(meterRegistry);
+        this.droppedCounter = Counter.builder("stats.client.spool.dropped")
+                .description("Spooled hits deleted to keep the spool within max-disk-bytes")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("stats.client.spool.rejected")
+                .description("Spooled hits the server refused as invalid, dropped so that replay can go on")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.spool.bytes", this, HitSpool::diskBytes)
+                .description("Disk taken by spool segments")
+                .register(meterRegistry);
+        log.info("Opened hit spool in {}: {} segments, {} pending hits", directory.toAbsolutePath(),
+                segments.size(), pendingHits());
+    }
+
+    private void openSegment(Path file) {
+        try {
+            SpoolSegment segment = SpoolSegment.open(file);
+            if (segment.hasPending()) {
+                segments.add(segment);
+            } else {
+                segment.close();
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            log.error("Skipping unreadable spool segment {}: {}", file, e.getMessage());
+        }
+    }
+
+    public synchronized void append(List<StatRequestDto> hits) {
+        int maxPayload = properties.getSegmentBytes() - SpoolSegment.HEADER_BYTES - SpoolSegment.RECORD_OVERHEAD;
+        List<byte[]> records = new ArrayList<>(hits.size());
+        for (StatRequestDto hit : hits) {
+            byte[] record = encode(hit);
+            if (record.length > maxPayload) {
+                log.warn("Hit does not fit into a spool segment, dropping it: {}", hit);
+                droppedCounter.increment();
+            } else {
+                records.add(record);
+            }
+        }
+        int appended = 0;
+        while (appended < records.size()) {
+            appended += writableSegment(records.get(appended).length).append(records, appended);
+        }
+        appendedCounter.increment(records.size());
+    }
+
+    public synchronized boolean isEmpty() {
+        return segments.stream().noneMatch(SpoolSegment::hasPending);
+    }
+
+    /**
+     * The oldest undelivered hits, at most {@code max} of them, all from one segment; empty when nothing is
+     * pending. The hits stay in the spool until the batch is {@linkplain #acknowledge(Batch) acknowledged}.
+     */
+    public synchronized Batch peek(int max) {
+        for (SpoolSegment segment : segments) {
+            if (segment.hasPending()) {
+                List<byte[]> records = new ArrayList<>();
+                int end = segment.read(max, records);
+                return new Batch(segment, end, records.stream().map(HitSpool::decode).toList());
+            }
+        }
+        return new Batch(null, 0, List.of());
+    }
+
+    public synchronized void acknowledge(Batch batch) {
+        SpoolSegment segment = batch.segment();
+        if (segment == null || !segments.contains(segment)) {
+            return;
+        }
+        segment.acknowledge(batch.end());
+        if (!segment.hasPending() && segment != segments.get(segments.size() - 1)) {
+            delete(segment);
+        }
+    }
+
+    /**
+     * Acknowledges a batch the server refused and will keep refusing, so that the hits behind it are replayed.
+     */
+    public synchronized void reject(Batch batch) {
+        acknowledge(batch);
+        rejectedCounter.increment(batch.hits().size());
+    }
+
+    private SpoolSegment writableSegment(int payloadLength) {
+        if (!segments.isEmpty()) {
+            SpoolSegment last = segments.get(segments.size() - 1);
+            if (last.fits(payloadLength)) {
+                return last;
+            }
+        }
+        while (!segments.isEmpty() && diskBytes() + properties.getSegmentBytes() > properties.getMaxDiskBytes()) {
+            SpoolSegment oldest = segments.get(0);
+            int pending = oldest.countPending();
+            droppedCounter.increment(pending);
+            log.warn("Spool is full, deleting {} with {} undelivered hits", oldest.file(), pending);
+            delete(oldest);
+        }
+        Path file = properties.getDirectory()
+                .resolve(String.format("%s%012d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+        try {
+            SpoolSegment segment = SpoolSegment.create(file, properties.getSegmentBytes());
+            segments.add(segment);
+            log.info("Started spool segment {}", file);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void delete(SpoolSegment segment) {
+        segments.remove(segment);
+        try {
+            segment.close();
+            Files.delete(segment.file());
+        } catch (IOException e) {
+            log.error("Failed to delete spool segment {}: {}", segment.file(), e.getMessage());
+        }
+    }
+
+    private synchronized long diskBytes() {
+        return segments.stream().mapToLong(SpoolSegment::capacity).sum();
+    }
+
+    private long pendingHits() {
+        return segments.stream().mapToLong(SpoolSegment::countPending).sum();
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] encode(StatRequestDto hit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(hit.getApp());
+            out.writeUTF(hit.getUri());
+            out.writeUTF(hit.getIp());
+            out.writeLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(hit.getTimestamp().getNano());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static StatRequestDto decode(byte[] record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            return StatRequestDto.builder()
+                    .app(in.readUTF())
+                    .uri(in.readUTF())
+                    .ip(in.readUTF())
+                    .timestamp(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC))
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (SpoolSegment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    /**
+     * Hits read from one segment, with the position to acknowledge once they were delivered.
+     */
+    public record Batch(SpoolSegment segment, int end, List<StatRequestDto> hits) {
+        public boolean isEmpty() {
+            return hits.isEmpty();
+        }
+    }
+}
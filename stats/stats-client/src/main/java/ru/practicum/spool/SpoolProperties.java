@@ -0,0 +1,30 @@
+package ru.practicum.spool;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats-client.spool")
+public class SpoolProperties {
+    /**
+     * Keep hits on disk while the stats server cannot be reached and send them once it is back.
+     */
+    private boolean enabled = false;
+    private Path directory = Path.of("data", "stats-spool");
+    private int segmentBytes = 8 * 1024 * 1024;
+    /**
+     * Upper bound of the spool on disk; when it is reached the oldest segment is deleted with its undelivered hits.
+     */
+    private long maxDiskBytes = 256L * 1024 * 1024;
+    private int replayBatchSize = 500;
+    /**
+     * Pause between replay attempts while the server is unavailable.
+     */
+    private Duration replayInterval = Duration.ofSeconds(5);
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
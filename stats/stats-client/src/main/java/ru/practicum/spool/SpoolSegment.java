@@ -0,0 +1,195 @@
+package ru.practicum.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped spool file.
+ * <p>
+ * Layout: a {@value #HEADER_BYTES}-byte header (magic, write position, read position) followed by records, each a
+ * length, a CRC32 of the payload and the payload. A record is written before the header write position that
+ * publishes it, and the read position only moves once the records before it were delivered. Opening a segment
+ * checks the published records and cuts the segment at the first one that fails its checksum, so opening the same
+ * file again after another crash always ends in the same state. Payloads are never empty, so zeroed space, whose
+ * checksum would match, is never taken for records.
+ */
+final class SpoolSegment implements Closeable {
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_OVERHEAD = 8;
+
+    private static final int MAGIC = 0x53504f4c;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int WRITE_POSITION_OFFSET = 4;
+    private static final int READ_POSITION_OFFSET = 8;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private int writePosition;
+    private int readPosition;
+
+    private SpoolSegment(Path file, FileChannel channel, int capacity) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.capacity = capacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    static SpoolSegment create(Path file, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        SpoolSegment segment = new SpoolSegment(file, channel, capacity);
+        segment.writePosition = HEADER_BYTES;
+        segment.readPosition = HEADER_BYTES;
+        segment.writeHeader();
+        segment.buffer.force();
+        return segment;
+    }
+
+    static SpoolSegment open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        SpoolSegment segment = new SpoolSegment(file, channel, (int) channel.size());
+        if (segment.capacity < HEADER_BYTES || segment.buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a spool segment: " + file);
+        }
+        segment.recover();
+        return segment;
+    }
+
+    private void recover() {
+        int published = Math.min(Math.max(buffer.getInt(WRITE_POSITION_OFFSET), HEADER_BYTES), capacity);
+        int read = Math.min(Math.max(buffer.getInt(READ_POSITION_OFFSET), HEADER_BYTES), published);
+        int position = read;
+        while (position < published) {
+            int next = nextValid(position, published);
+            if (next < 0) {
+                break;
+            }
+            position = next;
+        }
+        writePosition = position;
+        readPosition = read;
+        writeHeader();
+        buffer.force();
+    }
+
+    /**
+     * End of the record at {@code position}, or {@code -1} when it is torn, empty or fails its checksum.
+     */
+    private int nextValid(int position, int limit) {
+        if (limit - position < RECORD_OVERHEAD) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > limit - position - RECORD_OVERHEAD) {
+            return -1;
+        }
+        byte[] payload = payload(position, length);
+        return checksum(payload) == buffer.getInt(position + 4) ? position + RECORD_OVERHEAD + length : -1;
+    }
+
+    /**
+     * Appends as many of {@code records}, starting at {@code from}, as fit, and returns how many that was.
+     */
+    int append(List<byte[]> records, int from) {
+        int position = writePosition;
+        int appended = 0;
+        for (int i = from; i < records.size(); i++) {
+            byte[] payload = records.get(i);
+            if (capacity - position < RECORD_OVERHEAD + payload.length) {
+                break;
+            }
+            buffer.putInt(position, payload.length);
+            buffer.putInt(position + 4, checksum(payload));
+            buffer.put(position + RECORD_OVERHEAD, payload);
+            position += RECORD_OVERHEAD + payload.length;
+            appended++;
+        }
+        if (appended > 0) {
+            buffer.force();
+            writePosition = position;
+            writeHeader();
+            buffer.force();
+        }
+        return appended;
+    }
+
+    /**
+     * Adds up to {@code max} undelivered payloads to {@code target} and returns the position after the last one.
+     */
+    int read(int max, List<byte[]> target) {
+        int position = readPosition;
+        for (int i = 0; i < max && position < writePosition; i++) {
+            int length = buffer.getInt(position);
+            target.add(payload(position, length));
+            position += RECORD_OVERHEAD + length;
+        }
+        return position;
+    }
+
+    /**
+     * Marks everything before {@code position} as delivered.
+     */
+    void acknowledge(int position) {
+        readPosition = position;
+        writeHeader();
+        buffer.force();
+    }
+
+    int countPending() {
+        int pending = 0;
+        for (int position = readPosition; position < writePosition; pending++) {
+            position += RECORD_OVERHEAD + buffer.getInt(position);
+        }
+        return pending;
+    }
+
+    boolean hasPending() {
+        return readPosition < writePosition;
+    }
+
+    boolean fits(int payloadLength) {
+        return capacity - writePosition >= RECORD_OVERHEAD + payloadLength;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    private byte[] payload(int position, int length) {
+        byte[] payload = new byte[length];
+        buffer.get(position + RECORD_OVERHEAD, payload);
+        return payload;
+    }
+
+    private void writeHeader() {
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(WRITE_POSITION_OFFSET, writePosition);
+        buffer.putInt(READ_POSITION_OFFSET, readPosition);
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
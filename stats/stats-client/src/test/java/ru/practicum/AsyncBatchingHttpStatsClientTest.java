@@ -0,0 +1,357 @@
+package ru.practicum;
+
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EntityStatsRequestDto;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatDeltaDto;
+import ru.practicum.dto.StatQueryDto;
+import ru.practicum.dto.StatRequestDto;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.dto.StatTimeSeriesDto;
+import ru.practicum.enums.StatGranularity;
+import ru.practicum.feign.StatsServerHttpClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncBatchingHttpStatsClientTest {
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final RecordingServer server = new RecordingServer();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AsyncBatchingProperties properties = new AsyncBatchingProperties();
+    private AsyncBatchingHttpStatsClient client;
+
+    @BeforeEach
+    void setUp() {
+        properties.setQueueCapacity(100);
+        properties.setBatchSize(3);
+        properties.setFlushInterval(Duration.ofSeconds(10));
+        properties.setRetryBackoff(Duration.ofMillis(1));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.gate.countDown();
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    @Test
+    void sendsFullBatchesWithoutWaitingForTheFlushInterval() {
+        client = newClient();
+        List<HitDto> hits = List.of(hit(0), hit(1), hit(2), new Hit("/events/3"), hit(4), hit(5));
+        for (HitDto hit : hits) {
+            client.sendHit(hit, StatRequestDto.class);
+        }
+
+        await(() -> server.batches.size() == 2);
+        assertEquals(List.of(requests(hits.subList(0, 3)), requests(hits.subList(3, 6))), server.batches);
+        assertEquals(6, count("stats.client.hits.sent"));
+    }
+
+    @Test
+    void answersWithTheQueuedHitItself() {
+        client = newClient();
+        StatRequestDto hit = hit(0);
+
+        assertEquals(Optional.of(hit), client.sendHit(hit, StatRequestDto.class));
+        assertEquals(Optional.empty(), client.sendHit(new Hit("/events/1"), StatRequestDto.class));
+    }
+
+    @Test
+    void flushesAPartialBatchAfterTheFlushInterval() {
+        properties.setFlushInterval(Duration.ofMillis(20));
+        client = newClient();
+        client.sendHit(hit(0), StatRequestDto.class);
+        client.sendHit(hit(1), StatRequestDto.class);
+
+        await(() -> server.batches.size() == 1);
+        assertEquals(List.of(List.of(hit(0), hit(1))), server.batches);
+    }
+
+    @Test
+    void sendsQueuedHitsOnCloseAndDropsLaterOnes() throws Exception {
+        properties.setBatchSize(100);
+        client = newClient();
+        List<HitDto> hits = List.of(hit(0), hit(1), hit(2), hit(3), hit(4));
+        hits.forEach(hit -> client.sendHit(hit, StatRequestDto.class));
+
+        client.close();
+        assertEquals(List.of(requests(hits)), server.batches);
+        assertEquals(Optional.empty(), client.sendHit(hit(5), StatRequestDto.class));
+        assertEquals(1, dropped("closed"));
+    }
+
+    @Test
+    void dropOldestEvictsTheOldestQueuedHits() throws Exception {
+        properties.setQueueCapacity(3);
+        properties.setBatchSize(1);
+        properties.setOverflowPolicy(AsyncBatchingProperties.OverflowPolicy.DROP_OLDEST);
+        server.gate = new CountDownLatch(1);
+        client = newClient();
+        client.sendHit(hit(0), StatRequestDto.class);
+        await(() -> server.attempts.size() == 1);
+
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(client.sendHit(hit(i), StatRequestDto.class).isPresent());
+        }
+        assertEquals(2, dropped("overflow"));
+
+        server.gate.countDown();
+        client.close();
+        assertEquals(List.of(List.of(hit(0)), List.of(hit(3)), List.of(hit(4)), List.of(hit(5))), server.batches);
+    }
+
+    @Test
+    void dropOldestDropsTheNewHitWhenNoRoomCanBeMade() {
+        properties.setQueueCapacity(0);
+        properties.setOverflowPolicy(AsyncBatchingProperties.OverflowPolicy.DROP_OLDEST);
+        client = newClient();
+
+        assertEquals(Optional.empty(), client.sendHit(hit(0), StatRequestDto.class));
+        assertEquals(1, dropped("overflow"));
+    }
+
+    @Test
+    void blockWaitsForRoomAndDropsTheNewHitAfterTheOfferTimeout() throws Exception {
+        properties.setQueueCapacity(2);
+        properties.setBatchSize(1);
+        properties.setOverflowPolicy(AsyncBatchingProperties.OverflowPolicy.BLOCK);
+        properties.setOfferTimeout(Duration.ofMillis(50));
+        server.gate = new CountDownLatch(1);
+        client = newClient();
+        client.sendHit(hit(0), StatRequestDto.class);
+        await(() -> server.attempts.size() == 1);
+        client.sendHit(hit(1), StatRequestDto.class);
+        client.sendHit(hit(2), StatRequestDto.class);
+
+        long start = System.nanoTime();
+        assertEquals(Optional.empty(), client.sendHit(hit(3), StatRequestDto.class));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, dropped("overflow"));
+
+        properties.setOfferTimeout(Duration.ofSeconds(10));
+        CompletableFuture<Optional<StatRequestDto>> waiting = CompletableFuture.supplyAsync(() ->
+                client.sendHit(hit(4), StatRequestDto.class));
+        Thread.sleep(50);
+        assertFalse(waiting.isDone());
+        server.gate.countDown();
+        assertEquals(Optional.of(hit(4)), waiting.get(5, TimeUnit.SECONDS));
+
+        client.close();
+        assertEquals(List.of(List.of(hit(0)), List.of(hit(1)), List.of(hit(2)), List.of(hit(4))), server.batches);
+        assertEquals(1, dropped("overflow"));
+    }
+
+    @Test
+    void retriesUnavailableServerAndDropsRefusedBatches() {
+        properties.setBatchSize(1);
+        properties.setMaxRetries(2);
+        server.failures.add(new UncheckedIOException(new IOException("Connection refused")));
+        server.refused = Set.of("/events/1");
+        client = newClient();
+        client.sendHit(hit(0), StatRequestDto.class);
+        client.sendHit(hit(1), StatRequestDto.class);
+
+        await(() -> server.attempts.size() == 3);
+        assertEquals(List.of(List.of(hit(0)), List.of(hit(0)), List.of(hit(1))), server.attempts);
+        assertEquals(List.of(List.of(hit(0))), server.batches);
+        assertEquals(1, count("stats.client.hits.retried"));
+        assertEquals(1, dropped("refused"));
+    }
+
+    @Test
+    void dropsBatchesThatKeepFailing() {
+        properties.setBatchSize(1);
+        properties.setMaxRetries(2);
+        for (int i = 0; i < 3; i++) {
+            server.failures.add(new UncheckedIOException(new IOException("Connection refused")));
+        }
+        client = newClient();
+        client.sendHit(hit(0), StatRequestDto.class);
+
+        await(() -> dropped("failed") == 1);
+        assertEquals(3, server.attempts.size());
+        assertEquals(List.of(), server.batches);
+    }
+
+    private AsyncBatchingHttpStatsClient newClient() {
+        return new AsyncBatchingHttpStatsClient(new UnusedClient(), server, properties, meterRegistry, null);
+    }
+
+    private double count(String meter) {
+        return meterRegistry.get(meter).counter().count();
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("stats.client.hits.dropped").tag("reason", reason).counter().count();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.onSpinWait();
+        }
+    }
+
+    private static List<StatRequestDto> requests(List<HitDto> hits) {
+        return hits.stream().map(StatRequestDto::from).toList();
+    }
+
+    private static StatRequestDto hit(int number) {
+        return new StatRequestDto("ewm-main-service", "/events/" + number, "10.0.0.1", TIMESTAMP);
+    }
+
+    /**
+     * A hit that is not a {@link StatRequestDto}, as callers with their own hit types send.
+     */
+    private record Hit(String uri) implements HitDto {
+        @Override
+        public String getApp() {
+            return "ewm-main-service";
+        }
+
+        @Override
+        public String getUri() {
+            return uri;
+        }
+
+        @Override
+        public String getIp() {
+            return "10.0.0.1";
+        }
+
+        @Override
+        public LocalDateTime getTimestamp() {
+            return TIMESTAMP;
+        }
+    }
+
+    /**
+     * Keeps every batch it is sent in {@code attempts} and those it took in {@code batches}. Sends wait for
+     * {@code gate}, then fail with the next of {@code failures} while there are any, and are refused as invalid
+     * when they have a hit of one of the {@code refused} uris.
+     */
+    private static class RecordingServer implements StatsServerHttpClient {
+        private final List<List<StatRequestDto>> attempts = new CopyOnWriteArrayList<>();
+        private final List<List<StatRequestDto>> batches = new CopyOnWriteArrayList<>();
+        private final Queue<RuntimeException> failures = new ConcurrentLinkedQueue<>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private volatile Set<String> refused = Set.of();
+
+        @Override
+        public void registerHits(List<StatRequestDto> statRequestDtos) {
+            attempts.add(List.copyOf(statRequestDtos));
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            RuntimeException failure = failures.poll();
+            if (failure != null) {
+                throw failure;
+            }
+            if (statRequestDtos.stream().anyMatch(hit -> refused.contains(hit.getUri()))) {
+                throw new IllegalArgumentException("Invalid hit");
+            }
+            batches.add(new ArrayList<>(statRequestDtos));
+        }
+
+        @Override
+        public StatRequestDto registerHit(StatRequestDto statRequestDto) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<StatResponseDto> getStats(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<StatResponseDto> getStats(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique,
+                                              Integer limit, Integer offset) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<List<StatResponseDto>> getStatsBatch(List<StatQueryDto> queries) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StatDeltaDto getStatsDelta(LocalDateTime since, String[] uris, Boolean unique) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StatTimeSeriesDto getTimeSeries(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique,
+                                               StatGranularity granularity) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<Long, Long> getEntityStats(EntityStatsRequestDto request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Response getStatsStream(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique,
+                                       Integer limit, Integer offset) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class UnusedClient implements HttpStatsClient {
+        @Override
+        public List<StatResponseDto> getStats(String start, String end, List<String> uris, Boolean unique) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <R> Optional<R> getStats(StatsParameters<R> params) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void streamStats(StatsParameters<?> params, Consumer<StatResponseDto> consumer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<List<StatResponseDto>> getStatsBatch(List<StatsParameters<?>> params) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <R> Optional<R> sendHit(HitDto hitDto, Class<R> responseType) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatResponseDto;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CachingHttpStatsClientTest {
+    private static final String START = "2024-01-01 00:00:00";
+    private static final String END = "2024-01-02 00:00:00";
+
+    private final RecordingClient server = new RecordingClient();
+    private StatsCacheProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StatsCacheProperties();
+        properties.setEnabled(true);
+        properties.setTtl(Duration.ofHours(1));
+    }
+
+    @Test
+    void asksOnlyForUrisNotCachedYet() {
+        CachingHttpStatsClient client = new CachingHttpStatsClient(server, properties, new SimpleMeterRegistry());
+
+        assertEquals(List.of(row("/events/1")), client.getStats(START, END, List.of("/events/1"), false));
+        assertEquals(List.of(row("/events/1"), row("/events/2")),
+                client.getStats(START, END, List.of("/events/1", "/events/2"), false));
+
+        assertEquals(List.of(List.of("/events/1"), List.of("/events/2")), server.requests);
+    }
+
+    @Test
+    void passesGlobsAndAllEventsThrough() {
+        CachingHttpStatsClient client = new CachingHttpStatsClient(server, properties, new SimpleMeterRegistry());
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(List.of(row("/events/*")), client.getStats(START, END, List.of("/events/*"), false));
+            client.getStats(START, END, List.of("/events/?"), false);
+            client.getStats(START, END, List.of("/events"), false);
+            client.getStats(START, END, List.of("/events", "/events/1"), false);
+        }
+
+        assertEquals(8, server.requests.size());
+        // The rows of the globs did not end up in the cache under any uri.
+        client.getStats(START, END, List.of("/events/1"), false);
+        assertEquals(List.of("/events/1"), server.requests.get(8));
+    }
+
+    @Test
+    void evictsOldestEntriesWhenFull() throws InterruptedException {
+        properties.setMaxEntries(10);
+        CachingHttpStatsClient client = new CachingHttpStatsClient(server, properties, new SimpleMeterRegistry());
+        for (int i = 0; i < 11; i++) {
+            client.getStats(START, END, List.of("/events/" + i), false);
+            // Entries are ordered by load time in milliseconds.
+            Thread.sleep(2);
+        }
+        server.requests.clear();
+
+        // Down to nine: the two oldest are gone, the rest are still cached.
+        for (int i = 10; i >= 0; i--) {
+            client.getStats(START, END, List.of("/events/" + i), false);
+        }
+        assertEquals(List.of(List.of("/events/1"), List.of("/events/0")), server.requests);
+    }
+
+    private static StatResponseDto row(String uri) {
+        return new StatResponseDto("ewm-main-service", uri, 1L);
+    }
+
+    /**
+     * Answers one hit for every uri asked for and remembers the uris of each request.
+     */
+    private static class RecordingClient implements HttpStatsClient {
+        private final List<List<String>> requests = new ArrayList<>();
+
+        @Override
+        public List<StatResponseDto> getStats(String start, String end, List<String> uris, Boolean unique) {
+            requests.add(List.copyOf(uris));
+            return uris.stream().map(CachingHttpStatsClientTest::row).toList();
+        }
+
+        @Override
+        public <R> Optional<R> getStats(StatsParameters<R> params) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void streamStats(StatsParameters<?> params, Consumer<StatResponseDto> consumer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<List<StatResponseDto>> getStatsBatch(List<StatsParameters<?>> params) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <R> Optional<R> sendHit(HitDto hitDto, Class<R> responseType) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ru.practicum.routing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatsServerRingTest {
+    private static final int URIS = 3000;
+
+    private final StatsServerRing ring = new StatsServerRing(new RoutingProperties(), new SimpleMeterRegistry());
+
+    @Test
+    void hasNoOwnerBeforeAnyInstanceIsKnown() {
+        assertNull(ring.ownerOf("/events/1"));
+        assertNull(ring.get("/events/1", null));
+        assertEquals(List.of(List.of("/events/1", "/events/2")),
+                List.copyOf(ring.groupByOwner(List.of("/events/1", "/events/2"), uri -> uri)));
+    }
+
+    @Test
+    void spreadsUrisOverAllInstances() {
+        ring.update(instances(3));
+
+        Map<String, Integer> owned = owners();
+        assertEquals(3, owned.size());
+        owned.values().forEach(count -> assertTrue(count > URIS / 5, () -> "Uneven ring " + owned));
+        // The same instances in another order give the same owners.
+        Map<String, String> before = ownersByUri();
+        ring.update(instances(3).reversed());
+        assertEquals(before, ownersByUri());
+    }
+
+    @Test
+    void joiningInstanceTakesUrisOnlyFromOthers() {
+        ring.update(instances(3));
+        Map<String, String> before = ownersByUri();
+
+        ring.update(instances(4));
+        Map<String, String> after = ownersByUri();
+
+        int moved = 0;
+        for (Map.Entry<String, String> owner : after.entrySet()) {
+            if (!owner.getValue().equals(before.get(owner.getKey()))) {
+                assertEquals("server-3", owner.getValue());
+                moved++;
+            }
+        }
+        assertTrue(moved > URIS / 10 && moved < URIS * 2 / 5, "Moved " + moved + " of " + URIS);
+
+        // Leaving gives the uris back to their old owners.
+        ring.update(instances(3));
+        assertEquals(before, ownersByUri());
+    }
+
+    @Test
+    void excludedOwnerFallsThroughToNextInstance() {
+        List<ServiceInstance> instances = instances(3);
+        ring.update(instances);
+        for (int i = 0; i < 100; i++) {
+            String uri = "/events/" + i;
+            ServiceInstance owner = ring.get(uri, null);
+            ServiceInstance next = ring.get(uri, owner);
+            assertNotNull(next);
+            assertNotEquals(owner.getInstanceId(), next.getInstanceId());
+        }
+
+        ring.update(instances.subList(0, 1));
+        assertNull(ring.get("/events/1", instances.get(0)));
+    }
+
+    @Test
+    void groupsItemsByOwnerKeepingTheirOrder() {
+        List<String> uris = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            uris.add("/events/" + i);
+        }
+        ring.update(instances(1));
+        assertEquals(List.of(uris), List.copyOf(ring.groupByOwner(uris, uri -> uri)));
+
+        ring.update(instances(3));
+        List<String> regrouped = new ArrayList<>();
+        for (List<String> group : ring.groupByOwner(uris, uri -> uri)) {
+            String owner = ring.ownerOf(group.get(0));
+            group.forEach(uri -> assertEquals(owner, ring.ownerOf(uri)));
+            assertEquals(uris.stream().filter(group::contains).toList(), group);
+            regrouped.addAll(group);
+        }
+        assertEquals(uris.size(), regrouped.size());
+        assertTrue(regrouped.containsAll(uris));
+    }
+
+    private Map<String, Integer> owners() {
+        Map<String, Integer> owned = new HashMap<>();
+        ownersByUri().values().forEach(owner -> owned.merge(owner, 1, Integer::sum));
+        return owned;
+    }
+
+    private Map<String, String> ownersByUri() {
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < URIS; i++) {
+            owners.put("/events/" + i, ring.ownerOf("/events/" + i));
+        }
+        return owners;
+    }
+
+    private static List<ServiceInstance> instances(int count) {
+        List<ServiceInstance> instances = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            instances.add(new DefaultServiceInstance("server-" + i, StatsServerRing.SERVICE_ID, "10.0.0." + i,
+                    9090, false));
+        }
+        return instances;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.practicum.spool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.dto.StatRequestDto;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitSpoolTest {
+    @TempDir
+    Path directory;
+
+    private SpoolProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SpoolProperties();
+        properties.setDirectory(directory);
+        properties.setSegmentBytes(4096);
+    }
+
+    @Test
+    void pendingHitsSurviveReopening() throws IOException {
+        try (HitSpool spool = new HitSpool(properties, new SimpleMeterRegistry())) {
+            spool.append(List.of(hit("/events/1"), hit("/events/2")));
+            spool.acknowledge(spool.peek(1));
+        }
+        try (HitSpool spool = new HitSpool(properties, new SimpleMeterRegistry())) {
+            assertEquals(List.of(hit("/events/2")), spool.peek(10).hits());
+        }
+    }
+
+    @Test
+    void rejectedBatchMakesWayForTheNextOne() throws IOException {
+        try (HitSpool spool = new HitSpool(properties, new SimpleMeterRegistry())) {
+            spool.append(List.of(hit("/events/invalid"), hit("/events/1")));
+            HitSpool.Batch invalid = spool.peek(1);
+            assertEquals(List.of(hit("/events/invalid")), invalid.hits());
+            spool.reject(invalid);
+            assertEquals(List.of(hit("/events/1")), spool.peek(10).hits());
+            spool.acknowledge(spool.peek(10));
+            assertTrue(spool.isEmpty());
+        }
+    }
+
+    @Test
+    void fullSegmentsRollOverInOrder() throws IOException {
+        try (HitSpool spool = new HitSpool(properties, new SimpleMeterRegistry())) {
+            for (int i = 0; i < 200; i++) {
+                spool.append(List.of(hit("/events/" + i)));
+            }
+            int delivered = 0;
+            for (HitSpool.Batch batch = spool.peek(50); !batch.isEmpty(); batch = spool.peek(50)) {
+                for (StatRequestDto hit : batch.hits()) {
+                    assertEquals("/events/" + delivered++, hit.getUri());
+                }
+                spool.acknowledge(batch);
+            }
+            assertEquals(200, delivered);
+        }
+    }
+
+    private static StatRequestDto hit(String uri) {
+        return new StatRequestDto("ewm-main-service", uri, "10.0.0.1", LocalDateTime.of(2024, 1, 1, 12, 0, 0, 5));
+    }
+}
@@ -0,0 +1,169 @@
+package ru.practicum.spool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpoolSegmentTest {
+    private static final int CAPACITY = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenedSegmentKeepsPendingRecordsInOrder() throws IOException {
+        Path file = directory.resolve("spool-1.seg");
+        try (SpoolSegment segment = SpoolSegment.create(file, CAPACITY)) {
+            assertEquals(3, segment.append(records("a", "b", "c"), 0));
+        }
+        try (SpoolSegment segment = SpoolSegment.open(file)) {
+            assertEquals(List.of("a", "b", "c"), readAll(segment));
+            assertEquals(3, segment.countPending());
+        }
+    }
+
+    @Test
+    void acknowledgedRecordsStayDeliveredAfterReopening() throws IOException {
+        Path file = directory.resolve("spool-1.seg");
+        try (SpoolSegment segment = SpoolSegment.create(file, CAPACITY)) {
+            segment.append(records("a", "b", "c"), 0);
+            List<byte[]> batch = new ArrayList<>();
+            segment.acknowledge(segment.read(2, batch));
+            assertEquals(2, batch.size());
+        }
+        try (SpoolSegment segment = SpoolSegment.open(file)) {
+            assertEquals(List.of("c"), readAll(segment));
+            segment.acknowledge(segment.read(1, new ArrayList<>()));
+            assertFalse(segment.hasPending());
+        }
+        try (SpoolSegment segment = SpoolSegment.open(file)) {
+            assertFalse(segment.hasPending());
+        }
+    }
+
+    @Test
+    void appendsOnlyWhatFits() throws IOException {
+        int capacity = SpoolSegment.HEADER_BYTES + 2 * (SpoolSegment.RECORD_OVERHEAD + 1);
+        try (SpoolSegment segment = SpoolSegment.create(directory.resolve("spool-1.seg"), capacity)) {
+            assertEquals(2, segment.append(records("a", "b", "c"), 0));
+            assertFalse(segment.fits(1));
+            assertEquals(0, segment.append(records("c"), 0));
+            assertEquals(List.of("a", "b"), readAll(segment));
+        }
+    }
+
+    /**
+     * A crash can leave a published record with a payload that never reached the disk. Opening the segment cuts it
+     * at that record, drops everything after it, and appends go on from there.
+     */
+    @Test
+    void corruptRecordCutsTheSegment() throws IOException {
+        Path file = directory.resolve("spool-1.seg");
+        try (SpoolSegment segment = SpoolSegment.create(file, CAPACITY)) {
+            segment.append(records("first", "second", "third"), 0);
+        }
+        int secondPayload = SpoolSegment.HEADER_BYTES + SpoolSegment.RECORD_OVERHEAD + "first".length()
+                + SpoolSegment.RECORD_OVERHEAD;
+        overwrite(file, secondPayload, "X".getBytes(StandardCharsets.UTF_8));
+        try (SpoolSegment segment = SpoolSegment.open(file)) {
+            assertEquals(List.of("first"), readAll(segment));
+            segment.append(records("fourth"), 0);
+            assertEquals(List.of("first", "fourth"), readAll(segment));
+        }
+    }
+
+    @Test
+    void tornLengthCutsTheSegment() throws IOException {
+        Path file = directory.resolve("spool-1.seg");
+        try (SpoolSegment segment = SpoolSegment.create(file, CAPACITY)) {
+            segment.append(records("first", "second"), 0);
+        }
+        int secondRecord = SpoolSegment.HEADER_BYTES + SpoolSegment.RECORD_OVERHEAD + "first".length();
+        overwrite(file, secondRecord, ByteBuffer.allocate(4).putInt(CAPACITY * 2).array());
+        try (SpoolSegment segment = SpoolSegment.open(file)) {
+            assertEquals(List.of("first"), readAll(segment));
+        }
+    }
+
+    /**
+     * A write position past the end of the file or a read position past the write position, as a torn header could
+     * leave, are clamped rather than trusted.
+     */
+    @Test
+    void headerPositionsAreClampedToTheFile() throws IOException {
+        Path file = directory.resolve("spool-1.seg");
+        try (SpoolSegment segment = SpoolSegment.create(file, CAPACITY)) {
+            segment.append(records("a", "b"), 0);
+        }
+        overwrite(file, 4, ByteBuffer.allocate(8).putInt(Integer.MAX_VALUE).putInt(Integer.MAX_VALUE).array());
+        try (SpoolSegment segment = SpoolSegment.open(file)) {
+            assertFalse(segment.hasPending());
+        }
+        overwrite(file, 8, ByteBuffer.allocate(4).putInt(0).array());
+        try (SpoolSegment segment = SpoolSegment.open(file)) {
+            assertEquals(List.of("a", "b"), readAll(segment));
+        }
+    }
+
+    @Test
+    void recoveryIsIdempotent() throws IOException {
+        Path file = directory.resolve("spool-1.seg");
+        try (SpoolSegment segment = SpoolSegment.create(file, CAPACITY)) {
+            segment.append(records("first", "second", "third"), 0);
+            segment.acknowledge(segment.read(1, new ArrayList<>()));
+        }
+        overwrite(file, SpoolSegment.HEADER_BYTES + 2 * SpoolSegment.RECORD_OVERHEAD + "first".length() + 1,
+                "?".getBytes(StandardCharsets.UTF_8));
+        try (SpoolSegment segment = SpoolSegment.open(file)) {
+            assertEquals(List.of(), readAll(segment));
+        }
+        byte[] afterFirstRecovery = Files.readAllBytes(file);
+        try (SpoolSegment segment = SpoolSegment.open(file)) {
+            assertFalse(segment.hasPending());
+        }
+        assertArrayEquals(afterFirstRecovery, Files.readAllBytes(file));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSegments() throws IOException {
+        Path file = directory.resolve("spool-1.seg");
+        Files.write(file, new byte[CAPACITY]);
+        assertThrows(IOException.class, () -> SpoolSegment.open(file));
+        Path tiny = directory.resolve("spool-2.seg");
+        Files.write(tiny, new byte[3]);
+        assertThrows(IOException.class, () -> SpoolSegment.open(tiny));
+        assertTrue(Files.exists(file));
+    }
+
+    private static List<byte[]> records(String... values) {
+        return Arrays.stream(values).map(value -> value.getBytes(StandardCharsets.UTF_8)).toList();
+    }
+
+    private static List<String> readAll(SpoolSegment segment) {
+        List<byte[]> payloads = new ArrayList<>();
+        segment.read(Integer.MAX_VALUE, payloads);
+        return payloads.stream().map(payload -> new String(payload, StandardCharsets.UTF_8)).toList();
+    }
+
+    private static void overwrite(Path file, int position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+}
@@ -7,5 +7,11 @@ public interface DataTransferConvention {
     DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(DATE_TIME_PATTERN);
     String STAT_SERVICE_URL = "http://stats-server:9090";
     String STATS_PATH = "/stats";
+    String STATS_TOP_PATH = "/stats/top";
+    String STATS_DELTA_PATH = "/stats/delta";
+    String STATS_ENTITIES_PATH = "/stats/entities";
+    String STATS_TIMESERIES_PATH = "/stats/timeseries";
+    String STATS_BATCH_PATH = "/stats/batch";
     String HIT_PATH = "/hit";
+    String HIT_BATCH_PATH = "/hits/batch";
 }
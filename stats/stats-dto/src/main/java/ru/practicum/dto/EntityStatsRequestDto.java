@@ -0,0 +1,31 @@
+package ru.practicum.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Asks {@code /stats/entities} for the all-time hits of entities of one type, such as the events of a page. An
+ * entity of type {@code events} with id 42 is what the uri {@code /events/42} points at.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntityStatsRequestDto {
+    @NotBlank(message = "Entity type cannot be blank or empty")
+    @Pattern(regexp = "^[A-Za-z][A-Za-z0-9_-]{0,63}$", message = "Invalid entity type")
+    private String type;
+    @NotEmpty(message = "Entity ids cannot be empty")
+    @Size(max = 10_000, message = "At most 10000 entity ids per request")
+    private List<@NotNull Long> ids;
+    private boolean unique;
+}
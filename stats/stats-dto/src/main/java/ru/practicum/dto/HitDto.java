@@ -0,0 +1,16 @@
+package ru.practicum.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One hit as the stats client sends it: which app registered a request to which uri, from which ip and when.
+ */
+public interface HitDto {
+    String getApp();
+
+    String getUri();
+
+    String getIp();
+
+    LocalDateTime getTimestamp();
+}
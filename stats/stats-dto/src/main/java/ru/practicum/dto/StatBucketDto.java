@@ -0,0 +1,32 @@
+package ru.practicum.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.practicum.json.LocalDateTimeDeserializer;
+import ru.practicum.json.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+
+/**
+ * Hits of one bucket of a {@link StatSeriesDto}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatBucketDto {
+    /**
+     * Start of the bucket. The first and the last bucket only count hits inside the requested range.
+     */
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    private LocalDateTime start;
+    /**
+     * Hits in the bucket; for unique requests, the distinct ips of the bucket alone.
+     */
+    private Long hits;
+}
@@ -0,0 +1,32 @@
+package ru.practicum.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.practicum.json.LocalDateTimeDeserializer;
+import ru.practicum.json.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Answer of {@code /stats/delta}: what changed since the caller's watermark.
+ * <p>
+ * {@link #settled} covers {@code [since, watermark)}, which will not change any more; the caller adds it to its
+ * running totals and asks from {@link #watermark} next time. {@link #pending} covers {@code [watermark, now]},
+ * which may still grow; it is added on top for an up-to-date answer but must not be kept.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatDeltaDto {
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    private LocalDateTime watermark;
+    private List<StatDeltaRowDto> settled;
+    private List<StatDeltaRowDto> pending;
+}
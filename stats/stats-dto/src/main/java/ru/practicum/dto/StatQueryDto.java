@@ -0,0 +1,43 @@
+package ru.practicum.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.json.LocalDateTimeDeserializer;
+import ru.practicum.json.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One query of a {@code /stats/batch} request, with the same parameters and defaults as {@code /stats}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatQueryDto {
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    @NotNull(message = "Start cannot be empty")
+    private LocalDateTime start;
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    @NotNull(message = "End cannot be empty")
+    private LocalDateTime end;
+    private List<String> uris;
+    private boolean unique;
+    @Builder.Default
+    private UniqueCountMode mode = UniqueCountMode.EXACT;
+    @Positive
+    private Integer limit;
+    @PositiveOrZero
+    private int offset;
+}
@@ -14,12 +14,11 @@ import ru.practicum.json.LocalDateTimeSerializer;
 
 import java.time.LocalDateTime;
 
-
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class StatRequestDto {
+public class StatRequestDto implements HitDto {
     @NotBlank(message = "App cannot be blank or empty")
     private String app;
     @NotBlank(message = "URI cannot be blank or empty")
@@ -31,4 +30,14 @@ public class StatRequestDto {
     @JsonDeserialize(using = LocalDateTimeDeserializer.class)
     @NotNull(message = "Timestamp cannot be empty")
     private LocalDateTime timestamp;
+
+    /**
+     * {@code hit} itself when it is a request already, otherwise a request with the same fields.
+     */
+    public static StatRequestDto from(HitDto hit) {
+        if (hit instanceof StatRequestDto request) {
+            return request;
+        }
+        return new StatRequestDto(hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp());
+    }
 }
@@ -0,0 +1,24 @@
+package ru.practicum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Hits of one app and uri over time, within a {@link StatTimeSeriesDto}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatSeriesDto {
+    private String app;
+    private String uri;
+    /**
+     * Buckets in time order. Buckets without hits are left out.
+     */
+    private List<StatBucketDto> buckets;
+}
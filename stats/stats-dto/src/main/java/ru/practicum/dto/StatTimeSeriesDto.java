@@ -0,0 +1,24 @@
+package ru.practicum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.practicum.enums.StatGranularity;
+
+import java.util.List;
+
+/**
+ * Answer of {@code /stats/timeseries}: hits per bucket of {@link #granularity}, one series per app and uri.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatTimeSeriesDto {
+    /**
+     * The bucket size used, either the requested one or the one the server picked for the range.
+     */
+    private StatGranularity granularity;
+    private List<StatSeriesDto> series;
+}
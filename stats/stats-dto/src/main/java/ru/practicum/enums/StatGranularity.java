@@ -0,0 +1,10 @@
+package ru.practicum.enums;
+
+/**
+ * Bucket size of a {@code /stats/timeseries} answer.
+ */
+public enum StatGranularity {
+    MINUTE,
+    HOUR,
+    DAY
+}
@@ -0,0 +1,15 @@
+package ru.practicum.enums;
+
+/**
+ * How {@code /stats} counts unique ips when {@code unique=true}.
+ */
+public enum UniqueCountMode {
+    /**
+     * Exact count of distinct ips.
+     */
+    EXACT,
+    /**
+     * Estimate merged from per-bucket HyperLogLog sketches, within the server's configured relative error.
+     */
+    APPROXIMATE
+}
@@ -0,0 +1,31 @@
+package ru.practicum.batch;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "stats-server.batch")
+public class BatchQueryProperties {
+    /**
+     * Most queries one {@code /stats/batch} request may hold.
+     */
+    private int maxQueries = 100;
+    /**
+     * Threads that run the scans of batch requests, shared by all of them.
+     */
+    private int parallelism = 4;
+    /**
+     * Scans waiting for a thread. When they are all taken, the request thread runs its scans itself.
+     */
+    private int queueCapacity = 100;
+    /**
+     * How long a batch request waits for its scans before it fails.
+     */
+    private Duration timeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,96 @@
+package ru.practicum.bitmap;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Exact set of ips as two compressed bitmaps: IPv4 addresses by their 32-bit value and every other address
+ * by its id in the ip dictionary. The two domains never overlap, so the set size is the sum of both
+ * cardinalities and sets merge with a plain OR.
+ */
+public final class IpSet {
+    private final RoaringBitmap ipv4;
+    private final RoaringBitmap dictionaryIds;
+
+    public IpSet() {
+        this(new RoaringBitmap(), new RoaringBitmap());
+    }
+
+    private IpSet(RoaringBitmap ipv4, RoaringBitmap dictionaryIds) {
+        this.ipv4 = ipv4;
+        this.dictionaryIds = dictionaryIds;
+    }
+
+    public void addIpv4(int address) {
+        ipv4.add(address);
+    }
+
+    public void addDictionaryId(int id) {
+        dictionaryIds.add(id);
+    }
+
+    public void or(IpSet other) {
+        ipv4.or(other.ipv4);
+        dictionaryIds.or(other.dictionaryIds);
+    }
+
+    public long cardinality() {
+        return ipv4.getLongCardinality() + dictionaryIds.getLongCardinality();
+    }
+
+    public byte[] ipv4Bytes() {
+        return serialize(ipv4);
+    }
+
+    public byte[] dictionaryIdBytes() {
+        return serialize(dictionaryIds);
+    }
+
+    public static IpSet fromBytes(byte[] ipv4, byte[] dictionaryIds) {
+        return new IpSet(deserialize(ipv4), deserialize(dictionaryIds));
+    }
+
+    /**
+     * Parses a dotted-quad IPv4 address.
+     *
+     * @return the address as a 32-bit value, or {@code null} if {@code ip} is not an IPv4 address
+     */
+    public static Integer parseIpv4(String ip) {
+        String[] octets = ip.split("\\.", -1);
+        if (octets.length != 4) {
+            return null;
+        }
+        int address = 0;
+        for (String octet : octets) {
+            if (octet.isEmpty() || octet.length() > 3 || !octet.chars().allMatch(Character::isDigit)) {
+                return null;
+            }
+            int value = Integer.parseInt(octet);
+            if (value > 255) {
+                return null;
+            }
+            address = (address << 8) | value;
+        }
+        return address;
+    }
+
+    private static byte[] serialize(RoaringBitmap bitmap) {
+        bitmap.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+
+    private static RoaringBitmap deserialize(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try {
+            bitmap.deserialize(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt ip bitmap", e);
+        }
+        return bitmap;
+    }
+}
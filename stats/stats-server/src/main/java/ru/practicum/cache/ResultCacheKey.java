@@ -0,0 +1,32 @@
+package ru.practicum.cache;
+
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.storage.ResultWindow;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Normalized {@code /stats} query: a half-open range, the uri filter sorted and without duplicates, and the
+ * mode only where it affects the result.
+ *
+ * @param uris sorted uris, or {@code null} for all of them
+ */
+public record ResultCacheKey(LocalDateTime from,
+                             LocalDateTime to,
+                             List<String> uris,
+                             boolean unique,
+                             UniqueCountMode mode,
+                             ResultWindow window) {
+
+    public static ResultCacheKey of(LocalDateTime from,
+                                    LocalDateTime to,
+                                    String[] uris,
+                                    boolean unique,
+                                    UniqueCountMode mode,
+                                    ResultWindow window) {
+        List<String> normalizedUris = uris == null ? null : Arrays.stream(uris).distinct().sorted().toList();
+        return new ResultCacheKey(from, to, normalizedUris, unique, unique ? mode : null, window);
+    }
+}
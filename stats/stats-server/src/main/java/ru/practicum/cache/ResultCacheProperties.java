@@ -0,0 +1,35 @@
+package ru.practicum.cache;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "stats-server.result-cache")
+public class ResultCacheProperties {
+    private boolean enabled = true;
+    /**
+     * Total rows held by all cached results; least recently used results are evicted beyond it.
+     */
+    private long maxRows = 200_000;
+    /**
+     * How long after its end a range is considered closed. Must exceed the ingestion flush interval and the
+     * clock skew of the clients.
+     */
+    private Duration settleDelay = Duration.ofSeconds(30);
+    /**
+     * The boundary between a cached closed prefix and the live tail is aligned down to this step, so that
+     * repeated queries with the same start reuse the same prefix.
+     */
+    private Duration prefixAlignment = Duration.ofMinutes(1);
+    /**
+     * How long a result is served at most. Late hits written by this instance drop the results they change right
+     * away; this bounds how long a late hit written by another instance can go unseen.
+     */
+    private Duration maxAge = Duration.ofMinutes(10);
+}
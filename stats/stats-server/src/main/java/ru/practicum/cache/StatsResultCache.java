@@ -0,0 +1,175 @@
+package ru.practicum.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.model.ServiceHit;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Results of {@code /stats} queries over closed ranges, which no longer change once every hit of the range
+ * has been written. Bounded by the total number of cached rows and evicted least recently used first.
+ * Concurrent misses on the same key may both compute the result; the later one wins.
+ * <p>
+ * Hits can still arrive for a closed range: replayed from a client spool, retried, or held up in a backed-up
+ * ingest queue. Once such a late hit is written, {@link #invalidate} drops every cached result whose range and
+ * uris cover it, and a result being computed meanwhile is not cached. Late hits written by another instance are
+ * not seen here, so no result is served longer than {@code max-age}.
+ */
+@Component
+public class StatsResultCache {
+    private final ResultCacheProperties properties;
+    private final Map<ResultCacheKey, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter invalidationCounter;
+    private final LongAdder evictions = new LongAdder();
+    private long rows;
+    /**
+     * Bumped by every invalidation, so that a load that overlapped one is not cached.
+     */
+    private long generation;
+
+    public StatsResultCache(ResultCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.hitCounter = Counter.builder("stats.result-cache.requests").tag("result", "hit").register(meterRegistry);
+        this.missCounter = Counter.builder("stats.result-cache.requests").tag("result", "miss")
+                .register(meterRegistry);
+        this.invalidationCounter = Counter.builder("stats.result-cache.invalidations")
+                .description("Cached results dropped because a late hit was written into their range")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.result-cache.evictions", evictions, LongAdder::sum)
+                .register(meterRegistry);
+        Gauge.builder("stats.result-cache.rows", this, StatsResultCache::getRows).register(meterRegistry);
+        Gauge.builder("stats.result-cache.hit-ratio", this, StatsResultCache::getHitRatio).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * The end of the closed part of time: ranges ending at or before it are cached. Aligned down to
+     * {@code prefix-alignment}.
+     */
+    public LocalDateTime closedBefore() {
+        LocalDateTime settled = LocalDateTime.now().minus(properties.getSettleDelay());
+        long step = Math.max(1, properties.getPrefixAlignment().toSeconds());
+        long seconds = settled.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(seconds, step) * step, 0, ZoneOffset.UTC);
+    }
+
+    public List<StatResponseDto> get(ResultCacheKey key, Supplier<List<StatResponseDto>> loader) {
+        long loadedGeneration;
+        synchronized (results) {
+            CachedResult cached = results.get(key);
+            if (cached != null && System.nanoTime() - cached.cachedAt() <= properties.getMaxAge().toNanos()) {
+                hitCounter.increment();
+                return cached.rows();
+            }
+            loadedGeneration = generation;
+        }
+        missCounter.increment();
+        List<StatResponseDto> loaded = List.copyOf(loader.get());
+        put(key, loaded, loadedGeneration);
+        return loaded;
+    }
+
+    /**
+     * Drops the cached results that {@code hits}, just written, belong to. Only hits older than
+     * {@link #closedBefore} can belong to a cached range, so batches of fresh hits cost one comparison per hit.
+     */
+    public void invalidate(Collection<ServiceHit> hits) {
+        if (!isEnabled()) {
+            return;
+        }
+        LocalDateTime closed = closedBefore();
+        NavigableMap<LocalDateTime, Set<String>> late = new TreeMap<>();
+        for (ServiceHit hit : hits) {
+            if (hit.getCreated().isBefore(closed)) {
+                late.computeIfAbsent(hit.getCreated(), created -> new HashSet<>()).add(hit.getUri());
+            }
+        }
+        if (late.isEmpty()) {
+            return;
+        }
+        synchronized (results) {
+            generation++;
+            Iterator<Map.Entry<ResultCacheKey, CachedResult>> entries = results.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<ResultCacheKey, CachedResult> entry = entries.next();
+                if (covers(entry.getKey(), late)) {
+                    rows -= weight(entry.getValue().rows());
+                    entries.remove();
+                    invalidationCounter.increment();
+                }
+            }
+        }
+    }
+
+    private void put(ResultCacheKey key, List<StatResponseDto> result, long loadedGeneration) {
+        long weight = weight(result);
+        if (weight > properties.getMaxRows()) {
+            return;
+        }
+        synchronized (results) {
+            if (generation != loadedGeneration) {
+                return;
+            }
+            CachedResult previous = results.put(key, new CachedResult(result, System.nanoTime()));
+            rows += weight - (previous == null ? 0 : weight(previous.rows()));
+            Iterator<CachedResult> eldest = results.values().iterator();
+            while (rows > properties.getMaxRows() && eldest.hasNext()) {
+                rows -= weight(eldest.next().rows());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static boolean covers(ResultCacheKey key, NavigableMap<LocalDateTime, Set<String>> late) {
+        for (Set<String> uris : late.subMap(key.from(), true, key.to(), false).values()) {
+            if (key.uris() == null || uris.stream().anyMatch(key.uris()::contains)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long getRows() {
+        synchronized (results) {
+            return rows;
+        }
+    }
+
+    private double getHitRatio() {
+        double total = hitCounter.count() + missCounter.count();
+        return total == 0 ? 0 : hitCounter.count() / total;
+    }
+
+    /**
+     * An empty result still takes a slot.
+     */
+    private static long weight(List<StatResponseDto> result) {
+        return result.size() + 1L;
+    }
+
+    private record CachedResult(List<StatResponseDto> rows, long cachedAt) {
+    }
+}
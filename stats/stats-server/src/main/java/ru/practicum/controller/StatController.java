@@ -1,20 +1,40 @@
 package ru.practicum.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.constants.DataTransferConvention;
+import ru.practicum.dto.EntityStatsRequestDto;
+import ru.practicum.dto.StatDeltaDto;
+import ru.practicum.dto.StatQueryDto;
 import ru.practicum.dto.StatRequestDto;
 import ru.practicum.dto.StatResponseDto;
+import ru.practicum.dto.StatTimeSeriesDto;
+import ru.practicum.enums.StatGranularity;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.service.StatBatchService;
 import ru.practicum.service.StatService;
+import ru.practicum.storage.ResultWindow;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @Validated
@@ -22,6 +42,8 @@ import java.util.List;
 @Slf4j
 public class StatController {
     private final StatService statService;
+    private final StatBatchService statBatchService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
     public ResponseEntity<StatRequestDto> registerHit(@RequestBody @Valid StatRequestDto statRequestDto) {
@@ -29,16 +51,141 @@ public class StatController {
         return new ResponseEntity<>(statService.registerHit(statRequestDto), HttpStatus.CREATED);
     }
 
+    @PostMapping("/hits/batch")
+    public ResponseEntity<Void> registerHits(@RequestBody @NotEmpty List<@Valid StatRequestDto> statRequestDtos) {
+        log.info("Registering batch of {} hits", statRequestDtos.size());
+        statService.registerHits(statRequestDtos);
+        return new ResponseEntity<>(HttpStatus.CREATED);
+    }
+
     @GetMapping("/stats")
     public ResponseEntity<List<StatResponseDto>> getStats(
             @RequestParam("start") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime start,
             @RequestParam("end") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime end,
             @RequestParam(value = "uris", required = false) String[] uris,
             @RequestParam(value = "unique", defaultValue = "false")
-            Boolean unique) {
+            Boolean unique,
+            @RequestParam(value = "mode", defaultValue = "EXACT") UniqueCountMode mode,
+            @RequestParam(value = "limit", required = false) @Positive Integer limit,
+            @RequestParam(value = "offset", defaultValue = "0") @PositiveOrZero Integer offset) {
+        if (start.isAfter(end)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(statService.getHits(start, end, uris, unique, mode,
+                new ResultWindow(offset, limit)), HttpStatus.OK);
+    }
+
+    /**
+     * Several {@code /stats} queries in one request; the results come back in the order of the queries.
+     */
+    @PostMapping(DataTransferConvention.STATS_BATCH_PATH)
+    public ResponseEntity<List<List<StatResponseDto>>> getStatsBatch(
+            @RequestBody @NotEmpty List<@Valid StatQueryDto> queries) {
+        if (queries.size() > statBatchService.getMaxQueries()
+                || queries.stream().anyMatch(query -> query.getStart().isAfter(query.getEnd()))) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(statBatchService.getHits(queries), HttpStatus.OK);
+    }
+
+    /**
+     * Hits since the caller's watermark, for callers that keep running totals; see {@link StatDeltaDto}.
+     */
+    @GetMapping(DataTransferConvention.STATS_DELTA_PATH)
+    public ResponseEntity<StatDeltaDto> getStatsDelta(
+            @RequestParam("since") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime since,
+            @RequestParam(value = "uris", required = false) String[] uris,
+            @RequestParam(value = "unique", defaultValue = "false") Boolean unique) {
+        if (since.isAfter(LocalDateTime.now())) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(statService.getDelta(since, uris, unique), HttpStatus.OK);
+    }
+
+    /**
+     * Hits per minute, hour or day for charts; see {@link StatTimeSeriesDto}. Without {@code granularity} the finest
+     * one that fits the range is used.
+     */
+    @GetMapping(DataTransferConvention.STATS_TIMESERIES_PATH)
+    public ResponseEntity<StatTimeSeriesDto> getTimeSeries(
+            @RequestParam("start") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime start,
+            @RequestParam("end") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime end,
+            @RequestParam(value = "uris", required = false) String[] uris,
+            @RequestParam(value = "unique", defaultValue = "false") Boolean unique,
+            @RequestParam(value = "mode", defaultValue = "EXACT") UniqueCountMode mode,
+            @RequestParam(value = "granularity", required = false) StatGranularity granularity) {
+        if (start.isAfter(end)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return statService.chooseGranularity(start, end, granularity)
+                .map(chosen -> new ResponseEntity<>(statService.getTimeSeries(start, end, uris, unique, mode, chosen),
+                        HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+    }
+
+    /**
+     * All-time hits of a list of entities of one type, as an id to count map; ids never hit are left out.
+     */
+    @PostMapping(DataTransferConvention.STATS_ENTITIES_PATH)
+    public ResponseEntity<Map<Long, Long>> getEntityStats(@RequestBody @Valid EntityStatsRequestDto request) {
+        log.info("Retrieving hits of {} {} entities, unique={}", request.getIds().size(), request.getType(),
+                request.isUnique());
+        return new ResponseEntity<>(statService.getEntityHits(request.getType(), request.getIds(),
+                request.isUnique()), HttpStatus.OK);
+    }
+
+    /**
+     * Trending uris: the {@code limit} most-hit uris of the last {@code minutes}, from memory.
+     */
+    @GetMapping(DataTransferConvention.STATS_TOP_PATH)
+    public ResponseEntity<List<StatResponseDto>> getTopStats(
+            @RequestParam(value = "minutes", defaultValue = "60") @Positive Integer minutes,
+            @RequestParam(value = "limit", defaultValue = "10") @Positive @Max(1000) Integer limit) {
+        Duration window = Duration.ofMinutes(minutes);
+        if (window.compareTo(statService.getTopHitsRetention()) > 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(statService.getTopHits(window, limit), HttpStatus.OK);
+    }
+
+    /**
+     * {@code /stats} as newline-delimited JSON, one row per line, written while the rows are still being read.
+     */
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStats(
+            @RequestParam("start") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime start,
+            @RequestParam("end") @DateTimeFormat(pattern = DataTransferConvention.DATE_TIME_PATTERN) LocalDateTime end,
+            @RequestParam(value = "uris", required = false) String[] uris,
+            @RequestParam(value = "unique", defaultValue = "false")
+            Boolean unique,
+            @RequestParam(value = "mode", defaultValue = "EXACT") UniqueCountMode mode,
+            @RequestParam(value = "limit", required = false) @Positive Integer limit,
+            @RequestParam(value = "offset", defaultValue = "0") @PositiveOrZero Integer offset) {
         if (start.isAfter(end)) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
-        return new ResponseEntity<>(statService.getHits(start, end, uris, unique), HttpStatus.OK);
+        ResultWindow window = new ResultWindow(offset, limit);
+        StreamingResponseBody body = outputStream -> statService.streamHits(start, end, uris, unique, mode, window,
+                row -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(row));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Parameters and bodies that fail validation, such as a batch query without a start, are refused as a whole
+     * rather than answered with a server error.
+     */
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<Void> handleConstraintViolation(ConstraintViolationException e) {
+        log.warn("Refusing invalid request: {}", e.getMessage());
+        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
     }
 }
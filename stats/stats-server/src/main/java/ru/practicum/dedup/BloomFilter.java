@@ -0,0 +1,69 @@
+package ru.practicum.dedup;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter over 64-bit hashes, sized for {@code expectedInsertions} at {@code falsePositiveRate}. It may claim
+ * to contain a hash that was never added, with about that probability, but never misses one that was. Not
+ * thread-safe.
+ */
+final class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter size: " + expectedInsertions + " insertions at "
+                    + falsePositiveRate);
+        }
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bits = new long[(int) Math.ceilDiv(Math.max(optimalBits, Long.SIZE), Long.SIZE)];
+        this.bitCount = (long) bits.length * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * ln2));
+    }
+
+    boolean mightContain(long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            long index = index(hash, i);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds {@code hash}.
+     *
+     * @return {@code false} when every bit was already set, that is when the filter already seemed to contain it
+     */
+    boolean put(long hash) {
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long index = index(hash, i);
+            long mask = 1L << index;
+            int word = (int) (index >>> 6);
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    void clear() {
+        Arrays.fill(bits, 0);
+    }
+
+    /**
+     * Kirsch-Mitzenmacher double hashing: probe {@code i} uses {@code h1 + i * h2} of the two halves of one
+     * 64-bit hash.
+     */
+    private long index(long hash, int probe) {
+        long h1 = hash & 0xffffffffL;
+        long h2 = hash >>> 32;
+        return Math.floorMod(h1 + probe * h2, bitCount);
+    }
+}
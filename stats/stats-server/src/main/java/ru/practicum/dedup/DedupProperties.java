@@ -0,0 +1,33 @@
+package ru.practicum.dedup;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "stats-server.dedup")
+public class DedupProperties {
+    private boolean enabled = false;
+    /**
+     * How long a hit of the same app, uri and ip counts as a repeat of the first one. Repeats are recognised for
+     * at least {@code window} minus one slice.
+     */
+    private Duration window = Duration.ofSeconds(10);
+    /**
+     * Bloom filters the window is split into; one is cleared and reused whenever the clock enters a new slice.
+     */
+    private int slices = 5;
+    /**
+     * Distinct (app, uri, ip) triples expected per window, which sizes the filters.
+     */
+    private long expectedHitsPerWindow = 1_000_000;
+    /**
+     * Probability that a hit seen for the first time is taken for a repeat and dropped.
+     */
+    private double falsePositiveRate = 0.0001;
+}
@@ -0,0 +1,209 @@
+package ru.practicum.dedup;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.ServiceHit;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drops repeats of a hit: the same app, uri and ip registered again within {@code window}, as sent by refresh storms
+ * and bots. Hits are placed by their own timestamp, not by when they arrive, so hits replayed from a client's spool
+ * or sent late in one batch are compared with the hits of their time. The window is a ring of time slices, each with
+ * a Bloom filter of the hits first seen in it. A hit is a repeat when the filter of a slice within {@code window} of
+ * its own, before or after it, seems to contain it; otherwise it is kept and, once accepted, added to the filter of
+ * its slice. A slice is cleared when a later slice takes its place in the ring, so a repeat is recognised when the
+ * two hits are less than {@code window} minus one slice apart, and never when they are more than {@code window}
+ * apart. A hit older than every slice in the ring is kept and not remembered.
+ * <p>
+ * A kept hit is claimed until its caller either {@link #remember remembers} or {@link #release releases} it. The claim
+ * is taken in the same step as the check, one key at a time, so of two requests racing with the same hit only one
+ * keeps it.
+ * <p>
+ * Only repeats are dropped and the first hit of an ip always is kept, so unique counts do not change, except when
+ * a false positive drops a first hit, which happens with {@code false-positive-rate}. Non-unique counts then count
+ * each burst once per window.
+ */
+@Slf4j
+@Component
+public class HitDeduplicator {
+    private final boolean enabled;
+    private final long sliceMillis;
+    private final Slice[] ring;
+    /**
+     * Slices of the hits kept by {@link #dropRepeats} but not yet remembered or released, by key.
+     */
+    private final Map<String, List<Long>> claims = new ConcurrentHashMap<>();
+    private final Counter keptCounter;
+    private final Counter suppressedCounter;
+
+    public HitDeduplicator(DedupProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.sliceMillis = Math.max(1, properties.getWindow().toMillis() / properties.getSlices());
+        this.ring = new Slice[enabled ? properties.getSlices() : 0];
+        long expectedPerSlice = Math.ceilDiv(properties.getExpectedHitsPerWindow(), properties.getSlices());
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Slice(new BloomFilter(expectedPerSlice, properties.getFalsePositiveRate()));
+        }
+        this.keptCounter = Counter.builder("stats.dedup.hits").tag("result", "kept").register(meterRegistry);
+        this.suppressedCounter = Counter.builder("stats.dedup.hits").tag("result", "suppressed")
+                .description("Hits dropped as repeats of the same app, uri and ip within the dedup window")
+                .register(meterRegistry);
+        Gauge.builder("stats.dedup.rate", this, HitDeduplicator::getDedupRate)
+                .description("Share of hits dropped as repeats")
+                .register(meterRegistry);
+        if (enabled) {
+            log.info("Hit deduplication enabled: window={}, slices={}", properties.getWindow(), ring.length);
+        }
+    }
+
+    /**
+     * {@code hits} without the repeats of hits remembered or claimed within the window and without repeats inside
+     * {@code hits} itself. The returned hits are claimed: callers {@link #remember} them once they have been
+     * accepted, or {@link #release} them when their registration failed, so that a hit sent again after a failure
+     * is not taken for a repeat. All hits are returned when deduplication is disabled.
+     */
+    public List<ServiceHit> dropRepeats(List<ServiceHit> hits) {
+        if (!enabled) {
+            return hits;
+        }
+        List<ServiceHit> firstSeen = new ArrayList<>(hits.size());
+        for (ServiceHit hit : hits) {
+            long slice = sliceOf(hit);
+            long hash = hash(hit);
+            boolean[] claimed = new boolean[1];
+            claims.compute(key(hit), (key, slices) -> {
+                boolean repeat = slices != null && slices.stream().anyMatch(other -> isWithinWindow(other, slice));
+                if (repeat || isRemembered(hash, slice)) {
+                    return slices;
+                }
+                List<Long> updated = slices == null ? new ArrayList<>(1) : slices;
+                updated.add(slice);
+                claimed[0] = true;
+                return updated;
+            });
+            if (claimed[0]) {
+                firstSeen.add(hit);
+            }
+        }
+        keptCounter.increment(firstSeen.size());
+        suppressedCounter.increment(hits.size() - firstSeen.size());
+        return firstSeen;
+    }
+
+    /**
+     * Remembers hits returned by {@link #dropRepeats} that have been accepted, and releases their claims.
+     */
+    public void remember(List<ServiceHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        for (ServiceHit hit : hits) {
+            long number = sliceOf(hit);
+            Slice slice = ring[(int) Math.floorMod(number, ring.length)];
+            synchronized (slice) {
+                if (slice.number < number) {
+                    slice.reset(number);
+                }
+                // A newer slice has taken the place of the hit's own: the hit is too old to be remembered.
+                if (slice.number == number) {
+                    slice.filter.put(hash(hit));
+                }
+            }
+            // Only now that the filter has the hit may the claim go, or a racing request could see neither.
+            unclaim(hit, number);
+        }
+    }
+
+    /**
+     * Releases hits returned by {@link #dropRepeats} whose registration failed, without remembering them.
+     */
+    public void release(List<ServiceHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        hits.forEach(hit -> unclaim(hit, sliceOf(hit)));
+    }
+
+    private void unclaim(ServiceHit hit, long slice) {
+        claims.computeIfPresent(key(hit), (key, slices) -> {
+            slices.remove(Long.valueOf(slice));
+            return slices.isEmpty() ? null : slices;
+        });
+    }
+
+    private boolean isRemembered(long hash, long number) {
+        for (Slice slice : ring) {
+            synchronized (slice) {
+                if (slice.number != Slice.UNUSED && isWithinWindow(slice.number, number)
+                        && slice.filter.mightContain(hash)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isWithinWindow(long slice, long other) {
+        return Math.abs(slice - other) < ring.length;
+    }
+
+    /**
+     * The number of the time slice the hit was registered in; hits without a timestamp count as registered now.
+     */
+    private long sliceOf(ServiceHit hit) {
+        LocalDateTime created = hit.getCreated() == null ? LocalDateTime.now() : hit.getCreated();
+        return Math.floorDiv(created.toInstant(ZoneOffset.UTC).toEpochMilli(), sliceMillis);
+    }
+
+    private double getDedupRate() {
+        double total = keptCounter.count() + suppressedCounter.count();
+        return total == 0 ? 0 : suppressedCounter.count() / total;
+    }
+
+    /**
+     * 64-bit FNV-1a over app, uri and ip followed by the MurmurHash3 finalizer.
+     */
+    private static long hash(ServiceHit hit) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key(hit).getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb3fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static String key(ServiceHit hit) {
+        return hit.getApp() + '\n' + hit.getUri() + '\n' + hit.getIp();
+    }
+
+    private static final class Slice {
+        private static final long UNUSED = Long.MIN_VALUE;
+
+        private final BloomFilter filter;
+        private long number = UNUSED;
+
+        private Slice(BloomFilter filter) {
+            this.filter = filter;
+        }
+
+        private void reset(long number) {
+            this.number = number;
+            filter.clear();
+        }
+    }
+}
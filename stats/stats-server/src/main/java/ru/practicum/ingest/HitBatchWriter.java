@@ -0,0 +1,47 @@
+package ru.practicum.ingest;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.repository.EntityHitRepository;
+import ru.practicum.repository.HitBatchRepository;
+import ru.practicum.repository.HitIpBitmapRepository;
+import ru.practicum.repository.HitRollupRepository;
+import ru.practicum.repository.HitSketchRepository;
+
+import java.util.List;
+
+/**
+ * Persists one drained batch: the raw rows and every structure derived from them are written in a
+ * single transaction, so they never disagree about which hits have been counted. Sketches and bitmaps are
+ * written as small deltas, which {@link #compact} folds into their buckets later.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitBatchWriter {
+    private final HitBatchRepository hitBatchRepository;
+    private final HitRollupRepository hitRollupRepository;
+    private final HitSketchRepository hitSketchRepository;
+    private final HitIpBitmapRepository hitIpBitmapRepository;
+    private final EntityHitRepository entityHitRepository;
+
+    @Transactional
+    public void write(List<ServiceHit> batch) {
+        hitBatchRepository.saveAll(batch);
+        hitRollupRepository.increment(batch);
+        hitSketchRepository.merge(batch);
+        hitIpBitmapRepository.merge(batch);
+        entityHitRepository.increment(batch);
+    }
+
+    /**
+     * Folds up to {@code limit} of the oldest sketch deltas and as many bitmap deltas into their buckets.
+     *
+     * @return the larger number of deltas folded from either table; below {@code limit} once both are drained
+     */
+    @Transactional
+    public int compact(int limit) {
+        return Math.max(hitSketchRepository.compact(limit), hitIpBitmapRepository.compact(limit));
+    }
+}
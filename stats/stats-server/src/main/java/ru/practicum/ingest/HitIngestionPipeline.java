@@ -0,0 +1,270 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.cache.StatsResultCache;
+import ru.practicum.exception.HitQueueOverflowException;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.storage.HitStorageEngine;
+import ru.practicum.storage.PartialWriteException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Decouples hit registration from persistence. Hits are put into a bounded queue and a single
+ * writer thread drains it into batches for the storage engine, flushing when a batch is full or when the oldest
+ * queued hit has waited {@code flush-interval}. On shutdown the writer stops accepting hits and
+ * flushes whatever is still queued.
+ * <p>
+ * The queue is bounded by permits rather than by its own capacity, so a request's hits are taken all together or
+ * not at all: a request refused with 503 has queued nothing, and the client can send it again. A hit gives its
+ * permit back once its batch has been written, so a batch being retried keeps holding queue space and the queue
+ * pushes back on clients instead of growing. A batch that still fails after {@code write-retries} retries is lost
+ * although its hits were accepted; {@code stats.ingest.hits.failed} counts them and is meant to be alerted on.
+ * <p>
+ * Hits are queued under the read side of a lock whose write side {@link #stop} takes to stop accepting them, so
+ * every hit accepted is queued before the writer sees that it has to stop, and flushed by it.
+ */
+@Slf4j
+@Component
+public class HitIngestionPipeline implements SmartLifecycle {
+    private final IngestionProperties properties;
+    private final HitStorageEngine hitStorageEngine;
+    private final StatsResultCache statsResultCache;
+    private final BlockingQueue<ServiceHit> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public HitIngestionPipeline(IngestionProperties properties,
+                                HitStorageEngine hitStorageEngine,
+                                StatsResultCache statsResultCache,
+                                MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.hitStorageEngine = hitStorageEngine;
+        this.statsResultCache = statsResultCache;
+        this.capacity = new Semaphore(properties.getQueueCapacity(), true);
+        Gauge.builder("stats.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Hits waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("stats.ingest.queue.capacity", properties, IngestionProperties::getQueueCapacity)
+                .register(meterRegistry);
+        this.acceptedCounter = Counter.builder("stats.ingest.hits.accepted").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("stats.ingest.hits.rejected").register(meterRegistry);
+        this.retriedCounter = Counter.builder("stats.ingest.hits.retried")
+                .description("Hits of failed batches written again")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("stats.ingest.hits.failed")
+                .description("Hits accepted and then lost because their batch could not be written after all retries")
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("stats.ingest.batch.size")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("stats.ingest.flush").register(meterRegistry);
+    }
+
+    public void submit(ServiceHit hit) {
+        submitAll(List.of(hit));
+    }
+
+    /**
+     * Queues all of {@code hits} or, when there is no room for all of them, none.
+     */
+    public void submitAll(Collection<ServiceHit> hits) {
+        if (!running) {
+            throw new HitQueueOverflowException("Hit ingestion is not running");
+        }
+        if (hits.isEmpty()) {
+            return;
+        }
+        if (hits.size() > properties.getQueueCapacity()) {
+            rejectedCounter.increment(hits.size());
+            throw new HitQueueOverflowException("Batch of " + hits.size() + " hits is larger than the hit queue");
+        }
+        if (!reserve(hits.size())) {
+            rejectedCounter.increment(hits.size());
+            throw new HitQueueOverflowException("Hit queue is full, try again later");
+        }
+        Lock lock = runningLock.readLock();
+        lock.lock();
+        try {
+            if (!running) {
+                capacity.release(hits.size());
+                throw new HitQueueOverflowException("Hit ingestion is not running");
+            }
+            queue.addAll(hits);
+        } finally {
+            lock.unlock();
+        }
+        acceptedCounter.increment(hits.size());
+    }
+
+    private boolean reserve(int permits) {
+        if (properties.getOverflowPolicy() == OverflowPolicy.REJECT) {
+            return capacity.tryAcquire(permits);
+        }
+        try {
+            return capacity.tryAcquire(permits, properties.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void drainLoop() {
+        int batchSize = properties.getBatchSize();
+        long flushIntervalNanos = properties.getFlushInterval().toNanos();
+        List<ServiceHit> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ServiceHit first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        break;
+                    }
+                    ServiceHit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                log.warn("Hit writer interrupted, flushing {} queued hits", queue.size());
+                queue.drainTo(batch);
+                running = false;
+            }
+            flush(batch);
+        }
+        log.info("Hit writer stopped");
+    }
+
+    /**
+     * Writes {@code batch}, retrying what failed up to {@code write-retries} times, waiting {@code write-backoff}
+     * and twice as long after each further failure, then drops the cached results its late hits change and
+     * releases the batch's queue space.
+     */
+    private void flush(List<ServiceHit> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<ServiceHit> unwritten = batch;
+        try {
+            for (int retry = 0; ; retry++) {
+                RuntimeException failure;
+                try {
+                    List<ServiceHit> hits = unwritten;
+                    flushTimer.record(() -> hitStorageEngine.write(hits));
+                    batchSizeSummary.record(hits.size());
+                    log.debug("Flushed batch of {} hits", hits.size());
+                    return;
+                } catch (PartialWriteException e) {
+                    unwritten = e.getUnwritten();
+                    failure = e;
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+                if (retry == properties.getWriteRetries() || !backOff(retry)) {
+                    failedCounter.increment(unwritten.size());
+                    log.error("Lost {} accepted hits, their batch could not be written: {}", unwritten.size(),
+                            failure.getMessage(), failure);
+                    return;
+                }
+                retriedCounter.increment(unwritten.size());
+                log.warn("Failed to write batch of {} hits, retrying: {}", unwritten.size(), failure.getMessage());
+            }
+        } finally {
+            statsResultCache.invalidate(batch);
+            capacity.release(batch.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * Waits before the retry after the failed attempt {@code retry}; {@code false} when interrupted.
+     */
+    private boolean backOff(int retry) {
+        try {
+            Thread.sleep(properties.getWriteBackoff().multipliedBy(1L << Math.min(retry, 16)));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::drainLoop, "hit-writer");
+        writer.start();
+        log.info("Hit writer started: capacity={}, batchSize={}, flushInterval={}, overflowPolicy={}",
+                properties.getQueueCapacity(), properties.getBatchSize(),
+                properties.getFlushInterval(), properties.getOverflowPolicy());
+    }
+
+    @Override
+    public void stop() {
+        Lock lock = runningLock.writeLock();
+        lock.lock();
+        try {
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.error("Hit writer did not finish in {}, {} hits are lost",
+                    properties.getShutdownTimeout(), queue.size());
+            writer.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the embedded web server, so no request can observe a stopped writer.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+}
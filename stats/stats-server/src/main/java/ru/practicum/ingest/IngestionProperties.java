@@ -0,0 +1,44 @@
+package ru.practicum.ingest;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "stats-server.ingest")
+public class IngestionProperties {
+    /**
+     * Maximum number of hits waiting to be written.
+     */
+    private int queueCapacity = 100_000;
+    /**
+     * Maximum number of hits written by one JDBC batch.
+     */
+    private int batchSize = 1_000;
+    /**
+     * Maximum time a hit waits in the queue before a partial batch is flushed.
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    /**
+     * How long {@link OverflowPolicy#BLOCK} waits for free space.
+     */
+    private Duration offerTimeout = Duration.ofMillis(500);
+    /**
+     * How many times a batch that failed to be written is written again before its hits are given up.
+     */
+    private int writeRetries = 5;
+    /**
+     * Wait before the first retry of a failed batch; it doubles with every further retry.
+     */
+    private Duration writeBackoff = Duration.ofMillis(200);
+    /**
+     * How long shutdown waits for the writer to drain the queue.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,15 @@
+package ru.practicum.ingest;
+
+/**
+ * What the ingestion queue does with a hit when it is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Fail the request immediately so the caller can retry later.
+     */
+    REJECT,
+    /**
+     * Wait up to {@code offer-timeout} for free space, then fail the request.
+     */
+    BLOCK
+}
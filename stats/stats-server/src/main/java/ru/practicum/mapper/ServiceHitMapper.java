@@ -6,6 +6,8 @@ import org.mapstruct.MappingConstants;
 import ru.practicum.dto.StatRequestDto;
 import ru.practicum.model.ServiceHit;
 
+import java.util.List;
+
 @Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
 public interface ServiceHitMapper {
     @Mapping(target = "timestamp", source = "created")
@@ -14,4 +16,6 @@ public interface ServiceHitMapper {
     @Mapping(target = "created", source = "timestamp")
     @Mapping(target = "id", ignore = true)
     ServiceHit toEntity(StatRequestDto statRequestDto);
+
+    List<ServiceHit> toEntities(List<StatRequestDto> statRequestDtos);
 }
@@ -0,0 +1,7 @@
+package ru.practicum.model;
+
+/**
+ * The grouping key of every stats aggregate.
+ */
+public record AppUri(String app, String uri) {
+}
@@ -0,0 +1,27 @@
+package ru.practicum.model;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An entity a uri points at: {@code /events/42} is entity 42 of type {@code events}. Only uris made of exactly a
+ * type segment and a numeric id segment name an entity.
+ */
+public record EntityRef(String type, long id) {
+    private static final Pattern ENTITY_URI = Pattern.compile("^/([A-Za-z][A-Za-z0-9_-]{0,63})/([0-9]{1,18})$");
+
+    /**
+     * @return the entity of {@code uri}, or {@code null} when it does not name one
+     */
+    public static EntityRef fromUri(String uri) {
+        if (uri == null) {
+            return null;
+        }
+        Matcher matcher = ENTITY_URI.matcher(uri);
+        return matcher.matches() ? new EntityRef(matcher.group(1), Long.parseLong(matcher.group(2))) : null;
+    }
+
+    public String toUri() {
+        return "/" + type + "/" + id;
+    }
+}
@@ -0,0 +1,71 @@
+package ru.practicum.model;
+
+import java.util.regex.Pattern;
+
+/**
+ * A glob over uris: {@code *} matches any run of characters, slashes included, and {@code ?} matches exactly one.
+ * {@code /events/*} selects every uri under {@code /events/}. Everything before the first wildcard is a literal
+ * prefix, which is what lets an ordered index find the matches without looking at other uris.
+ */
+public record UriPattern(String glob) {
+    private static final char ANY = '*';
+    private static final char ONE = '?';
+    private static final char LIKE_ESCAPE = '\\';
+
+    public static boolean isPattern(String uri) {
+        return uri.indexOf(ANY) >= 0 || uri.indexOf(ONE) >= 0;
+    }
+
+    /**
+     * Whether every uri matches, as with {@code *}.
+     */
+    public boolean matchesEverything() {
+        return !glob.isEmpty() && glob.chars().allMatch(c -> c == ANY);
+    }
+
+    public String literalPrefix() {
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == ANY || c == ONE) {
+                return glob.substring(0, i);
+            }
+        }
+        return glob;
+    }
+
+    /**
+     * The same pattern for SQL {@code LIKE ... ESCAPE '\'}.
+     */
+    public String toLikePattern() {
+        StringBuilder like = new StringBuilder(glob.length() + 8);
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case ANY -> like.append('%');
+                case ONE -> like.append('_');
+                case '%', '_', LIKE_ESCAPE -> like.append(LIKE_ESCAPE).append(c);
+                default -> like.append(c);
+            }
+        }
+        return like.toString();
+    }
+
+    public Pattern toRegex() {
+        StringBuilder regex = new StringBuilder(glob.length() + 8);
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == ANY || c == ONE) {
+                if (literalStart < i) {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                }
+                regex.append(c == ANY ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
@@ -0,0 +1,213 @@
+package ru.practicum.partition;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the monthly partitions of the range-partitioned {@code HIT} table in shape: partitions for the
+ * coming months exist before the first hit arrives, and months past the retention period are removed as
+ * a metadata operation instead of a bulk {@code DELETE}. Indexes defined on {@code HIT} are created on
+ * every new partition by Postgres itself.
+ * <p>
+ * Hits of a month without a partition land in {@code hit_default}. Postgres refuses to create a partition for
+ * rows the default partition holds, so such a month's partition is filled with them as a standalone table and
+ * attached in one transaction. Rows of {@code hit_default} older than the retention period are deleted, or moved
+ * to {@code hit_default_expired} when partitions are only detached. {@code stats.partitions.missing} counts the
+ * months ahead still without a partition and {@code stats.partitions.failures} the maintenance steps that failed.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "stats-server.partitioning", name = "enabled", havingValue = "true")
+public class HitPartitionManager {
+    private static final String PARTITION_PREFIX = "hit_";
+    private static final String EXPIRED_DEFAULT_TABLE = "hit_default_expired";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'y'uuuu'm'MM");
+    private static final String SELECT_PARTITIONS = """
+            SELECT child.relname
+            FROM pg_inherits
+            JOIN pg_class parent ON parent.oid = pg_inherits.inhparent
+            JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+            WHERE parent.relname = 'hit'
+            """;
+    private static final String SELECT_DEFAULT_ROWS_EXIST = """
+            SELECT EXISTS (SELECT 1 FROM HIT_DEFAULT WHERE CREATED >= ? AND CREATED < ?)
+            """;
+    private static final String MOVE_DEFAULT_ROWS = """
+            WITH moved AS (DELETE FROM HIT_DEFAULT WHERE CREATED >= ? AND CREATED < ? RETURNING *)
+            INSERT INTO %s SELECT * FROM moved
+            """;
+    private static final String DELETE_EXPIRED_DEFAULT_ROWS = "DELETE FROM HIT_DEFAULT WHERE CREATED < ?";
+    private static final String MOVE_EXPIRED_DEFAULT_ROWS = """
+            WITH moved AS (DELETE FROM HIT_DEFAULT WHERE CREATED < ? RETURNING *)
+            INSERT INTO %s SELECT * FROM moved
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PartitioningProperties properties;
+    private final AtomicInteger missingPartitions = new AtomicInteger();
+    private final Counter failureCounter;
+
+    public HitPartitionManager(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               PartitioningProperties properties,
+                               MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        Gauge.builder("stats.partitions.missing", missingPartitions, AtomicInteger::get)
+                .description("Months from the current one through premade-months whose partition could not be "
+                        + "created; their hits land in hit_default")
+                .register(meterRegistry);
+        this.failureCounter = Counter.builder("stats.partitions.failures")
+                .description("Partition maintenance steps that failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs once the schema is initialized and before the hit writer starts, so no hit of the current month
+     * lands in the default partition.
+     */
+    @PostConstruct
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${stats-server.partitioning.maintenance-cron:0 0 3 * * *}")
+    public void maintain() {
+        Set<String> partitions = new HashSet<>(jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class));
+        YearMonth current = YearMonth.now();
+        int missing = 0;
+        for (int i = 0; i <= properties.getPremadeMonths(); i++) {
+            if (!createPartition(current.plusMonths(i), partitions)) {
+                missing++;
+            }
+        }
+        missingPartitions.set(missing);
+        YearMonth oldestKept = YearMonth.from(LocalDate.now().minus(properties.getRetention()));
+        try {
+            removeExpiredPartitions(partitions, oldestKept);
+            removeExpiredDefaultRows(oldestKept.atDay(1).atStartOfDay());
+        } catch (RuntimeException e) {
+            failureCounter.increment();
+            log.error("Could not remove hits past the retention of {}: {}", properties.getRetention(),
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Makes sure {@code month} has a partition.
+     *
+     * @return whether it has one now
+     */
+    private boolean createPartition(YearMonth month, Set<String> partitions) {
+        String name = partitionName(month);
+        if (partitions.contains(name)) {
+            return true;
+        }
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        try {
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(SELECT_DEFAULT_ROWS_EXIST, Boolean.class, from, to))) {
+                attachWithDefaultRows(name, from, to);
+            } else {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF HIT " + bounds(from, to));
+            }
+            log.debug("Partition {} is in place", name);
+            return true;
+        } catch (RuntimeException e) {
+            failureCounter.increment();
+            log.error("Could not create partition {}, its hits go to hit_default: {}", name, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Creates partition {@code name} as a table holding the rows {@code hit_default} has of its range, then
+     * attaches it. The attach scans the new table to check its rows, but not {@code HIT} as a whole.
+     */
+    private void attachWithDefaultRows(String name, LocalDateTime from, LocalDateTime to) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE HIT INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int moved = jdbcTemplate.update(MOVE_DEFAULT_ROWS.formatted(name), from, to);
+            jdbcTemplate.execute("ALTER TABLE HIT ATTACH PARTITION " + name + " " + bounds(from, to));
+            log.info("Moved {} hits from hit_default into the new partition {}", moved, name);
+        });
+    }
+
+    /**
+     * Removes every monthly partition that ends on or before the first day of {@code oldestKept}.
+     */
+    private void removeExpiredPartitions(Set<String> partitions, YearMonth oldestKept) {
+        for (String name : partitions) {
+            YearMonth month = parseMonth(name);
+            if (month == null || !month.isBefore(oldestKept)) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER TABLE HIT DETACH PARTITION " + name);
+            if (properties.getRetentionAction() == RetentionAction.DROP) {
+                jdbcTemplate.execute("DROP TABLE " + name);
+            }
+            log.info("Partition {} is past the retention of {}: {}", name, properties.getRetention(),
+                    properties.getRetentionAction());
+        }
+    }
+
+    /**
+     * Removes the rows of {@code hit_default} created before {@code before} as its retention action says: deleted,
+     * or moved to a standalone table like detached partitions are.
+     */
+    private void removeExpiredDefaultRows(LocalDateTime before) {
+        Integer removed;
+        if (properties.getRetentionAction() == RetentionAction.DROP) {
+            removed = jdbcTemplate.update(DELETE_EXPIRED_DEFAULT_ROWS, before);
+        } else {
+            removed = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + EXPIRED_DEFAULT_TABLE
+                        + " (LIKE HIT INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+                return jdbcTemplate.update(MOVE_EXPIRED_DEFAULT_ROWS.formatted(EXPIRED_DEFAULT_TABLE), before);
+            });
+        }
+        if (removed != null && removed > 0) {
+            log.info("{} hits in hit_default are past the retention of {}: {}", removed, properties.getRetention(),
+                    properties.getRetentionAction());
+        }
+    }
+
+    private static String bounds(LocalDateTime from, LocalDateTime to) {
+        return "FOR VALUES FROM ('" + from.toLocalDate() + "') TO ('" + to.toLocalDate() + "')";
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+
+    private static YearMonth parseMonth(String partitionName) {
+        if (!partitionName.startsWith(PARTITION_PREFIX)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partitionName.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.partition;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Period;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "stats-server.partitioning")
+public class PartitioningProperties {
+    /**
+     * Whether {@code HIT} is a range-partitioned Postgres table whose monthly partitions are managed here.
+     */
+    private boolean enabled = false;
+    /**
+     * How many months ahead of the current one get a partition in advance.
+     */
+    private int premadeMonths = 3;
+    /**
+     * Raw hits older than this are removed by dropping or detaching whole partitions.
+     * Rollups, sketches and bitmaps are kept.
+     */
+    private Period retention = Period.ofMonths(13);
+    private RetentionAction retentionAction = RetentionAction.DROP;
+    /**
+     * When partitions are created and expired, in addition to startup.
+     */
+    private String maintenanceCron = "0 0 3 * * *";
+}
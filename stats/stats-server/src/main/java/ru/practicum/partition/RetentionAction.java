@@ -0,0 +1,15 @@
+package ru.practicum.partition;
+
+/**
+ * What happens to a {@code HIT} partition once it falls out of the retention period.
+ */
+public enum RetentionAction {
+    /**
+     * Drop the partition and its rows.
+     */
+    DROP,
+    /**
+     * Detach the partition, keeping it as a standalone table that can be archived and dropped by hand.
+     */
+    DETACH
+}
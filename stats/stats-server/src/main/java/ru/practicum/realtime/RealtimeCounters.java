@@ -0,0 +1,143 @@
+package ru.practicum.realtime;
+
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.model.AppUri;
+import ru.practicum.storage.HitCounts;
+import ru.practicum.storage.ResultWindow;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Real-time tier: hit counts per (app, uri) for every second of the last {@code retention}, in a ring of
+ * per-second buckets. Increments are lock-free: a bucket is a concurrent map of {@link LongAdder}s, and a
+ * slot moves on to a newer second by swapping in a fresh bucket with a CAS, so no increment for a second
+ * that is still retained can be lost.
+ * <p>
+ * Seconds before the process started counting are unknown, so a range is answered from memory only when it
+ * starts no earlier than both the retention and the first fully counted second.
+ */
+@Component
+public class RealtimeCounters {
+    private final boolean enabled;
+    private final long retentionSeconds;
+    private final long maxSkewSeconds;
+    private final long firstCountedSecond;
+    private final AtomicReferenceArray<Bucket> ring;
+
+    public RealtimeCounters(RealtimeProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.retentionSeconds = properties.getRetention().toSeconds();
+        this.maxSkewSeconds = properties.getMaxClockSkew().toSeconds();
+        this.firstCountedSecond = nowSecond() + 1;
+        // One spare slot on each side keeps the oldest retained and the newest accepted second apart.
+        this.ring = new AtomicReferenceArray<>((int) (retentionSeconds + maxSkewSeconds + 2));
+    }
+
+    /**
+     * Counts a hit if its timestamp is within the retained window; other hits are left to the storage engine.
+     */
+    public void record(String app, String uri, LocalDateTime created) {
+        if (!enabled) {
+            return;
+        }
+        long second = toSecond(created);
+        long now = nowSecond();
+        if (second < now - retentionSeconds || second > now + maxSkewSeconds) {
+            return;
+        }
+        Bucket bucket = bucket(second);
+        if (bucket != null) {
+            bucket.counts.computeIfAbsent(new AppUri(app, uri), key -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Whether {@code [start, end]}, both inclusive, can be answered from memory.
+     */
+    public boolean covers(LocalDateTime start, LocalDateTime end) {
+        if (!enabled) {
+            return false;
+        }
+        long now = nowSecond();
+        long from = toSecond(start);
+        return from >= firstCountedSecond && from >= now - retentionSeconds && toSecond(end) <= now + maxSkewSeconds;
+    }
+
+    /**
+     * Hit counts over {@code [start, end]}, both inclusive, at one-second resolution. Only valid when
+     * {@link #covers} holds for the range.
+     *
+     * @param uris uris to count, or {@code null} for all of them
+     */
+    public List<StatResponseDto> countHits(LocalDateTime start, LocalDateTime end, String[] uris, ResultWindow window) {
+        Set<String> uriFilter = uris == null ? null : new HashSet<>(Arrays.asList(uris));
+        Map<AppUri, Long> hits = new HashMap<>();
+        for (long second = toSecond(start), last = toSecond(end); second <= last; second++) {
+            Bucket bucket = ring.get(slot(second));
+            if (bucket == null || bucket.second != second) {
+                continue;
+            }
+            bucket.counts.forEach((appUri, count) -> {
+                if (uriFilter == null || uriFilter.contains(appUri.uri())) {
+                    hits.merge(appUri, count.sum(), Long::sum);
+                }
+            });
+        }
+        hits.values().removeIf(count -> count == 0);
+        return HitCounts.toSortedResponse(hits, window);
+    }
+
+    /**
+     * The bucket of {@code second}, or {@code null} if its slot already moved on to a newer second, which only
+     * happens if the clock stepped back.
+     */
+    private Bucket bucket(long second) {
+        int slot = slot(second);
+        while (true) {
+            Bucket current = ring.get(slot);
+            if (current != null && current.second == second) {
+                return current;
+            }
+            if (current != null && current.second > second) {
+                return null;
+            }
+            Bucket fresh = new Bucket(second);
+            if (ring.compareAndSet(slot, current, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private int slot(long second) {
+        return (int) Math.floorMod(second, (long) ring.length());
+    }
+
+    private static long nowSecond() {
+        return toSecond(LocalDateTime.now());
+    }
+
+    private static long toSecond(LocalDateTime time) {
+        return time.truncatedTo(ChronoUnit.SECONDS).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static final class Bucket {
+        private final long second;
+        private final Map<AppUri, LongAdder> counts = new ConcurrentHashMap<>();
+
+        private Bucket(long second) {
+            this.second = second;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ru.practicum.realtime;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "stats-server.realtime")
+public class RealtimeProperties {
+    /**
+     * Counts only the hits this instance receives, so it is off by default: with several instances behind a
+     * load balancer, answers from memory would miss the hits the others took. Turn it on only when one instance
+     * receives every hit, or when clients route every uri to the same instance.
+     */
+    private boolean enabled = false;
+    /**
+     * How far back non-unique {@code /stats} queries are answered from memory.
+     */
+    private Duration retention = Duration.ofHours(1);
+    /**
+     * How far ahead of the server clock a hit timestamp may be and still be counted in memory.
+     */
+    private Duration maxClockSkew = Duration.ofMinutes(1);
+}
@@ -0,0 +1,13 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Repository
+public class AppDictionaryRepository extends DictionaryRepository {
+    public AppDictionaryRepository(NamedParameterJdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager) {
+        super(jdbcTemplate, transactionManager, "APP_DICTIONARY", "APP");
+    }
+}
@@ -0,0 +1,176 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lookup table assigning stable int ids to strings. Ids never change once assigned, so both directions are
+ * cached for the lifetime of the process and known values never cost a round trip. Dictionaries of values
+ * without a natural bound, such as ips, cache only the most recently used ones.
+ * <p>
+ * New ids are committed in their own transaction: a batch that later rolls back must not leave ids in the
+ * cache that the table does not have.
+ */
+public abstract class DictionaryRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private final String column;
+    private final String mergeSql;
+    private final String selectIdsSql;
+    private final String selectValuesSql;
+    private final Map<String, Integer> ids;
+    private final Map<Integer, String> values;
+
+    protected DictionaryRepository(NamedParameterJdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   String table,
+                                   String column) {
+        this(jdbcTemplate, transactionManager, table, column, 0);
+    }
+
+    /**
+     * @param maxCachedValues values cached in each direction, least recently used first out; {@code 0} caches
+     *                        every value ever seen
+     */
+    protected DictionaryRepository(NamedParameterJdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   String table,
+                                   String column,
+                                   int maxCachedValues) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ids = newCache(maxCachedValues);
+        this.values = newCache(maxCachedValues);
+        this.column = column;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.mergeSql = """
+                MERGE INTO %1$s d
+                USING (SELECT CAST(:value AS varchar(128)) AS %2$s) s
+                ON d.%2$s = s.%2$s
+                WHEN NOT MATCHED THEN INSERT (%2$s) VALUES (s.%2$s)
+                """.formatted(table, column);
+        this.selectIdsSql = "SELECT ID, %2$s FROM %1$s WHERE %2$s IN (:values)".formatted(table, column);
+        this.selectValuesSql = "SELECT ID, %2$s FROM %1$s WHERE ID IN (:ids)".formatted(table, column);
+    }
+
+    /**
+     * Ids of {@code values}, assigning new ones to values seen for the first time. {@code null} values are
+     * skipped.
+     */
+    public Map<String, Integer> getOrCreateIds(Collection<String> values) {
+        Map<String, Integer> result = new HashMap<>();
+        List<String> missing = collectCached(values, result);
+        if (missing.isEmpty()) {
+            return result;
+        }
+        newTransaction.executeWithoutResult(status -> {
+            MapSqlParameterSource[] batch = missing.stream()
+                    .map(value -> new MapSqlParameterSource("value", value))
+                    .toArray(MapSqlParameterSource[]::new);
+            jdbcTemplate.batchUpdate(mergeSql, batch);
+        });
+        load(selectIdsSql, new MapSqlParameterSource("values", missing), result);
+        return result;
+    }
+
+    /**
+     * Ids of those {@code values} that have already been assigned one; values never stored are absent from the
+     * result.
+     */
+    public Map<String, Integer> findIds(Collection<String> values) {
+        Map<String, Integer> result = new HashMap<>();
+        List<String> missing = collectCached(values, result);
+        if (!missing.isEmpty()) {
+            load(selectIdsSql, new MapSqlParameterSource("values", missing), result);
+        }
+        return result;
+    }
+
+    /**
+     * Values of {@code ids}, keyed by id.
+     */
+    public Map<Integer, String> getValues(Collection<Integer> ids) {
+        Map<Integer, String> result = new HashMap<>();
+        List<Integer> missing = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .filter(id -> {
+                    String value = values.get(id);
+                    if (value != null) {
+                        result.put(id, value);
+                    }
+                    return value == null;
+                })
+                .toList();
+        if (!missing.isEmpty()) {
+            jdbcTemplate.query(selectValuesSql, new MapSqlParameterSource("ids", missing), rs -> {
+                int id = rs.getInt("ID");
+                String value = rs.getString(column);
+                cache(value, id);
+                result.put(id, value);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Runs {@code sql}, which selects {@code ID} and the value column, caching and returning what it finds.
+     */
+    protected Map<String, Integer> findIds(String sql, MapSqlParameterSource params) {
+        Map<String, Integer> result = new HashMap<>();
+        load(sql, params, result);
+        return result;
+    }
+
+    private List<String> collectCached(Collection<String> values, Map<String, Integer> result) {
+        return values.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .filter(value -> {
+                    Integer id = ids.get(value);
+                    if (id != null) {
+                        result.put(value, id);
+                    }
+                    return id == null;
+                })
+                .toList();
+    }
+
+    private void load(String sql, MapSqlParameterSource params, Map<String, Integer> result) {
+        jdbcTemplate.query(sql, params, rs -> {
+            int id = rs.getInt("ID");
+            String value = rs.getString(column);
+            cache(value, id);
+            result.put(value, id);
+        });
+    }
+
+    private void cache(String value, int id) {
+        ids.put(value, id);
+        values.put(id, value);
+    }
+
+    private static <K, V> Map<K, V> newCache(int maxSize) {
+        if (maxSize <= 0) {
+            return new ConcurrentHashMap<>();
+        }
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+}
@@ -0,0 +1,137 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.EntityRef;
+import ru.practicum.model.ServiceHit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * All-time hit counters per entity, kept for every hit whose uri names one (see {@link EntityRef}). Reading the
+ * counts of a page of entities is a primary key lookup of {@code (ENTITY_TYPE, ENTITY_ID)}, with no uri strings
+ * involved. Unique counts are exact: {@code ENTITY_HIT_IP} remembers which ips each entity has seen, and only a
+ * new ip moves {@code UNIQUE_HITS}. Counts are kept across all apps.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EntityHitRepository {
+    private static final Comparator<EntityRef> BY_ENTITY = Comparator.comparing(EntityRef::type)
+            .thenComparingLong(EntityRef::id);
+    /**
+     * Written as {@code INSERT ... SELECT} so that the driver does not rewrite the batch into multi-row inserts and
+     * reports, for every row, whether it was inserted.
+     */
+    private static final String INSERT_IP = """
+            INSERT INTO ENTITY_HIT_IP (ENTITY_TYPE, ENTITY_ID, IP_ID)
+            SELECT CAST(:type AS varchar(64)), CAST(:id AS bigint), CAST(:ipId AS integer)
+            ON CONFLICT DO NOTHING
+            """;
+    private static final String INSERT_COUNTER = """
+            INSERT INTO ENTITY_HIT_COUNTER (ENTITY_TYPE, ENTITY_ID, HITS, UNIQUE_HITS)
+            SELECT CAST(:type AS varchar(64)), CAST(:id AS bigint), 0, 0
+            ON CONFLICT DO NOTHING
+            """;
+    private static final String UPDATE_COUNTER = """
+            UPDATE ENTITY_HIT_COUNTER
+            SET HITS = HITS + :hits, UNIQUE_HITS = UNIQUE_HITS + :uniqueHits
+            WHERE ENTITY_TYPE = :type AND ENTITY_ID = :id
+            """;
+    private static final String SELECT_HITS = """
+            SELECT ENTITY_ID, HITS
+            FROM ENTITY_HIT_COUNTER
+            WHERE ENTITY_TYPE = :type AND ENTITY_ID IN (:ids)
+            """;
+    private static final String SELECT_UNIQUE_HITS = """
+            SELECT ENTITY_ID, UNIQUE_HITS AS HITS
+            FROM ENTITY_HIT_COUNTER
+            WHERE ENTITY_TYPE = :type AND ENTITY_ID IN (:ids)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final IpDictionaryRepository ipDictionaryRepository;
+
+    /**
+     * Counts the hits of a batch against the entities their uris name. Runs inside the batch's write transaction.
+     * An ip moves {@code UNIQUE_HITS} only if this batch is what inserted it into {@code ENTITY_HIT_IP}: when two
+     * instances insert the same ip or the same new counter at once, one of them skips it instead of failing its
+     * batch. Rows are written in key order, so two batches cannot lock each other's rows in opposite orders.
+     */
+    public void increment(List<ServiceHit> hits) {
+        Map<EntityRef, Long> hitCounts = new TreeMap<>(BY_ENTITY);
+        Map<EntityRef, Set<String>> ips = new TreeMap<>(BY_ENTITY);
+        for (ServiceHit hit : hits) {
+            EntityRef entity = EntityRef.fromUri(hit.getUri());
+            if (entity != null) {
+                hitCounts.merge(entity, 1L, Long::sum);
+                ips.computeIfAbsent(entity, key -> new HashSet<>()).add(hit.getIp());
+            }
+        }
+        if (hitCounts.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> ipIds = ipDictionaryRepository.getOrCreateIds(hits.stream()
+                .map(ServiceHit::getIp)
+                .toList());
+        List<EntityRef> ipEntities = new ArrayList<>();
+        List<MapSqlParameterSource> entityIps = new ArrayList<>();
+        ips.forEach((entity, entityIpValues) -> toIds(entityIpValues, ipIds).forEach(ipId -> {
+            ipEntities.add(entity);
+            entityIps.add(new MapSqlParameterSource()
+                    .addValue("type", entity.type())
+                    .addValue("id", entity.id())
+                    .addValue("ipId", ipId));
+        }));
+        int[] inserted = jdbcTemplate.batchUpdate(INSERT_IP, entityIps.toArray(MapSqlParameterSource[]::new));
+        Map<EntityRef, Long> newIps = new HashMap<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                newIps.merge(ipEntities.get(i), 1L, Long::sum);
+            }
+        }
+        MapSqlParameterSource[] counters = hitCounts.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("type", entry.getKey().type())
+                        .addValue("id", entry.getKey().id())
+                        .addValue("hits", entry.getValue())
+                        .addValue("uniqueHits", newIps.getOrDefault(entry.getKey(), 0L)))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT_COUNTER, counters);
+        jdbcTemplate.batchUpdate(UPDATE_COUNTER, counters);
+    }
+
+    /**
+     * Counts of the entities of {@code type} among {@code ids}; entities that were never hit are left out.
+     */
+    public Map<Long, Long> findHits(String type, Collection<Long> ids, boolean unique) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("type", type)
+                .addValue("ids", ids);
+        Map<Long, Long> hits = new HashMap<>();
+        jdbcTemplate.query(unique ? SELECT_UNIQUE_HITS : SELECT_HITS, params, rs -> {
+            hits.put(rs.getLong("ENTITY_ID"), rs.getLong("HITS"));
+        });
+        return hits;
+    }
+
+    /**
+     * Ids of {@code values} in ascending order; values without an id, such as a missing ip, are left out.
+     */
+    private static Set<Integer> toIds(Set<String> values, Map<String, Integer> ids) {
+        Set<Integer> result = new TreeSet<>();
+        values.forEach(value -> Optional.ofNullable(ids.get(value)).ifPresent(result::add));
+        return result;
+    }
+}
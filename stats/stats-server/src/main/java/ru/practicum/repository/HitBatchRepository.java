@@ -0,0 +1,45 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.ServiceHit;
+
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes hits with plain JDBC batches. App, uri and ip are stored as dictionary ids; ids of values seen
+ * before come from the dictionary caches, so a batch costs one round trip regardless of its size.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitBatchRepository {
+    private static final String INSERT_HIT = "INSERT INTO HIT (APP_ID, URI_ID, IP_ID, CREATED) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AppDictionaryRepository appDictionaryRepository;
+    private final UriDictionaryRepository uriDictionaryRepository;
+    private final IpDictionaryRepository ipDictionaryRepository;
+
+    @Transactional
+    public void saveAll(List<ServiceHit> hits) {
+        Map<String, Integer> appIds = appDictionaryRepository.getOrCreateIds(hits.stream()
+                .map(ServiceHit::getApp)
+                .toList());
+        Map<String, Integer> uriIds = uriDictionaryRepository.getOrCreateIds(hits.stream()
+                .map(ServiceHit::getUri)
+                .toList());
+        Map<String, Integer> ipIds = ipDictionaryRepository.getOrCreateIds(hits.stream()
+                .map(ServiceHit::getIp)
+                .toList());
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, hits.size(), (ps, hit) -> {
+            ps.setObject(1, appIds.get(hit.getApp()), Types.INTEGER);
+            ps.setObject(2, uriIds.get(hit.getUri()), Types.INTEGER);
+            ps.setObject(3, ipIds.get(hit.getIp()), Types.INTEGER);
+            ps.setObject(4, hit.getCreated());
+        });
+    }
+}
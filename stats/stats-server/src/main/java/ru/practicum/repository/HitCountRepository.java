@@ -0,0 +1,130 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.storage.ResultWindow;
+import ru.practicum.storage.RollupRangePlanner;
+import ru.practicum.storage.StorageProperties;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Non-unique hit counts over a planned range in one statement: the rollup buckets and the raw edges of the
+ * plan are combined with {@code UNION ALL} and summed, sorted, offset and limited by the database, so only the
+ * requested rows ever leave it. Parts are summed on dictionary ids; only the sums are joined to the dictionaries.
+ */
+@Repository
+public class HitCountRepository {
+    private static final String ROLLUP_PART = """
+            SELECT APP_ID, URI_ID, HITS
+            FROM HIT_ROLLUP
+            WHERE GRANULARITY = :granularity%1$d AND BUCKET >= :from%1$d AND BUCKET < :to%1$d%2$s
+            """;
+    private static final String RAW_PART = """
+            SELECT APP_ID, URI_ID, COUNT(IP_ID) AS HITS
+            FROM HIT
+            WHERE CREATED >= :from%1$d AND CREATED < :to%1$d%2$s
+            GROUP BY APP_ID, URI_ID
+            """;
+    private static final String URI_FILTER = " AND URI_ID IN (SELECT ID FROM URI_DICTIONARY WHERE URI IN (:uris))";
+    private static final String SUM_PARTS = """
+            SELECT a.APP, u.URI, s.HITS
+            FROM (SELECT APP_ID, URI_ID, SUM(HITS) AS HITS
+                  FROM (%s) p
+                  GROUP BY APP_ID, URI_ID) s
+                JOIN APP_DICTIONARY a ON a.ID = s.APP_ID
+                JOIN URI_DICTIONARY u ON u.ID = s.URI_ID
+            ORDER BY s.HITS DESC, a.APP, u.URI
+            """;
+    private static final String LIMIT = " LIMIT :limit";
+    private static final String OFFSET = " OFFSET :offset";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+
+    public HitCountRepository(NamedParameterJdbcTemplate jdbcTemplate,
+                              DataSource dataSource,
+                              StorageProperties storageProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(storageProperties.getJdbc().getStreamFetchSize());
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(streaming);
+    }
+
+    /**
+     * @param uris uris to count, or {@code null} for all of them
+     */
+    public List<StatResponseDto> countHits(List<RollupRangePlanner.Segment> plan, String[] uris, ResultWindow window) {
+        if (plan.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        return jdbcTemplate.query(buildQuery(plan, uris, window, params), params, (rs, rowNum) -> toDto(rs));
+    }
+
+    /**
+     * Same rows as {@link #countHits}, handed to {@code sink} as they are fetched. Runs in a read-only
+     * transaction so that the driver reads through a cursor, {@code stream-fetch-size} rows at a time.
+     */
+    @Transactional(readOnly = true)
+    public void streamHits(List<RollupRangePlanner.Segment> plan,
+                           String[] uris,
+                           ResultWindow window,
+                           Consumer<StatResponseDto> sink) {
+        if (plan.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        streamingJdbcTemplate.query(buildQuery(plan, uris, window, params), params, rs -> {
+            sink.accept(toDto(rs));
+        });
+    }
+
+    private String buildQuery(List<RollupRangePlanner.Segment> plan,
+                              String[] uris,
+                              ResultWindow window,
+                              MapSqlParameterSource params) {
+        if (uris != null) {
+            params.addValue("uris", Arrays.asList(uris));
+        }
+        StringBuilder parts = new StringBuilder();
+        for (int i = 0; i < plan.size(); i++) {
+            RollupRangePlanner.Segment segment = plan.get(i);
+            if (i > 0) {
+                parts.append("UNION ALL\n");
+            }
+            String uriFilter = uris == null ? "" : URI_FILTER;
+            if (segment.isRaw()) {
+                parts.append(RAW_PART.formatted(i, uriFilter));
+            } else {
+                parts.append(ROLLUP_PART.formatted(i, uriFilter));
+                params.addValue("granularity" + i, segment.granularity().name());
+            }
+            params.addValue("from" + i, segment.from());
+            params.addValue("to" + i, segment.to());
+        }
+        StringBuilder sql = new StringBuilder(SUM_PARTS.formatted(parts));
+        if (window.isLimited()) {
+            sql.append(LIMIT);
+            params.addValue("limit", window.limit());
+        }
+        if (window.offset() > 0) {
+            sql.append(OFFSET);
+            params.addValue("offset", window.offset());
+        }
+        return sql.toString();
+    }
+
+    private StatResponseDto toDto(ResultSet rs) throws SQLException {
+        return new StatResponseDto(rs.getString("APP"), rs.getString("URI"), rs.getLong("HITS"));
+    }
+}
@@ -0,0 +1,77 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.ServiceHit;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates between the strings of the API and the dictionary ids {@code HIT} and the tables derived from it are
+ * stored with. Queries filter and group on ids and decode only the rows they return.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitDictionaries {
+    private final AppDictionaryRepository appDictionaryRepository;
+    private final UriDictionaryRepository uriDictionaryRepository;
+    private final IpDictionaryRepository ipDictionaryRepository;
+
+    /**
+     * Ids of the requested uris that have ever been hit, or {@code null} when {@code uris} is {@code null}. An
+     * empty result means no hit can match.
+     */
+    public Collection<Integer> findUriIds(String[] uris) {
+        if (uris == null) {
+            return null;
+        }
+        return uriDictionaryRepository.findIds(Arrays.asList(uris)).values();
+    }
+
+    /**
+     * Ids of the app and uri of every hit, assigning new ones to values seen for the first time.
+     */
+    public Map<AppUri, EncodedAppUri> getOrCreateIds(List<ServiceHit> hits) {
+        Map<String, Integer> appIds = appDictionaryRepository.getOrCreateIds(hits.stream()
+                .map(ServiceHit::getApp)
+                .toList());
+        Map<String, Integer> uriIds = uriDictionaryRepository.getOrCreateIds(hits.stream()
+                .map(ServiceHit::getUri)
+                .toList());
+        Map<AppUri, EncodedAppUri> encoded = new HashMap<>();
+        for (ServiceHit hit : hits) {
+            encoded.computeIfAbsent(new AppUri(hit.getApp(), hit.getUri()),
+                    key -> new EncodedAppUri(appIds.get(key.app()), uriIds.get(key.uri())));
+        }
+        return encoded;
+    }
+
+    /**
+     * Re-keys {@code encoded} by app and uri, keeping its iteration order.
+     */
+    public <V> Map<AppUri, V> decode(Map<EncodedAppUri, V> encoded) {
+        Map<Integer, String> apps = appDictionaryRepository.getValues(encoded.keySet().stream()
+                .map(EncodedAppUri::appId)
+                .toList());
+        Map<Integer, String> uris = uriDictionaryRepository.getValues(encoded.keySet().stream()
+                .map(EncodedAppUri::uriId)
+                .toList());
+        Map<AppUri, V> decoded = new LinkedHashMap<>();
+        encoded.forEach((key, value) ->
+                decoded.put(new AppUri(apps.get(key.appId()), uris.get(key.uriId())), value));
+        return decoded;
+    }
+
+    public Map<Integer, String> decodeIps(List<Integer> ipIds) {
+        return ipDictionaryRepository.getValues(ipIds);
+    }
+
+    public record EncodedAppUri(int appId, int uriId) {
+    }
+}
@@ -0,0 +1,205 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.bitmap.IpSet;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.ServiceHit;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Exact distinct-ip index: the set of ips that hit each (app, uri) per day, stored as roaring bitmaps keyed by the
+ * dictionary ids of the app and uri. Unique counts over whole days are the cardinality of the OR of their bitmaps.
+ * <p>
+ * As with {@link HitSketchRepository}, a batch only inserts bitmaps of its own ips into
+ * {@code HIT_IP_BITMAP_DELTA}, and {@link #compact} periodically ORs them into {@code HIT_IP_BITMAP}, so the day
+ * bitmap of a hot uri is rewritten once per compaction rather than once per batch. Readers OR both tables.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitIpBitmapRepository {
+    public static final RollupGranularity[] BITMAP_GRANULARITIES = {RollupGranularity.DAY};
+
+    private static final String INSERT_DELTA = """
+            INSERT INTO HIT_IP_BITMAP_DELTA (BUCKET, APP_ID, URI_ID, IPV4, DICTIONARY_IDS)
+            VALUES (:day, :appId, :uriId, :ipv4, :dictionaryIds)
+            """;
+    private static final String SELECT_DELTAS = """
+            SELECT ID, BUCKET, APP_ID, URI_ID, IPV4, DICTIONARY_IDS
+            FROM HIT_IP_BITMAP_DELTA
+            ORDER BY ID
+            LIMIT :limit
+            """;
+    private static final String DELETE_DELTAS = "DELETE FROM HIT_IP_BITMAP_DELTA WHERE ID IN (:ids)";
+    private static final String SELECT_FOR_UPDATE = """
+            SELECT APP_ID, URI_ID, BUCKET, IPV4, DICTIONARY_IDS
+            FROM HIT_IP_BITMAP
+            WHERE BUCKET IN (:days) AND URI_ID IN (:uriIds)
+            FOR UPDATE
+            """;
+    private static final String MERGE_BITMAP = """
+            MERGE INTO HIT_IP_BITMAP t
+            USING (SELECT CAST(:appId AS integer) AS APP_ID, CAST(:uriId AS integer) AS URI_ID,
+                          CAST(:day AS timestamp) AS BUCKET, CAST(:ipv4 AS bytea) AS IPV4,
+                          CAST(:dictionaryIds AS bytea) AS DICTIONARY_IDS) s
+            ON t.APP_ID = s.APP_ID AND t.URI_ID = s.URI_ID AND t.BUCKET = s.BUCKET
+            WHEN MATCHED THEN UPDATE SET IPV4 = s.IPV4, DICTIONARY_IDS = s.DICTIONARY_IDS
+            WHEN NOT MATCHED THEN INSERT (APP_ID, URI_ID, BUCKET, IPV4, DICTIONARY_IDS)
+                VALUES (s.APP_ID, s.URI_ID, s.BUCKET, s.IPV4, s.DICTIONARY_IDS)
+            """;
+    private static final String SELECT_BITMAPS = """
+            SELECT APP_ID, URI_ID, IPV4, DICTIONARY_IDS
+            FROM %s
+            WHERE BUCKET >= :from AND BUCKET < :to%s
+            """;
+    private static final String URI_FILTER = " AND URI_ID IN (:uriIds)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final IpDictionaryRepository ipDictionaryRepository;
+    private final StatRepository statRepository;
+    private final HitDictionaries hitDictionaries;
+
+    /**
+     * Records the ips of a batch as deltas of the bitmaps of their days.
+     */
+    public void merge(List<ServiceHit> hits) {
+        Map<String, Integer> dictionaryIds = ipDictionaryRepository.getOrCreateIds(hits.stream()
+                .map(ServiceHit::getIp)
+                .filter(ip -> IpSet.parseIpv4(ip) == null)
+                .toList());
+        Map<AppUri, HitDictionaries.EncodedAppUri> ids = hitDictionaries.getOrCreateIds(hits);
+        Map<DayKey, IpSet> bitmaps = new HashMap<>();
+        for (ServiceHit hit : hits) {
+            DayKey dayKey = new DayKey(ids.get(new AppUri(hit.getApp(), hit.getUri())),
+                    RollupGranularity.DAY.floor(hit.getCreated()));
+            add(bitmaps.computeIfAbsent(dayKey, key -> new IpSet()),
+                    hit.getIp(), dictionaryIds.get(hit.getIp()));
+        }
+        jdbcTemplate.batchUpdate(INSERT_DELTA, toParams(bitmaps));
+    }
+
+    /**
+     * ORs up to {@code limit} of the oldest deltas into their day bitmaps and deletes them, locking existing
+     * bitmaps while they are merged. Must run in a transaction.
+     *
+     * @return number of deltas compacted; fewer than {@code limit} when none are left
+     */
+    public int compact(int limit) {
+        Map<DayKey, IpSet> bitmaps = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        jdbcTemplate.query(SELECT_DELTAS, new MapSqlParameterSource("limit", limit), rs -> {
+            ids.add(rs.getLong("ID"));
+            bitmaps.merge(new DayKey(encodedAppUri(rs), rs.getTimestamp("BUCKET").toLocalDateTime()),
+                    IpSet.fromBytes(rs.getBytes("IPV4"), rs.getBytes("DICTIONARY_IDS")), HitIpBitmapRepository::union);
+        });
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Set<LocalDateTime> days = new HashSet<>();
+        Set<Integer> uriIds = new HashSet<>();
+        bitmaps.keySet().forEach(key -> {
+            days.add(key.day());
+            uriIds.add(key.appUri().uriId());
+        });
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("days", days)
+                .addValue("uriIds", uriIds);
+        jdbcTemplate.query(SELECT_FOR_UPDATE, params, rs -> {
+            DayKey key = new DayKey(encodedAppUri(rs), rs.getTimestamp("BUCKET").toLocalDateTime());
+            IpSet bitmap = bitmaps.get(key);
+            if (bitmap != null) {
+                bitmap.or(IpSet.fromBytes(rs.getBytes("IPV4"), rs.getBytes("DICTIONARY_IDS")));
+            }
+        });
+        jdbcTemplate.batchUpdate(MERGE_BITMAP, toParams(bitmaps));
+        jdbcTemplate.update(DELETE_DELTAS, new MapSqlParameterSource("ids", ids));
+        return ids.size();
+    }
+
+    /**
+     * ORs the bitmaps of the days starting in {@code [from, to)}, compacted or not, into {@code target}.
+     *
+     * @param uris uris to include, or {@code null} for all of them
+     */
+    public void mergeDays(LocalDateTime from, LocalDateTime to, String[] uris, Map<AppUri, IpSet> target) {
+        Collection<Integer> uriIds = hitDictionaries.findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return;
+        }
+        Map<HitDictionaries.EncodedAppUri, IpSet> bitmaps = new LinkedHashMap<>();
+        jdbcTemplate.query(selectBitmaps(uriIds), rangeParams(from, to, uriIds), rs -> {
+            bitmaps.merge(encodedAppUri(rs), IpSet.fromBytes(rs.getBytes("IPV4"), rs.getBytes("DICTIONARY_IDS")),
+                    HitIpBitmapRepository::union);
+        });
+        hitDictionaries.decode(bitmaps).forEach((appUri, bitmap) ->
+                target.merge(appUri, bitmap, HitIpBitmapRepository::union));
+    }
+
+    /**
+     * Adds the distinct raw ips hit in {@code [from, to)} to the bitmaps in {@code target}. The ips come with the
+     * dictionary ids {@code HIT} keeps them by, so reading never assigns new ids.
+     *
+     * @param uris uris to include, or {@code null} for all of them
+     */
+    public void mergeRawHits(LocalDateTime from, LocalDateTime to, String[] uris, Map<AppUri, IpSet> target) {
+        statRepository.getDistinctIps(from, to, uris).forEach((appUri, ips) -> {
+            IpSet bitmap = target.computeIfAbsent(appUri, key -> new IpSet());
+            ips.forEach((ipId, ip) -> add(bitmap, ip, ipId));
+        });
+    }
+
+    private void add(IpSet bitmap, String ip, Integer dictionaryId) {
+        Integer ipv4 = IpSet.parseIpv4(ip);
+        if (ipv4 != null) {
+            bitmap.addIpv4(ipv4);
+        } else {
+            bitmap.addDictionaryId(dictionaryId);
+        }
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+        }
+        return params;
+    }
+
+    private String selectBitmaps(Collection<Integer> uriIds) {
+        String uriFilter = uriIds == null ? "" : URI_FILTER;
+        return SELECT_BITMAPS.formatted("HIT_IP_BITMAP", uriFilter) + "UNION ALL\n"
+                + SELECT_BITMAPS.formatted("HIT_IP_BITMAP_DELTA", uriFilter);
+    }
+
+    private static MapSqlParameterSource[] toParams(Map<DayKey, IpSet> bitmaps) {
+        return bitmaps.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("appId", entry.getKey().appUri().appId())
+                        .addValue("uriId", entry.getKey().appUri().uriId())
+                        .addValue("day", entry.getKey().day())
+                        .addValue("ipv4", entry.getValue().ipv4Bytes())
+                        .addValue("dictionaryIds", entry.getValue().dictionaryIdBytes()))
+                .toArray(MapSqlParameterSource[]::new);
+    }
+
+    private static HitDictionaries.EncodedAppUri encodedAppUri(ResultSet rs) throws SQLException {
+        return new HitDictionaries.EncodedAppUri(rs.getInt("APP_ID"), rs.getInt("URI_ID"));
+    }
+
+    private static IpSet union(IpSet left, IpSet right) {
+        left.or(right);
+        return left;
+    }
+
+    private record DayKey(HitDictionaries.EncodedAppUri appUri, LocalDateTime day) {
+    }
+}
@@ -10,4 +10,13 @@ public interface HitListElementRepository {
                                                 LocalDateTime end,
                                                 String[] uris,
                                                 boolean unique);
+
+    /**
+     * Same as {@link #getHitListElementDtos} but over the half-open range {@code [from, to)}, so adjacent
+     * ranges never count a hit twice.
+     */
+    List<StatResponseDto> getHitListElementDtosInRange(LocalDateTime from,
+                                                       LocalDateTime to,
+                                                       String[] uris,
+                                                       boolean unique);
 }
@@ -0,0 +1,60 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.ServiceHit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-bucket hit counters kept next to the raw {@code HIT} table. Every written batch increments the
+ * minute, hour and day bucket of each of its hits, so a range aligned to buckets can be counted
+ * without touching raw rows. Buckets are keyed by the dictionary ids of their app and uri, as {@code HIT} is.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitRollupRepository {
+    private static final String MERGE_ROLLUP = """
+            MERGE INTO HIT_ROLLUP r
+            USING (SELECT CAST(? AS varchar(8)) AS GRANULARITY, CAST(? AS integer) AS APP_ID,
+                          CAST(? AS integer) AS URI_ID, CAST(? AS timestamp) AS BUCKET,
+                          CAST(? AS bigint) AS HITS) s
+            ON r.GRANULARITY = s.GRANULARITY AND r.APP_ID = s.APP_ID AND r.URI_ID = s.URI_ID
+                AND r.BUCKET = s.BUCKET
+            WHEN MATCHED THEN UPDATE SET HITS = r.HITS + s.HITS
+            WHEN NOT MATCHED THEN INSERT (GRANULARITY, APP_ID, URI_ID, BUCKET, HITS)
+                VALUES (s.GRANULARITY, s.APP_ID, s.URI_ID, s.BUCKET, s.HITS)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HitDictionaries hitDictionaries;
+
+    public void increment(List<ServiceHit> hits) {
+        Map<AppUri, HitDictionaries.EncodedAppUri> ids = hitDictionaries.getOrCreateIds(hits);
+        Map<BucketKey, Long> increments = new HashMap<>();
+        for (ServiceHit hit : hits) {
+            HitDictionaries.EncodedAppUri appUri = ids.get(new AppUri(hit.getApp(), hit.getUri()));
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                BucketKey key = new BucketKey(granularity, appUri, granularity.floor(hit.getCreated()));
+                increments.merge(key, 1L, Long::sum);
+            }
+        }
+        List<Object[]> args = new ArrayList<>(increments.size());
+        increments.forEach((key, count) -> args.add(new Object[]{
+                key.granularity().name(), key.appUri().appId(), key.appUri().uriId(), key.bucket(), count
+        }));
+        jdbcTemplate.batchUpdate(MERGE_ROLLUP, args);
+    }
+
+    private record BucketKey(RollupGranularity granularity,
+                             HitDictionaries.EncodedAppUri appUri,
+                             LocalDateTime bucket) {
+    }
+}
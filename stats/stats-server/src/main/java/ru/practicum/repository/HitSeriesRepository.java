@@ -0,0 +1,229 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.bitmap.IpSet;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.storage.RollupRangePlanner;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Hits per bucket for time series. Every method reads all buckets of its part of the range in one statement and
+ * adds them to a series map keyed by app and uri, then by bucket start: whole buckets come from the per-bucket
+ * rollups, sketches and bitmaps, and raw hits are grouped into buckets by the database. All of them are keyed by
+ * dictionary ids, which are decoded once per statement.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitSeriesRepository {
+    private static final String SELECT_ROLLUPS = """
+            SELECT APP_ID, URI_ID, BUCKET, HITS
+            FROM HIT_ROLLUP
+            WHERE GRANULARITY = :granularity AND BUCKET >= :from AND BUCKET < :to
+            """;
+    private static final String SELECT_SKETCHES = """
+            SELECT APP_ID, URI_ID, BUCKET, SKETCH
+            FROM %s
+            WHERE GRANULARITY = :granularity AND BUCKET >= :from AND BUCKET < :to%s
+            """;
+    private static final String SELECT_BITMAPS = """
+            SELECT APP_ID, URI_ID, BUCKET, IPV4, DICTIONARY_IDS
+            FROM %s
+            WHERE BUCKET >= :from AND BUCKET < :to%s
+            """;
+    private static final String COUNT_RAW = """
+            SELECT APP_ID, URI_ID, DATE_TRUNC('%1$s', CREATED) AS BUCKET, %2$s AS HITS
+            FROM HIT
+            WHERE (%3$s)%4$s
+            GROUP BY APP_ID, URI_ID, DATE_TRUNC('%1$s', CREATED)
+            """;
+    private static final String RAW_RANGE = "CREATED >= :from%1$d AND CREATED < :to%1$d";
+    private static final String URI_FILTER = " AND URI_ID IN (:uriIds)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final HitDictionaries hitDictionaries;
+
+    /**
+     * Adds the hit rollups of one granularity whose bucket starts in {@code [from, to)} to {@code target}.
+     *
+     * @param uris uris to include, or {@code null} for all of them
+     */
+    public void addRollups(RollupGranularity granularity,
+                           LocalDateTime from,
+                           LocalDateTime to,
+                           String[] uris,
+                           Map<AppUri, NavigableMap<LocalDateTime, Long>> target) {
+        Collection<Integer> uriIds = hitDictionaries.findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = rangeParams(from, to, uriIds).addValue("granularity", granularity.name());
+        Map<HitDictionaries.EncodedAppUri, NavigableMap<LocalDateTime, Long>> encoded = new LinkedHashMap<>();
+        jdbcTemplate.query(withUriFilter(SELECT_ROLLUPS, uriIds), params, rs -> {
+            encoded.computeIfAbsent(encodedAppUri(rs), key -> new TreeMap<>())
+                    .merge(bucket(rs), rs.getLong("HITS"), Long::sum);
+        });
+        addDecoded(encoded, target);
+    }
+
+    /**
+     * Adds the estimates of the ip sketches of one granularity whose bucket starts in {@code [from, to)} to
+     * {@code target}, merging the compacted sketch of every bucket with its pending deltas first.
+     *
+     * @param uris uris to include, or {@code null} for all of them
+     */
+    public void addSketchEstimates(RollupGranularity granularity,
+                                   LocalDateTime from,
+                                   LocalDateTime to,
+                                   String[] uris,
+                                   Map<AppUri, NavigableMap<LocalDateTime, Long>> target) {
+        Collection<Integer> uriIds = hitDictionaries.findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = rangeParams(from, to, uriIds).addValue("granularity", granularity.name());
+        Map<HitDictionaries.EncodedAppUri, Map<LocalDateTime, HyperLogLog>> sketches = new LinkedHashMap<>();
+        jdbcTemplate.query(withDeltas(SELECT_SKETCHES, "HIT_SKETCH", uriIds), params, rs -> {
+            sketches.computeIfAbsent(encodedAppUri(rs), key -> new HashMap<>()).merge(bucket(rs),
+                    HyperLogLog.fromBytes(rs.getBytes("SKETCH")), (left, right) -> {
+                        left.merge(right);
+                        return left;
+                    });
+        });
+        Map<HitDictionaries.EncodedAppUri, NavigableMap<LocalDateTime, Long>> encoded = new LinkedHashMap<>();
+        sketches.forEach((appUri, buckets) -> buckets.forEach((bucket, sketch) ->
+                encoded.computeIfAbsent(appUri, key -> new TreeMap<>()).put(bucket, sketch.estimate())));
+        addDecoded(encoded, target);
+    }
+
+    /**
+     * Adds the cardinalities of the day ip bitmaps whose day starts in {@code [from, to)} to {@code target},
+     * ORing the compacted bitmap of every day with its pending deltas first.
+     *
+     * @param uris uris to include, or {@code null} for all of them
+     */
+    public void addBitmapCardinalities(LocalDateTime from,
+                                       LocalDateTime to,
+                                       String[] uris,
+                                       Map<AppUri, NavigableMap<LocalDateTime, Long>> target) {
+        Collection<Integer> uriIds = hitDictionaries.findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return;
+        }
+        Map<HitDictionaries.EncodedAppUri, Map<LocalDateTime, IpSet>> bitmaps = new LinkedHashMap<>();
+        String sql = withDeltas(SELECT_BITMAPS, "HIT_IP_BITMAP", uriIds);
+        jdbcTemplate.query(sql, rangeParams(from, to, uriIds), rs -> {
+            bitmaps.computeIfAbsent(encodedAppUri(rs), key -> new HashMap<>()).merge(bucket(rs),
+                    IpSet.fromBytes(rs.getBytes("IPV4"), rs.getBytes("DICTIONARY_IDS")), (left, right) -> {
+                        left.or(right);
+                        return left;
+                    });
+        });
+        Map<HitDictionaries.EncodedAppUri, NavigableMap<LocalDateTime, Long>> encoded = new LinkedHashMap<>();
+        bitmaps.forEach((appUri, buckets) -> buckets.forEach((bucket, bitmap) ->
+                encoded.computeIfAbsent(appUri, key -> new TreeMap<>()).put(bucket, bitmap.cardinality())));
+        addDecoded(encoded, target);
+    }
+
+    /**
+     * Counts the raw hits of all {@code segments} per bucket of {@code granularity} in one statement and adds the
+     * counts to {@code target}; the names of {@link RollupGranularity} double as {@code DATE_TRUNC} fields. With
+     * {@code unique} set, no bucket may be split between two segments, as their distinct counts would be added.
+     *
+     * @param uris uris to include, or {@code null} for all of them
+     */
+    public void addRawHits(RollupGranularity granularity,
+                           List<RollupRangePlanner.Segment> segments,
+                           String[] uris,
+                           boolean unique,
+                           Map<AppUri, NavigableMap<LocalDateTime, Long>> target) {
+        if (segments.isEmpty()) {
+            return;
+        }
+        Collection<Integer> uriIds = hitDictionaries.findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        for (int i = 0; i < segments.size(); i++) {
+            params.addValue("from" + i, segments.get(i).from());
+            params.addValue("to" + i, segments.get(i).to());
+        }
+        String ranges = IntStream.range(0, segments.size())
+                .mapToObj(RAW_RANGE::formatted)
+                .collect(Collectors.joining(" OR "));
+        String uriFilter = "";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+            uriFilter = URI_FILTER;
+        }
+        String sql = COUNT_RAW.formatted(granularity.name().toLowerCase(Locale.ROOT),
+                unique ? "COUNT(DISTINCT IP_ID)" : "COUNT(IP_ID)", ranges, uriFilter);
+        Map<HitDictionaries.EncodedAppUri, NavigableMap<LocalDateTime, Long>> encoded = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, params, rs -> {
+            encoded.computeIfAbsent(encodedAppUri(rs), key -> new TreeMap<>())
+                    .merge(bucket(rs), rs.getLong("HITS"), Long::sum);
+        });
+        addDecoded(encoded, target);
+    }
+
+    private void addDecoded(Map<HitDictionaries.EncodedAppUri, NavigableMap<LocalDateTime, Long>> encoded,
+                            Map<AppUri, NavigableMap<LocalDateTime, Long>> target) {
+        hitDictionaries.decode(encoded).forEach((appUri, buckets) ->
+                buckets.forEach((bucket, hits) -> add(target, appUri, bucket, hits)));
+    }
+
+    private static void add(Map<AppUri, NavigableMap<LocalDateTime, Long>> target,
+                            AppUri appUri,
+                            LocalDateTime bucket,
+                            long hits) {
+        target.computeIfAbsent(appUri, key -> new TreeMap<>()).merge(bucket, hits, Long::sum);
+    }
+
+    private static HitDictionaries.EncodedAppUri encodedAppUri(ResultSet rs) throws SQLException {
+        return new HitDictionaries.EncodedAppUri(rs.getInt("APP_ID"), rs.getInt("URI_ID"));
+    }
+
+    private static LocalDateTime bucket(ResultSet rs) throws SQLException {
+        return rs.getTimestamp("BUCKET").toLocalDateTime();
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+        }
+        return params;
+    }
+
+    private String withUriFilter(String sql, Collection<Integer> uriIds) {
+        return uriIds == null ? sql : sql + URI_FILTER;
+    }
+
+    /**
+     * {@code sql}, with a table and a uri filter placeholder, run over {@code table} and its delta table.
+     */
+    private String withDeltas(String sql, String table, Collection<Integer> uriIds) {
+        String uriFilter = uriIds == null ? "" : URI_FILTER;
+        return sql.formatted(table, uriFilter) + "UNION ALL\n" + sql.formatted(table + "_DELTA", uriFilter);
+    }
+}
@@ -0,0 +1,217 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.sketch.SketchProperties;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * HyperLogLog sketches of the ips seen per (app, uri) in every hour and day bucket. Minute buckets are not
+ * sketched: a sketch is up to a few kilobytes, and ranges shorter than an hour are cheap to read from
+ * {@code HIT} directly. Sketches are keyed by the dictionary ids of their app and uri and decoded after merging.
+ * <p>
+ * Writes do not rewrite the sketch of a bucket, which for a hot uri would mean kilobytes per batch. Each batch
+ * inserts sketches of just its own ips into {@code HIT_SKETCH_DELTA}, in the batch's transaction, and
+ * {@link #compact} periodically merges the deltas into {@code HIT_SKETCH}. Readers merge both tables; sketch
+ * merges are idempotent, so a delta compacted twice by two servers does no harm.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitSketchRepository {
+    public static final RollupGranularity[] SKETCH_GRANULARITIES = {RollupGranularity.DAY, RollupGranularity.HOUR};
+
+    private static final String INSERT_DELTA = """
+            INSERT INTO HIT_SKETCH_DELTA (GRANULARITY, BUCKET, APP_ID, URI_ID, SKETCH)
+            VALUES (:granularity, :bucket, :appId, :uriId, :sketch)
+            """;
+    private static final String SELECT_DELTAS = """
+            SELECT ID, GRANULARITY, BUCKET, APP_ID, URI_ID, SKETCH
+            FROM HIT_SKETCH_DELTA
+            ORDER BY ID
+            LIMIT :limit
+            """;
+    private static final String DELETE_DELTAS = "DELETE FROM HIT_SKETCH_DELTA WHERE ID IN (:ids)";
+    private static final String SELECT_FOR_UPDATE = """
+            SELECT APP_ID, URI_ID, BUCKET, SKETCH
+            FROM HIT_SKETCH
+            WHERE GRANULARITY = :granularity AND BUCKET IN (:buckets) AND URI_ID IN (:uriIds)
+            FOR UPDATE
+            """;
+    private static final String MERGE_SKETCH = """
+            MERGE INTO HIT_SKETCH t
+            USING (SELECT CAST(:granularity AS varchar(8)) AS GRANULARITY, CAST(:appId AS integer) AS APP_ID,
+                          CAST(:uriId AS integer) AS URI_ID, CAST(:bucket AS timestamp) AS BUCKET,
+                          CAST(:sketch AS bytea) AS SKETCH) s
+            ON t.GRANULARITY = s.GRANULARITY AND t.APP_ID = s.APP_ID AND t.URI_ID = s.URI_ID
+                AND t.BUCKET = s.BUCKET
+            WHEN MATCHED THEN UPDATE SET SKETCH = s.SKETCH
+            WHEN NOT MATCHED THEN INSERT (GRANULARITY, APP_ID, URI_ID, BUCKET, SKETCH)
+                VALUES (s.GRANULARITY, s.APP_ID, s.URI_ID, s.BUCKET, s.SKETCH)
+            """;
+    private static final String SELECT_SKETCHES = """
+            SELECT APP_ID, URI_ID, SKETCH
+            FROM %s
+            WHERE GRANULARITY = :granularity AND BUCKET >= :from AND BUCKET < :to%s
+            """;
+    private static final String URI_FILTER = " AND URI_ID IN (:uriIds)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SketchProperties sketchProperties;
+    private final StatRepository statRepository;
+    private final HitDictionaries hitDictionaries;
+
+    /**
+     * Records the ips of a batch as deltas of the sketches of their buckets.
+     */
+    public void merge(List<ServiceHit> hits) {
+        int precision = sketchProperties.getPrecision();
+        Map<AppUri, HitDictionaries.EncodedAppUri> ids = hitDictionaries.getOrCreateIds(hits);
+        Map<SketchKey, HyperLogLog> sketches = new HashMap<>();
+        for (RollupGranularity granularity : SKETCH_GRANULARITIES) {
+            for (ServiceHit hit : hits) {
+                sketches.computeIfAbsent(new SketchKey(granularity, ids.get(new AppUri(hit.getApp(), hit.getUri())),
+                        granularity.floor(hit.getCreated())), key -> new HyperLogLog(precision)).offer(hit.getIp());
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_DELTA, toParams(sketches));
+    }
+
+    /**
+     * Merges up to {@code limit} of the oldest deltas into their sketches and deletes them. Existing sketches are
+     * locked while they are merged, so concurrent compactions cannot lose each other's registers. Must run in a
+     * transaction.
+     *
+     * @return number of deltas compacted; fewer than {@code limit} when none are left
+     */
+    public int compact(int limit) {
+        Map<SketchKey, HyperLogLog> sketches = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        jdbcTemplate.query(SELECT_DELTAS, new MapSqlParameterSource("limit", limit), rs -> {
+            ids.add(rs.getLong("ID"));
+            sketches.merge(new SketchKey(RollupGranularity.valueOf(rs.getString("GRANULARITY")),
+                            encodedAppUri(rs), rs.getTimestamp("BUCKET").toLocalDateTime()),
+                    HyperLogLog.fromBytes(rs.getBytes("SKETCH")), HitSketchRepository::union);
+        });
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        for (RollupGranularity granularity : SKETCH_GRANULARITIES) {
+            Set<LocalDateTime> buckets = new HashSet<>();
+            Set<Integer> uriIds = new HashSet<>();
+            sketches.keySet().stream()
+                    .filter(key -> key.granularity() == granularity)
+                    .forEach(key -> {
+                        buckets.add(key.bucket());
+                        uriIds.add(key.appUri().uriId());
+                    });
+            if (buckets.isEmpty()) {
+                continue;
+            }
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("granularity", granularity.name())
+                    .addValue("buckets", buckets)
+                    .addValue("uriIds", uriIds);
+            jdbcTemplate.query(SELECT_FOR_UPDATE, params, rs -> {
+                HyperLogLog sketch = sketches.get(new SketchKey(granularity, encodedAppUri(rs),
+                        rs.getTimestamp("BUCKET").toLocalDateTime()));
+                if (sketch != null) {
+                    sketch.merge(HyperLogLog.fromBytes(rs.getBytes("SKETCH")));
+                }
+            });
+        }
+        jdbcTemplate.batchUpdate(MERGE_SKETCH, toParams(sketches));
+        jdbcTemplate.update(DELETE_DELTAS, new MapSqlParameterSource("ids", ids));
+        return ids.size();
+    }
+
+    /**
+     * Merges the sketches of one granularity whose bucket starts in {@code [from, to)}, compacted or not, into
+     * {@code target}.
+     *
+     * @param uris uris to include, or {@code null} for all of them
+     */
+    public void mergeBuckets(RollupGranularity granularity,
+                             LocalDateTime from,
+                             LocalDateTime to,
+                             String[] uris,
+                             Map<AppUri, HyperLogLog> target) {
+        Collection<Integer> uriIds = hitDictionaries.findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = rangeParams(from, to, uriIds).addValue("granularity", granularity.name());
+        Map<HitDictionaries.EncodedAppUri, HyperLogLog> sketches = new LinkedHashMap<>();
+        jdbcTemplate.query(selectSketches(uriIds), params, rs -> {
+            sketches.merge(encodedAppUri(rs), HyperLogLog.fromBytes(rs.getBytes("SKETCH")), HitSketchRepository::union);
+        });
+        hitDictionaries.decode(sketches).forEach((appUri, sketch) ->
+                target.merge(appUri, sketch, HitSketchRepository::union));
+    }
+
+    /**
+     * Offers the distinct raw ips hit in {@code [from, to)} to the sketches in {@code target}.
+     *
+     * @param uris uris to include, or {@code null} for all of them
+     */
+    public void mergeRawHits(LocalDateTime from,
+                             LocalDateTime to,
+                             String[] uris,
+                             Map<AppUri, HyperLogLog> target) {
+        int precision = sketchProperties.getPrecision();
+        statRepository.getDistinctIps(from, to, uris).forEach((appUri, ips) -> {
+            HyperLogLog sketch = target.computeIfAbsent(appUri, key -> new HyperLogLog(precision));
+            ips.values().forEach(sketch::offer);
+        });
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+        }
+        return params;
+    }
+
+    private String selectSketches(Collection<Integer> uriIds) {
+        String uriFilter = uriIds == null ? "" : URI_FILTER;
+        return SELECT_SKETCHES.formatted("HIT_SKETCH", uriFilter) + "UNION ALL\n"
+                + SELECT_SKETCHES.formatted("HIT_SKETCH_DELTA", uriFilter);
+    }
+
+    private static MapSqlParameterSource[] toParams(Map<SketchKey, HyperLogLog> sketches) {
+        return sketches.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("granularity", entry.getKey().granularity().name())
+                        .addValue("appId", entry.getKey().appUri().appId())
+                        .addValue("uriId", entry.getKey().appUri().uriId())
+                        .addValue("bucket", entry.getKey().bucket())
+                        .addValue("sketch", entry.getValue().toBytes()))
+                .toArray(MapSqlParameterSource[]::new);
+    }
+
+    private static HitDictionaries.EncodedAppUri encodedAppUri(ResultSet rs) throws SQLException {
+        return new HitDictionaries.EncodedAppUri(rs.getInt("APP_ID"), rs.getInt("URI_ID"));
+    }
+
+    private static HyperLogLog union(HyperLogLog left, HyperLogLog right) {
+        left.merge(right);
+        return left;
+    }
+
+    private record SketchKey(RollupGranularity granularity,
+                             HitDictionaries.EncodedAppUri appUri,
+                             LocalDateTime bucket) {
+    }
+}
@@ -0,0 +1,19 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.storage.StorageProperties;
+
+/**
+ * Ids of client ips. Unlike apps and uris, there is no bound on how many distinct ips show up, so only the
+ * {@code stats-server.storage.jdbc.ip-cache-size} most recently used are cached.
+ */
+@Repository
+public class IpDictionaryRepository extends DictionaryRepository {
+    public IpDictionaryRepository(NamedParameterJdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  StorageProperties storageProperties) {
+        super(jdbcTemplate, transactionManager, "IP_DICTIONARY", "IP", storageProperties.getJdbc().getIpCacheSize());
+    }
+}
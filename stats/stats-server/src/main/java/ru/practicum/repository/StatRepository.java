@@ -1,8 +1,122 @@
 package ru.practicum.repository;
 
-import org.springframework.data.jpa.repository.JpaRepository;
-import ru.practicum.model.ServiceHit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.model.AppUri;
 
-public interface StatRepository extends JpaRepository<ServiceHit, Long>, HitListElementRepository {
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+/**
+ * Aggregates raw {@code HIT} rows. Grouping and counting run on the dictionary ids; only the resulting
+ * (app, uri) pairs are decoded.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StatRepository implements HitListElementRepository {
+    private static final String COUNT_HITS = """
+            SELECT APP_ID, URI_ID, %s AS HITS
+            FROM HIT
+            WHERE %s
+            """;
+    private static final String SELECT_DISTINCT_IPS = """
+            SELECT DISTINCT APP_ID, URI_ID, IP_ID
+            FROM HIT
+            WHERE CREATED >= :from AND CREATED < :to AND IP_ID IS NOT NULL
+            """;
+    private static final String URI_FILTER = " AND URI_ID IN (:uriIds)";
+    private static final String GROUP_BY = " GROUP BY APP_ID, URI_ID ORDER BY HITS DESC";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final HitDictionaries hitDictionaries;
+
+    @Override
+    public List<StatResponseDto> getHitListElementDtos(LocalDateTime start,
+                                                       LocalDateTime end,
+                                                       String[] uris,
+                                                       boolean unique) {
+        if (uris != null && (uris.length == 0 || Objects.equals(uris[0], "/events"))) {
+            uris = null;
+        }
+        return query("CREATED BETWEEN :from AND :to", start, end, uris, unique);
+    }
+
+    @Override
+    public List<StatResponseDto> getHitListElementDtosInRange(LocalDateTime from,
+                                                              LocalDateTime to,
+                                                              String[] uris,
+                                                              boolean unique) {
+        return query("CREATED >= :from AND CREATED < :to", from, to, uris, unique);
+    }
+
+    /**
+     * Distinct ips that hit each (app, uri) in {@code [from, to)}, keyed by their dictionary id.
+     *
+     * @param uris uris to include, or {@code null} for all of them
+     */
+    public Map<AppUri, Map<Integer, String>> getDistinctIps(LocalDateTime from, LocalDateTime to, String[] uris) {
+        Collection<Integer> uriIds = hitDictionaries.findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<HitDictionaries.EncodedAppUri, List<Integer>> ipIds = new LinkedHashMap<>();
+        jdbcTemplate.query(withUriFilter(SELECT_DISTINCT_IPS, uriIds), rangeParams(from, to, uriIds), rs -> {
+            ipIds.computeIfAbsent(new HitDictionaries.EncodedAppUri(rs.getInt("APP_ID"), rs.getInt("URI_ID")),
+                    key -> new ArrayList<>()).add(rs.getInt("IP_ID"));
+        });
+        Map<Integer, String> ips = hitDictionaries.decodeIps(ipIds.values().stream()
+                .flatMap(List::stream)
+                .toList());
+        Map<AppUri, Map<Integer, String>> result = new LinkedHashMap<>();
+        hitDictionaries.decode(ipIds).forEach((appUri, appUriIpIds) -> {
+            Map<Integer, String> appUriIps = new HashMap<>();
+            appUriIpIds.forEach(ipId -> appUriIps.put(ipId, ips.get(ipId)));
+            result.put(appUri, appUriIps);
+        });
+        return result;
+    }
+
+    private List<StatResponseDto> query(String dateFilter,
+                                        LocalDateTime from,
+                                        LocalDateTime to,
+                                        String[] uris,
+                                        boolean unique) {
+        Collection<Integer> uriIds = hitDictionaries.findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return List.of();
+        }
+        String sql = COUNT_HITS.formatted(unique ? "COUNT(DISTINCT IP_ID)" : "COUNT(IP_ID)", dateFilter);
+        Map<HitDictionaries.EncodedAppUri, Long> hits = new LinkedHashMap<>();
+        jdbcTemplate.query(withUriFilter(sql, uriIds) + GROUP_BY, rangeParams(from, to, uriIds), rs -> {
+            hits.put(new HitDictionaries.EncodedAppUri(rs.getInt("APP_ID"), rs.getInt("URI_ID")),
+                    rs.getLong("HITS"));
+        });
+        Map<AppUri, Long> decoded = hitDictionaries.decode(hits);
+        return decoded.entrySet().stream()
+                .map(entry -> new StatResponseDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .toList();
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+        }
+        return params;
+    }
+
+    private String withUriFilter(String sql, Collection<Integer> uriIds) {
+        return uriIds == null ? sql : sql + URI_FILTER;
+    }
 }
@@ -0,0 +1,37 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.model.UriPattern;
+
+import java.util.Map;
+
+@Repository
+public class UriDictionaryRepository extends DictionaryRepository {
+    /**
+     * Served by the {@code varchar_pattern_ops} index on {@code URI}, which reads only the uris starting with the
+     * literal prefix of the pattern.
+     */
+    private static final String SELECT_MATCHING = """
+            SELECT ID, URI
+            FROM URI_DICTIONARY
+            WHERE URI LIKE :pattern ESCAPE '\\'
+            LIMIT :limit
+            """;
+
+    public UriDictionaryRepository(NamedParameterJdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager) {
+        super(jdbcTemplate, transactionManager, "URI_DICTIONARY", "URI");
+    }
+
+    /**
+     * Ids of at most {@code limit} stored uris matching {@code pattern}, keyed by uri.
+     */
+    public Map<String, Integer> findMatching(UriPattern pattern, int limit) {
+        return findIds(SELECT_MATCHING, new MapSqlParameterSource()
+                .addValue("pattern", pattern.toLikePattern())
+                .addValue("limit", limit));
+    }
+}
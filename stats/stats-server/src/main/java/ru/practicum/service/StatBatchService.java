@@ -0,0 +1,156 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.practicum.batch.BatchQueryProperties;
+import ru.practicum.dto.StatQueryDto;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.exception.BatchQueryTimeoutException;
+import ru.practicum.model.AppUri;
+import ru.practicum.storage.HitCounts;
+import ru.practicum.storage.ResultWindow;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Answers {@code /stats/batch}. Identical queries are answered once. Queries over the same range and of the same
+ * kind share one scan: it counts the union of their uris, and every query takes its own uris out of the result and
+ * cuts its window from them. Counts per app and uri do not depend on which other uris are counted alongside, so
+ * unique counts are shared the same way. The scans of a batch run in parallel on a bounded pool shared by all batch
+ * requests; when its queue is full, the request thread runs the scan itself.
+ */
+@Slf4j
+@Service
+public class StatBatchService {
+    private final StatService statService;
+    private final BatchQueryProperties properties;
+    private final ThreadPoolExecutor executor;
+
+    public StatBatchService(StatService statService, BatchQueryProperties properties) {
+        this.statService = statService;
+        this.properties = properties;
+        this.executor = new ThreadPoolExecutor(properties.getParallelism(), properties.getParallelism(),
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                Thread.ofPlatform().name("stats-batch-", 0).daemon().factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public int getMaxQueries() {
+        return properties.getMaxQueries();
+    }
+
+    /**
+     * Results of {@code queries}, in the same order.
+     */
+    public List<List<StatResponseDto>> getHits(List<StatQueryDto> queries) {
+        List<Query> normalized = queries.stream().map(this::normalize).toList();
+        Map<Scan, Set<Query>> scans = new LinkedHashMap<>();
+        normalized.forEach(query -> scans.computeIfAbsent(query.scan(), key -> new LinkedHashSet<>()).add(query));
+        log.info("Retrieving batch of {} queries: {} distinct, {} scans", queries.size(),
+                scans.values().stream().mapToInt(Set::size).sum(), scans.size());
+
+        List<Future<Map<Query, List<StatResponseDto>>>> futures = scans.entrySet().stream()
+                .map(entry -> executor.submit(() -> scan(entry.getKey(), entry.getValue())))
+                .toList();
+        Map<Query, List<StatResponseDto>> results = new HashMap<>();
+        long deadline = System.nanoTime() + properties.getTimeout().toNanos();
+        try {
+            for (Future<Map<Query, List<StatResponseDto>>> future : futures) {
+                results.putAll(future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            }
+        } catch (TimeoutException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new BatchQueryTimeoutException("Batch of " + queries.size() + " queries did not finish in "
+                    + properties.getTimeout());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new BatchQueryTimeoutException("Interrupted while waiting for batch of " + queries.size()
+                    + " queries");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return normalized.stream().map(results::get).toList();
+    }
+
+    private Map<Query, List<StatResponseDto>> scan(Scan scan, Set<Query> queries) {
+        if (queries.size() == 1) {
+            Query query = queries.iterator().next();
+            return Map.of(query, statService.getFilteredHits(scan.start(), scan.end(), toArray(query.uris()),
+                    scan.unique(), scan.mode(), query.window()));
+        }
+        Set<String> union = new TreeSet<>();
+        for (Query query : queries) {
+            if (query.uris() == null) {
+                union = null;
+                break;
+            }
+            union.addAll(query.uris());
+        }
+        List<StatResponseDto> rows = statService.getFilteredHits(scan.start(), scan.end(), toArray(union),
+                scan.unique(), scan.mode(), ResultWindow.ALL);
+        Map<Query, List<StatResponseDto>> results = new HashMap<>();
+        for (Query query : queries) {
+            Map<AppUri, Long> hits = new LinkedHashMap<>();
+            rows.stream()
+                    .filter(row -> query.uris() == null || query.uris().contains(row.getUri()))
+                    .forEach(row -> hits.put(new AppUri(row.getApp(), row.getUri()), row.getHits()));
+            results.put(query, HitCounts.toSortedResponse(hits, query.window()));
+        }
+        return results;
+    }
+
+    private Query normalize(StatQueryDto dto) {
+        String[] uris = dto.getUris() == null ? null : dto.getUris().toArray(String[]::new);
+        String[] uriFilter = statService.toUriFilter(uris);
+        UniqueCountMode mode = null;
+        if (dto.isUnique()) {
+            mode = dto.getMode() == null ? UniqueCountMode.EXACT : dto.getMode();
+        }
+        return new Query(new Scan(dto.getStart(), dto.getEnd(), dto.isUnique(), mode),
+                uriFilter == null ? null : new TreeSet<>(Arrays.asList(uriFilter)),
+                new ResultWindow(dto.getOffset(), dto.getLimit()));
+    }
+
+    private static String[] toArray(Set<String> uris) {
+        return uris == null ? null : uris.toArray(String[]::new);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * What a scan counts; {@code mode} is {@code null} for non-unique counts, where it makes no difference.
+     */
+    private record Scan(LocalDateTime start, LocalDateTime end, boolean unique, UniqueCountMode mode) {
+    }
+
+    /**
+     * @param uris uris of the query, or {@code null} for every uri
+     */
+    private record Query(Scan scan, Set<String> uris, ResultWindow window) {
+    }
+}
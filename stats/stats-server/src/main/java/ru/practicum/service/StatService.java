@@ -4,51 +4,383 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.practicum.cache.ResultCacheKey;
+import ru.practicum.cache.StatsResultCache;
+import ru.practicum.dedup.HitDeduplicator;
+import ru.practicum.dto.StatBucketDto;
+import ru.practicum.dto.StatDeltaDto;
+import ru.practicum.dto.StatDeltaRowDto;
 import ru.practicum.dto.StatRequestDto;
 import ru.practicum.dto.StatResponseDto;
+import ru.practicum.dto.StatSeriesDto;
+import ru.practicum.dto.StatTimeSeriesDto;
+import ru.practicum.enums.StatGranularity;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.exception.UriPatternTooBroadException;
+import ru.practicum.ingest.HitIngestionPipeline;
 import ru.practicum.mapper.ServiceHitMapper;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.RollupGranularity;
 import ru.practicum.model.ServiceHit;
-import ru.practicum.repository.StatRepository;
+import ru.practicum.model.UriPattern;
+import ru.practicum.realtime.RealtimeCounters;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.storage.HitCounts;
+import ru.practicum.storage.HitStorageEngine;
+import ru.practicum.storage.ResultWindow;
+import ru.practicum.storage.StorageProperties;
+import ru.practicum.timeseries.TimeSeriesProperties;
+import ru.practicum.trending.TrendingUris;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 @Slf4j
 public class StatService {
-    private final StatRepository statRepository;
+    private static final String ALL_EVENTS = "/events";
+    private static final Comparator<AppUri> BY_APP_AND_URI = Comparator
+            .comparing(AppUri::app, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(AppUri::uri, Comparator.nullsFirst(Comparator.naturalOrder()));
+
     private final ServiceHitMapper serviceHitMapper;
+    private final HitIngestionPipeline hitIngestionPipeline;
+    private final HitDeduplicator hitDeduplicator;
+    private final HitStorageEngine hitStorageEngine;
+    private final TrendingUris trendingUris;
+    private final RealtimeCounters realtimeCounters;
+    private final StatsResultCache statsResultCache;
+    private final TimeSeriesProperties timeSeriesProperties;
+    private final StorageProperties storageProperties;
 
     public StatRequestDto registerHit(StatRequestDto statRequestDto) {
         log.info("Registering hit: {}", statRequestDto);
 
         ServiceHit entity = serviceHitMapper.toEntity(statRequestDto);
         log.debug("Mapped StatRequestDto to ServiceHit entity: {}", entity);
+        if (hitDeduplicator.dropRepeats(List.of(entity)).isEmpty()) {
+            log.debug("Dropped repeated hit: {}", entity);
+            return statRequestDto;
+        }
 
-        ServiceHit saved = statRepository.save(entity);
-        log.debug("Saved ServiceHit entity: {}", saved);
-
-        StatRequestDto dto = serviceHitMapper.toDto(saved);
-        log.debug("Mapped ServiceHit entity back to StatRequestDto: {}", dto);
+        try {
+            hitIngestionPipeline.submit(entity);
+        } catch (RuntimeException e) {
+            hitDeduplicator.release(List.of(entity));
+            throw e;
+        }
+        hitDeduplicator.remember(List.of(entity));
+        trendingUris.record(entity.getApp(), entity.getUri());
+        realtimeCounters.record(entity.getApp(), entity.getUri(), entity.getCreated());
+        log.debug("Queued ServiceHit entity for writing: {}", entity);
 
-        log.info("Hit registration completed successfully. Returning DTO: {}", dto);
-        return dto;
+        log.info("Hit registration completed successfully. Returning DTO: {}", statRequestDto);
+        return statRequestDto;
     }
 
-    public List<StatResponseDto> getHits(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique) {
-        log.info("Retrieving hits with the following parameters: start={}, end={}, uris={}, unique={}",
-                start, end, Arrays.toString(uris), unique);
+    public void registerHits(List<StatRequestDto> statRequestDtos) {
+        log.info("Registering batch of {} hits", statRequestDtos.size());
+
+        List<ServiceHit> entities = hitDeduplicator.dropRepeats(serviceHitMapper.toEntities(statRequestDtos));
+        if (entities.size() < statRequestDtos.size()) {
+            log.debug("Dropped {} repeated hits of the batch", statRequestDtos.size() - entities.size());
+        }
+        try {
+            hitIngestionPipeline.submitAll(entities);
+        } catch (RuntimeException e) {
+            hitDeduplicator.release(entities);
+            throw e;
+        }
+        hitDeduplicator.remember(entities);
+        entities.forEach(entity -> {
+            trendingUris.record(entity.getApp(), entity.getUri());
+            realtimeCounters.record(entity.getApp(), entity.getUri(), entity.getCreated());
+        });
 
-        log.debug("Starting query in repository with parameters: start={}, end={}, uris={}, unique={}",
-                start, end, Arrays.toString(uris), unique);
+        log.debug("Queued {} ServiceHit entities for writing", entities.size());
+    }
+
+    public List<StatResponseDto> getHits(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique,
+                                         UniqueCountMode mode, ResultWindow window) {
+        log.info("Retrieving hits with the following parameters: start={}, end={}, uris={}, unique={}, mode={}, "
+                + "window={}", start, end, Arrays.toString(uris), unique, mode, window);
 
-        List<StatResponseDto> statResponseDtos = statRepository.getHitListElementDtos(start, end, uris, unique);
+        List<StatResponseDto> statResponseDtos = getFilteredHits(start, end, toUriFilter(uris), unique, mode, window);
 
         log.debug("Retrieved {} records from repository: {}", statResponseDtos.size(), statResponseDtos);
 
         log.info("Completed retrieving hits. Total records found: {}", statResponseDtos.size());
         return statResponseDtos;
     }
-}
\ No newline at end of file
+
+    /**
+     * {@link #getHits} for uris that already went through {@link #toUriFilter}.
+     */
+    List<StatResponseDto> getFilteredHits(LocalDateTime start, LocalDateTime end, String[] uriFilter, boolean unique,
+                                          UniqueCountMode mode, ResultWindow window) {
+        if (matchesNothing(uriFilter)) {
+            return List.of();
+        }
+        return unique
+                ? countUniqueHits(start, toExclusive(end), uriFilter, mode, window)
+                : countHits(start, toExclusive(end), uriFilter, window);
+    }
+
+    /**
+     * Same rows as {@link #getHits}, handed to {@code sink} one at a time. Non-unique counts are read through
+     * a cursor; unique counts are merged in memory first and then handed over.
+     */
+    public void streamHits(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique,
+                           UniqueCountMode mode, ResultWindow window, Consumer<StatResponseDto> sink) {
+        log.info("Streaming hits with the following parameters: start={}, end={}, uris={}, unique={}, mode={}, "
+                + "window={}", start, end, Arrays.toString(uris), unique, mode, window);
+
+        String[] uriFilter = toUriFilter(uris);
+        if (matchesNothing(uriFilter)) {
+            return;
+        }
+        if (unique) {
+            countUniqueHits(start, toExclusive(end), uriFilter, mode, window).forEach(sink);
+        } else if (realtimeCounters.covers(start, end)) {
+            realtimeCounters.countHits(start, end, uriFilter, window).forEach(sink);
+        } else {
+            hitStorageEngine.streamHits(start, toExclusive(end), uriFilter, window, sink);
+        }
+    }
+
+    /**
+     * Hits since {@code since}, split at a watermark into a settled part, which no hit can be added to any more,
+     * and a pending part up to now. Callers that keep running totals only ever ask for what happened after their
+     * last watermark, so the work done follows recent traffic rather than all of history. Unique counts come with
+     * HyperLogLog sketches, because distinct ips of two ranges do not add up but their sketches merge.
+     */
+    public StatDeltaDto getDelta(LocalDateTime since, String[] uris, boolean unique) {
+        log.info("Retrieving delta since {} for uris={}, unique={}", since, Arrays.toString(uris), unique);
+
+        String[] uriFilter = toUriFilter(uris);
+        LocalDateTime closedBefore = statsResultCache.closedBefore();
+        LocalDateTime watermark = since.isBefore(closedBefore) ? closedBefore : since;
+        LocalDateTime to = toExclusive(LocalDateTime.now());
+        if (matchesNothing(uriFilter)) {
+            return new StatDeltaDto(watermark, List.of(), List.of());
+        }
+        List<StatDeltaRowDto> settled;
+        if (!since.isBefore(watermark)) {
+            settled = List.of();
+        } else if (unique) {
+            settled = toSketchRows(hitStorageEngine.sketchUniqueHits(since, watermark, uriFilter));
+        } else {
+            settled = toDeltaRows(countHits(since, watermark, uriFilter, ResultWindow.ALL));
+        }
+        List<StatDeltaRowDto> pending = unique
+                ? toSketchRows(hitStorageEngine.sketchUniqueHits(watermark, to, uriFilter))
+                : toDeltaRows(countLiveHits(watermark, to, uriFilter, ResultWindow.ALL));
+
+        log.info("Delta since {} up to watermark {}: {} settled, {} pending rows", since, watermark,
+                settled.size(), pending.size());
+        return new StatDeltaDto(watermark, settled, pending);
+    }
+
+    private List<StatDeltaRowDto> toDeltaRows(List<StatResponseDto> rows) {
+        return rows.stream()
+                .map(row -> new StatDeltaRowDto(row.getApp(), row.getUri(), row.getHits(), null))
+                .toList();
+    }
+
+    private List<StatDeltaRowDto> toSketchRows(Map<AppUri, HyperLogLog> sketches) {
+        return sketches.entrySet().stream()
+                .map(entry -> new StatDeltaRowDto(entry.getKey().app(), entry.getKey().uri(),
+                        entry.getValue().estimate(), entry.getValue().toBytes()))
+                .toList();
+    }
+
+    /**
+     * The bucket size of a time series over {@code [start, end]}: {@code requested} when given, otherwise the finest
+     * one that keeps every series within {@code max-buckets}, or days when even they do not. Empty when the
+     * requested bucket size needs more buckets than that.
+     */
+    public Optional<RollupGranularity> chooseGranularity(LocalDateTime start,
+                                                         LocalDateTime end,
+                                                         StatGranularity requested) {
+        int maxBuckets = timeSeriesProperties.getMaxBuckets();
+        if (requested != null) {
+            RollupGranularity granularity = RollupGranularity.valueOf(requested.name());
+            return countBuckets(start, end, granularity) <= maxBuckets ? Optional.of(granularity) : Optional.empty();
+        }
+        RollupGranularity[] coarsestFirst = RollupGranularity.values();
+        for (int i = coarsestFirst.length - 1; i > 0; i--) {
+            if (countBuckets(start, end, coarsestFirst[i]) <= maxBuckets) {
+                return Optional.of(coarsestFirst[i]);
+            }
+        }
+        return Optional.of(coarsestFirst[0]);
+    }
+
+    private long countBuckets(LocalDateTime start, LocalDateTime end, RollupGranularity granularity) {
+        return granularity.getUnit().between(granularity.floor(start), granularity.floor(end)) + 1;
+    }
+
+    /**
+     * Hits per bucket of {@code granularity} over {@code [start, end]}, one series per app and uri, ordered by app
+     * and uri. The whole chart is computed in one go by the storage engine.
+     */
+    public StatTimeSeriesDto getTimeSeries(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique,
+                                           UniqueCountMode mode, RollupGranularity granularity) {
+        log.info("Retrieving time series with the following parameters: start={}, end={}, uris={}, unique={}, "
+                + "mode={}, granularity={}", start, end, Arrays.toString(uris), unique, mode, granularity);
+
+        String[] uriFilter = toUriFilter(uris);
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> series;
+        if (matchesNothing(uriFilter)) {
+            series = Map.of();
+        } else if (unique) {
+            series = hitStorageEngine.countUniqueHitSeries(start, toExclusive(end), uriFilter, granularity, mode);
+        } else {
+            series = hitStorageEngine.countHitSeries(start, toExclusive(end), uriFilter, granularity);
+        }
+        List<StatSeriesDto> seriesDtos = series.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(BY_APP_AND_URI))
+                .map(entry -> new StatSeriesDto(entry.getKey().app(), entry.getKey().uri(),
+                        entry.getValue().entrySet().stream()
+                                .map(bucket -> new StatBucketDto(bucket.getKey(), bucket.getValue()))
+                                .toList()))
+                .toList();
+
+        log.info("Completed retrieving time series: {} series", seriesDtos.size());
+        return new StatTimeSeriesDto(StatGranularity.valueOf(granularity.name()), seriesDtos);
+    }
+
+    /**
+     * All-time hits per entity id, from the storage engine's entity counters. Entities never hit are left out.
+     */
+    public Map<Long, Long> getEntityHits(String type, List<Long> ids, boolean unique) {
+        Map<Long, Long> hits = hitStorageEngine.countEntityHits(type, new LinkedHashSet<>(ids), unique);
+        log.debug("Found hits of {} of {} {} entities", hits.size(), ids.size(), type);
+        return hits;
+    }
+
+    /**
+     * The most-hit uris of the last {@code window}, answered from memory. Counts are estimates that may
+     * slightly overcount.
+     */
+    public List<StatResponseDto> getTopHits(Duration window, int limit) {
+        log.info("Retrieving top {} uris of the last {}", limit, window);
+        return trendingUris.top(window, limit);
+    }
+
+    public Duration getTopHitsRetention() {
+        return trendingUris.getRetention();
+    }
+
+    /**
+     * Non-unique counts over {@code [from, to)}. A closed range is served from the result cache; a range that
+     * reaches into the open part of time is split at {@link StatsResultCache#closedBefore()} into a cached
+     * prefix and a live tail, whose counts simply add up.
+     */
+    private List<StatResponseDto> countHits(LocalDateTime from, LocalDateTime to, String[] uris, ResultWindow window) {
+        if (!statsResultCache.isEnabled()) {
+            return countLiveHits(from, to, uris, window);
+        }
+        LocalDateTime closedBefore = statsResultCache.closedBefore();
+        if (!to.isAfter(closedBefore)) {
+            return statsResultCache.get(ResultCacheKey.of(from, to, uris, false, null, window),
+                    () -> countLiveHits(from, to, uris, window));
+        }
+        if (!from.isBefore(closedBefore)) {
+            return countLiveHits(from, to, uris, window);
+        }
+        List<StatResponseDto> prefix = statsResultCache.get(
+                ResultCacheKey.of(from, closedBefore, uris, false, null, ResultWindow.ALL),
+                () -> countLiveHits(from, closedBefore, uris, ResultWindow.ALL));
+        List<StatResponseDto> tail = countLiveHits(closedBefore, to, uris, ResultWindow.ALL);
+        Map<AppUri, Long> hits = new HashMap<>();
+        Stream.concat(prefix.stream(), tail.stream())
+                .forEach(dto -> hits.merge(new AppUri(dto.getApp(), dto.getUri()), dto.getHits(), Long::sum));
+        return HitCounts.toSortedResponse(hits, window);
+    }
+
+    private List<StatResponseDto> countLiveHits(LocalDateTime from,
+                                                LocalDateTime to,
+                                                String[] uris,
+                                                ResultWindow window) {
+        LocalDateTime last = to.minus(1, ChronoUnit.MICROS);
+        if (realtimeCounters.covers(from, last)) {
+            log.debug("Answering from real-time counters");
+            return realtimeCounters.countHits(from, last, uris, window);
+        }
+        return hitStorageEngine.countHits(from, to, uris, window);
+    }
+
+    /**
+     * Unique counts over {@code [from, to)}. They do not add up across ranges, so only closed ranges are
+     * cached, as a whole.
+     */
+    private List<StatResponseDto> countUniqueHits(LocalDateTime from,
+                                                  LocalDateTime to,
+                                                  String[] uris,
+                                                  UniqueCountMode mode,
+                                                  ResultWindow window) {
+        if (!statsResultCache.isEnabled() || to.isAfter(statsResultCache.closedBefore())) {
+            return hitStorageEngine.countUniqueHits(from, to, uris, mode, window);
+        }
+        return statsResultCache.get(ResultCacheKey.of(from, to, uris, true, mode, window),
+                () -> hitStorageEngine.countUniqueHits(from, to, uris, mode, window));
+    }
+
+    /**
+     * The API range is inclusive; the smallest step the database stores turns it into a half-open one.
+     */
+    private LocalDateTime toExclusive(LocalDateTime end) {
+        return end.plus(1, ChronoUnit.MICROS);
+    }
+
+    /**
+     * Uris to filter by, or {@code null} when every uri is requested. A request for {@code /events} alone stands for
+     * all events, as it always has. Globs such as {@code /events/*} are replaced by the stored uris they match, which
+     * the storage engine finds through its uri index; an empty result means no uri can match.
+     */
+    String[] toUriFilter(String[] uris) {
+        if (uris == null || uris.length == 0 || Objects.equals(uris[0], ALL_EVENTS)) {
+            return null;
+        }
+        int maxMatches = storageProperties.getMaxPatternMatches();
+        Set<String> filter = new LinkedHashSet<>();
+        for (String uri : uris) {
+            if (!UriPattern.isPattern(uri)) {
+                filter.add(uri);
+                continue;
+            }
+            UriPattern pattern = new UriPattern(uri);
+            if (pattern.matchesEverything()) {
+                return null;
+            }
+            List<String> matches = hitStorageEngine.findUris(pattern, maxMatches + 1);
+            if (matches.size() > maxMatches) {
+                throw new UriPatternTooBroadException("Uri pattern " + uri + " matches more than " + maxMatches
+                        + " uris");
+            }
+            log.debug("Uri pattern {} matches {} uris", uri, matches.size());
+            filter.addAll(matches);
+        }
+        return filter.toArray(String[]::new);
+    }
+
+    private static boolean matchesNothing(String[] uriFilter) {
+        return uriFilter != null && uriFilter.length == 0;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.sketch;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "stats-server.sketch")
+public class SketchProperties {
+    /**
+     * Target relative standard error of approximate unique counts. It fixes the sketch precision, so
+     * changing it makes sketches written before the change unusable until they are rebuilt.
+     */
+    private double relativeError = 0.01625;
+
+    public int getPrecision() {
+        return HyperLogLog.precisionFor(relativeError);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.practicum.storage;
+
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.model.AppUri;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+public final class HitCounts {
+    /**
+     * Highest hit count first; ties are ordered by app and uri so that pages never overlap.
+     */
+    public static final Comparator<StatResponseDto> BY_HITS_DESC = Comparator
+            .comparing(StatResponseDto::getHits, Comparator.reverseOrder())
+            .thenComparing(StatResponseDto::getApp, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(StatResponseDto::getUri, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private HitCounts() {
+    }
+
+    public static List<StatResponseDto> toSortedResponse(Map<AppUri, Long> hits) {
+        return toSortedResponse(hits, ResultWindow.ALL);
+    }
+
+    /**
+     * Sorts {@code hits} and cuts {@code window} out of them. A limited window keeps only its
+     * {@code offset + limit} best rows in a heap instead of sorting everything.
+     */
+    public static List<StatResponseDto> toSortedResponse(Map<AppUri, Long> hits, ResultWindow window) {
+        if (!window.isLimited()) {
+            return hits.entrySet().stream()
+                    .map(HitCounts::toDto)
+                    .sorted(BY_HITS_DESC)
+                    .skip(window.offset())
+                    .toList();
+        }
+        int keep = (int) Math.min(Integer.MAX_VALUE - 1L, (long) window.offset() + window.limit());
+        PriorityQueue<StatResponseDto> best = new PriorityQueue<>(BY_HITS_DESC.reversed());
+        for (Map.Entry<AppUri, Long> entry : hits.entrySet()) {
+            best.add(toDto(entry));
+            if (best.size() > keep) {
+                best.poll();
+            }
+        }
+        List<StatResponseDto> sorted = new ArrayList<>(best);
+        sorted.sort(BY_HITS_DESC);
+        return sorted.subList(Math.min(window.offset(), sorted.size()), sorted.size());
+    }
+
+    private static StatResponseDto toDto(Map.Entry<AppUri, Long> entry) {
+        return new StatResponseDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue());
+    }
+}
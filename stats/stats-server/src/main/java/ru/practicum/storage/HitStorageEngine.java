@@ -0,0 +1,114 @@
+package ru.practicum.storage;
+
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EntityRef;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.model.UriPattern;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.Consumer;
+
+/**
+ * Where hits are stored and how they are aggregated. Ranges are half-open, {@code [from, to)}; a {@code null}
+ * uri filter selects every uri. Results are grouped by app and uri and sorted by hit count, highest first,
+ * then by app and uri.
+ */
+public interface HitStorageEngine {
+    /**
+     * Persists one batch of hits. Called from the single ingestion writer thread, which retries a failed batch.
+     * A failure therefore must not leave part of the batch stored, unless the engine says which part by throwing
+     * {@link PartialWriteException}.
+     */
+    void write(List<ServiceHit> batch);
+
+    /**
+     * Folds what {@link #write} left for later into its final form. Runs periodically, alongside writes and
+     * queries, which see the same counts before and after; engines that leave nothing for later keep this default.
+     */
+    default void compact() {
+    }
+
+    List<StatResponseDto> countHits(LocalDateTime from, LocalDateTime to, String[] uris, ResultWindow window);
+
+    List<StatResponseDto> countUniqueHits(LocalDateTime from,
+                                          LocalDateTime to,
+                                          String[] uris,
+                                          UniqueCountMode mode,
+                                          ResultWindow window);
+
+    /**
+     * HyperLogLog sketches of the distinct ips per app and uri. Unlike unique counts, sketches of adjacent ranges
+     * merge into the sketch of their union, so callers can keep them and add later ranges as they come.
+     */
+    Map<AppUri, HyperLogLog> sketchUniqueHits(LocalDateTime from, LocalDateTime to, String[] uris);
+
+    /**
+     * Up to {@code limit} stored uris matching {@code pattern}, found through an index ordered by uri, so that only
+     * uris starting with the literal prefix of the pattern are looked at.
+     */
+    List<String> findUris(UriPattern pattern, int limit);
+
+    /**
+     * Hits per app, uri and bucket of {@code granularity}, each series keyed by bucket start. Buckets without hits
+     * are left out, and the buckets at both ends of the range only count hits inside it. All buckets are computed
+     * together rather than one range query per bucket.
+     */
+    Map<AppUri, NavigableMap<LocalDateTime, Long>> countHitSeries(LocalDateTime from,
+                                                                  LocalDateTime to,
+                                                                  String[] uris,
+                                                                  RollupGranularity granularity);
+
+    /**
+     * Distinct ips per app, uri and bucket, laid out as in {@link #countHitSeries}. Every bucket is counted on its
+     * own, so the buckets of a series do not add up to the unique count of the whole range.
+     */
+    Map<AppUri, NavigableMap<LocalDateTime, Long>> countUniqueHitSeries(LocalDateTime from,
+                                                                        LocalDateTime to,
+                                                                        String[] uris,
+                                                                        RollupGranularity granularity,
+                                                                        UniqueCountMode mode);
+
+    /**
+     * All-time hits of the entities of {@code type} among {@code ids}, over all apps and keyed by id; entities
+     * never hit are left out. Unique counts are exact. This default rebuilds the entity uris and counts them,
+     * adding up the unique counts of different apps; engines that keep per-entity counters override it.
+     */
+    default Map<Long, Long> countEntityHits(String type, Collection<Long> ids, boolean unique) {
+        String[] uris = ids.stream().map(id -> new EntityRef(type, id).toUri()).toArray(String[]::new);
+        // The start of time for every engine and database, late enough to stay clear of overflows.
+        LocalDateTime from = LocalDateTime.of(1, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.now().plusDays(1);
+        List<StatResponseDto> rows = unique
+                ? countUniqueHits(from, to, uris, UniqueCountMode.EXACT, ResultWindow.ALL)
+                : countHits(from, to, uris, ResultWindow.ALL);
+        Map<Long, Long> hits = new HashMap<>();
+        for (StatResponseDto row : rows) {
+            EntityRef entity = EntityRef.fromUri(row.getUri());
+            if (entity != null && entity.type().equals(type)) {
+                hits.merge(entity.id(), row.getHits(), Long::sum);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Hands the rows of {@link #countHits} to {@code sink} one at a time. Engines that can produce rows
+     * incrementally override this so that memory does not grow with the size of the result.
+     */
+    default void streamHits(LocalDateTime from,
+                            LocalDateTime to,
+                            String[] uris,
+                            ResultWindow window,
+                            Consumer<StatResponseDto> sink) {
+        countHits(from, to, uris, window).forEach(sink);
+    }
+}
@@ -0,0 +1,209 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.bitmap.IpSet;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.ingest.HitBatchWriter;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.model.UriPattern;
+import ru.practicum.repository.EntityHitRepository;
+import ru.practicum.repository.HitCountRepository;
+import ru.practicum.repository.HitIpBitmapRepository;
+import ru.practicum.repository.HitSeriesRepository;
+import ru.practicum.repository.HitSketchRepository;
+import ru.practicum.repository.UriDictionaryRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.Consumer;
+
+/**
+ * The relational storage engine: raw hits in {@code HIT}, aggregates answered from rollups, sketches and
+ * bitmaps wherever whole buckets cover the range, and from raw rows only at the edges.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "stats-server.storage", name = "engine", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcHitStorageEngine implements HitStorageEngine {
+    private final HitBatchWriter hitBatchWriter;
+    private final HitCountRepository hitCountRepository;
+    private final HitSketchRepository hitSketchRepository;
+    private final HitIpBitmapRepository hitIpBitmapRepository;
+    private final EntityHitRepository entityHitRepository;
+    private final HitSeriesRepository hitSeriesRepository;
+    private final UriDictionaryRepository uriDictionaryRepository;
+    private final StorageProperties storageProperties;
+
+    @Override
+    public void write(List<ServiceHit> batch) {
+        hitBatchWriter.write(batch);
+    }
+
+    /**
+     * Folds the pending sketch and bitmap deltas into their buckets, one transaction of
+     * {@code compaction-batch-size} deltas at a time, until none are left.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${stats-server.storage.jdbc.compaction-interval:10s}")
+    public void compact() {
+        int limit = storageProperties.getJdbc().getCompactionBatchSize();
+        int compacted;
+        do {
+            compacted = hitBatchWriter.compact(limit);
+            log.debug("Compacted {} sketch and bitmap deltas", compacted);
+        } while (compacted >= limit);
+    }
+
+    @Override
+    public List<StatResponseDto> countHits(LocalDateTime from, LocalDateTime to, String[] uris, ResultWindow window) {
+        List<RollupRangePlanner.Segment> plan = RollupRangePlanner.plan(from, to);
+        log.debug("Counting hits over segments {}", plan);
+        return hitCountRepository.countHits(plan, uris, window);
+    }
+
+    @Override
+    public List<String> findUris(UriPattern pattern, int limit) {
+        return List.copyOf(uriDictionaryRepository.findMatching(pattern, limit).keySet());
+    }
+
+    @Override
+    public Map<AppUri, NavigableMap<LocalDateTime, Long>> countHitSeries(LocalDateTime from,
+                                                                         LocalDateTime to,
+                                                                         String[] uris,
+                                                                         RollupGranularity granularity) {
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> series = new LinkedHashMap<>();
+        List<RollupRangePlanner.Segment> raw = new ArrayList<>();
+        for (RollupRangePlanner.Segment segment : RollupRangePlanner.plan(from, to, granularity)) {
+            if (segment.isRaw()) {
+                raw.add(segment);
+            } else {
+                log.debug("Reading hit rollups in segment {}", segment);
+                hitSeriesRepository.addRollups(granularity, segment.from(), segment.to(), uris, series);
+            }
+        }
+        hitSeriesRepository.addRawHits(granularity, raw, uris, false, series);
+        return series;
+    }
+
+    /**
+     * Whole buckets are read from the sketches in approximate mode and from the day bitmaps in exact mode, when
+     * there are any of the requested granularity; every other bucket is counted from raw hits.
+     */
+    @Override
+    public Map<AppUri, NavigableMap<LocalDateTime, Long>> countUniqueHitSeries(LocalDateTime from,
+                                                                               LocalDateTime to,
+                                                                               String[] uris,
+                                                                               RollupGranularity granularity,
+                                                                               UniqueCountMode mode) {
+        boolean approximate = mode == UniqueCountMode.APPROXIMATE;
+        RollupGranularity[] stored = approximate
+                ? HitSketchRepository.SKETCH_GRANULARITIES
+                : HitIpBitmapRepository.BITMAP_GRANULARITIES;
+        RollupGranularity[] aggregated = Arrays.asList(stored).contains(granularity)
+                ? new RollupGranularity[]{granularity}
+                : new RollupGranularity[0];
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> series = new LinkedHashMap<>();
+        List<RollupRangePlanner.Segment> raw = new ArrayList<>();
+        for (RollupRangePlanner.Segment segment : RollupRangePlanner.plan(from, to, aggregated)) {
+            if (segment.isRaw()) {
+                raw.add(segment);
+            } else if (approximate) {
+                log.debug("Reading ip sketches in segment {}", segment);
+                hitSeriesRepository.addSketchEstimates(granularity, segment.from(), segment.to(), uris, series);
+            } else {
+                log.debug("Reading ip bitmaps in segment {}", segment);
+                hitSeriesRepository.addBitmapCardinalities(segment.from(), segment.to(), uris, series);
+            }
+        }
+        hitSeriesRepository.addRawHits(granularity, raw, uris, true, series);
+        return series;
+    }
+
+    @Override
+    public Map<Long, Long> countEntityHits(String type, Collection<Long> ids, boolean unique) {
+        return entityHitRepository.findHits(type, ids, unique);
+    }
+
+    @Override
+    public void streamHits(LocalDateTime from,
+                           LocalDateTime to,
+                           String[] uris,
+                           ResultWindow window,
+                           Consumer<StatResponseDto> sink) {
+        List<RollupRangePlanner.Segment> plan = RollupRangePlanner.plan(from, to);
+        log.debug("Streaming hits over segments {}", plan);
+        hitCountRepository.streamHits(plan, uris, window, sink);
+    }
+
+    @Override
+    public List<StatResponseDto> countUniqueHits(LocalDateTime from,
+                                                 LocalDateTime to,
+                                                 String[] uris,
+                                                 UniqueCountMode mode,
+                                                 ResultWindow window) {
+        return mode == UniqueCountMode.APPROXIMATE
+                ? countUniqueHitsFromSketches(from, to, uris, window)
+                : countUniqueHitsFromBitmaps(from, to, uris, window);
+    }
+
+    private List<StatResponseDto> countUniqueHitsFromSketches(LocalDateTime from,
+                                                              LocalDateTime to,
+                                                              String[] uris,
+                                                              ResultWindow window) {
+        Map<AppUri, Long> hits = new LinkedHashMap<>();
+        sketchUniqueHits(from, to, uris).forEach((appUri, sketch) -> hits.put(appUri, sketch.estimate()));
+        return HitCounts.toSortedResponse(hits, window);
+    }
+
+    @Override
+    public Map<AppUri, HyperLogLog> sketchUniqueHits(LocalDateTime from, LocalDateTime to, String[] uris) {
+        Map<AppUri, HyperLogLog> sketches = new LinkedHashMap<>();
+        List<RollupRangePlanner.Segment> segments = RollupRangePlanner.plan(from, to,
+                HitSketchRepository.SKETCH_GRANULARITIES);
+        for (RollupRangePlanner.Segment segment : segments) {
+            log.debug("Merging ip sketches in segment {}", segment);
+            if (segment.isRaw()) {
+                hitSketchRepository.mergeRawHits(segment.from(), segment.to(), uris, sketches);
+            } else {
+                hitSketchRepository.mergeBuckets(segment.granularity(), segment.from(), segment.to(), uris,
+                        sketches);
+            }
+        }
+        return sketches;
+    }
+
+    private List<StatResponseDto> countUniqueHitsFromBitmaps(LocalDateTime from,
+                                                             LocalDateTime to,
+                                                             String[] uris,
+                                                             ResultWindow window) {
+        Map<AppUri, IpSet> bitmaps = new LinkedHashMap<>();
+        List<RollupRangePlanner.Segment> segments = RollupRangePlanner.plan(from, to,
+                HitIpBitmapRepository.BITMAP_GRANULARITIES);
+        for (RollupRangePlanner.Segment segment : segments) {
+            log.debug("Merging ip bitmaps in segment {}", segment);
+            if (segment.isRaw()) {
+                hitIpBitmapRepository.mergeRawHits(segment.from(), segment.to(), uris, bitmaps);
+            } else {
+                hitIpBitmapRepository.mergeDays(segment.from(), segment.to(), uris, bitmaps);
+            }
+        }
+        Map<AppUri, Long> hits = new LinkedHashMap<>();
+        bitmaps.forEach((appUri, bitmap) -> hits.put(appUri, bitmap.cardinality()));
+        return HitCounts.toSortedResponse(hits, window);
+    }
+}
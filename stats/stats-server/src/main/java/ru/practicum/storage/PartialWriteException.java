@@ -0,0 +1,20 @@
+package ru.practicum.storage;
+
+import lombok.Getter;
+import ru.practicum.model.ServiceHit;
+
+import java.util.List;
+
+/**
+ * A batch was written only in part: the hits in {@link #getUnwritten()} were not stored, every other hit of the
+ * batch was. Writing the unwritten hits again completes the batch without storing any hit twice.
+ */
+@Getter
+public class PartialWriteException extends RuntimeException {
+    private final List<ServiceHit> unwritten;
+
+    public PartialWriteException(String message, List<ServiceHit> unwritten, Throwable cause) {
+        super(message, cause);
+        this.unwritten = List.copyOf(unwritten);
+    }
+}
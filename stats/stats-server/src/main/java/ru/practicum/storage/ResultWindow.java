@@ -0,0 +1,23 @@
+package ru.practicum.storage;
+
+/**
+ * The rows {@code [offset, offset + limit)} of a result sorted by hit count.
+ *
+ * @param limit maximum number of rows, or {@code null} for every row after {@code offset}
+ */
+public record ResultWindow(int offset, Integer limit) {
+    public static final ResultWindow ALL = new ResultWindow(0, null);
+
+    public ResultWindow {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+    }
+
+    public boolean isLimited() {
+        return limit != null;
+    }
+}
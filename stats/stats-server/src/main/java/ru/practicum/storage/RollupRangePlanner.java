@@ -0,0 +1,63 @@
+package ru.practicum.storage;
+
+import ru.practicum.model.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a half-open time range into the fewest rollup buckets that cover it. The coarsest granularity
+ * takes the aligned middle of the range, finer ones take what is left at the edges, and whatever is
+ * shorter than the finest bucket is left to the raw {@code HIT} table.
+ */
+public final class RollupRangePlanner {
+    private RollupRangePlanner() {
+    }
+
+    /**
+     * @param granularity bucket size to read, or {@code null} when the segment must be read from raw hits
+     */
+    public record Segment(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        public boolean isRaw() {
+            return granularity == null;
+        }
+    }
+
+    public static List<Segment> plan(LocalDateTime from, LocalDateTime to) {
+        return plan(from, to, RollupGranularity.values());
+    }
+
+    /**
+     * @param granularities the bucket sizes available for this query, from the coarsest to the finest
+     */
+    public static List<Segment> plan(LocalDateTime from, LocalDateTime to, RollupGranularity... granularities) {
+        List<Segment> segments = new ArrayList<>();
+        split(from, to, granularities, 0, segments);
+        return segments;
+    }
+
+    private static void split(LocalDateTime from,
+                              LocalDateTime to,
+                              RollupGranularity[] granularities,
+                              int level,
+                              List<Segment> segments) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level == granularities.length) {
+            segments.add(new Segment(null, from, to));
+            return;
+        }
+        RollupGranularity granularity = granularities[level];
+        LocalDateTime alignedFrom = granularity.ceil(from);
+        LocalDateTime alignedTo = granularity.floor(to);
+        if (!alignedFrom.isBefore(alignedTo)) {
+            split(from, to, granularities, level + 1, segments);
+            return;
+        }
+        split(from, alignedFrom, granularities, level + 1, segments);
+        segments.add(new Segment(granularity, alignedFrom, alignedTo));
+        split(alignedTo, to, granularities, level + 1, segments);
+    }
+}
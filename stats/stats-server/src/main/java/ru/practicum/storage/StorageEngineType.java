@@ -0,0 +1,16 @@
+package ru.practicum.storage;
+
+public enum StorageEngineType {
+    /**
+     * Hits, rollups, sketches and bitmaps in the relational database.
+     */
+    JDBC,
+    /**
+     * Hits in memory-mapped append-only segment files on local disk.
+     */
+    SEGMENT,
+    /**
+     * Hits spread by uri over several relational databases, each laid out as with {@link #JDBC}.
+     */
+    SHARDED
+}
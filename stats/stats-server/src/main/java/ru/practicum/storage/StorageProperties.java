@@ -0,0 +1,95 @@
+package ru.practicum.storage;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "stats-server.storage")
+public class StorageProperties {
+    private StorageEngineType engine = StorageEngineType.JDBC;
+    /**
+     * Most stored uris one glob in a {@code uris} filter may stand for; broader globs are refused.
+     */
+    private int maxPatternMatches = 10_000;
+    private Jdbc jdbc = new Jdbc();
+    private Segment segment = new Segment();
+    private Sharding sharding = new Sharding();
+
+    @Getter
+    @Setter
+    public static class Jdbc {
+        /**
+         * Rows fetched per round trip when a result is streamed through a cursor.
+         */
+        private int streamFetchSize = 1000;
+        /**
+         * How often the sketch and bitmap deltas written with every batch are folded into their buckets. Queries
+         * read the deltas too, so this only bounds how many of them pile up.
+         */
+        private Duration compactionInterval = Duration.ofSeconds(10);
+        /**
+         * Deltas folded per transaction.
+         */
+        private int compactionBatchSize = 10_000;
+        /**
+         * Ip dictionary ids cached in memory, most recently used first; ips missing from the cache cost a lookup.
+         */
+        private int ipCacheSize = 100_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Segment {
+        private Path directory = Path.of("data", "segments");
+        /**
+         * Number of hits a segment file holds before a new one is started.
+         */
+        private int recordsPerSegment = 1_000_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Sharding {
+        /**
+         * Databases the hits are spread over. Every uri is kept by exactly one of them, chosen by rendezvous
+         * hashing of the uri and the shard names, so shards are told apart by name rather than position.
+         */
+        private List<Shard> shards = new ArrayList<>();
+        /**
+         * Shards written to or queried at the same time.
+         */
+        private int parallelism = 8;
+        /**
+         * Scripts run on every shard at startup; empty to leave the schemas alone.
+         */
+        private List<String> schemaLocations = new ArrayList<>();
+        /**
+         * Move the hits of every uri to the shard that keeps it now before the server starts taking hits, as
+         * needed after shards were added or removed.
+         */
+        private boolean rebalanceOnStart = false;
+        /**
+         * Uris moved together while rebalancing. Their hits go over in pages, each committed by the new owner
+         * before the old one deletes it.
+         */
+        private int rebalanceBatchSize = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class Shard {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+    }
+}
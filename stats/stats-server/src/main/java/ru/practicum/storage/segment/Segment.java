@@ -0,0 +1,213 @@
+package ru.practicum.storage.segment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * One memory-mapped segment file of fixed-width hit records.
+ * <p>
+ * Layout: a {@value #HEADER_BYTES}-byte header (magic, record count, ordered flag, min and max time) followed
+ * by records of {@value #RECORD_BYTES} bytes: time in epoch microseconds, app id, uri id and ip key. Records are
+ * written before the header count that publishes them, so after a crash a segment holds exactly the records its
+ * header counts. While every appended batch starts no earlier than the previous one ended, the segment stays
+ * ordered by time and scans binary-search their start instead of reading every record.
+ * <p>
+ * A single writer appends; any number of readers scan concurrently up to the published count.
+ */
+final class Segment implements Closeable {
+    static final int HEADER_BYTES = 64;
+    static final int RECORD_BYTES = 24;
+
+    private static final int MAGIC = 0x53545347;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int COUNT_OFFSET = 4;
+    private static final int ORDERED_OFFSET = 8;
+    private static final int MIN_TIME_OFFSET = 16;
+    private static final int MAX_TIME_OFFSET = 24;
+
+    private static final int TIME_FIELD = 0;
+    private static final int APP_FIELD = 8;
+    private static final int URI_FIELD = 12;
+    private static final int IP_FIELD = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final BitSet uriIds = new BitSet();
+
+    private volatile int count;
+    private volatile boolean ordered;
+    private volatile long minTime;
+    private volatile long maxTime;
+
+    private Segment(FileChannel channel, int capacity) throws IOException {
+        this.channel = channel;
+        this.capacity = capacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * RECORD_BYTES);
+    }
+
+    static Segment create(Path file, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(channel, capacity);
+        segment.ordered = true;
+        segment.minTime = Long.MAX_VALUE;
+        segment.maxTime = Long.MIN_VALUE;
+        segment.writeHeader();
+        return segment;
+    }
+
+    static Segment open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int capacity = (int) ((channel.size() - HEADER_BYTES) / RECORD_BYTES);
+        Segment segment = new Segment(channel, capacity);
+        if (segment.buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a hit segment: " + file);
+        }
+        segment.ordered = segment.buffer.getInt(ORDERED_OFFSET) != 0;
+        segment.minTime = segment.buffer.getLong(MIN_TIME_OFFSET);
+        segment.maxTime = segment.buffer.getLong(MAX_TIME_OFFSET);
+        segment.count = segment.buffer.getInt(COUNT_OFFSET);
+        for (int i = 0; i < segment.count; i++) {
+            segment.uriIds.set(segment.uriId(i));
+        }
+        return segment;
+    }
+
+    int remaining() {
+        return capacity - count;
+    }
+
+    /**
+     * Appends records already sorted by time. The caller must not pass more than {@link #remaining()} records.
+     */
+    void append(List<SegmentRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        int start = count;
+        for (int i = 0; i < records.size(); i++) {
+            SegmentRecord record = records.get(i);
+            int offset = offset(start + i);
+            buffer.putLong(offset + TIME_FIELD, record.time());
+            buffer.putInt(offset + APP_FIELD, record.appId());
+            buffer.putInt(offset + URI_FIELD, record.uriId());
+            buffer.putLong(offset + IP_FIELD, record.ipKey());
+        }
+        synchronized (uriIds) {
+            records.forEach(record -> uriIds.set(record.uriId()));
+        }
+        long batchMin = records.get(0).time();
+        long batchMax = records.get(records.size() - 1).time();
+        ordered = ordered && (start == 0 || batchMin >= maxTime);
+        minTime = Math.min(minTime, batchMin);
+        maxTime = Math.max(maxTime, batchMax);
+        buffer.force();
+        count = start + records.size();
+        writeHeader();
+        buffer.force();
+    }
+
+    /**
+     * Whether the segment can hold records in {@code [from, to)} for at least one of {@code uriFilter}.
+     *
+     * @param uriFilter uri ids to look for, or {@code null} for any uri
+     */
+    boolean mayContain(long from, long to, int[] uriFilter) {
+        if (count == 0 || maxTime < from || minTime >= to) {
+            return false;
+        }
+        if (uriFilter == null) {
+            return true;
+        }
+        synchronized (uriIds) {
+            for (int uriId : uriFilter) {
+                if (uriIds.get(uriId)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visits every published record with a time in {@code [from, to)}.
+     */
+    void scan(long from, long to, RecordVisitor visitor) {
+        int published = count;
+        if (!ordered) {
+            for (int i = 0; i < published; i++) {
+                long time = time(i);
+                if (time >= from && time < to) {
+                    visit(i, time, visitor);
+                }
+            }
+            return;
+        }
+        for (int i = firstAtOrAfter(from, published); i < published; i++) {
+            long time = time(i);
+            if (time >= to) {
+                break;
+            }
+            visit(i, time, visitor);
+        }
+    }
+
+    private int firstAtOrAfter(long from, int published) {
+        int low = 0;
+        int high = published;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (time(middle) < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void visit(int index, long time, RecordVisitor visitor) {
+        int offset = offset(index);
+        visitor.visit(time, buffer.getInt(offset + APP_FIELD), buffer.getInt(offset + URI_FIELD),
+                buffer.getLong(offset + IP_FIELD));
+    }
+
+    private long time(int index) {
+        return buffer.getLong(offset(index) + TIME_FIELD);
+    }
+
+    private int uriId(int index) {
+        return buffer.getInt(offset(index) + URI_FIELD);
+    }
+
+    private static int offset(int index) {
+        return HEADER_BYTES + index * RECORD_BYTES;
+    }
+
+    private void writeHeader() {
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(COUNT_OFFSET, count);
+        buffer.putInt(ORDERED_OFFSET, ordered ? 1 : 0);
+        buffer.putLong(MIN_TIME_OFFSET, minTime);
+        buffer.putLong(MAX_TIME_OFFSET, maxTime);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(long time, int appId, int uriId, long ipKey);
+    }
+}
@@ -0,0 +1,336 @@
+package ru.practicum.storage.segment;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.bitmap.IpSet;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.model.UriPattern;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.HitCounts;
+import ru.practicum.storage.HitStorageEngine;
+import ru.practicum.storage.PartialWriteException;
+import ru.practicum.storage.ResultWindow;
+import ru.practicum.storage.StorageProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Embedded storage engine for single-node deployments: hits are appended to memory-mapped segment files of
+ * fixed-width records, with app, uri and non-IPv4 addresses replaced by ids from append-only dictionaries.
+ * Queries scan only the segments whose time range and uri set can match, so there are no rollups to maintain;
+ * unique counts are always exact, whatever mode is asked for.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "stats-server.storage", name = "engine", havingValue = "segment")
+public class SegmentHitStorageEngine implements HitStorageEngine {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final long DICTIONARY_IP_BASE = 1L << 32;
+
+    private final StorageProperties storageProperties;
+    private final SketchProperties sketchProperties;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    /**
+     * Every stored uri in order, for glob filters to find the uris sharing their literal prefix.
+     */
+    private final NavigableSet<String> sortedUris = new ConcurrentSkipListSet<>();
+
+    private StringDictionary apps;
+    private StringDictionary uris;
+    private StringDictionary ips;
+
+    @PostConstruct
+    public void open() throws IOException {
+        Path directory = storageProperties.getSegment().getDirectory();
+        Files.createDirectories(directory);
+        apps = new StringDictionary(directory.resolve("apps.dict"));
+        uris = new StringDictionary(directory.resolve("uris.dict"));
+        ips = new StringDictionary(directory.resolve("ips.dict"));
+        for (int id = 0; id < uris.size(); id++) {
+            sortedUris.add(uris.valueOf(id));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segmentFiles = files
+                    .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+            for (Path file : segmentFiles) {
+                segments.add(Segment.open(file));
+            }
+        }
+        log.info("Opened segment store in {}: {} segments, {} apps, {} uris", directory.toAbsolutePath(),
+                segments.size(), apps.size(), uris.size());
+    }
+
+    /**
+     * Appends the batch in time order. When an append fails after earlier chunks were appended, the hits from the
+     * failed chunk on are reported as unwritten.
+     */
+    @Override
+    public synchronized void write(List<ServiceHit> batch) {
+        List<ServiceHit> sorted = new ArrayList<>(batch);
+        sorted.sort(Comparator.comparing(ServiceHit::getCreated));
+        List<SegmentRecord> records = new ArrayList<>(sorted.size());
+        for (ServiceHit hit : sorted) {
+            records.add(new SegmentRecord(toMicros(hit.getCreated()), apps.getOrAdd(hit.getApp()),
+                    uris.getOrAdd(hit.getUri()), ipKey(hit.getIp())));
+            sortedUris.add(hit.getUri());
+        }
+        apps.flush();
+        uris.flush();
+        ips.flush();
+        int written = 0;
+        while (written < records.size()) {
+            try {
+                Segment segment = writableSegment();
+                int chunk = Math.min(segment.remaining(), records.size() - written);
+                segment.append(records.subList(written, written + chunk));
+                written += chunk;
+            } catch (RuntimeException e) {
+                if (written == 0) {
+                    throw e;
+                }
+                throw new PartialWriteException("Appended " + written + " of " + records.size() + " hits",
+                        sorted.subList(written, sorted.size()), e);
+            }
+        }
+    }
+
+    @Override
+    public List<StatResponseDto> countHits(LocalDateTime from, LocalDateTime to, String[] uris, ResultWindow window) {
+        int[] uriFilter = toUriFilter(uris);
+        if (uriFilter != null && uriFilter.length == 0) {
+            return List.of();
+        }
+        Map<Long, long[]> counts = new HashMap<>();
+        scan(from, to, uriFilter, (time, appId, uriId, ipKey) ->
+                counts.computeIfAbsent(key(appId, uriId), key -> new long[1])[0]++);
+        Map<AppUri, Long> hits = new LinkedHashMap<>();
+        counts.forEach((key, count) -> hits.put(toAppUri(key), count[0]));
+        return HitCounts.toSortedResponse(hits, window);
+    }
+
+    @Override
+    public List<StatResponseDto> countUniqueHits(LocalDateTime from,
+                                                 LocalDateTime to,
+                                                 String[] uris,
+                                                 UniqueCountMode mode,
+                                                 ResultWindow window) {
+        int[] uriFilter = toUriFilter(uris);
+        if (uriFilter != null && uriFilter.length == 0) {
+            return List.of();
+        }
+        Map<Long, Roaring64Bitmap> addresses = new HashMap<>();
+        scan(from, to, uriFilter, (time, appId, uriId, ipKey) ->
+                addresses.computeIfAbsent(key(appId, uriId), key -> new Roaring64Bitmap()).addLong(ipKey));
+        Map<AppUri, Long> hits = new LinkedHashMap<>();
+        addresses.forEach((key, bitmap) -> hits.put(toAppUri(key), bitmap.getLongCardinality()));
+        return HitCounts.toSortedResponse(hits, window);
+    }
+
+    @Override
+    public Map<AppUri, HyperLogLog> sketchUniqueHits(LocalDateTime from, LocalDateTime to, String[] uris) {
+        int[] uriFilter = toUriFilter(uris);
+        if (uriFilter != null && uriFilter.length == 0) {
+            return Map.of();
+        }
+        Map<Long, Roaring64Bitmap> addresses = new HashMap<>();
+        scan(from, to, uriFilter, (time, appId, uriId, ipKey) ->
+                addresses.computeIfAbsent(key(appId, uriId), key -> new Roaring64Bitmap()).addLong(ipKey));
+        int precision = sketchProperties.getPrecision();
+        Map<AppUri, HyperLogLog> sketches = new LinkedHashMap<>();
+        addresses.forEach((key, bitmap) -> {
+            HyperLogLog sketch = new HyperLogLog(precision);
+            bitmap.forEach(ipKey -> sketch.offer(ipOf(ipKey)));
+            sketches.put(toAppUri(key), sketch);
+        });
+        return sketches;
+    }
+
+    @Override
+    public List<String> findUris(UriPattern pattern, int limit) {
+        String prefix = pattern.literalPrefix();
+        Pattern regex = pattern.toRegex();
+        List<String> matches = new ArrayList<>();
+        for (String uri : sortedUris.tailSet(prefix, true)) {
+            if (!uri.startsWith(prefix) || matches.size() == limit) {
+                break;
+            }
+            if (regex.matcher(uri).matches()) {
+                matches.add(uri);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public Map<AppUri, NavigableMap<LocalDateTime, Long>> countHitSeries(LocalDateTime from,
+                                                                         LocalDateTime to,
+                                                                         String[] uris,
+                                                                         RollupGranularity granularity) {
+        int[] uriFilter = toUriFilter(uris);
+        if (uriFilter != null && uriFilter.length == 0) {
+            return Map.of();
+        }
+        long bucketMicros = granularity.getUnit().getDuration().toNanos() / 1_000;
+        Map<Long, Map<Long, long[]>> counts = new HashMap<>();
+        scan(from, to, uriFilter, (time, appId, uriId, ipKey) ->
+                counts.computeIfAbsent(key(appId, uriId), key -> new HashMap<>())
+                        .computeIfAbsent(Math.floorDiv(time, bucketMicros), bucket -> new long[1])[0]++);
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> series = new LinkedHashMap<>();
+        counts.forEach((key, buckets) -> {
+            NavigableMap<LocalDateTime, Long> appUriSeries = new TreeMap<>();
+            buckets.forEach((bucket, count) -> appUriSeries.put(fromMicros(bucket * bucketMicros), count[0]));
+            series.put(toAppUri(key), appUriSeries);
+        });
+        return series;
+    }
+
+    @Override
+    public Map<AppUri, NavigableMap<LocalDateTime, Long>> countUniqueHitSeries(LocalDateTime from,
+                                                                               LocalDateTime to,
+                                                                               String[] uris,
+                                                                               RollupGranularity granularity,
+                                                                               UniqueCountMode mode) {
+        int[] uriFilter = toUriFilter(uris);
+        if (uriFilter != null && uriFilter.length == 0) {
+            return Map.of();
+        }
+        long bucketMicros = granularity.getUnit().getDuration().toNanos() / 1_000;
+        Map<Long, Map<Long, Roaring64Bitmap>> addresses = new HashMap<>();
+        scan(from, to, uriFilter, (time, appId, uriId, ipKey) ->
+                addresses.computeIfAbsent(key(appId, uriId), key -> new HashMap<>())
+                        .computeIfAbsent(Math.floorDiv(time, bucketMicros), bucket -> new Roaring64Bitmap())
+                        .addLong(ipKey));
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> series = new LinkedHashMap<>();
+        addresses.forEach((key, buckets) -> {
+            NavigableMap<LocalDateTime, Long> appUriSeries = new TreeMap<>();
+            buckets.forEach((bucket, bitmap) ->
+                    appUriSeries.put(fromMicros(bucket * bucketMicros), bitmap.getLongCardinality()));
+            series.put(toAppUri(key), appUriSeries);
+        });
+        return series;
+    }
+
+    private void scan(LocalDateTime from, LocalDateTime to, int[] uriFilter, Segment.RecordVisitor visitor) {
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        Segment.RecordVisitor filtered = uriFilter == null ? visitor : (time, appId, uriId, ipKey) -> {
+            if (Arrays.binarySearch(uriFilter, uriId) >= 0) {
+                visitor.visit(time, appId, uriId, ipKey);
+            }
+        };
+        for (Segment segment : segments) {
+            if (segment.mayContain(fromMicros, toMicros, uriFilter)) {
+                segment.scan(fromMicros, toMicros, filtered);
+            }
+        }
+    }
+
+    /**
+     * Sorted ids of the requested uris that have ever been written, or {@code null} for every uri.
+     */
+    private int[] toUriFilter(String[] uris) {
+        if (uris == null) {
+            return null;
+        }
+        return Arrays.stream(uris)
+                .mapToInt(this.uris::idOf)
+                .filter(id -> id != StringDictionary.ABSENT)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    private Segment writableSegment() {
+        if (!segments.isEmpty()) {
+            Segment last = segments.get(segments.size() - 1);
+            if (last.remaining() > 0) {
+                return last;
+            }
+        }
+        Path file = storageProperties.getSegment().getDirectory()
+                .resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segments.size(), SEGMENT_SUFFIX));
+        try {
+            Segment segment = Segment.create(file, storageProperties.getSegment().getRecordsPerSegment());
+            segments.add(segment);
+            log.info("Started segment {}", file);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long ipKey(String ip) {
+        Integer ipv4 = IpSet.parseIpv4(ip);
+        return ipv4 != null ? Integer.toUnsignedLong(ipv4) : DICTIONARY_IP_BASE + ips.getOrAdd(ip);
+    }
+
+    /**
+     * The address an ip key was made from; IPv4 addresses come back in plain dotted-decimal form.
+     */
+    private String ipOf(long ipKey) {
+        if (ipKey >= DICTIONARY_IP_BASE) {
+            return ips.valueOf((int) (ipKey - DICTIONARY_IP_BASE));
+        }
+        return (ipKey >>> 24) + "." + ((ipKey >>> 16) & 0xff) + "." + ((ipKey >>> 8) & 0xff) + "." + (ipKey & 0xff);
+    }
+
+    private AppUri toAppUri(long key) {
+        return new AppUri(apps.valueOf((int) (key >>> 32)), uris.valueOf((int) key));
+    }
+
+    private static long key(int appId, int uriId) {
+        return ((long) appId << 32) | Integer.toUnsignedLong(uriId);
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        apps.close();
+        uris.close();
+        ips.close();
+    }
+}
@@ -0,0 +1,10 @@
+package ru.practicum.storage.segment;
+
+/**
+ * One hit as stored in a segment.
+ *
+ * @param time  creation time in epoch microseconds, UTC
+ * @param ipKey the unsigned IPv4 address, or {@code 2^32} plus the ip dictionary id for any other address
+ */
+record SegmentRecord(long time, int appId, int uriId, long ipKey) {
+}
@@ -0,0 +1,100 @@
+package ru.practicum.storage.segment;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only mapping between strings and dense int ids, persisted as one value per line; the id of a
+ * value is its line number. Ids are only ever added, so readers never see an id change meaning.
+ */
+final class StringDictionary implements Closeable {
+    public static final int ABSENT = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> values = Collections.synchronizedList(new ArrayList<>());
+    private final FileChannel channel;
+    private final BufferedWriter writer;
+    private boolean dirty;
+
+    StringDictionary(Path file) throws IOException {
+        if (Files.exists(file)) {
+            for (String value : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                ids.put(value, values.size());
+                values.add(value);
+            }
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+    }
+
+    int idOf(String value) {
+        return ids.getOrDefault(value, ABSENT);
+    }
+
+    String valueOf(int id) {
+        return values.get(id);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the id of {@code value}, assigning the next one if it is new. Only the writer thread calls this.
+     */
+    int getOrAdd(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Line breaks are not allowed in dictionary values: " + value);
+        }
+        try {
+            writer.write(value);
+            writer.newLine();
+            dirty = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int newId = values.size();
+        values.add(value);
+        ids.put(value, newId);
+        return newId;
+    }
+
+    /**
+     * Makes every assigned id durable, forcing the file to disk when ids were added since the last call; called
+     * before records referencing them are written.
+     */
+    void flush() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            writer.flush();
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,368 @@
+package ru.practicum.storage.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.ingest.HitBatchWriter;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EntityRef;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.model.UriPattern;
+import ru.practicum.repository.AppDictionaryRepository;
+import ru.practicum.repository.EntityHitRepository;
+import ru.practicum.repository.HitBatchRepository;
+import ru.practicum.repository.HitCountRepository;
+import ru.practicum.repository.HitDictionaries;
+import ru.practicum.repository.HitIpBitmapRepository;
+import ru.practicum.repository.HitRollupRepository;
+import ru.practicum.repository.HitSeriesRepository;
+import ru.practicum.repository.HitSketchRepository;
+import ru.practicum.repository.IpDictionaryRepository;
+import ru.practicum.repository.StatRepository;
+import ru.practicum.repository.UriDictionaryRepository;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.HitStorageEngine;
+import ru.practicum.storage.JdbcHitStorageEngine;
+import ru.practicum.storage.ResultWindow;
+import ru.practicum.storage.StorageProperties;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+
+/**
+ * One database of a sharded store, laid out as for the jdbc engine and with repositories of its own: dictionary
+ * ids are local to a database, and so are the caches of them. Writes and everything derived from them commit in
+ * one transaction of this database.
+ */
+final class JdbcShard implements HitStorageEngine, AutoCloseable {
+    private static final String SELECT_HIT_URIS = """
+            SELECT URI
+            FROM URI_DICTIONARY
+            WHERE ID IN (SELECT DISTINCT URI_ID FROM HIT)
+            """;
+    private static final String SELECT_HIT_PAGE = """
+            SELECT ID, APP_ID, URI_ID, IP_ID, CREATED
+            FROM HIT
+            WHERE URI_ID IN (:uriIds) AND ID > :after
+            ORDER BY ID
+            LIMIT :limit
+            """;
+    private static final String DELETE_HIT_PAGE = """
+            DELETE FROM HIT
+            WHERE URI_ID IN (:uriIds) AND ID > :after AND ID <= :through
+            """;
+    private static final String SELECT_MOVED = """
+            SELECT URI, MOVED_THROUGH_ID
+            FROM HIT_MOVE
+            WHERE SOURCE = :source AND URI IN (:uris)
+            """;
+    private static final String MERGE_MOVED = """
+            MERGE INTO HIT_MOVE m
+            USING (SELECT CAST(:source AS varchar(64)) AS SOURCE, CAST(:uri AS varchar(128)) AS URI,
+                          CAST(:through AS bigint) AS MOVED_THROUGH_ID) s
+            ON m.SOURCE = s.SOURCE AND m.URI = s.URI
+            WHEN MATCHED THEN UPDATE SET MOVED_THROUGH_ID = s.MOVED_THROUGH_ID
+            WHEN NOT MATCHED THEN INSERT (SOURCE, URI, MOVED_THROUGH_ID)
+                VALUES (s.SOURCE, s.URI, s.MOVED_THROUGH_ID)
+            """;
+    private static final String DELETE_MOVED = "DELETE FROM HIT_MOVE WHERE SOURCE = :source AND URI IN (:uris)";
+    private static final List<String> DELETE_DERIVED = List.of(
+            "DELETE FROM HIT_ROLLUP WHERE URI_ID IN (:uriIds)",
+            "DELETE FROM HIT_SKETCH WHERE URI_ID IN (:uriIds)",
+            "DELETE FROM HIT_SKETCH_DELTA WHERE URI_ID IN (:uriIds)",
+            "DELETE FROM HIT_IP_BITMAP WHERE URI_ID IN (:uriIds)",
+            "DELETE FROM HIT_IP_BITMAP_DELTA WHERE URI_ID IN (:uriIds)");
+    private static final List<String> DELETE_ENTITY = List.of(
+            "DELETE FROM ENTITY_HIT_COUNTER WHERE ENTITY_TYPE = :type AND ENTITY_ID = :id",
+            "DELETE FROM ENTITY_HIT_IP WHERE ENTITY_TYPE = :type AND ENTITY_ID = :id");
+
+    private final String name;
+    private final HikariDataSource dataSource;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AppDictionaryRepository appDictionaryRepository;
+    private final UriDictionaryRepository uriDictionaryRepository;
+    private final IpDictionaryRepository ipDictionaryRepository;
+    private final HitBatchWriter hitBatchWriter;
+    private final int compactionBatchSize;
+    private final JdbcHitStorageEngine engine;
+
+    JdbcShard(StorageProperties.Shard shard, StorageProperties storageProperties, SketchProperties sketchProperties) {
+        this.name = shard.getName();
+        this.dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(shard.getUrl())
+                .username(shard.getUsername())
+                .password(shard.getPassword())
+                .build();
+        dataSource.setPoolName("stats-shard-" + name);
+        JdbcTemplate plainJdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(plainJdbcTemplate);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.appDictionaryRepository = new AppDictionaryRepository(jdbcTemplate, transactionManager);
+        this.uriDictionaryRepository = new UriDictionaryRepository(jdbcTemplate, transactionManager);
+        this.ipDictionaryRepository = new IpDictionaryRepository(jdbcTemplate, transactionManager,
+                storageProperties);
+        HitDictionaries hitDictionaries = new HitDictionaries(appDictionaryRepository, uriDictionaryRepository,
+                ipDictionaryRepository);
+        StatRepository statRepository = new StatRepository(jdbcTemplate, hitDictionaries);
+        HitSketchRepository hitSketchRepository = new HitSketchRepository(jdbcTemplate, sketchProperties,
+                statRepository, hitDictionaries);
+        HitIpBitmapRepository hitIpBitmapRepository = new HitIpBitmapRepository(jdbcTemplate,
+                ipDictionaryRepository, statRepository, hitDictionaries);
+        EntityHitRepository entityHitRepository = new EntityHitRepository(jdbcTemplate, ipDictionaryRepository);
+        this.compactionBatchSize = storageProperties.getJdbc().getCompactionBatchSize();
+        this.hitBatchWriter = new HitBatchWriter(
+                new HitBatchRepository(plainJdbcTemplate, appDictionaryRepository, uriDictionaryRepository,
+                        ipDictionaryRepository),
+                new HitRollupRepository(plainJdbcTemplate, hitDictionaries),
+                hitSketchRepository,
+                hitIpBitmapRepository,
+                entityHitRepository);
+        this.engine = new JdbcHitStorageEngine(hitBatchWriter,
+                new HitCountRepository(jdbcTemplate, dataSource, storageProperties),
+                hitSketchRepository,
+                hitIpBitmapRepository,
+                entityHitRepository,
+                new HitSeriesRepository(jdbcTemplate, hitDictionaries),
+                uriDictionaryRepository,
+                storageProperties);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    void initSchema(List<String> locations) {
+        if (locations.isEmpty()) {
+            return;
+        }
+        ResourceLoader resourceLoader = new DefaultResourceLoader();
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        locations.forEach(location -> populator.addScript(resourceLoader.getResource(location)));
+        DatabasePopulatorUtils.execute(populator, dataSource);
+    }
+
+    @Override
+    public void write(List<ServiceHit> batch) {
+        transactionTemplate.executeWithoutResult(status -> engine.write(batch));
+    }
+
+    @Override
+    public void compact() {
+        Integer compacted;
+        do {
+            compacted = transactionTemplate.execute(status -> hitBatchWriter.compact(compactionBatchSize));
+        } while (compacted != null && compacted >= compactionBatchSize);
+    }
+
+    @Override
+    public List<StatResponseDto> countHits(LocalDateTime from, LocalDateTime to, String[] uris, ResultWindow window) {
+        return engine.countHits(from, to, uris, window);
+    }
+
+    @Override
+    public List<StatResponseDto> countUniqueHits(LocalDateTime from,
+                                                 LocalDateTime to,
+                                                 String[] uris,
+                                                 UniqueCountMode mode,
+                                                 ResultWindow window) {
+        return engine.countUniqueHits(from, to, uris, mode, window);
+    }
+
+    @Override
+    public Map<AppUri, HyperLogLog> sketchUniqueHits(LocalDateTime from, LocalDateTime to, String[] uris) {
+        return engine.sketchUniqueHits(from, to, uris);
+    }
+
+    @Override
+    public List<String> findUris(UriPattern pattern, int limit) {
+        return engine.findUris(pattern, limit);
+    }
+
+    @Override
+    public Map<AppUri, NavigableMap<LocalDateTime, Long>> countHitSeries(LocalDateTime from,
+                                                                         LocalDateTime to,
+                                                                         String[] uris,
+                                                                         RollupGranularity granularity) {
+        return engine.countHitSeries(from, to, uris, granularity);
+    }
+
+    @Override
+    public Map<AppUri, NavigableMap<LocalDateTime, Long>> countUniqueHitSeries(LocalDateTime from,
+                                                                               LocalDateTime to,
+                                                                               String[] uris,
+                                                                               RollupGranularity granularity,
+                                                                               UniqueCountMode mode) {
+        return engine.countUniqueHitSeries(from, to, uris, granularity, mode);
+    }
+
+    @Override
+    public Map<Long, Long> countEntityHits(String type, Collection<Long> ids, boolean unique) {
+        return engine.countEntityHits(type, ids, unique);
+    }
+
+    /**
+     * Every uri this shard holds raw hits of.
+     */
+    List<String> findHitUris() {
+        return jdbcTemplate.query(SELECT_HIT_URIS, (rs, rowNum) -> rs.getString("URI"));
+    }
+
+    /**
+     * Moves every hit of {@code uris} to {@code target} and drops what was derived from them here; the target
+     * derives its own as it writes them. Hits are read a page of {@code writeBatchSize} at a time, in id order, so
+     * neither side holds more than a page. Each page commits on the target together with the id it was moved
+     * through, per uri, in the target's {@code HIT_MOVE}, and only then is deleted here. A move cut short by a
+     * failure or a crash can therefore simply be run again: it skips the hits the target already took.
+     * <p>
+     * The derived rows are dropped first, since once hits start leaving they no longer match the hits here. This
+     * also makes a second run finish the move of uris whose hits are all gone already.
+     *
+     * @return number of hits moved
+     */
+    int moveHits(List<String> uris, JdbcShard target, int writeBatchSize) {
+        transactionTemplate.executeWithoutResult(status -> deleteDerived(uris));
+        Map<String, Integer> uriIds = uriDictionaryRepository.findIds(uris);
+        int moved = 0;
+        if (!uriIds.isEmpty()) {
+            Map<String, Long> movedThrough = target.findMoved(name, uris);
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("uriIds", uriIds.values())
+                    .addValue("after", 0L)
+                    .addValue("limit", writeBatchSize);
+            List<RawHit> page;
+            while (!(page = jdbcTemplate.query(SELECT_HIT_PAGE, params, JdbcShard::toRawHit)).isEmpty()) {
+                List<ServiceHit> hits = decode(page);
+                List<ServiceHit> unmoved = new ArrayList<>();
+                Map<String, Long> pageThrough = new HashMap<>();
+                for (int i = 0; i < page.size(); i++) {
+                    ServiceHit hit = hits.get(i);
+                    long id = page.get(i).id();
+                    if (id > movedThrough.getOrDefault(hit.getUri(), 0L)) {
+                        unmoved.add(hit);
+                        pageThrough.merge(hit.getUri(), id, Math::max);
+                    }
+                }
+                if (!unmoved.isEmpty()) {
+                    target.writeMoved(name, unmoved, pageThrough);
+                    moved += unmoved.size();
+                }
+                params.addValue("through", page.get(page.size() - 1).id());
+                jdbcTemplate.update(DELETE_HIT_PAGE, params);
+                params.addValue("after", page.get(page.size() - 1).id());
+            }
+        }
+        target.forgetMoved(name, uris);
+        return moved;
+    }
+
+    /**
+     * Source uri to the id of its last hit that {@code source} has moved here, for the uris with a move under way.
+     */
+    private Map<String, Long> findMoved(String source, Collection<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("source", source)
+                .addValue("uris", uris);
+        Map<String, Long> movedThrough = new HashMap<>();
+        jdbcTemplate.query(SELECT_MOVED, params, rs -> {
+            movedThrough.put(rs.getString("URI"), rs.getLong("MOVED_THROUGH_ID"));
+        });
+        return movedThrough;
+    }
+
+    /**
+     * Writes hits moved from {@code source} and, in the same transaction, the id each uri has been moved through.
+     */
+    private void writeMoved(String source, List<ServiceHit> hits, Map<String, Long> movedThrough) {
+        MapSqlParameterSource[] params = movedThrough.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("source", source)
+                        .addValue("uri", entry.getKey())
+                        .addValue("through", entry.getValue()))
+                .toArray(MapSqlParameterSource[]::new);
+        transactionTemplate.executeWithoutResult(status -> {
+            engine.write(hits);
+            jdbcTemplate.batchUpdate(MERGE_MOVED, params);
+        });
+    }
+
+    private void forgetMoved(String source, Collection<String> uris) {
+        jdbcTemplate.update(DELETE_MOVED, new MapSqlParameterSource()
+                .addValue("source", source)
+                .addValue("uris", uris));
+    }
+
+    private void deleteDerived(List<String> uris) {
+        Collection<Integer> uriIds = uriDictionaryRepository.findIds(uris).values();
+        if (!uriIds.isEmpty()) {
+            MapSqlParameterSource params = new MapSqlParameterSource("uriIds", uriIds);
+            DELETE_DERIVED.forEach(sql -> jdbcTemplate.update(sql, params));
+        }
+        MapSqlParameterSource[] entityParams = uris.stream()
+                .map(EntityRef::fromUri)
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(entity -> new MapSqlParameterSource()
+                        .addValue("type", entity.type())
+                        .addValue("id", entity.id()))
+                .toArray(MapSqlParameterSource[]::new);
+        DELETE_ENTITY.forEach(sql -> jdbcTemplate.batchUpdate(sql, entityParams));
+    }
+
+    private static RawHit toRawHit(ResultSet rs, int rowNum) throws SQLException {
+        return new RawHit(rs.getLong("ID"),
+                rs.getObject("APP_ID", Integer.class),
+                rs.getObject("URI_ID", Integer.class),
+                rs.getObject("IP_ID", Integer.class),
+                rs.getObject("CREATED", LocalDateTime.class));
+    }
+
+    private List<ServiceHit> decode(List<RawHit> rawHits) {
+        Map<Integer, String> apps = appDictionaryRepository.getValues(rawHits.stream().map(RawHit::appId).toList());
+        Map<Integer, String> uris = uriDictionaryRepository.getValues(rawHits.stream().map(RawHit::uriId).toList());
+        Map<Integer, String> ips = ipDictionaryRepository.getValues(rawHits.stream().map(RawHit::ipId).toList());
+        return rawHits.stream()
+                .map(hit -> ServiceHit.builder()
+                        .app(apps.get(hit.appId()))
+                        .uri(uris.get(hit.uriId()))
+                        .ip(ips.get(hit.ipId()))
+                        .created(hit.created())
+                        .build())
+                .toList();
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private record RawHit(long id, Integer appId, Integer uriId, Integer ipId, LocalDateTime created) {
+    }
+}
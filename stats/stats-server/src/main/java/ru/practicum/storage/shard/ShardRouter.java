@@ -0,0 +1,58 @@
+package ru.practicum.storage.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Picks the shard that keeps a uri by rendezvous hashing: every shard scores the uri and the highest score wins.
+ * Scores depend only on the uri and the shard name, so adding a shard moves just the uris it now wins, about one
+ * in {@code n + 1}, and removing one moves just its own uris; no other uri changes shards.
+ */
+final class ShardRouter {
+    private final long[] seeds;
+
+    ShardRouter(List<String> shardNames) {
+        this.seeds = shardNames.stream().mapToLong(ShardRouter::hash).toArray();
+    }
+
+    /**
+     * Index of the shard keeping {@code uri}, in the order the shard names were given.
+     */
+    int shardOf(String uri) {
+        long uriHash = hash(uri);
+        int best = 0;
+        long bestScore = mix(uriHash ^ seeds[0]);
+        for (int i = 1; i < seeds.length; i++) {
+            long score = mix(uriHash ^ seeds[i]);
+            if (Long.compareUnsigned(score, bestScore) > 0) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 64-bit FNV-1a.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * The MurmurHash3 finalizer, so that scores of one uri on different shards are unrelated.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb3fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
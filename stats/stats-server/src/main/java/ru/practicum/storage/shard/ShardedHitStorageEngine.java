@@ -0,0 +1,313 @@
+package ru.practicum.storage.shard;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EntityRef;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.model.UriPattern;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.HitCounts;
+import ru.practicum.storage.HitStorageEngine;
+import ru.practicum.storage.PartialWriteException;
+import ru.practicum.storage.ResultWindow;
+import ru.practicum.storage.StorageProperties;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * Spreads hits over several databases by uri, see {@link ShardRouter}. A query goes only to the shards keeping
+ * the uris it asks for, or to all of them without a uri filter, runs there in parallel, and the partial results
+ * are merged. Every result is grouped by app and uri and all hits of a uri are on one shard, so the partial
+ * results never share a row: unique counts merge exactly, without sketches, and only the ordering and the window
+ * are applied again. Each shard is asked for the first {@code offset + limit} rows, which contain the window.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "stats-server.storage", name = "engine", havingValue = "sharded")
+public class ShardedHitStorageEngine implements HitStorageEngine {
+    private static final int REBALANCE_WRITE_BATCH_SIZE = 10_000;
+
+    private final StorageProperties storageProperties;
+    private final SketchProperties sketchProperties;
+    private final List<JdbcShard> shards = new ArrayList<>();
+
+    private ShardRouter router;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void open() {
+        StorageProperties.Sharding sharding = storageProperties.getSharding();
+        if (sharding.getShards().isEmpty()) {
+            throw new IllegalStateException("stats-server.storage.sharding.shards is empty");
+        }
+        for (StorageProperties.Shard shard : sharding.getShards()) {
+            JdbcShard jdbcShard = new JdbcShard(shard, storageProperties, sketchProperties);
+            shards.add(jdbcShard);
+            jdbcShard.initSchema(sharding.getSchemaLocations());
+        }
+        router = new ShardRouter(shards.stream().map(JdbcShard::getName).toList());
+        executor = Executors.newFixedThreadPool(sharding.getParallelism(),
+                Thread.ofPlatform().name("stats-shard-", 0).daemon().factory());
+        log.info("Opened {} storage shards: {}", shards.size(), shards);
+        if (sharding.isRebalanceOnStart()) {
+            rebalance();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+        shards.forEach(JdbcShard::close);
+    }
+
+    /**
+     * Moves the hits of every uri kept by another shard than the one holding them. It runs before the ingestion
+     * writer starts, so no hit of a uri being moved arrives meanwhile.
+     */
+    void rebalance() {
+        int batchSize = storageProperties.getSharding().getRebalanceBatchSize();
+        for (JdbcShard source : shards) {
+            Map<JdbcShard, List<String>> misplaced = new LinkedHashMap<>();
+            for (String uri : source.findHitUris()) {
+                JdbcShard owner = shardOf(uri);
+                if (owner != source) {
+                    misplaced.computeIfAbsent(owner, key -> new ArrayList<>()).add(uri);
+                }
+            }
+            misplaced.forEach((target, uris) -> {
+                log.info("Moving hits of {} uris from shard {} to shard {}", uris.size(), source, target);
+                for (int from = 0; from < uris.size(); from += batchSize) {
+                    List<String> batch = uris.subList(from, Math.min(uris.size(), from + batchSize));
+                    int moved = source.moveHits(batch, target, REBALANCE_WRITE_BATCH_SIZE);
+                    log.debug("Moved {} hits of {} uris from shard {} to shard {}", moved, batch.size(), source,
+                            target);
+                }
+            });
+        }
+        log.info("Storage shards rebalanced");
+    }
+
+    /**
+     * Writes the hits of every shard in a transaction of that shard. When some shards fail, the others have
+     * committed, so the failure names just the hits of the failed shards as unwritten.
+     */
+    @Override
+    public void write(List<ServiceHit> batch) {
+        Map<JdbcShard, List<ServiceHit>> byShard = new LinkedHashMap<>();
+        batch.forEach(hit -> byShard.computeIfAbsent(shardOf(hit.getUri()), key -> new ArrayList<>()).add(hit));
+        if (byShard.size() == 1) {
+            byShard.forEach(JdbcShard::write);
+            return;
+        }
+        Map<JdbcShard, Future<?>> futures = new LinkedHashMap<>();
+        byShard.forEach((shard, hits) -> futures.put(shard, executor.submit(() -> shard.write(hits))));
+        List<ServiceHit> unwritten = new ArrayList<>();
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        for (Map.Entry<JdbcShard, Future<?>> entry : futures.entrySet()) {
+            while (true) {
+                try {
+                    entry.getValue().get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    unwritten.addAll(byShard.get(entry.getKey()));
+                    failure = e.getCause() instanceof RuntimeException cause ? cause
+                            : new IllegalStateException(e.getCause());
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure == null) {
+            return;
+        }
+        if (unwritten.size() == batch.size()) {
+            throw failure;
+        }
+        throw new PartialWriteException("Failed to write " + unwritten.size() + " of " + batch.size() + " hits",
+                unwritten, failure);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${stats-server.storage.jdbc.compaction-interval:10s}")
+    public void compact() {
+        onShards(route(null), (shard, uris) -> {
+            shard.compact();
+            return shard;
+        });
+    }
+
+    @Override
+    public List<StatResponseDto> countHits(LocalDateTime from, LocalDateTime to, String[] uris, ResultWindow window) {
+        ResultWindow head = head(window);
+        return merge(onShards(route(uris), (shard, shardUris) -> shard.countHits(from, to, shardUris, head)), window);
+    }
+
+    @Override
+    public List<StatResponseDto> countUniqueHits(LocalDateTime from,
+                                                 LocalDateTime to,
+                                                 String[] uris,
+                                                 UniqueCountMode mode,
+                                                 ResultWindow window) {
+        ResultWindow head = head(window);
+        return merge(onShards(route(uris),
+                (shard, shardUris) -> shard.countUniqueHits(from, to, shardUris, mode, head)), window);
+    }
+
+    @Override
+    public Map<AppUri, HyperLogLog> sketchUniqueHits(LocalDateTime from, LocalDateTime to, String[] uris) {
+        Map<AppUri, HyperLogLog> sketches = new LinkedHashMap<>();
+        onShards(route(uris), (shard, shardUris) -> shard.sketchUniqueHits(from, to, shardUris))
+                .forEach(partial -> partial.forEach((appUri, sketch) -> sketches.merge(appUri, sketch,
+                        (left, right) -> {
+                            left.merge(right);
+                            return left;
+                        })));
+        return sketches;
+    }
+
+    /**
+     * Up to {@code limit} matches over all shards, in uri order. A uri moved away by rebalancing is still in the
+     * dictionary of its old shard, which is why the matches are deduplicated.
+     */
+    @Override
+    public List<String> findUris(UriPattern pattern, int limit) {
+        TreeSet<String> uris = new TreeSet<>();
+        onShards(route(null), (shard, shardUris) -> shard.findUris(pattern, limit)).forEach(uris::addAll);
+        return uris.stream().limit(limit).toList();
+    }
+
+    @Override
+    public Map<AppUri, NavigableMap<LocalDateTime, Long>> countHitSeries(LocalDateTime from,
+                                                                         LocalDateTime to,
+                                                                         String[] uris,
+                                                                         RollupGranularity granularity) {
+        return mergeSeries(onShards(route(uris),
+                (shard, shardUris) -> shard.countHitSeries(from, to, shardUris, granularity)));
+    }
+
+    @Override
+    public Map<AppUri, NavigableMap<LocalDateTime, Long>> countUniqueHitSeries(LocalDateTime from,
+                                                                               LocalDateTime to,
+                                                                               String[] uris,
+                                                                               RollupGranularity granularity,
+                                                                               UniqueCountMode mode) {
+        return mergeSeries(onShards(route(uris),
+                (shard, shardUris) -> shard.countUniqueHitSeries(from, to, shardUris, granularity, mode)));
+    }
+
+    @Override
+    public Map<Long, Long> countEntityHits(String type, Collection<Long> ids, boolean unique) {
+        Map<JdbcShard, List<Long>> byShard = new LinkedHashMap<>();
+        ids.forEach(id -> byShard.computeIfAbsent(shardOf(new EntityRef(type, id).toUri()),
+                key -> new ArrayList<>()).add(id));
+        Map<Long, Long> hits = new HashMap<>();
+        onShards(byShard, (shard, shardIds) -> shard.countEntityHits(type, shardIds, unique))
+                .forEach(partial -> partial.forEach((id, count) -> hits.merge(id, count, Long::sum)));
+        return hits;
+    }
+
+    private JdbcShard shardOf(String uri) {
+        return shards.get(router.shardOf(uri));
+    }
+
+    /**
+     * The shards to ask and the uris to ask each of them for; every shard and no filter when {@code uris} is
+     * {@code null}.
+     */
+    private Map<JdbcShard, String[]> route(String[] uris) {
+        Map<JdbcShard, String[]> targets = new LinkedHashMap<>();
+        if (uris == null) {
+            shards.forEach(shard -> targets.put(shard, null));
+            return targets;
+        }
+        Map<JdbcShard, List<String>> byShard = new LinkedHashMap<>();
+        for (String uri : uris) {
+            byShard.computeIfAbsent(shardOf(uri), key -> new ArrayList<>()).add(uri);
+        }
+        byShard.forEach((shard, shardUris) -> targets.put(shard, shardUris.toArray(String[]::new)));
+        return targets;
+    }
+
+    /**
+     * Results of {@code call} on every target shard with its argument, on the shard pool when there is more than
+     * one target.
+     */
+    private <A, T> List<T> onShards(Map<JdbcShard, A> targets, BiFunction<JdbcShard, A, T> call) {
+        if (targets.size() == 1) {
+            Map.Entry<JdbcShard, A> target = targets.entrySet().iterator().next();
+            return List.of(call.apply(target.getKey(), target.getValue()));
+        }
+        List<Future<T>> futures = targets.entrySet().stream()
+                .map(target -> executor.submit(() -> call.apply(target.getKey(), target.getValue())))
+                .toList();
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for storage shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    private static ResultWindow head(ResultWindow window) {
+        if (!window.isLimited()) {
+            return ResultWindow.ALL;
+        }
+        return new ResultWindow(0, (int) Math.min(Integer.MAX_VALUE, (long) window.offset() + window.limit()));
+    }
+
+    private static List<StatResponseDto> merge(List<List<StatResponseDto>> partials, ResultWindow window) {
+        Map<AppUri, Long> hits = new HashMap<>();
+        partials.forEach(rows -> rows.forEach(row ->
+                hits.merge(new AppUri(row.getApp(), row.getUri()), row.getHits(), Long::sum)));
+        return HitCounts.toSortedResponse(hits, window);
+    }
+
+    private static Map<AppUri, NavigableMap<LocalDateTime, Long>> mergeSeries(
+            List<Map<AppUri, NavigableMap<LocalDateTime, Long>>> partials) {
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> series = new LinkedHashMap<>();
+        partials.forEach(partial -> partial.forEach((appUri, buckets) -> buckets.forEach((start, hits) ->
+                series.computeIfAbsent(appUri, key -> new TreeMap<>()).merge(start, hits, Long::sum))));
+        return series;
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.timeseries;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "stats-server.timeseries")
+public class TimeSeriesProperties {
+    /**
+     * Most buckets one series of {@code /stats/timeseries} may have. Without a requested granularity the finest
+     * one that stays within this is used; a requested granularity that needs more is refused.
+     */
+    private int maxBuckets = 1500;
+}
@@ -0,0 +1,51 @@
+package ru.practicum.trending;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch of item frequencies: {@code depth} rows of {@code width} counters. An estimate never
+ * undercounts and overcounts by at most {@code e * n / width} with probability {@code 1 - e^-depth}. Not
+ * thread-safe.
+ */
+final class CountMinSketch {
+    private final int width;
+    private final long[][] counters;
+
+    CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Width and depth must be positive: " + width + "x" + depth);
+        }
+        this.width = width;
+        this.counters = new long[depth][width];
+    }
+
+    void add(long hash) {
+        for (int row = 0; row < counters.length; row++) {
+            counters[row][index(hash, row)]++;
+        }
+    }
+
+    long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) {
+            estimate = Math.min(estimate, counters[row][index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    void clear() {
+        for (long[] row : counters) {
+            Arrays.fill(row, 0);
+        }
+    }
+
+    /**
+     * Kirsch-Mitzenmacher double hashing: row {@code i} uses {@code h1 + i * h2} of the two halves of one
+     * 64-bit hash.
+     */
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + row * h2, width);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.practicum.trending;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving heavy-hitters summary: at most {@code capacity} monitored items with their counts. An unmonitored
+ * item replaces the item with the smallest count and inherits that count, so any item whose true frequency
+ * exceeds {@code n / capacity} is guaranteed to be monitored. Not thread-safe.
+ */
+final class SpaceSaving<T> {
+    private final int capacity;
+    private final Map<T, Counter<T>> counters = new HashMap<>();
+    private final TreeSet<Counter<T>> byCount = new TreeSet<>(Comparator
+            .comparingLong((Counter<T> counter) -> counter.count)
+            .thenComparingLong(counter -> counter.sequence));
+    private long sequence;
+
+    SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    void offer(T item) {
+        Counter<T> counter = counters.get(item);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count++;
+            counter.sequence = sequence++;
+            byCount.add(counter);
+            return;
+        }
+        long inherited = 0;
+        if (counters.size() == capacity) {
+            Counter<T> evicted = byCount.pollFirst();
+            counters.remove(evicted.item);
+            inherited = evicted.count;
+        }
+        counter = new Counter<>(item, inherited + 1, sequence++);
+        counters.put(item, counter);
+        byCount.add(counter);
+    }
+
+    List<T> items() {
+        return List.copyOf(counters.keySet());
+    }
+
+    void clear() {
+        counters.clear();
+        byCount.clear();
+    }
+
+    private static final class Counter<T> {
+        private final T item;
+        private long count;
+        private long sequence;
+
+        private Counter(T item, long count, long sequence) {
+            this.item = item;
+            this.count = count;
+            this.sequence = sequence;
+        }
+    }
+}
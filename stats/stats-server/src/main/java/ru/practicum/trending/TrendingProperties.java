@@ -0,0 +1,33 @@
+package ru.practicum.trending;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "stats-server.trending")
+public class TrendingProperties {
+    /**
+     * Length of one time slice; the window of {@code /stats/top} is rounded up to whole slices.
+     */
+    private Duration sliceDuration = Duration.ofMinutes(1);
+    /**
+     * How far back {@code /stats/top} can look.
+     */
+    private Duration retention = Duration.ofHours(1);
+    /**
+     * Uris monitored per slice by the Space-Saving summary.
+     */
+    private int candidatesPerSlice = 1000;
+    private int sketchWidth = 2048;
+    private int sketchDepth = 4;
+
+    public int getSliceCount() {
+        return (int) Math.ceilDiv(retention.toMillis(), sliceDuration.toMillis());
+    }
+}
@@ -0,0 +1,124 @@
+package ru.practicum.trending;
+
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.model.AppUri;
+import ru.practicum.storage.HitCounts;
+import ru.practicum.storage.ResultWindow;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Most-hit uris of the last minutes, kept in memory only. Hits are counted into a ring of time slices; each
+ * slice has a Space-Saving summary that nominates candidate uris and a count-min sketch that estimates how
+ * often any uri was hit in it. A query takes the candidates of every slice in the window and ranks them by
+ * the sum of their estimates across those slices, so a uri that is hot overall but never topped a single slice
+ * still ranks correctly as long as one slice nominated it. Slices are reused, and thereby forgotten, as the
+ * clock moves past the retention.
+ */
+@Component
+public class TrendingUris {
+    private final long sliceMillis;
+    private final Slice[] ring;
+
+    public TrendingUris(TrendingProperties properties) {
+        this.sliceMillis = properties.getSliceDuration().toMillis();
+        this.ring = new Slice[properties.getSliceCount()];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Slice(properties);
+        }
+    }
+
+    public void record(String app, String uri) {
+        AppUri key = new AppUri(app, uri);
+        long number = System.currentTimeMillis() / sliceMillis;
+        Slice slice = ring[(int) (number % ring.length)];
+        synchronized (slice) {
+            if (slice.number != number) {
+                slice.reset(number);
+            }
+            slice.candidates.offer(key);
+            slice.counts.add(hash(key));
+        }
+    }
+
+    /**
+     * The {@code limit} most-hit uris of the last {@code window}, with estimated hit counts.
+     */
+    public List<StatResponseDto> top(Duration window, int limit) {
+        long current = System.currentTimeMillis() / sliceMillis;
+        int sliceCount = (int) Math.min(ring.length, Math.ceilDiv(window.toMillis(), sliceMillis));
+        Set<AppUri> candidates = new HashSet<>();
+        for (int i = 0; i < sliceCount; i++) {
+            Slice slice = ring[(int) ((current - i) % ring.length)];
+            synchronized (slice) {
+                if (slice.number == current - i) {
+                    candidates.addAll(slice.candidates.items());
+                }
+            }
+        }
+        List<AppUri> keys = new ArrayList<>(candidates);
+        long[] hashes = keys.stream().mapToLong(TrendingUris::hash).toArray();
+        long[] estimates = new long[keys.size()];
+        for (int i = 0; i < sliceCount; i++) {
+            Slice slice = ring[(int) ((current - i) % ring.length)];
+            synchronized (slice) {
+                if (slice.number == current - i) {
+                    for (int k = 0; k < hashes.length; k++) {
+                        estimates[k] += slice.counts.estimate(hashes[k]);
+                    }
+                }
+            }
+        }
+        Map<AppUri, Long> hits = new HashMap<>();
+        for (int k = 0; k < keys.size(); k++) {
+            hits.put(keys.get(k), estimates[k]);
+        }
+        return HitCounts.toSortedResponse(hits, new ResultWindow(0, limit));
+    }
+
+    public Duration getRetention() {
+        return Duration.ofMillis(sliceMillis * ring.length);
+    }
+
+    /**
+     * 64-bit FNV-1a over app and uri followed by the MurmurHash3 finalizer.
+     */
+    private static long hash(AppUri key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : (key.app() + '\n' + key.uri()).getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb3fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Slice {
+        private final SpaceSaving<AppUri> candidates;
+        private final CountMinSketch counts;
+        private long number = -1;
+
+        private Slice(TrendingProperties properties) {
+            this.candidates = new SpaceSaving<>(properties.getCandidatesPerSlice());
+            this.counts = new CountMinSketch(properties.getSketchWidth(), properties.getSketchDepth());
+        }
+
+        private void reset(long number) {
+            this.number = number;
+            candidates.clear();
+            counts.clear();
+        }
+    }
+}
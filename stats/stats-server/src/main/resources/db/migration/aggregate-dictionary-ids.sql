@@ -0,0 +1,82 @@
+-- Moves HIT_ROLLUP, HIT_SKETCH, HIT_IP_BITMAP and their delta tables from varchar APP and URI columns to the
+-- dictionary ids HIT is stored with. Run once with the stats-server stopped, after hit-dictionary-encoding.sql and
+-- hit-sketch-deltas.sql. Buckets may outlive the raw hits they were counted from, so their apps and uris are added
+-- to the dictionaries first.
+
+BEGIN;
+
+INSERT INTO public.APP_DICTIONARY (APP)
+SELECT APP FROM public.HIT_ROLLUP
+UNION SELECT APP FROM public.HIT_SKETCH
+UNION SELECT APP FROM public.HIT_SKETCH_DELTA
+UNION SELECT APP FROM public.HIT_IP_BITMAP
+UNION SELECT APP FROM public.HIT_IP_BITMAP_DELTA
+ON CONFLICT (APP) DO NOTHING;
+
+INSERT INTO public.URI_DICTIONARY (URI)
+SELECT URI FROM public.HIT_ROLLUP
+UNION SELECT URI FROM public.HIT_SKETCH
+UNION SELECT URI FROM public.HIT_SKETCH_DELTA
+UNION SELECT URI FROM public.HIT_IP_BITMAP
+UNION SELECT URI FROM public.HIT_IP_BITMAP_DELTA
+ON CONFLICT (URI) DO NOTHING;
+
+-- Dropping APP and URI drops the primary keys built on them; they are recreated on the ids.
+ALTER TABLE public.HIT_ROLLUP ADD COLUMN APP_ID integer, ADD COLUMN URI_ID integer;
+UPDATE public.HIT_ROLLUP t
+SET APP_ID = (SELECT a.ID FROM public.APP_DICTIONARY a WHERE a.APP = t.APP),
+    URI_ID = (SELECT u.ID FROM public.URI_DICTIONARY u WHERE u.URI = t.URI);
+ALTER TABLE public.HIT_ROLLUP
+    DROP COLUMN APP,
+    DROP COLUMN URI,
+    ALTER COLUMN APP_ID SET NOT NULL,
+    ALTER COLUMN URI_ID SET NOT NULL;
+ALTER TABLE public.HIT_ROLLUP ADD CONSTRAINT hit_rollup_pkey PRIMARY KEY (GRANULARITY, BUCKET, APP_ID, URI_ID);
+
+ALTER TABLE public.HIT_SKETCH ADD COLUMN APP_ID integer, ADD COLUMN URI_ID integer;
+UPDATE public.HIT_SKETCH t
+SET APP_ID = (SELECT a.ID FROM public.APP_DICTIONARY a WHERE a.APP = t.APP),
+    URI_ID = (SELECT u.ID FROM public.URI_DICTIONARY u WHERE u.URI = t.URI);
+ALTER TABLE public.HIT_SKETCH
+    DROP COLUMN APP,
+    DROP COLUMN URI,
+    ALTER COLUMN APP_ID SET NOT NULL,
+    ALTER COLUMN URI_ID SET NOT NULL;
+ALTER TABLE public.HIT_SKETCH ADD CONSTRAINT hit_sketch_pkey PRIMARY KEY (GRANULARITY, BUCKET, APP_ID, URI_ID);
+
+ALTER TABLE public.HIT_SKETCH_DELTA ADD COLUMN APP_ID integer, ADD COLUMN URI_ID integer;
+UPDATE public.HIT_SKETCH_DELTA t
+SET APP_ID = (SELECT a.ID FROM public.APP_DICTIONARY a WHERE a.APP = t.APP),
+    URI_ID = (SELECT u.ID FROM public.URI_DICTIONARY u WHERE u.URI = t.URI);
+ALTER TABLE public.HIT_SKETCH_DELTA
+    DROP COLUMN APP,
+    DROP COLUMN URI,
+    ALTER COLUMN APP_ID SET NOT NULL,
+    ALTER COLUMN URI_ID SET NOT NULL;
+
+ALTER TABLE public.HIT_IP_BITMAP ADD COLUMN APP_ID integer, ADD COLUMN URI_ID integer;
+UPDATE public.HIT_IP_BITMAP t
+SET APP_ID = (SELECT a.ID FROM public.APP_DICTIONARY a WHERE a.APP = t.APP),
+    URI_ID = (SELECT u.ID FROM public.URI_DICTIONARY u WHERE u.URI = t.URI);
+ALTER TABLE public.HIT_IP_BITMAP
+    DROP COLUMN APP,
+    DROP COLUMN URI,
+    ALTER COLUMN APP_ID SET NOT NULL,
+    ALTER COLUMN URI_ID SET NOT NULL;
+ALTER TABLE public.HIT_IP_BITMAP ADD CONSTRAINT hit_ip_bitmap_pkey PRIMARY KEY (BUCKET, APP_ID, URI_ID);
+
+ALTER TABLE public.HIT_IP_BITMAP_DELTA ADD COLUMN APP_ID integer, ADD COLUMN URI_ID integer;
+UPDATE public.HIT_IP_BITMAP_DELTA t
+SET APP_ID = (SELECT a.ID FROM public.APP_DICTIONARY a WHERE a.APP = t.APP),
+    URI_ID = (SELECT u.ID FROM public.URI_DICTIONARY u WHERE u.URI = t.URI);
+ALTER TABLE public.HIT_IP_BITMAP_DELTA
+    DROP COLUMN APP,
+    DROP COLUMN URI,
+    ALTER COLUMN APP_ID SET NOT NULL,
+    ALTER COLUMN URI_ID SET NOT NULL;
+
+COMMIT;
+
+-- Dropped columns keep their space until the rows are rewritten.
+VACUUM FULL ANALYZE public.HIT_ROLLUP, public.HIT_SKETCH, public.HIT_SKETCH_DELTA, public.HIT_IP_BITMAP,
+    public.HIT_IP_BITMAP_DELTA;
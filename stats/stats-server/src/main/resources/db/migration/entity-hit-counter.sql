@@ -0,0 +1,43 @@
+-- Creates the per-entity counters behind POST /stats/entities and fills them from the hits already stored.
+-- Run once with the stats-server stopped, after hit-dictionary-encoding.sql. Only uris of the form /<type>/<id>
+-- are counted, the same rule the server applies to new hits.
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS public.ENTITY_HIT_COUNTER
+(
+    ENTITY_TYPE character varying(64) NOT NULL,
+    ENTITY_ID   bigint                NOT NULL,
+    HITS        bigint                NOT NULL,
+    UNIQUE_HITS bigint                NOT NULL,
+    CONSTRAINT entity_hit_counter_pkey PRIMARY KEY (ENTITY_TYPE, ENTITY_ID)
+);
+
+CREATE TABLE IF NOT EXISTS public.ENTITY_HIT_IP
+(
+    ENTITY_TYPE character varying(64) NOT NULL,
+    ENTITY_ID   bigint                NOT NULL,
+    IP_ID       integer               NOT NULL,
+    CONSTRAINT entity_hit_ip_pkey PRIMARY KEY (ENTITY_TYPE, ENTITY_ID, IP_ID)
+);
+
+TRUNCATE public.ENTITY_HIT_COUNTER, public.ENTITY_HIT_IP;
+
+CREATE TEMPORARY TABLE entity_hit ON COMMIT DROP AS
+SELECT split_part(u.URI, '/', 2)::varchar(64) AS ENTITY_TYPE,
+       split_part(u.URI, '/', 3)::bigint      AS ENTITY_ID,
+       h.IP_ID
+FROM public.HIT h
+         JOIN public.URI_DICTIONARY u ON u.ID = h.URI_ID
+WHERE u.URI ~ '^/[A-Za-z][A-Za-z0-9_-]{0,63}/[0-9]{1,18}$';
+
+INSERT INTO public.ENTITY_HIT_IP (ENTITY_TYPE, ENTITY_ID, IP_ID)
+SELECT DISTINCT ENTITY_TYPE, ENTITY_ID, IP_ID
+FROM entity_hit;
+
+INSERT INTO public.ENTITY_HIT_COUNTER (ENTITY_TYPE, ENTITY_ID, HITS, UNIQUE_HITS)
+SELECT ENTITY_TYPE, ENTITY_ID, count(*), count(DISTINCT IP_ID)
+FROM entity_hit
+GROUP BY ENTITY_TYPE, ENTITY_ID;
+
+COMMIT;
@@ -0,0 +1,63 @@
+-- Moves an existing Postgres HIT table from varchar APP, URI and IP columns to dictionary ids.
+-- Run once with the stats-server stopped, before starting the version that writes APP_ID, URI_ID and IP_ID.
+-- Works for both the plain and the partitioned HIT layout: column changes propagate to every partition.
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS public.APP_DICTIONARY
+(
+    ID  integer GENERATED BY DEFAULT AS IDENTITY,
+    APP character varying(128) NOT NULL,
+    CONSTRAINT app_dictionary_pkey PRIMARY KEY (ID),
+    CONSTRAINT app_dictionary_app_key UNIQUE (APP)
+);
+
+CREATE TABLE IF NOT EXISTS public.URI_DICTIONARY
+(
+    ID  integer GENERATED BY DEFAULT AS IDENTITY,
+    URI character varying(128) NOT NULL,
+    CONSTRAINT uri_dictionary_pkey PRIMARY KEY (ID),
+    CONSTRAINT uri_dictionary_uri_key UNIQUE (URI)
+);
+
+CREATE TABLE IF NOT EXISTS public.IP_DICTIONARY
+(
+    ID integer GENERATED BY DEFAULT AS IDENTITY,
+    IP character varying(128) NOT NULL,
+    CONSTRAINT ip_dictionary_pkey PRIMARY KEY (ID),
+    CONSTRAINT ip_dictionary_ip_key UNIQUE (IP)
+);
+
+INSERT INTO public.APP_DICTIONARY (APP)
+SELECT DISTINCT APP FROM public.HIT WHERE APP IS NOT NULL
+ON CONFLICT (APP) DO NOTHING;
+
+INSERT INTO public.URI_DICTIONARY (URI)
+SELECT DISTINCT URI FROM public.HIT WHERE URI IS NOT NULL
+ON CONFLICT (URI) DO NOTHING;
+
+-- IP_DICTIONARY may already hold the non-IPv4 ips of HIT_IP_BITMAP; their ids are kept.
+INSERT INTO public.IP_DICTIONARY (IP)
+SELECT DISTINCT IP FROM public.HIT WHERE IP IS NOT NULL
+ON CONFLICT (IP) DO NOTHING;
+
+ALTER TABLE public.HIT
+    ADD COLUMN APP_ID integer,
+    ADD COLUMN URI_ID integer,
+    ADD COLUMN IP_ID integer;
+
+-- One pass over HIT instead of one per column.
+UPDATE public.HIT h
+SET APP_ID = (SELECT a.ID FROM public.APP_DICTIONARY a WHERE a.APP = h.APP),
+    URI_ID = (SELECT u.ID FROM public.URI_DICTIONARY u WHERE u.URI = h.URI),
+    IP_ID  = (SELECT i.ID FROM public.IP_DICTIONARY i WHERE i.IP = h.IP);
+
+ALTER TABLE public.HIT
+    DROP COLUMN APP,
+    DROP COLUMN URI,
+    DROP COLUMN IP;
+
+COMMIT;
+
+-- Dropped columns keep their space until the rows are rewritten.
+VACUUM FULL ANALYZE public.HIT;
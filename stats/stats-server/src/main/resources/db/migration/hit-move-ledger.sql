@@ -0,0 +1,11 @@
+-- Adds the table where a shard records, per source shard and uri, the id of the last hit it has taken over while
+-- rebalancing, so that a move cut short can be run again without copying hits twice. Run once on every shard
+-- before rebalancing with the version that writes it.
+
+CREATE TABLE IF NOT EXISTS public.HIT_MOVE
+(
+    SOURCE           character varying(64)  NOT NULL,
+    URI              character varying(128) NOT NULL,
+    MOVED_THROUGH_ID bigint                 NOT NULL,
+    CONSTRAINT hit_move_pkey PRIMARY KEY (SOURCE, URI)
+);
@@ -0,0 +1,33 @@
+-- Adds the delta tables that every batch now writes its ip sketches and bitmaps to, instead of rewriting
+-- whole HIT_SKETCH and HIT_IP_BITMAP rows. Run once before starting the version that writes them; the existing
+-- sketches and bitmaps stay as they are.
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS public.HIT_SKETCH_DELTA
+(
+    ID          bigint GENERATED BY DEFAULT AS IDENTITY,
+    GRANULARITY character varying(8)   NOT NULL,
+    BUCKET      timestamp without time zone NOT NULL,
+    APP         character varying(128) NOT NULL,
+    URI         character varying(128) NOT NULL,
+    SKETCH      bytea                  NOT NULL,
+    CONSTRAINT hit_sketch_delta_pkey PRIMARY KEY (ID)
+);
+
+CREATE INDEX IF NOT EXISTS hit_sketch_delta_bucket_idx ON public.HIT_SKETCH_DELTA (GRANULARITY, BUCKET);
+
+CREATE TABLE IF NOT EXISTS public.HIT_IP_BITMAP_DELTA
+(
+    ID             bigint GENERATED BY DEFAULT AS IDENTITY,
+    BUCKET         timestamp without time zone NOT NULL,
+    APP            character varying(128) NOT NULL,
+    URI            character varying(128) NOT NULL,
+    IPV4           bytea                  NOT NULL,
+    DICTIONARY_IDS bytea                  NOT NULL,
+    CONSTRAINT hit_ip_bitmap_delta_pkey PRIMARY KEY (ID)
+);
+
+CREATE INDEX IF NOT EXISTS hit_ip_bitmap_delta_bucket_idx ON public.HIT_IP_BITMAP_DELTA (BUCKET);
+
+COMMIT;
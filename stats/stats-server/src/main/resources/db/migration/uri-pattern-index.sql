@@ -0,0 +1,6 @@
+-- Adds the index behind prefix and glob uri filters such as uris=/events/*. Unlike the unique constraint on URI,
+-- varchar_pattern_ops compares byte-wise, which is what LIKE 'prefix%' needs whatever the database collation.
+-- CONCURRENTLY keeps URI_DICTIONARY writable while the index is built, so this may run with stats-server up.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS uri_dictionary_uri_pattern_idx
+    ON public.URI_DICTIONARY (URI varchar_pattern_ops);
@@ -0,0 +1,17 @@
+DROP TABLE IF EXISTS public.HIT;
+
+DROP SEQUENCE IF EXISTS HIT_ID_SEQ;
+
+CREATE TABLE IF NOT EXISTS public.HIT
+(
+    ID      bigserial,
+    APP_ID  integer,
+    URI_ID  integer,
+    IP_ID   integer,
+    CREATED timestamp without time zone NOT NULL,
+    CONSTRAINT hit_pkey PRIMARY KEY (ID, CREATED)
+) PARTITION BY RANGE (CREATED);
+
+CREATE TABLE IF NOT EXISTS public.HIT_DEFAULT PARTITION OF public.HIT DEFAULT;
+
+CREATE INDEX IF NOT EXISTS hit_created_idx ON public.HIT (CREATED);
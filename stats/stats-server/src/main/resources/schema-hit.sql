@@ -0,0 +1,15 @@
+DROP TABLE IF EXISTS public.HIT;
+
+DROP SEQUENCE IF EXISTS HIT_ID_SEQ;
+
+CREATE TABLE IF NOT EXISTS public.HIT
+(
+    ID      bigint GENERATED BY DEFAULT AS IDENTITY,
+    APP_ID  integer,
+    URI_ID  integer,
+    IP_ID   integer,
+    CREATED timestamp without time zone,
+    CONSTRAINT hit_pkey PRIMARY KEY (ID)
+);
+
+CREATE INDEX IF NOT EXISTS hit_created_idx ON public.HIT (CREATED);
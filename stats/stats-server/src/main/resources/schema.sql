@@ -1,38 +1,126 @@
-DROP TABLE IF EXISTS public.HIT;
-
-DROP SEQUENCE IF EXISTS HIT_ID_SEQ;
-CREATE SEQUENCE IF NOT EXISTS HIT_ID_SEQ START WITH 1;
-
-CREATE TABLE IF NOT EXISTS public.HIT
-(
-    ID
-    bigint
-    NOT
-    NULL
-    GENERATED
-    BY
-    DEFAULT AS
-    IDENTITY
-(
-    INCREMENT
-    BY
-    1
-),
-    APP character varying
-(
-    128
-),
-    URI character varying
-(
-    128
-),
-    IP character varying
-(
-    128
-),
-    CREATED timestamp without time zone,
-    CONSTRAINT hit_pkey PRIMARY KEY
-(
-    ID
-)
-    );
\ No newline at end of file
+DROP TABLE IF EXISTS public.HIT_ROLLUP;
+
+CREATE TABLE IF NOT EXISTS public.HIT_ROLLUP
+(
+    GRANULARITY character varying(8)   NOT NULL,
+    BUCKET      timestamp without time zone NOT NULL,
+    APP_ID      integer                NOT NULL,
+    URI_ID      integer                NOT NULL,
+    HITS        bigint                 NOT NULL,
+    CONSTRAINT hit_rollup_pkey PRIMARY KEY (GRANULARITY, BUCKET, APP_ID, URI_ID)
+);
+
+DROP TABLE IF EXISTS public.HIT_SKETCH;
+
+CREATE TABLE IF NOT EXISTS public.HIT_SKETCH
+(
+    GRANULARITY character varying(8)   NOT NULL,
+    BUCKET      timestamp without time zone NOT NULL,
+    APP_ID      integer                NOT NULL,
+    URI_ID      integer                NOT NULL,
+    SKETCH      bytea                  NOT NULL,
+    CONSTRAINT hit_sketch_pkey PRIMARY KEY (GRANULARITY, BUCKET, APP_ID, URI_ID)
+);
+
+DROP TABLE IF EXISTS public.HIT_SKETCH_DELTA;
+
+CREATE TABLE IF NOT EXISTS public.HIT_SKETCH_DELTA
+(
+    ID          bigint GENERATED BY DEFAULT AS IDENTITY,
+    GRANULARITY character varying(8)   NOT NULL,
+    BUCKET      timestamp without time zone NOT NULL,
+    APP_ID      integer                NOT NULL,
+    URI_ID      integer                NOT NULL,
+    SKETCH      bytea                  NOT NULL,
+    CONSTRAINT hit_sketch_delta_pkey PRIMARY KEY (ID)
+);
+
+CREATE INDEX IF NOT EXISTS hit_sketch_delta_bucket_idx ON public.HIT_SKETCH_DELTA (GRANULARITY, BUCKET);
+
+DROP TABLE IF EXISTS public.HIT_IP_BITMAP;
+
+CREATE TABLE IF NOT EXISTS public.HIT_IP_BITMAP
+(
+    BUCKET         timestamp without time zone NOT NULL,
+    APP_ID         integer                NOT NULL,
+    URI_ID         integer                NOT NULL,
+    IPV4           bytea                  NOT NULL,
+    DICTIONARY_IDS bytea                  NOT NULL,
+    CONSTRAINT hit_ip_bitmap_pkey PRIMARY KEY (BUCKET, APP_ID, URI_ID)
+);
+
+DROP TABLE IF EXISTS public.HIT_IP_BITMAP_DELTA;
+
+CREATE TABLE IF NOT EXISTS public.HIT_IP_BITMAP_DELTA
+(
+    ID             bigint GENERATED BY DEFAULT AS IDENTITY,
+    BUCKET         timestamp without time zone NOT NULL,
+    APP_ID         integer                NOT NULL,
+    URI_ID         integer                NOT NULL,
+    IPV4           bytea                  NOT NULL,
+    DICTIONARY_IDS bytea                  NOT NULL,
+    CONSTRAINT hit_ip_bitmap_delta_pkey PRIMARY KEY (ID)
+);
+
+CREATE INDEX IF NOT EXISTS hit_ip_bitmap_delta_bucket_idx ON public.HIT_IP_BITMAP_DELTA (BUCKET);
+
+DROP TABLE IF EXISTS public.IP_DICTIONARY;
+
+CREATE TABLE IF NOT EXISTS public.IP_DICTIONARY
+(
+    ID integer GENERATED BY DEFAULT AS IDENTITY,
+    IP character varying(128) NOT NULL,
+    CONSTRAINT ip_dictionary_pkey PRIMARY KEY (ID),
+    CONSTRAINT ip_dictionary_ip_key UNIQUE (IP)
+);
+
+DROP TABLE IF EXISTS public.APP_DICTIONARY;
+
+CREATE TABLE IF NOT EXISTS public.APP_DICTIONARY
+(
+    ID  integer GENERATED BY DEFAULT AS IDENTITY,
+    APP character varying(128) NOT NULL,
+    CONSTRAINT app_dictionary_pkey PRIMARY KEY (ID),
+    CONSTRAINT app_dictionary_app_key UNIQUE (APP)
+);
+
+DROP TABLE IF EXISTS public.URI_DICTIONARY;
+
+CREATE TABLE IF NOT EXISTS public.URI_DICTIONARY
+(
+    ID  integer GENERATED BY DEFAULT AS IDENTITY,
+    URI character varying(128) NOT NULL,
+    CONSTRAINT uri_dictionary_pkey PRIMARY KEY (ID),
+    CONSTRAINT uri_dictionary_uri_key UNIQUE (URI)
+);
+
+DROP TABLE IF EXISTS public.ENTITY_HIT_COUNTER;
+
+CREATE TABLE IF NOT EXISTS public.ENTITY_HIT_COUNTER
+(
+    ENTITY_TYPE character varying(64) NOT NULL,
+    ENTITY_ID   bigint                NOT NULL,
+    HITS        bigint                NOT NULL,
+    UNIQUE_HITS bigint                NOT NULL,
+    CONSTRAINT entity_hit_counter_pkey PRIMARY KEY (ENTITY_TYPE, ENTITY_ID)
+);
+
+DROP TABLE IF EXISTS public.ENTITY_HIT_IP;
+
+CREATE TABLE IF NOT EXISTS public.ENTITY_HIT_IP
+(
+    ENTITY_TYPE character varying(64) NOT NULL,
+    ENTITY_ID   bigint                NOT NULL,
+    IP_ID       integer               NOT NULL,
+    CONSTRAINT entity_hit_ip_pkey PRIMARY KEY (ENTITY_TYPE, ENTITY_ID, IP_ID)
+);
+
+DROP TABLE IF EXISTS public.HIT_MOVE;
+
+CREATE TABLE IF NOT EXISTS public.HIT_MOVE
+(
+    SOURCE           character varying(64)  NOT NULL,
+    URI              character varying(128) NOT NULL,
+    MOVED_THROUGH_ID bigint                 NOT NULL,
+    CONSTRAINT hit_move_pkey PRIMARY KEY (SOURCE, URI)
+);
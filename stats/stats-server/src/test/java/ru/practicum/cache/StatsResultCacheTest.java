@@ -0,0 +1,107 @@
+package ru.practicum.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.storage.ResultWindow;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatsResultCacheTest {
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime TO = FROM.plusDays(1);
+
+    private ResultCacheProperties properties;
+    private StatsResultCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ResultCacheProperties();
+        cache = new StatsResultCache(properties, new SimpleMeterRegistry());
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void servesClosedRangesFromTheCache() {
+        assertEquals(1, get(key(null)));
+        assertEquals(1, get(key(null)));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void lateHitInTheRangeDropsTheResult() {
+        get(key(null));
+        cache.invalidate(List.of(hit("/events/1", FROM.plusHours(3))));
+        assertEquals(2, get(key(null)));
+    }
+
+    @Test
+    void lateHitOutsideTheRangeOrUrisKeepsTheResult() {
+        get(key(new String[]{"/events/1"}));
+        cache.invalidate(List.of(
+                hit("/events/1", TO),
+                hit("/events/1", FROM.minusSeconds(1)),
+                hit("/events/2", FROM.plusHours(3))));
+        assertEquals(1, get(key(new String[]{"/events/1"})));
+    }
+
+    @Test
+    void lateHitOfAFilteredUriDropsTheResult() {
+        get(key(new String[]{"/events/1", "/events/2"}));
+        cache.invalidate(List.of(hit("/events/2", FROM)));
+        assertEquals(2, get(key(new String[]{"/events/1", "/events/2"})));
+    }
+
+    @Test
+    void freshHitsKeepTheResult() {
+        get(key(null));
+        cache.invalidate(List.of(hit("/events/1", LocalDateTime.now())));
+        assertEquals(1, get(key(null)));
+    }
+
+    /**
+     * A late hit written while a result is being computed may or may not be in it, so that result is not kept.
+     */
+    @Test
+    void resultLoadedDuringAnInvalidationIsNotCached() {
+        cache.get(key(null), () -> {
+            cache.invalidate(List.of(hit("/events/1", FROM)));
+            return List.of(row(loads.incrementAndGet()));
+        });
+        assertEquals(2, get(key(null)));
+    }
+
+    @Test
+    void resultsExpireAfterMaxAge() {
+        properties.setMaxAge(Duration.ZERO);
+        get(key(null));
+        assertEquals(2, get(key(null)));
+    }
+
+    /**
+     * Loads through the cache, returning the number of the load that produced the result.
+     */
+    private long get(ResultCacheKey key) {
+        return cache.get(key, () -> List.of(row(loads.incrementAndGet()))).get(0).getHits();
+    }
+
+    private static ResultCacheKey key(String[] uris) {
+        return ResultCacheKey.of(FROM, TO, uris, false, null, ResultWindow.ALL);
+    }
+
+    private static StatResponseDto row(long hits) {
+        return new StatResponseDto("ewm-main-service", "/events/1", hits);
+    }
+
+    private static ServiceHit hit(String uri, LocalDateTime created) {
+        return ServiceHit.builder().app("ewm-main-service").uri(uri).ip("10.0.0.1").created(created).build();
+    }
+}
@@ -0,0 +1,224 @@
+package ru.practicum.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.validation.beanvalidation.MethodValidationInterceptor;
+import ru.practicum.batch.BatchQueryProperties;
+import ru.practicum.cache.ResultCacheProperties;
+import ru.practicum.cache.StatsResultCache;
+import ru.practicum.constants.DataTransferConvention;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.realtime.RealtimeCounters;
+import ru.practicum.realtime.RealtimeProperties;
+import ru.practicum.service.StatBatchService;
+import ru.practicum.service.StatService;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.StorageProperties;
+import ru.practicum.storage.shard.ScratchDatabase;
+import ru.practicum.timeseries.TimeSeriesProperties;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The query endpoints of {@link StatController} over the jdbc engine on an in-memory database. The controller is
+ * proxied for method validation, as it is in the application.
+ */
+class StatControllerTest {
+    private static final String APP = "ewm-main-service";
+    private static final LocalDateTime HOUR = LocalDateTime.of(2024, 1, 10, 10, 0);
+
+    private ScratchDatabase database;
+    private BatchQueryProperties batchQueryProperties;
+    private StatBatchService statBatchService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        database = ScratchDatabase.inMemory(new StorageProperties(), new SketchProperties());
+        ResultCacheProperties cacheProperties = new ResultCacheProperties();
+        cacheProperties.setEnabled(false);
+        StatService statService = new StatService(null, null, null, database.getEngine(), null,
+                new RealtimeCounters(new RealtimeProperties()),
+                new StatsResultCache(cacheProperties, new SimpleMeterRegistry()), new TimeSeriesProperties(),
+                new StorageProperties());
+        batchQueryProperties = new BatchQueryProperties();
+        statBatchService = new StatBatchService(statService, batchQueryProperties);
+        mockMvc = MockMvcBuilders.standaloneSetup(validated(new StatController(statService, statBatchService,
+                new ObjectMapper()))).build();
+        database.getEngine().write(List.of(
+                hit("/events/1", "10.0.0.1", HOUR),
+                hit("/events/1", "10.0.0.1", HOUR.plusMinutes(59).plusSeconds(59)),
+                hit("/events/1", "10.0.0.2", HOUR.plusHours(1)),
+                hit("/events/1", "10.0.0.2", HOUR.plusHours(2)),
+                hit("/events/2", "10.0.0.3", HOUR.plusMinutes(30))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        statBatchService.close();
+        database.close();
+    }
+
+    @Test
+    void timeSeriesHasOneBucketPerHourUpToAndIncludingEnd() throws Exception {
+        mockMvc.perform(timeSeries(HOUR, HOUR.plusHours(1).plusMinutes(59).plusSeconds(59))
+                        .param("uris", "/events/1")
+                        .param("granularity", "HOUR"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity").value("HOUR"))
+                .andExpect(jsonPath("$.series", hasSize(1)))
+                .andExpect(jsonPath("$.series[0].uri").value("/events/1"))
+                .andExpect(jsonPath("$.series[0].buckets", hasSize(2)))
+                .andExpect(jsonPath("$.series[0].buckets[0].start").value("2024-01-10 10:00:00"))
+                .andExpect(jsonPath("$.series[0].buckets[0].hits").value(2))
+                .andExpect(jsonPath("$.series[0].buckets[1].start").value("2024-01-10 11:00:00"))
+                .andExpect(jsonPath("$.series[0].buckets[1].hits").value(1));
+
+        mockMvc.perform(timeSeries(HOUR, HOUR.plusHours(2))
+                        .param("uris", "/events/1")
+                        .param("granularity", "HOUR"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.series[0].buckets", hasSize(3)))
+                .andExpect(jsonPath("$.series[0].buckets[2].start").value("2024-01-10 12:00:00"))
+                .andExpect(jsonPath("$.series[0].buckets[2].hits").value(1));
+    }
+
+    @Test
+    void firstBucketCountsOnlyHitsInsideTheRange() throws Exception {
+        mockMvc.perform(timeSeries(HOUR.plusMinutes(30), HOUR.plusHours(1))
+                        .param("granularity", "HOUR"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.series", hasSize(2)))
+                .andExpect(jsonPath("$.series[0].uri").value("/events/1"))
+                .andExpect(jsonPath("$.series[0].buckets[0].start").value("2024-01-10 10:00:00"))
+                .andExpect(jsonPath("$.series[0].buckets[0].hits").value(1))
+                .andExpect(jsonPath("$.series[0].buckets[1].hits").value(1))
+                .andExpect(jsonPath("$.series[1].uri").value("/events/2"))
+                .andExpect(jsonPath("$.series[1].buckets[0].hits").value(1));
+    }
+
+    @Test
+    void uniqueSeriesCountEachIpOncePerBucket() throws Exception {
+        for (String mode : new String[]{"EXACT", "APPROXIMATE"}) {
+            mockMvc.perform(timeSeries(HOUR.minusHours(10), HOUR.plusHours(14).minusSeconds(1))
+                            .param("uris", "/events/1")
+                            .param("unique", "true")
+                            .param("mode", mode)
+                            .param("granularity", "DAY"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.series[0].buckets", hasSize(1)))
+                    .andExpect(jsonPath("$.series[0].buckets[0].start").value("2024-01-10 00:00:00"))
+                    .andExpect(jsonPath("$.series[0].buckets[0].hits").value(2));
+        }
+    }
+
+    @Test
+    void finestGranularityWithinMaxBucketsIsChosen() throws Exception {
+        mockMvc.perform(timeSeries(HOUR, HOUR.plusHours(24)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity").value("MINUTE"));
+        mockMvc.perform(timeSeries(HOUR, HOUR.plusDays(30)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity").value("HOUR"));
+        mockMvc.perform(timeSeries(HOUR, HOUR.plusYears(10)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity").value("DAY"));
+    }
+
+    @Test
+    void invalidTimeSeriesRequestsAreRefused() throws Exception {
+        mockMvc.perform(timeSeries(HOUR, HOUR.minusSeconds(1)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(timeSeries(HOUR, HOUR.plusDays(2)).param("granularity", "MINUTE"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batchAnswersEveryQueryInTheOrderGiven() throws Exception {
+        String range = "\"start\": \"2024-01-10 10:00:00\", \"end\": \"2024-01-10 12:00:00\"";
+        mockMvc.perform(batch("[{" + range + "},"
+                        + "{" + range + ", \"uris\": [\"/events/2\"]},"
+                        + "{" + range + "},"
+                        + "{" + range + ", \"uris\": [\"/events/1\"], \"unique\": true},"
+                        + "{" + range + ", \"limit\": 1, \"offset\": 1},"
+                        + "{" + range + ", \"uris\": [\"/comments/*\"]}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(6)))
+                .andExpect(jsonPath("$[0]", hasSize(2)))
+                .andExpect(jsonPath("$[0][0].uri").value("/events/1"))
+                .andExpect(jsonPath("$[0][0].hits").value(4))
+                .andExpect(jsonPath("$[0][1].uri").value("/events/2"))
+                .andExpect(jsonPath("$[0][1].hits").value(1))
+                .andExpect(jsonPath("$[1]", hasSize(1)))
+                .andExpect(jsonPath("$[1][0].uri").value("/events/2"))
+                .andExpect(jsonPath("$[2][0].hits").value(4))
+                .andExpect(jsonPath("$[3]", hasSize(1)))
+                .andExpect(jsonPath("$[3][0].hits").value(2))
+                .andExpect(jsonPath("$[4]", hasSize(1)))
+                .andExpect(jsonPath("$[4][0].uri").value("/events/2"))
+                .andExpect(jsonPath("$[5]", hasSize(0)));
+    }
+
+    @Test
+    void anInvalidQueryRefusesTheWholeBatch() throws Exception {
+        String valid = "{\"start\": \"2024-01-10 10:00:00\", \"end\": \"2024-01-10 12:00:00\"}";
+        mockMvc.perform(batch("[" + valid + ", {\"end\": \"2024-01-10 12:00:00\"}]"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(batch("[" + valid + ", {\"start\": \"2024-01-10 12:00:00\", "
+                        + "\"end\": \"2024-01-10 10:00:00\"}]"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(batch("[" + valid + ", {\"start\": \"2024-01-10 10:00:00\", "
+                        + "\"end\": \"2024-01-10 12:00:00\", \"limit\": 0}]"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(batch("[" + valid + ", {\"start\": \"yesterday\", \"end\": \"2024-01-10 12:00:00\"}]"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(batch("[]"))
+                .andExpect(status().isBadRequest());
+        batchQueryProperties.setMaxQueries(1);
+        mockMvc.perform(batch("[" + valid + ", " + valid + "]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static StatController validated(StatController controller) {
+        ProxyFactory proxyFactory = new ProxyFactory(controller);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new MethodValidationInterceptor());
+        return (StatController) proxyFactory.getProxy();
+    }
+
+    private static MockHttpServletRequestBuilder batch(String queries) {
+        return post(DataTransferConvention.STATS_BATCH_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(queries);
+    }
+
+    private static MockHttpServletRequestBuilder timeSeries(LocalDateTime start, LocalDateTime end) {
+        return get(DataTransferConvention.STATS_TIMESERIES_PATH)
+                .param("start", start.format(DataTransferConvention.DATE_TIME_FORMATTER))
+                .param("end", end.format(DataTransferConvention.DATE_TIME_FORMATTER));
+    }
+
+    private static ServiceHit hit(String uri, String ip, LocalDateTime created) {
+        return ServiceHit.builder()
+                .app(APP)
+                .uri(uri)
+                .ip(ip)
+                .created(created)
+                .build();
+    }
+}
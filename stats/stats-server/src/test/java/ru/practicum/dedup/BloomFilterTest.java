@@ -0,0 +1,74 @@
+package ru.practicum.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+    private static final int INSERTIONS = 100_000;
+
+    @Test
+    void neverMissesAddedHashes() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        SplittableRandom random = new SplittableRandom(1);
+        long[] hashes = new long[INSERTIONS];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+            filter.put(hashes[i]);
+        }
+        for (long hash : hashes) {
+            assertTrue(filter.mightContain(hash));
+        }
+    }
+
+    @Test
+    void falsePositivesStayNearTheConfiguredRate() {
+        for (double rate : new double[]{0.01, 0.0001}) {
+            BloomFilter filter = new BloomFilter(INSERTIONS, rate);
+            SplittableRandom random = new SplittableRandom(2);
+            for (int i = 0; i < INSERTIONS; i++) {
+                filter.put(random.nextLong());
+            }
+            int probes = 1_000_000;
+            int falsePositives = 0;
+            for (int i = 0; i < probes; i++) {
+                if (filter.mightContain(random.nextLong())) {
+                    falsePositives++;
+                }
+            }
+            double observed = (double) falsePositives / probes;
+            assertTrue(observed < rate * 2, "false positive rate " + observed + " for " + rate);
+        }
+    }
+
+    @Test
+    void putReportsWhetherTheHashSeemedNew() {
+        BloomFilter filter = new BloomFilter(1000, 0.001);
+        assertTrue(filter.put(42));
+        assertFalse(filter.put(42));
+        assertTrue(filter.mightContain(42));
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        BloomFilter filter = new BloomFilter(1000, 0.001);
+        for (long hash = 0; hash < 1000; hash++) {
+            filter.put(hash * 0x9e3779b97f4a7c15L);
+        }
+        filter.clear();
+        for (long hash = 0; hash < 1000; hash++) {
+            assertFalse(filter.mightContain(hash * 0x9e3779b97f4a7c15L));
+        }
+    }
+
+    @Test
+    void rejectsImpossibleSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1000, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1000, 1));
+    }
+}
@@ -0,0 +1,153 @@
+package ru.practicum.dedup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.model.ServiceHit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HitDeduplicatorTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final HitDeduplicator deduplicator = new HitDeduplicator(properties(), new SimpleMeterRegistry());
+
+    @Test
+    void dropsRepeatsWithinTheWindowOfTheFirstHit() {
+        ServiceHit first = hit("10.0.0.1", START);
+        assertEquals(List.of(first), accept(first));
+
+        assertEquals(List.of(), accept(hit("10.0.0.1", START.plusSeconds(3))));
+        assertEquals(List.of(), accept(hit("10.0.0.1", START.minusSeconds(3))));
+        ServiceHit otherIp = hit("10.0.0.2", START.plusSeconds(3));
+        assertEquals(List.of(otherIp), accept(otherIp));
+    }
+
+    @Test
+    void keepsHitsFurtherApartThanTheWindow() {
+        ServiceHit first = hit("10.0.0.1", START);
+        ServiceHit later = hit("10.0.0.1", START.plusSeconds(11));
+        assertEquals(List.of(first), accept(first));
+        assertEquals(List.of(later), accept(later));
+    }
+
+    @Test
+    void comparesHitsOfOneBatchByTheirTimestamps() {
+        ServiceHit first = hit("10.0.0.1", START);
+        ServiceHit repeat = hit("10.0.0.1", START.plusSeconds(1));
+        ServiceHit nextHour = hit("10.0.0.1", START.plusHours(1));
+        assertEquals(List.of(first, nextHour), deduplicator.dropRepeats(List.of(first, repeat, nextHour)));
+    }
+
+    @Test
+    void lateHitsAreComparedWithTheHitsOfTheirTime() {
+        ServiceHit old = hit("10.0.0.1", START);
+        assertEquals(List.of(old), accept(old));
+        // The ring moves on to the next hour, and a late repeat of the old hit arrives: it is kept, since the
+        // slices of its time are gone, and it does not disturb the slices of the current hits.
+        ServiceHit current = hit("10.0.0.2", START.plusHours(1));
+        assertEquals(List.of(current), accept(current));
+        ServiceHit lateRepeat = hit("10.0.0.1", START.plusSeconds(1));
+        assertEquals(List.of(lateRepeat), accept(lateRepeat));
+        assertEquals(List.of(), accept(hit("10.0.0.2", START.plusHours(1).plusSeconds(1))));
+    }
+
+    @Test
+    void forgetsHitsThatWereNotAccepted() {
+        ServiceHit hit = hit("10.0.0.1", START);
+        assertEquals(List.of(hit), deduplicator.dropRepeats(List.of(hit)));
+        deduplicator.release(List.of(hit));
+        assertEquals(List.of(hit), deduplicator.dropRepeats(List.of(hit)));
+    }
+
+    @Test
+    void hitsBeingRegisteredAreRepeatsUntilReleased() {
+        ServiceHit hit = hit("10.0.0.1", START);
+        assertEquals(List.of(hit), deduplicator.dropRepeats(List.of(hit)));
+
+        assertEquals(List.of(), deduplicator.dropRepeats(List.of(hit("10.0.0.1", START.plusSeconds(1)))));
+        deduplicator.remember(List.of(hit));
+        assertEquals(List.of(), deduplicator.dropRepeats(List.of(hit("10.0.0.1", START.plusSeconds(2)))));
+    }
+
+    /**
+     * Requests racing with the same hits keep each of them exactly once between them. The filters are sized far
+     * beyond the hits, so that no false positive drops a first hit.
+     */
+    @Test
+    void concurrentRequestsKeepEachHitOnce() throws Exception {
+        DedupProperties properties = properties();
+        properties.setExpectedHitsPerWindow(1_000_000);
+        HitDeduplicator deduplicator = new HitDeduplicator(properties, new SimpleMeterRegistry());
+        int threads = 8;
+        int ips = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 20; round++) {
+                List<ServiceHit> hits = new ArrayList<>(ips);
+                for (int ip = 0; ip < ips; ip++) {
+                    hits.add(hit("10." + round + ".0." + ip, START.plusMinutes(round)));
+                }
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<List<ServiceHit>>> kept = new ArrayList<>(threads);
+                for (int thread = 0; thread < threads; thread++) {
+                    List<ServiceHit> shuffled = new ArrayList<>(hits);
+                    Collections.shuffle(shuffled, new Random(round * threads + thread));
+                    kept.add(executor.submit(() -> {
+                        start.await();
+                        // Accepting takes a moment, during which the hits stay claimed.
+                        List<ServiceHit> firstSeen = deduplicator.dropRepeats(shuffled);
+                        Thread.yield();
+                        deduplicator.remember(firstSeen);
+                        return firstSeen;
+                    }));
+                }
+                start.countDown();
+                List<ServiceHit> keptOverall = new ArrayList<>();
+                for (Future<List<ServiceHit>> future : kept) {
+                    keptOverall.addAll(future.get(10, TimeUnit.SECONDS));
+                }
+                assertEquals(ips, keptOverall.size(), "round " + round);
+                assertEquals(Set.copyOf(hits), Set.copyOf(keptOverall), "round " + round);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<ServiceHit> accept(ServiceHit hit) {
+        List<ServiceHit> kept = deduplicator.dropRepeats(List.of(hit));
+        deduplicator.remember(kept);
+        return kept;
+    }
+
+    private static DedupProperties properties() {
+        DedupProperties properties = new DedupProperties();
+        properties.setEnabled(true);
+        properties.setWindow(Duration.ofSeconds(10));
+        properties.setSlices(5);
+        properties.setExpectedHitsPerWindow(1000);
+        return properties;
+    }
+
+    private static ServiceHit hit(String ip, LocalDateTime created) {
+        return ServiceHit.builder()
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip(ip)
+                .created(created)
+                .build();
+    }
+}
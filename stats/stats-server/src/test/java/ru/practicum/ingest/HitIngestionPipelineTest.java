@@ -0,0 +1,263 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.cache.ResultCacheProperties;
+import ru.practicum.cache.StatsResultCache;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.exception.HitQueueOverflowException;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.model.UriPattern;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.storage.HitStorageEngine;
+import ru.practicum.storage.PartialWriteException;
+import ru.practicum.storage.ResultWindow;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitIngestionPipelineTest {
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final IngestionProperties properties = new IngestionProperties();
+    private final RecordingEngine engine = new RecordingEngine();
+    private HitIngestionPipeline pipeline;
+    private int nextHit;
+
+    @BeforeEach
+    void setUp() {
+        properties.setQueueCapacity(10);
+        properties.setBatchSize(5);
+        properties.setFlushInterval(Duration.ofMillis(20));
+        properties.setOverflowPolicy(OverflowPolicy.REJECT);
+        properties.setWriteBackoff(Duration.ofMillis(1));
+        ResultCacheProperties cacheProperties = new ResultCacheProperties();
+        cacheProperties.setEnabled(false);
+        pipeline = new HitIngestionPipeline(properties, engine,
+                new StatsResultCache(cacheProperties, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.gate.countDown();
+        if (pipeline.isRunning()) {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void refusesWholeRequestsWhileUnwrittenHitsFillTheQueue() throws InterruptedException {
+        engine.gate = new CountDownLatch(1);
+        pipeline.start();
+        List<ServiceHit> accepted = new ArrayList<>(hits(6));
+        pipeline.submitAll(accepted);
+
+        // The six hits keep their queue space until written, so five more do not fit and none of them is queued.
+        assertThrows(HitQueueOverflowException.class, () -> pipeline.submitAll(hits(5)));
+        assertThrows(HitQueueOverflowException.class, () -> pipeline.submitAll(hits(11)));
+        List<ServiceHit> fitting = hits(4);
+        pipeline.submitAll(fitting);
+        accepted.addAll(fitting);
+
+        engine.gate.countDown();
+        pipeline.stop();
+        assertEquals(accepted, engine.written);
+    }
+
+    @Test
+    void retriesOnlyWhatFailedToBeWritten() {
+        engine.failures.add(batch -> new PartialWriteException("Second shard is down", batch.subList(1, batch.size()),
+                null));
+        engine.failures.add(batch -> new IllegalStateException("Connection reset"));
+        pipeline.start();
+        List<ServiceHit> hits = hits(5);
+        pipeline.submitAll(hits);
+
+        pipeline.stop();
+        assertEquals(hits, engine.written);
+        assertTrue(engine.failures.isEmpty());
+    }
+
+    @Test
+    void givesUpAfterRetriesAndFreesTheQueueSpace() throws InterruptedException {
+        properties.setWriteRetries(2);
+        List<ServiceHit> lost = hits(10);
+        engine.failing = Set.copyOf(lost);
+        pipeline.start();
+        pipeline.submitAll(lost);
+
+        // Each batch is tried three times, then dropped and its space given back.
+        List<ServiceHit> next = hits(10);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        boolean resubmitted = false;
+        while (!resubmitted && System.nanoTime() < deadline) {
+            try {
+                pipeline.submitAll(next);
+                resubmitted = true;
+            } catch (HitQueueOverflowException e) {
+                Thread.sleep(5);
+            }
+        }
+        assertTrue(resubmitted);
+
+        pipeline.stop();
+        assertEquals(next, engine.written);
+        assertEquals(0, engine.failedAttempts.get() % 3, "Failed attempts " + engine.failedAttempts.get());
+        assertTrue(engine.failedAttempts.get() >= 3 * 2, "Failed attempts " + engine.failedAttempts.get());
+    }
+
+    @Test
+    void flushesQueuedHitsOnStopAndRefusesLaterOnes() {
+        properties.setBatchSize(100);
+        properties.setFlushInterval(Duration.ofMillis(200));
+        pipeline.start();
+        List<ServiceHit> hits = hits(3);
+        pipeline.submitAll(hits);
+
+        pipeline.stop();
+        assertEquals(hits, engine.written);
+        assertThrows(HitQueueOverflowException.class, () -> pipeline.submit(hits(1).get(0)));
+    }
+
+    @Test
+    void writesEveryHitAcceptedWhileStopping() throws InterruptedException {
+        properties.setQueueCapacity(1_000_000);
+        pipeline.start();
+        List<ServiceHit> accepted = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger ids = new AtomicInteger();
+        List<Thread> submitters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            submitters.add(Thread.ofPlatform().start(() -> {
+                while (pipeline.isRunning()) {
+                    ServiceHit hit = hit(ids.incrementAndGet());
+                    try {
+                        pipeline.submit(hit);
+                        accepted.add(hit);
+                    } catch (HitQueueOverflowException e) {
+                        // Stopped between the check of the loop and the submit.
+                    }
+                }
+            }));
+        }
+        Thread.sleep(50);
+
+        pipeline.stop();
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+        assertEquals(accepted.size(), engine.written.size());
+        assertEquals(new HashSet<>(accepted), new HashSet<>(engine.written));
+    }
+
+    private List<ServiceHit> hits(int count) {
+        List<ServiceHit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(hit(nextHit++));
+        }
+        return hits;
+    }
+
+    private static ServiceHit hit(int number) {
+        return ServiceHit.builder()
+                .app("ewm-main-service")
+                .uri("/events/" + number)
+                .ip("10.0.0.1")
+                .created(CREATED)
+                .build();
+    }
+
+    /**
+     * Keeps the hits written, in order. Writes wait for {@code gate}, then fail with the next of {@code failures},
+     * and always when the batch has one of the {@code failing} hits.
+     */
+    private static class RecordingEngine implements HitStorageEngine {
+        private final List<ServiceHit> written = new ArrayList<>();
+        private final Queue<Function<List<ServiceHit>, RuntimeException>> failures = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger failedAttempts = new AtomicInteger();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private volatile Set<ServiceHit> failing = Set.of();
+
+        @Override
+        public void write(List<ServiceHit> batch) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            Function<List<ServiceHit>, RuntimeException> failure = failures.poll();
+            if (failure != null) {
+                RuntimeException e = failure.apply(batch);
+                if (e instanceof PartialWriteException partial) {
+                    batch.stream().filter(hit -> !partial.getUnwritten().contains(hit)).forEach(written::add);
+                }
+                throw e;
+            }
+            if (batch.stream().anyMatch(failing::contains)) {
+                failedAttempts.incrementAndGet();
+                throw new IllegalStateException("Database is down");
+            }
+            written.addAll(batch);
+        }
+
+        @Override
+        public List<StatResponseDto> countHits(LocalDateTime from, LocalDateTime to, String[] uris,
+                                               ResultWindow window) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<StatResponseDto> countUniqueHits(LocalDateTime from, LocalDateTime to, String[] uris,
+                                                     UniqueCountMode mode, ResultWindow window) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<AppUri, HyperLogLog> sketchUniqueHits(LocalDateTime from, LocalDateTime to, String[] uris) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> findUris(UriPattern pattern, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<AppUri, NavigableMap<LocalDateTime, Long>> countHitSeries(LocalDateTime from, LocalDateTime to,
+                                                                             String[] uris,
+                                                                             RollupGranularity granularity) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<AppUri, NavigableMap<LocalDateTime, Long>> countUniqueHitSeries(LocalDateTime from,
+                                                                                   LocalDateTime to,
+                                                                                   String[] uris,
+                                                                                   RollupGranularity granularity,
+                                                                                   UniqueCountMode mode) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.practicum.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UriPatternTest {
+    @Test
+    void onlyWildcardsMakePatterns() {
+        assertTrue(UriPattern.isPattern("/events/*"));
+        assertTrue(UriPattern.isPattern("/events/?"));
+        assertFalse(UriPattern.isPattern("/events/1"));
+        assertFalse(UriPattern.isPattern("/events"));
+    }
+
+    @Test
+    void literalPrefixEndsAtFirstWildcard() {
+        assertEquals("/events/", new UriPattern("/events/*").literalPrefix());
+        assertEquals("/events/1", new UriPattern("/events/1?/*").literalPrefix());
+        assertEquals("", new UriPattern("*/1").literalPrefix());
+        assertEquals("/events/1", new UriPattern("/events/1").literalPrefix());
+    }
+
+    @Test
+    void onlyStarsMatchEverything() {
+        assertTrue(new UriPattern("*").matchesEverything());
+        assertTrue(new UriPattern("**").matchesEverything());
+        assertFalse(new UriPattern("*?").matchesEverything());
+        assertFalse(new UriPattern("/*").matchesEverything());
+        assertFalse(new UriPattern("").matchesEverything());
+    }
+
+    @Test
+    void likePatternEscapesLikeWildcards() {
+        assertEquals("/events/%", new UriPattern("/events/*").toLikePattern());
+        assertEquals("/events/_", new UriPattern("/events/?").toLikePattern());
+        assertEquals("/50\\%\\_off\\\\/%", new UriPattern("/50%_off\\/*").toLikePattern());
+    }
+
+    @Test
+    void regexMatchesWholeUrisAcrossSlashes() {
+        Pattern events = new UriPattern("/events/*").toRegex();
+        assertTrue(events.matcher("/events/1").matches());
+        assertTrue(events.matcher("/events/1/comments").matches());
+        assertTrue(events.matcher("/events/").matches());
+        assertFalse(events.matcher("/events").matches());
+        assertFalse(events.matcher("/users/events/1").matches());
+
+        Pattern oneDigit = new UriPattern("/events/?").toRegex();
+        assertTrue(oneDigit.matcher("/events/7").matches());
+        assertFalse(oneDigit.matcher("/events/17").matches());
+    }
+
+    @Test
+    void regexQuotesEverythingButWildcards() {
+        Pattern pattern = new UriPattern("/search.html?q=(a+b)*").toRegex();
+        assertTrue(pattern.matcher("/search.html?q=(a+b)").matches());
+        assertTrue(pattern.matcher("/search.htmlXq=(a+b)&page=2").matches());
+        assertFalse(pattern.matcher("/searchXhtml?q=(a+b)").matches());
+    }
+}
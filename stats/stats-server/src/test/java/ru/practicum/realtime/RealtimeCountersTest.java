@@ -0,0 +1,153 @@
+package ru.practicum.realtime;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.storage.ResultWindow;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RealtimeCountersTest {
+    private static final int THREADS = 8;
+    private static final int HITS_PER_THREAD = 50_000;
+    private static final String[] URIS = {"/events/1", "/events/2", "/events/3", "/events/4"};
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws Exception {
+        RealtimeCounters counters = new RealtimeCounters(properties(Duration.ofHours(1)));
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(30);
+        runConcurrently(thread -> {
+            for (int i = 0; i < HITS_PER_THREAD; i++) {
+                // Spread over 30 seconds, so threads race both on the same counters and on opening buckets.
+                counters.record("ewm-main-service", URIS[i % URIS.length], start.plusSeconds(i % 30));
+            }
+        });
+        List<StatResponseDto> hits = counters.countHits(start, start.plusSeconds(29), null, ResultWindow.ALL);
+        assertEquals(URIS.length, hits.size());
+        for (StatResponseDto row : hits) {
+            assertEquals((long) THREADS * HITS_PER_THREAD / URIS.length, (long) row.getHits(), row.getUri());
+        }
+    }
+
+    /**
+     * Readers run while writers are still counting: every answer lies between nothing and everything, and counts
+     * never go down from one read to the next.
+     */
+    @Test
+    void readsDuringWritesSeeGrowingCounts() throws Exception {
+        RealtimeCounters counters = new RealtimeCounters(properties(Duration.ofHours(1)));
+        LocalDateTime second = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(5);
+        ExecutorService readers = Executors.newSingleThreadExecutor();
+        CountDownLatch done = new CountDownLatch(1);
+        Future<Long> reads = readers.submit(() -> {
+            long previous = 0;
+            long readCount = 0;
+            while (done.getCount() > 0) {
+                long total = total(counters.countHits(second, second, null, ResultWindow.ALL));
+                assertTrue(total >= previous && total <= (long) THREADS * HITS_PER_THREAD, "read " + total);
+                previous = total;
+                readCount++;
+            }
+            return readCount;
+        });
+        try {
+            runConcurrently(thread -> {
+                for (int i = 0; i < HITS_PER_THREAD; i++) {
+                    counters.record("ewm-main-service", URIS[thread % URIS.length], second);
+                }
+            });
+        } finally {
+            done.countDown();
+        }
+        assertTrue(reads.get() > 0);
+        readers.shutdown();
+        assertEquals((long) THREADS * HITS_PER_THREAD,
+                total(counters.countHits(second, second, null, ResultWindow.ALL)));
+    }
+
+    @Test
+    void filtersByUri() {
+        RealtimeCounters counters = new RealtimeCounters(properties(Duration.ofHours(1)));
+        LocalDateTime second = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(1);
+        counters.record("ewm-main-service", "/events/1", second);
+        counters.record("ewm-main-service", "/events/2", second);
+        counters.record("ewm-main-service", "/events/2", second);
+        List<StatResponseDto> hits = counters.countHits(second, second, new String[]{"/events/2"}, ResultWindow.ALL);
+        assertEquals(1, hits.size());
+        assertEquals("/events/2", hits.get(0).getUri());
+        assertEquals(2, (long) hits.get(0).getHits());
+    }
+
+    @Test
+    void ignoresHitsOutsideTheRetention() {
+        RealtimeCounters counters = new RealtimeCounters(properties(Duration.ofMinutes(1)));
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        counters.record("ewm-main-service", "/events/1", now.minusMinutes(5));
+        counters.record("ewm-main-service", "/events/1", now.plusMinutes(5));
+        assertEquals(0, total(counters.countHits(now.minusMinutes(5), now.plusMinutes(5), null, ResultWindow.ALL)));
+    }
+
+    @Test
+    void coversNothingBeforeItStartedCounting() {
+        RealtimeCounters counters = new RealtimeCounters(properties(Duration.ofHours(1)));
+        LocalDateTime now = LocalDateTime.now();
+        assertFalse(counters.covers(now.minusSeconds(10), now));
+        assertTrue(counters.covers(now.plusSeconds(2), now.plusSeconds(3)));
+    }
+
+    @Test
+    void coversNothingWhenDisabled() {
+        RealtimeProperties properties = properties(Duration.ofHours(1));
+        properties.setEnabled(false);
+        RealtimeCounters counters = new RealtimeCounters(properties);
+        LocalDateTime now = LocalDateTime.now();
+        counters.record("ewm-main-service", "/events/1", now);
+        assertFalse(counters.covers(now.plusSeconds(2), now.plusSeconds(3)));
+        assertEquals(0, total(counters.countHits(now.minusSeconds(1), now.plusSeconds(1), null, ResultWindow.ALL)));
+    }
+
+    private static RealtimeProperties properties(Duration retention) {
+        RealtimeProperties properties = new RealtimeProperties();
+        properties.setEnabled(true);
+        properties.setRetention(retention);
+        return properties;
+    }
+
+    private static long total(List<StatResponseDto> hits) {
+        return hits.stream().mapToLong(StatResponseDto::getHits).sum();
+    }
+
+    private static void runConcurrently(ThreadBody body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int index = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                body.run(index);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    private interface ThreadBody {
+        void run(int thread);
+    }
+}
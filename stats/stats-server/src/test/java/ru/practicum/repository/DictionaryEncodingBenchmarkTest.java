@@ -0,0 +1,125 @@
+package ru.practicum.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.StorageProperties;
+import ru.practicum.storage.shard.ScratchDatabase;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares {@code HIT}, which stores dictionary ids, with {@code HIT_TEXT}, a copy holding app, uri and ip as
+ * varchar like {@code HIT} did before: logs the size of both tables with their indexes and the time the raw
+ * aggregations take on each. Run it against a scratch Postgres database, whose tables it drops:
+ * <pre>
+ * mvn -pl stats/stats-server test -Dtest=DictionaryEncodingBenchmarkTest \
+ *     -Dstats.benchmark.url=jdbc:postgresql://localhost:5432/ewm-stats-bench?reWriteBatchedInserts=true \
+ *     -Dstats.benchmark.username=root -Dstats.benchmark.password=root
+ * </pre>
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = ScratchDatabase.URL_PROPERTY, matches = ".+")
+class DictionaryEncodingBenchmarkTest {
+    private static final String CREATE_HIT_TEXT = """
+            CREATE TABLE HIT_TEXT AS
+            SELECT h.ID, a.APP, u.URI, i.IP, h.CREATED
+            FROM HIT h
+            JOIN APP_DICTIONARY a ON a.ID = h.APP_ID
+            JOIN URI_DICTIONARY u ON u.ID = h.URI_ID
+            JOIN IP_DICTIONARY i ON i.ID = h.IP_ID
+            """;
+    private static final String COUNT_ENCODED = """
+            SELECT count(*) FROM (
+                SELECT APP_ID, URI_ID, %s
+                FROM HIT
+                WHERE CREATED >= ? AND CREATED < ?
+                GROUP BY APP_ID, URI_ID
+            ) groups
+            """;
+    private static final String COUNT_TEXT = """
+            SELECT count(*) FROM (
+                SELECT APP, URI, %s
+                FROM HIT_TEXT
+                WHERE CREATED >= ? AND CREATED < ?
+                GROUP BY APP, URI
+            ) groups
+            """;
+
+    private final long hits = Long.getLong("stats.benchmark.hits", 10_000_000);
+    private final int batchSize = Integer.getInteger("stats.benchmark.batch-size", 1000);
+    private final int uris = Integer.getInteger("stats.benchmark.uris", 10_000);
+    private final int ips = Integer.getInteger("stats.benchmark.ips", 1_000_000);
+
+    @Test
+    void compareTables() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime end = start.plusDays(30);
+        JdbcTemplate jdbcTemplate;
+        try (ScratchDatabase database = ScratchDatabase.open(new StorageProperties(), new SketchProperties())) {
+            jdbcTemplate = database.getJdbcTemplate();
+            Random random = new Random(42);
+            long spacingNanos = Duration.between(start, end).toNanos() / hits;
+            for (long written = 0; written < hits; written += batchSize) {
+                List<ServiceHit> batch = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize && written + i < hits; i++) {
+                    int ip = random.nextInt(ips);
+                    batch.add(ServiceHit.builder()
+                            .app("ewm-main-service")
+                            .uri("/events/" + random.nextInt(uris))
+                            .ip("10." + (ip >> 16 & 0xff) + "." + (ip >> 8 & 0xff) + "." + (ip & 0xff))
+                            .created(start.plusNanos((written + i) * spacingNanos))
+                            .build());
+                }
+                database.getEngine().write(batch);
+            }
+        }
+        jdbcTemplate.execute("DROP TABLE IF EXISTS HIT_TEXT");
+        jdbcTemplate.execute(CREATE_HIT_TEXT);
+        jdbcTemplate.execute("CREATE INDEX hit_text_created_idx ON HIT_TEXT (CREATED)");
+        jdbcTemplate.execute("VACUUM ANALYZE HIT");
+        jdbcTemplate.execute("VACUUM ANALYZE HIT_TEXT");
+
+        for (String table : List.of("HIT", "HIT_TEXT")) {
+            Long bytes = jdbcTemplate.queryForObject("SELECT pg_total_relation_size(?)", Long.class,
+                    table.toLowerCase());
+            log.info("{} {} bytes, {} per row", table, bytes, String.format("%.1f", (double) bytes / hits));
+        }
+        LocalDateTime middle = start.plusDays(15);
+        for (Duration range : List.of(Duration.ofMinutes(1), Duration.ofHours(1), Duration.ofDays(1))) {
+            for (boolean unique : new boolean[]{false, true}) {
+                String hitsColumn = unique ? "count(DISTINCT %s)" : "count(*)";
+                long encoded = time("HIT " + range + (unique ? " unique" : ""), jdbcTemplate,
+                        COUNT_ENCODED.formatted(hitsColumn.formatted("IP_ID")), middle, middle.plus(range));
+                long text = time("HIT_TEXT " + range + (unique ? " unique" : ""), jdbcTemplate,
+                        COUNT_TEXT.formatted(hitsColumn.formatted("IP")), middle, middle.plus(range));
+                assertEquals(encoded, text);
+            }
+        }
+    }
+
+    /**
+     * Runs the query three times to warm the cache and logs the fastest run.
+     */
+    private static long time(String label, JdbcTemplate jdbcTemplate, String sql, LocalDateTime from,
+                             LocalDateTime to) {
+        long best = Long.MAX_VALUE;
+        Long groups = null;
+        for (int run = 0; run < 3; run++) {
+            long startNanos = System.nanoTime();
+            groups = jdbcTemplate.queryForObject(sql, Long.class, from, to);
+            best = Math.min(best, System.nanoTime() - startNanos);
+        }
+        log.info("{} {} ms", label, String.format("%10.1f", best / 1e6));
+        return groups;
+    }
+}
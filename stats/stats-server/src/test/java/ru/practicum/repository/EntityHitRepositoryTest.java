@@ -0,0 +1,110 @@
+package ru.practicum.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.StorageProperties;
+import ru.practicum.storage.shard.ScratchDatabase;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The entity counters over an in-memory database, including the rows another instance inserted first, which
+ * {@code ON CONFLICT DO NOTHING} skips instead of failing the batch.
+ */
+class EntityHitRepositoryTest {
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 1, 10, 12, 0);
+
+    private ScratchDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private IpDictionaryRepository ipDictionaryRepository;
+    private EntityHitRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        database = ScratchDatabase.inMemory(new StorageProperties(), new SketchProperties());
+        jdbcTemplate = database.getJdbcTemplate();
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        ipDictionaryRepository = new IpDictionaryRepository(namedJdbcTemplate,
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()), new StorageProperties());
+        repository = new EntityHitRepository(namedJdbcTemplate, ipDictionaryRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void countsHitsAndDistinctIpsOfTheEntitiesUrisName() {
+        repository.increment(List.of(
+                hit("/events/1", "10.0.0.1"),
+                hit("/events/1", "10.0.0.1"),
+                hit("/events/1", "10.0.0.2"),
+                hit("/events/2", "10.0.0.1"),
+                hit("/users/1", "10.0.0.3"),
+                hit("/events", "10.0.0.4"),
+                hit("/events/1/requests", "10.0.0.4")));
+
+        assertEquals(Map.of(1L, 3L, 2L, 1L), repository.findHits("events", List.of(1L, 2L, 3L), false));
+        assertEquals(Map.of(1L, 2L, 2L, 1L), repository.findHits("events", List.of(1L, 2L, 3L), true));
+        assertEquals(Map.of(1L, 1L), repository.findHits("users", List.of(1L), true));
+        assertEquals(Map.of(), repository.findHits("events", List.of(3L), false));
+    }
+
+    @Test
+    void ipsSeenByAnEarlierBatchAreNotCountedAgain() {
+        repository.increment(List.of(hit("/events/1", "10.0.0.1")));
+        repository.increment(List.of(hit("/events/1", "10.0.0.1"), hit("/events/1", "10.0.0.2")));
+        repository.increment(List.of(hit("/events/1", "10.0.0.2")));
+
+        assertEquals(Map.of(1L, 4L), repository.findHits("events", List.of(1L), false));
+        assertEquals(Map.of(1L, 2L), repository.findHits("events", List.of(1L), true));
+    }
+
+    /**
+     * Another instance inserted the counter and one of the ips between this batch's reads and writes: the batch
+     * still adds all of its hits but counts only the ip it inserted itself.
+     */
+    @Test
+    void rowsInsertedByAnotherInstanceAreSkippedInsteadOfFailingTheBatch() {
+        int ipId = ipDictionaryRepository.getOrCreateIds(List.of("10.0.0.1")).get("10.0.0.1");
+        jdbcTemplate.update("INSERT INTO ENTITY_HIT_IP (ENTITY_TYPE, ENTITY_ID, IP_ID) VALUES ('events', 1, ?)", ipId);
+        jdbcTemplate.update("""
+                INSERT INTO ENTITY_HIT_COUNTER (ENTITY_TYPE, ENTITY_ID, HITS, UNIQUE_HITS)
+                VALUES ('events', 1, 1, 1)
+                """);
+
+        repository.increment(List.of(hit("/events/1", "10.0.0.1"), hit("/events/1", "10.0.0.2")));
+
+        assertEquals(Map.of(1L, 3L), repository.findHits("events", List.of(1L), false));
+        assertEquals(Map.of(1L, 2L), repository.findHits("events", List.of(1L), true));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM ENTITY_HIT_IP", Integer.class));
+    }
+
+    @Test
+    void batchesWithoutEntitiesWriteNothing() {
+        repository.increment(List.of(hit("/events", "10.0.0.1"), hit("/compilations", "10.0.0.2")));
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM ENTITY_HIT_COUNTER", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM IP_DICTIONARY", Integer.class));
+    }
+
+    private static ServiceHit hit(String uri, String ip) {
+        return ServiceHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip(ip)
+                .created(CREATED)
+                .build();
+    }
+}
@@ -0,0 +1,157 @@
+package ru.practicum.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.RollupRangePlanner;
+import ru.practicum.storage.StorageProperties;
+import ru.practicum.storage.shard.ScratchDatabase;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Series buckets over an in-memory database: a hit on a bucket's first instant belongs to that bucket, a bucket
+ * starting at the end of the range is left out, and raw edges add to the buckets read from rollups.
+ */
+class HitSeriesRepositoryTest {
+    private static final String APP = "ewm-main-service";
+    private static final AppUri EVENT_1 = new AppUri(APP, "/events/1");
+    private static final AppUri EVENT_2 = new AppUri(APP, "/events/2");
+    private static final LocalDateTime HOUR = LocalDateTime.of(2024, 1, 10, 10, 0);
+
+    private ScratchDatabase database;
+    private HitSeriesRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        database = ScratchDatabase.inMemory(new StorageProperties(), new SketchProperties());
+        JdbcTemplate jdbcTemplate = database.getJdbcTemplate();
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        DataSourceTransactionManager transactionManager =
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource());
+        repository = new HitSeriesRepository(namedJdbcTemplate, new HitDictionaries(
+                new AppDictionaryRepository(namedJdbcTemplate, transactionManager),
+                new UriDictionaryRepository(namedJdbcTemplate, transactionManager),
+                new IpDictionaryRepository(namedJdbcTemplate, transactionManager, new StorageProperties())));
+        database.getEngine().write(List.of(
+                hit("/events/1", "10.0.0.1", HOUR.minusNanos(1000)),
+                hit("/events/1", "10.0.0.1", HOUR),
+                hit("/events/1", "10.0.0.2", HOUR.plusMinutes(59).plusSeconds(59)),
+                hit("/events/1", "10.0.0.1", HOUR.plusHours(1)),
+                hit("/events/2", "10.0.0.3", HOUR.plusHours(1).plusMinutes(30))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void rollupsIncludeTheBucketStartingAtFromAndExcludeTheOneStartingAtTo() {
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> series = new HashMap<>();
+
+        repository.addRollups(RollupGranularity.HOUR, HOUR, HOUR.plusHours(1), null, series);
+
+        assertEquals(Map.of(EVENT_1, buckets(HOUR, 2L)), series);
+    }
+
+    @Test
+    void rawHitsAreGroupedIntoTheBucketsTheyStartIn() {
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> series = new HashMap<>();
+
+        repository.addRawHits(RollupGranularity.HOUR, List.of(raw(HOUR.minusMinutes(1), HOUR.plusHours(2))), null,
+                false, series);
+
+        assertEquals(Map.of(
+                EVENT_1, buckets(HOUR.minusHours(1), 1L, HOUR, 2L, HOUR.plusHours(1), 1L),
+                EVENT_2, buckets(HOUR.plusHours(1), 1L)), series);
+    }
+
+    @Test
+    void rawSegmentsAreReadInOneStatementAndAddedToTheRollups() {
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> series = new HashMap<>();
+        String[] uris = {"/events/1"};
+
+        repository.addRollups(RollupGranularity.HOUR, HOUR, HOUR.plusHours(1), uris, series);
+        repository.addRawHits(RollupGranularity.HOUR, List.of(
+                raw(HOUR.minusMinutes(1), HOUR),
+                raw(HOUR.plusHours(1), HOUR.plusHours(1).plusNanos(1000))), uris, false, series);
+
+        assertEquals(Map.of(EVENT_1, buckets(HOUR.minusHours(1), 1L, HOUR, 2L, HOUR.plusHours(1), 1L)), series);
+    }
+
+    @Test
+    void uniqueRawHitsCountEachIpOncePerBucket() {
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> series = new HashMap<>();
+
+        repository.addRawHits(RollupGranularity.DAY, List.of(raw(HOUR.minusHours(10), HOUR.plusHours(14))),
+                new String[]{"/events/1"}, true, series);
+
+        assertEquals(Map.of(EVENT_1, buckets(HOUR.minusHours(10), 2L)), series);
+    }
+
+    @Test
+    void sketchesAndBitmapsMergeCompactedBucketsWithTheirDeltas() {
+        database.getEngine().compact();
+        database.getEngine().write(List.of(
+                hit("/events/1", "10.0.0.3", HOUR.plusMinutes(5)),
+                hit("/events/1", "10.0.0.2", HOUR.plusMinutes(6))));
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> sketches = new HashMap<>();
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> bitmaps = new HashMap<>();
+
+        repository.addSketchEstimates(RollupGranularity.HOUR, HOUR, HOUR.plusHours(1), null, sketches);
+        repository.addBitmapCardinalities(HOUR.minusHours(10), HOUR.plusHours(14), new String[]{"/events/1"},
+                bitmaps);
+
+        assertEquals(Map.of(EVENT_1, buckets(HOUR, 3L)), sketches);
+        assertEquals(Map.of(EVENT_1, buckets(HOUR.minusHours(10), 3L)), bitmaps);
+    }
+
+    @Test
+    void urisNeverHitAddNothing() {
+        Map<AppUri, NavigableMap<LocalDateTime, Long>> series = new HashMap<>();
+        String[] uris = {"/events/404"};
+
+        repository.addRollups(RollupGranularity.HOUR, HOUR, HOUR.plusHours(2), uris, series);
+        repository.addSketchEstimates(RollupGranularity.HOUR, HOUR, HOUR.plusHours(2), uris, series);
+        repository.addBitmapCardinalities(HOUR.minusHours(10), HOUR.plusHours(14), uris, series);
+        repository.addRawHits(RollupGranularity.HOUR, List.of(raw(HOUR, HOUR.plusHours(2))), uris, false, series);
+
+        assertEquals(Map.of(), series);
+    }
+
+    private static RollupRangePlanner.Segment raw(LocalDateTime from, LocalDateTime to) {
+        return new RollupRangePlanner.Segment(null, from, to);
+    }
+
+    private static NavigableMap<LocalDateTime, Long> buckets(Object... bucketsAndHits) {
+        NavigableMap<LocalDateTime, Long> buckets = new TreeMap<>();
+        for (int i = 0; i < bucketsAndHits.length; i += 2) {
+            buckets.put((LocalDateTime) bucketsAndHits[i], (Long) bucketsAndHits[i + 1]);
+        }
+        return buckets;
+    }
+
+    private static ServiceHit hit(String uri, String ip, LocalDateTime created) {
+        return ServiceHit.builder()
+                .app(APP)
+                .uri(uri)
+                .ip(ip)
+                .created(created)
+                .build();
+    }
+}
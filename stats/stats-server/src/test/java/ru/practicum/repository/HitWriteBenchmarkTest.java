@@ -0,0 +1,97 @@
+package ru.practicum.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.HitStorageEngine;
+import ru.practicum.storage.StorageProperties;
+import ru.practicum.storage.shard.ScratchDatabase;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Writes {@code stats.benchmark.hits} hits (10M by default) through the JDBC engine into an empty Postgres
+ * database and logs the WAL written and the size of every table, which is what the sketch and bitmap deltas are
+ * meant to cut. Run it against a scratch database, whose tables it drops:
+ * <pre>
+ * mvn -pl stats/stats-server test -Dtest=HitWriteBenchmarkTest \
+ *     -Dstats.benchmark.url=jdbc:postgresql://localhost:5432/ewm-stats-bench?reWriteBatchedInserts=true \
+ *     -Dstats.benchmark.username=root -Dstats.benchmark.password=root
+ * </pre>
+ * Running the same command on a commit before the deltas gives the numbers to compare with.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = ScratchDatabase.URL_PROPERTY, matches = ".+")
+class HitWriteBenchmarkTest {
+    private static final String SELECT_WAL_LSN = "SELECT pg_current_wal_lsn()::text";
+    private static final String SELECT_WAL_BYTES = "SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), ?::pg_lsn)::bigint";
+    private static final String SELECT_TABLE_SIZES = """
+            SELECT relname, pg_total_relation_size(relid) AS bytes
+            FROM pg_stat_user_tables
+            ORDER BY relname
+            """;
+
+    private final long hits = Long.getLong("stats.benchmark.hits", 10_000_000);
+    private final int batchSize = Integer.getInteger("stats.benchmark.batch-size", 1000);
+    private final int uris = Integer.getInteger("stats.benchmark.uris", 10_000);
+    private final int ips = Integer.getInteger("stats.benchmark.ips", 1_000_000);
+
+    @Test
+    void writeHits() {
+        StorageProperties storageProperties = new StorageProperties();
+        long compactionIntervalNanos = storageProperties.getJdbc().getCompactionInterval().toNanos();
+        try (ScratchDatabase database = ScratchDatabase.open(storageProperties, new SketchProperties())) {
+            HitStorageEngine shard = database.getEngine();
+            JdbcTemplate jdbcTemplate = database.getJdbcTemplate();
+            String startLsn = jdbcTemplate.queryForObject(SELECT_WAL_LSN, String.class);
+            Random random = new Random(42);
+            // A month of hits, one bucket of every granularity touched by many batches.
+            LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+            long spacingNanos = Duration.ofDays(30).toNanos() / hits;
+            long startNanos = System.nanoTime();
+            long compactedAt = startNanos;
+            for (long written = 0; written < hits; written += batchSize) {
+                List<ServiceHit> batch = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize && written + i < hits; i++) {
+                    int ip = random.nextInt(ips);
+                    batch.add(ServiceHit.builder()
+                            .app("ewm-main-service")
+                            .uri("/events/" + random.nextInt(uris))
+                            .ip("10." + (ip >> 16 & 0xff) + "." + (ip >> 8 & 0xff) + "." + (ip & 0xff))
+                            .created(start.plusNanos((written + i) * spacingNanos))
+                            .build());
+                }
+                shard.write(batch);
+                // Compacts as often as the server would, on the writing thread rather than next to it.
+                if (System.nanoTime() - compactedAt > compactionIntervalNanos) {
+                    shard.compact();
+                    compactedAt = System.nanoTime();
+                }
+            }
+            Duration writing = Duration.ofNanos(System.nanoTime() - startNanos);
+            Long walBytes = jdbcTemplate.queryForObject(SELECT_WAL_BYTES, Long.class, startLsn);
+            startNanos = System.nanoTime();
+            shard.compact();
+            Duration compacting = Duration.ofNanos(System.nanoTime() - startNanos);
+            Long totalWalBytes = jdbcTemplate.queryForObject(SELECT_WAL_BYTES, Long.class, startLsn);
+
+            log.info("Wrote {} hits in batches of {} in {}, {} WAL bytes ({} per hit)", hits, batchSize, writing,
+                    walBytes, String.format("%.1f", (double) walBytes / hits));
+            log.info("Compacted the rest in {}, {} WAL bytes in total", compacting, totalWalBytes);
+            for (Map<String, Object> table : jdbcTemplate.queryForList(SELECT_TABLE_SIZES)) {
+                log.info("{} {} bytes", table.get("relname"), table.get("bytes"));
+            }
+            assertEquals(hits, jdbcTemplate.queryForObject("SELECT count(*) FROM HIT", Long.class));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package ru.practicum.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.HitStorageEngine;
+import ru.practicum.storage.ResultWindow;
+import ru.practicum.storage.StorageProperties;
+import ru.practicum.storage.shard.ScratchDatabase;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the unique counts {@code /stats?unique=true} can be answered with: {@code count(DISTINCT IP_ID)} over
+ * raw {@code HIT} rows, the day bitmaps of {@link HitIpBitmapRepository} ORed into an {@code IpSet}, and the
+ * HyperLogLog sketches of {@link HitSketchRepository}. Logs the time each takes over ranges from a day to a month,
+ * checks that the bitmaps give the exact counts and logs how far the sketches are off. Run it against a scratch
+ * Postgres database, whose tables it drops:
+ * <pre>
+ * mvn -pl stats/stats-server test -Dtest=UniqueCountBenchmarkTest \
+ *     -Dstats.benchmark.url=jdbc:postgresql://localhost:5432/ewm-stats-bench?reWriteBatchedInserts=true \
+ *     -Dstats.benchmark.username=root -Dstats.benchmark.password=root
+ * </pre>
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = ScratchDatabase.URL_PROPERTY, matches = ".+")
+class UniqueCountBenchmarkTest {
+    private static final String COUNT_DISTINCT = """
+            SELECT URI_ID, count(DISTINCT IP_ID) AS HITS
+            FROM HIT
+            WHERE CREATED >= ? AND CREATED < ?
+            GROUP BY APP_ID, URI_ID
+            """;
+
+    private final long hits = Long.getLong("stats.benchmark.hits", 10_000_000);
+    private final int batchSize = Integer.getInteger("stats.benchmark.batch-size", 1000);
+    private final int uris = Integer.getInteger("stats.benchmark.uris", 10_000);
+    private final int ips = Integer.getInteger("stats.benchmark.ips", 1_000_000);
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private final LocalDateTime end = start.plusDays(30);
+
+    @Test
+    void compareUniqueCounts() {
+        try (ScratchDatabase database = ScratchDatabase.open(new StorageProperties(), new SketchProperties())) {
+            HitStorageEngine engine = database.getEngine();
+            JdbcTemplate jdbcTemplate = database.getJdbcTemplate();
+            write(engine);
+            engine.compact();
+            jdbcTemplate.execute("VACUUM ANALYZE");
+            Map<Integer, String> urisById = new HashMap<>();
+            jdbcTemplate.query("SELECT ID, URI FROM URI_DICTIONARY", rs -> {
+                urisById.put(rs.getInt("ID"), rs.getString("URI"));
+            });
+
+            for (LocalDateTime[] range : ranges()) {
+                LocalDateTime from = range[0];
+                LocalDateTime to = range[1];
+                String label = Duration.between(from, to) + " from " + from;
+                Map<String, Long> exact = time("count(DISTINCT) " + label, () -> {
+                    Map<String, Long> counts = new HashMap<>();
+                    jdbcTemplate.query(COUNT_DISTINCT, rs -> {
+                        counts.put(urisById.get(rs.getInt("URI_ID")), rs.getLong("HITS"));
+                    }, from, to);
+                    return counts;
+                });
+                Map<String, Long> bitmaps = time("bitmaps         " + label,
+                        () -> byUri(engine.countUniqueHits(from, to, null, UniqueCountMode.EXACT, ResultWindow.ALL)));
+                Map<String, Long> sketches = time("sketches        " + label,
+                        () -> byUri(engine.countUniqueHits(from, to, null, UniqueCountMode.APPROXIMATE,
+                                ResultWindow.ALL)));
+                assertEquals(exact, bitmaps);
+                assertEquals(exact.keySet(), sketches.keySet());
+                logError(label, exact, sketches);
+            }
+        }
+    }
+
+    private void write(HitStorageEngine engine) {
+        Random random = new Random(42);
+        long spacingNanos = Duration.between(start, end).toNanos() / hits;
+        long startNanos = System.nanoTime();
+        for (long written = 0; written < hits; written += batchSize) {
+            List<ServiceHit> batch = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize && written + i < hits; i++) {
+                int ip = random.nextInt(ips);
+                batch.add(ServiceHit.builder()
+                        .app("ewm-main-service")
+                        .uri("/events/" + random.nextInt(uris))
+                        .ip("10." + (ip >> 16 & 0xff) + "." + (ip >> 8 & 0xff) + "." + (ip & 0xff))
+                        .created(start.plusNanos((written + i) * spacingNanos))
+                        .build());
+            }
+            engine.write(batch);
+        }
+        log.info("Wrote {} hits of {} uris from {} ips in {}", hits, uris, ips,
+                Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Whole days, which the bitmaps and sketches answer alone, and a day that starts and ends inside a day, whose
+     * edges they read from raw hits.
+     */
+    private List<LocalDateTime[]> ranges() {
+        LocalDateTime middle = start.plusDays(15);
+        LocalDateTime unaligned = middle.plusHours(7).plusMinutes(13);
+        return List.of(
+                new LocalDateTime[]{start, end},
+                new LocalDateTime[]{middle, middle.plusDays(7)},
+                new LocalDateTime[]{middle, middle.plusDays(1)},
+                new LocalDateTime[]{unaligned, unaligned.plusDays(1)});
+    }
+
+    private static void logError(String label, Map<String, Long> exact, Map<String, Long> estimated) {
+        double maxError = 0;
+        double errorSum = 0;
+        for (Map.Entry<String, Long> count : exact.entrySet()) {
+            double error = Math.abs(estimated.get(count.getKey()) - count.getValue()) / (double) count.getValue();
+            maxError = Math.max(maxError, error);
+            errorSum += error;
+        }
+        log.info("sketch error     {}: mean {}%, max {}%", label,
+                String.format("%.2f", 100 * errorSum / exact.size()), String.format("%.2f", 100 * maxError));
+    }
+
+    private static Map<String, Long> byUri(List<StatResponseDto> rows) {
+        Map<String, Long> counts = new HashMap<>();
+        rows.forEach(row -> counts.put(row.getUri(), row.getHits()));
+        return counts;
+    }
+
+    /**
+     * Runs {@code query} three times to warm the caches and logs the fastest run.
+     */
+    private static <T> T time(String label, Supplier<T> query) {
+        long best = Long.MAX_VALUE;
+        T result = null;
+        for (int run = 0; run < 3; run++) {
+            long startNanos = System.nanoTime();
+            result = query.get();
+            best = Math.min(best, System.nanoTime() - startNanos);
+        }
+        log.info("{} {} ms", label, String.format("%10.1f", best / 1e6));
+        return result;
+    }
+}
@@ -0,0 +1,173 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.batch.BatchQueryProperties;
+import ru.practicum.cache.ResultCacheProperties;
+import ru.practicum.cache.StatsResultCache;
+import ru.practicum.dto.StatQueryDto;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.exception.UriPatternTooBroadException;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.realtime.RealtimeCounters;
+import ru.practicum.realtime.RealtimeProperties;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.ResultWindow;
+import ru.practicum.storage.StorageProperties;
+import ru.practicum.storage.segment.SegmentHitStorageEngine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link StatBatchService} over a segment engine: queries that share a scan, repeat one another or only take a
+ * window of their rows must answer exactly as they do one at a time through {@link StatService#getHits}.
+ */
+class StatBatchServiceTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime END = START.plusDays(1);
+    private static final String[] STORED_URIS = {"/events", "/events/1", "/events/2", "/events/10", "/users/1"};
+
+    @TempDir
+    Path directory;
+
+    private StorageProperties storageProperties;
+    private SegmentHitStorageEngine engine;
+    private StatService statService;
+    private StatBatchService statBatchService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storageProperties = new StorageProperties();
+        storageProperties.getSegment().setDirectory(directory);
+        engine = new SegmentHitStorageEngine(storageProperties, new SketchProperties());
+        engine.open();
+        ResultCacheProperties cacheProperties = new ResultCacheProperties();
+        cacheProperties.setEnabled(false);
+        statService = new StatService(null, null, null, engine, null,
+                new RealtimeCounters(new RealtimeProperties()),
+                new StatsResultCache(cacheProperties, new SimpleMeterRegistry()), null, storageProperties);
+        BatchQueryProperties batchQueryProperties = new BatchQueryProperties();
+        batchQueryProperties.setParallelism(2);
+        statBatchService = new StatBatchService(statService, batchQueryProperties);
+
+        List<ServiceHit> hits = new ArrayList<>();
+        for (int i = 0; i < STORED_URIS.length; i++) {
+            // Uri i gets i + 1 hits from i + 1 ips in the first hour, and as many again from one ip in the second.
+            for (int hit = 0; hit <= i; hit++) {
+                hits.add(hit(STORED_URIS[i], "10.0.0." + hit, START.plusMinutes(hit)));
+                hits.add(hit(STORED_URIS[i], "10.0.1.1", START.plusHours(1).plusMinutes(hit)));
+            }
+        }
+        engine.write(hits);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        statBatchService.close();
+        engine.close();
+    }
+
+    @Test
+    void sharedScansAnswerEveryQueryAsItWouldAlone() {
+        List<StatQueryDto> queries = List.of(
+                query(START, END, null, false, null, 0),
+                query(START, END, List.of("/events/1", "/events/2"), false, null, 0),
+                query(START, END, List.of("/events/10"), false, null, 0),
+                query(START, END, List.of("/events/*"), false, null, 0),
+                query(START, END, List.of("/events/1", "/users/1"), true, null, 0),
+                query(START, END, List.of("/events/2"), true, null, 0),
+                query(START, START.plusHours(1), List.of("/events/1", "/events/2"), false, null, 0),
+                query(START, START.plusHours(1), List.of("/events/2"), true, null, 0));
+
+        assertEquals(alone(queries), statBatchService.getHits(queries));
+    }
+
+    @Test
+    void repeatedQueriesAreAnsweredInEveryPosition() {
+        StatQueryDto query = query(START, END, List.of("/events/2", "/events/10"), true, null, 0);
+        List<StatQueryDto> queries = List.of(query, query(START, END, null, false, null, 0), query);
+
+        List<List<StatResponseDto>> results = statBatchService.getHits(queries);
+
+        assertEquals(alone(queries), results);
+        assertEquals(results.get(0), results.get(2));
+        assertEquals(2, results.get(0).size());
+    }
+
+    @Test
+    void windowsCutTheirOwnRowsOutOfASharedScan() {
+        List<StatQueryDto> queries = List.of(
+                query(START, END, null, false, 2, 0),
+                query(START, END, null, false, 2, 2),
+                query(START, END, null, false, null, 4),
+                query(START, END, null, false, null, 10),
+                query(START, END, List.of("/events/1", "/events/2", "/events/10"), false, 1, 1));
+
+        List<List<StatResponseDto>> results = statBatchService.getHits(queries);
+
+        assertEquals(alone(queries), results);
+        assertEquals(List.of(2, 2, 1, 0, 1), results.stream().map(List::size).toList());
+    }
+
+    @Test
+    void queriesMatchingNothingGetEmptyResults() {
+        List<StatQueryDto> queries = List.of(
+                query(START, END, List.of("/comments/*"), false, null, 0),
+                query(START, END, List.of("/events/404"), true, null, 0),
+                query(START, END, List.of("/events/1"), false, null, 0),
+                query(END, END.plusDays(1), null, false, null, 0));
+
+        assertEquals(List.of(List.of(), List.of(), List.of(new StatResponseDto("ewm-main-service", "/events/1", 4L)),
+                List.of()), statBatchService.getHits(queries));
+    }
+
+    @Test
+    void tooBroadGlobRefusesTheBatch() {
+        storageProperties.setMaxPatternMatches(2);
+
+        assertThrows(UriPatternTooBroadException.class, () -> statBatchService.getHits(List.of(
+                query(START, END, List.of("/events/1"), false, null, 0),
+                query(START, END, List.of("/events/*"), false, null, 0))));
+    }
+
+    private List<List<StatResponseDto>> alone(List<StatQueryDto> queries) {
+        return queries.stream()
+                .map(query -> statService.getHits(query.getStart(), query.getEnd(),
+                        query.getUris() == null ? null : query.getUris().toArray(String[]::new), query.isUnique(),
+                        query.getMode(), new ResultWindow(query.getOffset(), query.getLimit())))
+                .toList();
+    }
+
+    private static StatQueryDto query(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                      Integer limit, int offset) {
+        return StatQueryDto.builder()
+                .start(start)
+                .end(end)
+                .uris(uris)
+                .unique(unique)
+                .mode(UniqueCountMode.EXACT)
+                .limit(limit)
+                .offset(offset)
+                .build();
+    }
+
+    private static ServiceHit hit(String uri, String ip, LocalDateTime created) {
+        return ServiceHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip(ip)
+                .created(created)
+                .build();
+    }
+}
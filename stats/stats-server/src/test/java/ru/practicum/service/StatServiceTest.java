@@ -0,0 +1,130 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.cache.ResultCacheProperties;
+import ru.practicum.cache.StatsResultCache;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.exception.UriPatternTooBroadException;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.realtime.RealtimeCounters;
+import ru.practicum.realtime.RealtimeProperties;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.ResultWindow;
+import ru.practicum.storage.StorageProperties;
+import ru.practicum.storage.segment.SegmentHitStorageEngine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Uri filters of {@link StatService} over a segment engine: globs must give the same counts as listing the uris
+ * they match.
+ */
+class StatServiceTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime END = START.plusDays(1);
+    private static final String[] STORED_URIS = {"/events", "/events/1", "/events/2", "/events/10", "/users/1"};
+
+    @TempDir
+    Path directory;
+
+    private StorageProperties storageProperties;
+    private SegmentHitStorageEngine engine;
+    private StatService statService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storageProperties = new StorageProperties();
+        storageProperties.getSegment().setDirectory(directory);
+        engine = new SegmentHitStorageEngine(storageProperties, new SketchProperties());
+        engine.open();
+        ResultCacheProperties cacheProperties = new ResultCacheProperties();
+        cacheProperties.setEnabled(false);
+        statService = new StatService(null, null, null, engine, null,
+                new RealtimeCounters(new RealtimeProperties()),
+                new StatsResultCache(cacheProperties, new SimpleMeterRegistry()), null, storageProperties);
+
+        List<ServiceHit> hits = new ArrayList<>();
+        for (int i = 0; i < STORED_URIS.length; i++) {
+            // Uri i gets i + 1 hits from i + 1 ips, and as many again from one repeating ip.
+            for (int hit = 0; hit <= i; hit++) {
+                hits.add(hit(STORED_URIS[i], "10.0.0." + hit, START.plusMinutes(hit)));
+                hits.add(hit(STORED_URIS[i], "10.0.1.1", START.plusHours(1).plusMinutes(hit)));
+            }
+        }
+        engine.write(hits);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        engine.close();
+    }
+
+    @Test
+    void allEventsAsFirstUriMeansNoFilter() {
+        assertNull(statService.toUriFilter(new String[]{"/events"}));
+        assertNull(statService.toUriFilter(new String[]{"/events", "/users/1"}));
+        assertEquals(STORED_URIS.length, getHits(new String[]{"/events"}, false).size());
+    }
+
+    @Test
+    void allEventsElsewhereIsAnOrdinaryUri() {
+        assertArrayEquals(new String[]{"/users/1", "/events"},
+                statService.toUriFilter(new String[]{"/users/1", "/events"}));
+    }
+
+    @Test
+    void globsAreReplacedByStoredMatches() {
+        assertEquals(Set.of("/events/1", "/events/2"), Set.of(statService.toUriFilter(new String[]{"/events/?"})));
+        assertEquals(Set.of("/events/1", "/events/2", "/events/10", "/users/1"),
+                Set.of(statService.toUriFilter(new String[]{"/events/*", "/users/1"})));
+        assertEquals(0, statService.toUriFilter(new String[]{"/comments/*"}).length);
+        assertNull(statService.toUriFilter(new String[]{"/users/1", "*"}));
+    }
+
+    @Test
+    void globCountsEqualExplicitListCounts() {
+        String[] explicit = {"/events/1", "/events/2", "/events/10"};
+        for (boolean unique : new boolean[]{false, true}) {
+            List<StatResponseDto> expected = getHits(explicit, unique);
+            assertEquals(3, expected.size());
+            assertEquals(expected, getHits(new String[]{"/events/*"}, unique));
+            assertEquals(expected, getHits(new String[]{"/events/?", "/events/1*"}, unique));
+        }
+        assertEquals(List.of(), getHits(new String[]{"/comments/*"}, false));
+    }
+
+    @Test
+    void tooBroadGlobIsRefused() {
+        storageProperties.setMaxPatternMatches(2);
+        assertThrows(UriPatternTooBroadException.class, () -> statService.toUriFilter(new String[]{"/events/*"}));
+        assertEquals(2, statService.toUriFilter(new String[]{"/events/?"}).length);
+    }
+
+    private List<StatResponseDto> getHits(String[] uris, boolean unique) {
+        return statService.getHits(START, END, uris, unique, UniqueCountMode.EXACT, ResultWindow.ALL);
+    }
+
+    private static ServiceHit hit(String uri, String ip, LocalDateTime created) {
+        return ServiceHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip(ip)
+                .created(created)
+                .build();
+    }
+}
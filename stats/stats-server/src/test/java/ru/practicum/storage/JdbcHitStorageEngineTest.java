@@ -0,0 +1,126 @@
+package ru.practicum.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.shard.ScratchDatabase;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The jdbc engine over an in-memory database: rollups, sketches and bitmaps keyed by dictionary ids give the same
+ * counts as the raw hits, for whole buckets and for the raw edges around them, before and after compaction.
+ */
+class JdbcHitStorageEngineTest {
+    private static final String MAIN = "ewm-main-service";
+    private static final String OTHER = "other-service";
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 1, 10, 0, 0);
+
+    private ScratchDatabase database;
+    private HitStorageEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        database = ScratchDatabase.inMemory(new StorageProperties(), new SketchProperties());
+        engine = database.getEngine();
+        engine.write(List.of(
+                hit(MAIN, "/events/1", "10.0.0.1", DAY.plusHours(10)),
+                hit(MAIN, "/events/1", "10.0.0.2", DAY.plusHours(11)),
+                hit(MAIN, "/events/2", "10.0.0.1", DAY.plusHours(12)),
+                hit(OTHER, "/events/1", "10.0.0.3", DAY.plusHours(10))));
+        engine.write(List.of(
+                hit(MAIN, "/events/1", "10.0.0.1", DAY.plusDays(1).plusHours(9)),
+                hit(MAIN, "/events/1", "2001:db8::1", DAY.plusDays(1).plusHours(10).plusMinutes(30))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void countsHitsPerAppAndUriFromRollupsAndRawEdges() {
+        assertEquals(List.of(
+                        new StatResponseDto(MAIN, "/events/1", 4L),
+                        new StatResponseDto(MAIN, "/events/2", 1L),
+                        new StatResponseDto(OTHER, "/events/1", 1L)),
+                engine.countHits(DAY, DAY.plusDays(2), null, ResultWindow.ALL));
+        assertEquals(List.of(
+                        new StatResponseDto(MAIN, "/events/1", 2L),
+                        new StatResponseDto(MAIN, "/events/2", 1L)),
+                engine.countHits(DAY.plusHours(10).plusMinutes(30), DAY.plusDays(1).plusHours(10), null,
+                        ResultWindow.ALL));
+        assertEquals(List.of(
+                        new StatResponseDto(MAIN, "/events/1", 4L),
+                        new StatResponseDto(OTHER, "/events/1", 1L)),
+                engine.countHits(DAY, DAY.plusDays(2), new String[]{"/events/1", "/events/404"}, ResultWindow.ALL));
+        assertEquals(List.of(), engine.countHits(DAY, DAY.plusDays(2), new String[]{"/events/404"},
+                ResultWindow.ALL));
+    }
+
+    @Test
+    void countsUniqueHitsFromBitmapsAndSketchesBeforeAndAfterCompaction() {
+        for (int pass = 0; pass < 2; pass++) {
+            for (UniqueCountMode mode : UniqueCountMode.values()) {
+                assertEquals(List.of(
+                                new StatResponseDto(MAIN, "/events/1", 3L),
+                                new StatResponseDto(MAIN, "/events/2", 1L),
+                                new StatResponseDto(OTHER, "/events/1", 1L)),
+                        engine.countUniqueHits(DAY, DAY.plusDays(2), null, mode, ResultWindow.ALL), mode.name());
+                assertEquals(List.of(new StatResponseDto(MAIN, "/events/1", 2L)),
+                        engine.countUniqueHits(DAY.plusHours(10).plusMinutes(30), DAY.plusDays(1).plusHours(10),
+                                new String[]{"/events/1"}, mode, ResultWindow.ALL), mode.name());
+                assertEquals(List.of(), engine.countUniqueHits(DAY, DAY.plusDays(2), new String[]{"/events/404"},
+                        mode, ResultWindow.ALL), mode.name());
+            }
+            engine.compact();
+        }
+    }
+
+    @Test
+    void countsSeriesPerBucketBeforeAndAfterCompaction() {
+        String[] uris = {"/events/1"};
+        for (int pass = 0; pass < 2; pass++) {
+            assertEquals(Map.of(
+                            new AppUri(MAIN, "/events/1"), series(DAY, 2L, DAY.plusDays(1), 2L),
+                            new AppUri(OTHER, "/events/1"), series(DAY, 1L)),
+                    engine.countHitSeries(DAY, DAY.plusDays(2), uris, RollupGranularity.DAY));
+            for (UniqueCountMode mode : UniqueCountMode.values()) {
+                assertEquals(Map.of(
+                                new AppUri(MAIN, "/events/1"), series(DAY, 2L, DAY.plusDays(1), 2L),
+                                new AppUri(OTHER, "/events/1"), series(DAY, 1L)),
+                        engine.countUniqueHitSeries(DAY, DAY.plusDays(2), uris, RollupGranularity.DAY, mode),
+                        mode.name());
+            }
+            engine.compact();
+        }
+    }
+
+    private static TreeMap<LocalDateTime, Long> series(Object... bucketsAndHits) {
+        TreeMap<LocalDateTime, Long> series = new TreeMap<>();
+        for (int i = 0; i < bucketsAndHits.length; i += 2) {
+            series.put((LocalDateTime) bucketsAndHits[i], (Long) bucketsAndHits[i + 1]);
+        }
+        return series;
+    }
+
+    private static ServiceHit hit(String app, String uri, String ip, LocalDateTime created) {
+        return ServiceHit.builder()
+                .app(app)
+                .uri(uri)
+                .ip(ip)
+                .created(created)
+                .build();
+    }
+}
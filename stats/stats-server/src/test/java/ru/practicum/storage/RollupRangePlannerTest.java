@@ -0,0 +1,92 @@
+package ru.practicum.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.storage.RollupRangePlanner.Segment;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RollupRangePlannerTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void alignedRangeIsOneBucketRange() {
+        assertEquals(List.of(new Segment(RollupGranularity.DAY, DAY, DAY.plusDays(3))),
+                RollupRangePlanner.plan(DAY, DAY.plusDays(3)));
+    }
+
+    @Test
+    void unalignedRangeUsesCoarsestBucketsInTheMiddle() {
+        LocalDateTime from = DAY.withHour(10).withMinute(15).withSecond(30);
+        LocalDateTime to = DAY.plusDays(2).withHour(5);
+
+        assertEquals(List.of(
+                        new Segment(null, from, DAY.withHour(10).withMinute(16)),
+                        new Segment(RollupGranularity.MINUTE, DAY.withHour(10).withMinute(16), DAY.withHour(11)),
+                        new Segment(RollupGranularity.HOUR, DAY.withHour(11), DAY.plusDays(1)),
+                        new Segment(RollupGranularity.DAY, DAY.plusDays(1), DAY.plusDays(2)),
+                        new Segment(RollupGranularity.HOUR, DAY.plusDays(2), to)),
+                RollupRangePlanner.plan(from, to));
+    }
+
+    @Test
+    void rangeShorterThanAMinuteIsRaw() {
+        LocalDateTime from = DAY.plusSeconds(10);
+        LocalDateTime to = DAY.plusSeconds(50);
+
+        assertEquals(List.of(new Segment(null, from, to)), RollupRangePlanner.plan(from, to));
+    }
+
+    @Test
+    void emptyRangeHasNoSegments() {
+        assertEquals(List.of(), RollupRangePlanner.plan(DAY, DAY));
+        assertEquals(List.of(), RollupRangePlanner.plan(DAY.plusDays(1), DAY));
+    }
+
+    @Test
+    void unavailableGranularitiesAreSkipped() {
+        LocalDateTime from = DAY.plusMinutes(30);
+        LocalDateTime to = DAY.plusDays(1).plusMinutes(30);
+
+        assertEquals(List.of(
+                        new Segment(null, from, DAY.plusHours(1)),
+                        new Segment(RollupGranularity.HOUR, DAY.plusHours(1), DAY.plusDays(1)),
+                        new Segment(null, DAY.plusDays(1), to)),
+                RollupRangePlanner.plan(from, to, RollupGranularity.HOUR));
+    }
+
+    @Test
+    void segmentsTileTheRangeWithAlignedBuckets() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            LocalDateTime from = DAY.plusSeconds(random.nextInt(10 * 24 * 3600));
+            LocalDateTime to = from.plusSeconds(random.nextInt(5 * 24 * 3600) + 1);
+
+            List<Segment> segments = RollupRangePlanner.plan(from, to);
+
+            assertFalse(segments.isEmpty());
+            assertEquals(from, segments.get(0).from());
+            assertEquals(to, segments.get(segments.size() - 1).to());
+            for (int s = 0; s < segments.size(); s++) {
+                Segment segment = segments.get(s);
+                assertTrue(segment.from().isBefore(segment.to()), segment::toString);
+                if (s > 0) {
+                    assertEquals(segments.get(s - 1).to(), segment.from());
+                }
+                if (!segment.isRaw()) {
+                    assertEquals(segment.granularity().floor(segment.from()), segment.from());
+                    assertEquals(segment.granularity().floor(segment.to()), segment.to());
+                } else {
+                    LocalDateTime firstMinute = RollupGranularity.MINUTE.ceil(segment.from());
+                    assertTrue(firstMinute.plusMinutes(1).isAfter(segment.to()), segment::toString);
+                }
+            }
+        }
+    }
+}
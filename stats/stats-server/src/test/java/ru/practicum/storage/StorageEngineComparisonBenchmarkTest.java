@@ -0,0 +1,143 @@
+package ru.practicum.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.dto.StatResponseDto;
+import ru.practicum.enums.UniqueCountMode;
+import ru.practicum.model.ServiceHit;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.segment.SegmentHitStorageEngine;
+import ru.practicum.storage.shard.ScratchDatabase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Writes the same hits into the segment engine and into the JDBC engine on a scratch Postgres database, whose
+ * tables it drops, then runs the same queries on both. Logs write and query times and the space each takes, and
+ * checks that both give the same answers:
+ * <pre>
+ * mvn -pl stats/stats-server test -Dtest=StorageEngineComparisonBenchmarkTest \
+ *     -Dstats.benchmark.url=jdbc:postgresql://localhost:5432/ewm-stats-bench?reWriteBatchedInserts=true \
+ *     -Dstats.benchmark.username=root -Dstats.benchmark.password=root -Dstats.benchmark.hits=1000000
+ * </pre>
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = ScratchDatabase.URL_PROPERTY, matches = ".+")
+class StorageEngineComparisonBenchmarkTest {
+    private static final String SELECT_TABLES_SIZE =
+            "SELECT sum(pg_total_relation_size(relid))::bigint FROM pg_stat_user_tables";
+
+    private final long hits = Long.getLong("stats.benchmark.hits", 1_000_000);
+    private final int batchSize = Integer.getInteger("stats.benchmark.batch-size", 1000);
+    private final int uris = Integer.getInteger("stats.benchmark.uris", 10_000);
+    private final int ips = Integer.getInteger("stats.benchmark.ips", 100_000);
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private final LocalDateTime end = start.plusDays(30);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void compareEngines() throws IOException {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.getSegment().setDirectory(directory);
+        SegmentHitStorageEngine segment = new SegmentHitStorageEngine(storageProperties, new SketchProperties());
+        try (ScratchDatabase database = ScratchDatabase.open(storageProperties, new SketchProperties())) {
+            HitStorageEngine jdbc = database.getEngine();
+            JdbcTemplate jdbcTemplate = database.getJdbcTemplate();
+            segment.open();
+
+            log.info("Writing {} hits in batches of {}", hits, batchSize);
+            run("segment write", () -> write(segment));
+            run("jdbc write", () -> {
+                write(jdbc);
+                jdbc.compact();
+            });
+            log.info("segment size {} bytes", directorySize(directory));
+            log.info("jdbc size    {} bytes", jdbcTemplate.queryForObject(SELECT_TABLES_SIZE, Long.class));
+
+            for (LocalDateTime[] range : ranges()) {
+                LocalDateTime from = range[0];
+                LocalDateTime to = range[1];
+                String label = Duration.between(from, to) + " from " + from;
+                List<StatResponseDto> expected = time("segment hits " + label,
+                        () -> segment.countHits(from, to, null, ResultWindow.ALL));
+                assertEquals(expected, time("jdbc hits    " + label,
+                        () -> jdbc.countHits(from, to, null, ResultWindow.ALL)));
+                expected = time("segment unique " + label,
+                        () -> segment.countUniqueHits(from, to, null, UniqueCountMode.EXACT, ResultWindow.ALL));
+                assertEquals(expected, time("jdbc unique    " + label,
+                        () -> jdbc.countUniqueHits(from, to, null, UniqueCountMode.EXACT, ResultWindow.ALL)));
+            }
+        } finally {
+            segment.close();
+        }
+    }
+
+    private void write(HitStorageEngine engine) {
+        Random random = new Random(42);
+        long spacingNanos = Duration.between(start, end).toNanos() / hits;
+        for (long written = 0; written < hits; written += batchSize) {
+            List<ServiceHit> batch = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize && written + i < hits; i++) {
+                int ip = random.nextInt(ips);
+                batch.add(ServiceHit.builder()
+                        .app("ewm-main-service")
+                        .uri("/events/" + random.nextInt(uris))
+                        .ip("10." + (ip >> 16 & 0xff) + "." + (ip >> 8 & 0xff) + "." + (ip & 0xff))
+                        .created(start.plusNanos((written + i) * spacingNanos))
+                        .build());
+            }
+            engine.write(batch);
+        }
+    }
+
+    /**
+     * A whole month, a day, an hour and a few minutes, none of them aligned to a bucket.
+     */
+    private List<LocalDateTime[]> ranges() {
+        LocalDateTime middle = start.plusDays(15).plusMinutes(7).plusSeconds(13);
+        return List.of(
+                new LocalDateTime[]{start, end},
+                new LocalDateTime[]{middle, middle.plusDays(1)},
+                new LocalDateTime[]{middle, middle.plusHours(1)},
+                new LocalDateTime[]{middle, middle.plusMinutes(5)});
+    }
+
+    private static <T> T time(String label, Supplier<T> action) {
+        long startNanos = System.nanoTime();
+        T result = action.get();
+        log.info("{} {} ms", label, String.format("%10.1f", (System.nanoTime() - startNanos) / 1e6));
+        return result;
+    }
+
+    private static void run(String label, Runnable action) {
+        time(label, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private static long directorySize(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
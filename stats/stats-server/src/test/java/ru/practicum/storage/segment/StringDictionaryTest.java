@@ -0,0 +1,61 @@
+package ru.practicum.storage.segment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StringDictionaryTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void assignsDenseIdsInInsertionOrder() throws IOException {
+        try (StringDictionary dictionary = new StringDictionary(directory.resolve("uris.dict"))) {
+            assertEquals(0, dictionary.getOrAdd("/events/1"));
+            assertEquals(1, dictionary.getOrAdd("/events/2"));
+            assertEquals(0, dictionary.getOrAdd("/events/1"));
+            assertEquals(1, dictionary.idOf("/events/2"));
+            assertEquals(StringDictionary.ABSENT, dictionary.idOf("/events/3"));
+            assertEquals("/events/2", dictionary.valueOf(1));
+            assertEquals(2, dictionary.size());
+        }
+    }
+
+    @Test
+    void flushedIdsAreOnDiskAndSurviveReopening() throws IOException {
+        Path file = directory.resolve("uris.dict");
+        try (StringDictionary dictionary = new StringDictionary(file)) {
+            dictionary.getOrAdd("/events/1");
+            dictionary.getOrAdd("/events/2");
+            dictionary.flush();
+            assertEquals(List.of("/events/1", "/events/2"), Files.readAllLines(file, StandardCharsets.UTF_8));
+            // Nothing new to force.
+            dictionary.flush();
+        }
+        try (StringDictionary dictionary = new StringDictionary(file)) {
+            assertEquals(1, dictionary.idOf("/events/2"));
+            assertEquals(2, dictionary.getOrAdd("/events/3"));
+            dictionary.flush();
+        }
+        try (StringDictionary dictionary = new StringDictionary(file)) {
+            assertEquals(3, dictionary.size());
+            assertEquals("/events/3", dictionary.valueOf(2));
+        }
+    }
+
+    @Test
+    void rejectsLineBreaks() throws IOException {
+        try (StringDictionary dictionary = new StringDictionary(directory.resolve("uris.dict"))) {
+            assertThrows(IllegalArgumentException.class, () -> dictionary.getOrAdd("/events\n/1"));
+            assertEquals(0, dictionary.size());
+        }
+    }
+}
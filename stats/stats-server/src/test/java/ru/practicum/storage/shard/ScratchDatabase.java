@@ -0,0 +1,75 @@
+package ru.practicum.storage.shard;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.practicum.sketch.SketchProperties;
+import ru.practicum.storage.HitStorageEngine;
+import ru.practicum.storage.StorageProperties;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A scratch database with the jdbc engine over it: the Postgres database the benchmarks run on, given by
+ * {@code stats.benchmark.url}, {@code stats.benchmark.username} and {@code stats.benchmark.password}, or an
+ * in-memory H2 database in PostgreSQL mode, as the {@code test} profile uses. Opening it drops and creates every
+ * stats table.
+ */
+public final class ScratchDatabase implements AutoCloseable {
+    public static final String URL_PROPERTY = "stats.benchmark.url";
+
+    private final JdbcShard shard;
+    private final JdbcTemplate jdbcTemplate;
+
+    private ScratchDatabase(JdbcShard shard, JdbcTemplate jdbcTemplate) {
+        this.shard = shard;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public static ScratchDatabase open(StorageProperties storageProperties, SketchProperties sketchProperties) {
+        StorageProperties.Shard shardProperties = new StorageProperties.Shard();
+        shardProperties.setName("benchmark");
+        shardProperties.setUrl(System.getProperty(URL_PROPERTY));
+        shardProperties.setUsername(System.getProperty("stats.benchmark.username"));
+        shardProperties.setPassword(System.getProperty("stats.benchmark.password"));
+        return open(shardProperties, storageProperties, sketchProperties);
+    }
+
+    /**
+     * A new in-memory database, which lives as long as the connection pool of its engine.
+     */
+    public static ScratchDatabase inMemory(StorageProperties storageProperties, SketchProperties sketchProperties) {
+        StorageProperties.Shard shardProperties = new StorageProperties.Shard();
+        shardProperties.setName("h2-" + UUID.randomUUID());
+        shardProperties.setUrl("jdbc:h2:mem:" + shardProperties.getName()
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH");
+        shardProperties.setUsername("sa");
+        shardProperties.setPassword("");
+        return open(shardProperties, storageProperties, sketchProperties);
+    }
+
+    private static ScratchDatabase open(StorageProperties.Shard shardProperties,
+                                        StorageProperties storageProperties,
+                                        SketchProperties sketchProperties) {
+        JdbcShard shard = new JdbcShard(shardProperties, storageProperties, sketchProperties);
+        shard.initSchema(List.of("classpath:schema-hit.sql", "classpath:schema.sql"));
+        return new ScratchDatabase(shard, new JdbcTemplate(new DriverManagerDataSource(shardProperties.getUrl(),
+                shardProperties.getUsername(), shardProperties.getPassword())));
+    }
+
+    /**
+     * The jdbc engine, writing every batch and what is derived from it in one transaction as the server does.
+     */
+    public HitStorageEngine getEngine() {
+        return shard;
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    @Override
+    public void close() {
+        shard.close();
+    }
+}
@@ -0,0 +1,80 @@
+package ru.practicum.storage.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardRouterTest {
+    private static final int URIS = 100_000;
+
+    @Test
+    void singleShardKeepsEverything() {
+        ShardRouter router = new ShardRouter(List.of("a"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, router.shardOf("/events/" + i));
+        }
+    }
+
+    @Test
+    void spreadsUrisEvenly() {
+        List<String> shards = List.of("a", "b", "c", "d");
+        Map<String, Integer> counts = new HashMap<>();
+        ShardRouter router = new ShardRouter(shards);
+        for (int i = 0; i < URIS; i++) {
+            counts.merge(shards.get(router.shardOf("/events/" + i)), 1, Integer::sum);
+        }
+        assertEquals(shards.size(), counts.size());
+        counts.forEach((shard, count) -> assertTrue(Math.abs(count - URIS / 4) < URIS / 40, shard + ": " + count));
+    }
+
+    @Test
+    void ownerDependsOnShardNamesNotTheirOrder() {
+        List<String> shards = List.of("a", "b", "c");
+        List<String> reordered = List.of("c", "a", "b");
+        ShardRouter router = new ShardRouter(shards);
+        ShardRouter reorderedRouter = new ShardRouter(reordered);
+        for (int i = 0; i < 10_000; i++) {
+            String uri = "/events/" + i;
+            assertEquals(shards.get(router.shardOf(uri)), reordered.get(reorderedRouter.shardOf(uri)));
+        }
+    }
+
+    @Test
+    void addingShardMovesOnlyUrisItWins() {
+        List<String> before = List.of("a", "b", "c");
+        List<String> after = List.of("a", "b", "c", "d");
+        ShardRouter oldRouter = new ShardRouter(before);
+        ShardRouter newRouter = new ShardRouter(after);
+        int moved = 0;
+        for (int i = 0; i < URIS; i++) {
+            String uri = "/events/" + i;
+            String oldOwner = before.get(oldRouter.shardOf(uri));
+            String newOwner = after.get(newRouter.shardOf(uri));
+            if (!oldOwner.equals(newOwner)) {
+                assertEquals("d", newOwner, uri);
+                moved++;
+            }
+        }
+        assertTrue(Math.abs(moved - URIS / 4) < URIS / 40, "moved " + moved);
+    }
+
+    @Test
+    void removingShardMovesOnlyItsOwnUris() {
+        List<String> before = List.of("a", "b", "c", "d");
+        List<String> after = List.of("a", "b", "d");
+        ShardRouter oldRouter = new ShardRouter(before);
+        ShardRouter newRouter = new ShardRouter(after);
+        for (int i = 0; i < URIS; i++) {
+            String uri = "/events/" + i;
+            String oldOwner = before.get(oldRouter.shardOf(uri));
+            if (!oldOwner.equals("c")) {
+                assertEquals(oldOwner, after.get(newRouter.shardOf(uri)), uri);
+            }
+        }
+    }
+}
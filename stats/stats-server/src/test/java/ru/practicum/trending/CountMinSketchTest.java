@@ -0,0 +1,84 @@
+package ru.practicum.trending;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+    private static final int WIDTH = 2048;
+    private static final int DEPTH = 4;
+
+    @Test
+    void countsExactlyWithoutCollisions() {
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        for (int i = 0; i < 5; i++) {
+            sketch.add(hash(1));
+        }
+        sketch.add(hash(2));
+        assertEquals(5, sketch.estimate(hash(1)));
+        assertEquals(1, sketch.estimate(hash(2)));
+        assertEquals(0, sketch.estimate(hash(3)));
+    }
+
+    /**
+     * An estimate never undercounts, and overcounts by more than {@code e * n / width} for at most a share
+     * {@code e^-depth} of the items, about 1.8% at depth 4; the assertion leaves twice that for sampling noise.
+     */
+    @Test
+    void overcountStaysWithinTheBound() {
+        int items = 50_000;
+        long[] frequencies = new long[items];
+        Random random = new Random(42);
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        long total = 0;
+        for (int item = 0; item < items; item++) {
+            // Skewed frequencies, from a single hit up to a few thousand.
+            frequencies[item] = 1 + (long) Math.pow(random.nextDouble(), 8) * 5000;
+            for (long i = 0; i < frequencies[item]; i++) {
+                sketch.add(hash(item));
+            }
+            total += frequencies[item];
+        }
+        double bound = Math.E * total / WIDTH;
+        int beyondBound = 0;
+        for (int item = 0; item < items; item++) {
+            long estimate = sketch.estimate(hash(item));
+            assertTrue(estimate >= frequencies[item], "item " + item + " undercounted");
+            if (estimate - frequencies[item] > bound) {
+                beyondBound++;
+            }
+        }
+        double allowed = 2 * Math.exp(-DEPTH) * items;
+        assertTrue(beyondBound <= allowed, beyondBound + " of " + items + " items overcounted beyond " + bound);
+    }
+
+    @Test
+    void clearResetsEveryCounter() {
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        for (int item = 0; item < 10_000; item++) {
+            sketch.add(hash(item));
+        }
+        sketch.clear();
+        for (int item = 0; item < 10_000; item++) {
+            assertEquals(0, sketch.estimate(hash(item)));
+        }
+    }
+
+    @Test
+    void rejectsNonPositiveDimensions() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(0, DEPTH));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(WIDTH, 0));
+    }
+
+    /**
+     * A well-mixed 64-bit hash of the item, as {@code TrendingUris} feeds the sketch.
+     */
+    private static long hash(int item) {
+        return new SplittableRandom(item).nextLong();
+    }
+}
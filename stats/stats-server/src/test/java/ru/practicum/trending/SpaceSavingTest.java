@@ -0,0 +1,99 @@
+package ru.practicum.trending;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+    @Test
+    void monitorsEveryItemWhileThereIsRoom() {
+        SpaceSaving<String> summary = new SpaceSaving<>(3);
+        summary.offer("/events/1");
+        summary.offer("/events/2");
+        summary.offer("/events/1");
+        summary.offer("/events/3");
+        assertEquals(Set.of("/events/1", "/events/2", "/events/3"), Set.copyOf(summary.items()));
+    }
+
+    @Test
+    void neverMonitorsMoreThanItsCapacity() {
+        SpaceSaving<Integer> summary = new SpaceSaving<>(10);
+        for (int i = 0; i < 1000; i++) {
+            summary.offer(i);
+            assertTrue(summary.items().size() <= 10);
+        }
+        assertEquals(10, summary.items().size());
+    }
+
+    @Test
+    void newItemReplacesTheLeastFrequentOne() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.offer("a");
+        summary.offer("a");
+        summary.offer("b");
+        summary.offer("c");
+        assertEquals(Set.of("a", "c"), Set.copyOf(summary.items()));
+    }
+
+    /**
+     * The Space-Saving guarantee: every item more frequent than {@code n / capacity} is monitored, in whatever
+     * order the stream arrives.
+     */
+    @Test
+    void monitorsEveryItemAboveTheFrequencyThreshold() {
+        int capacity = 100;
+        for (long seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+            List<Integer> stream = new ArrayList<>();
+            // Zipf-like frequencies: the top ten items clear the threshold, the long tail churns the summary.
+            for (int item = 1; item <= 10_000; item++) {
+                int frequency = Math.max(1, 20_000 / item);
+                for (int i = 0; i < frequency; i++) {
+                    stream.add(item);
+                }
+            }
+            Collections.shuffle(stream, random);
+            SpaceSaving<Integer> summary = new SpaceSaving<>(capacity);
+            Map<Integer, Integer> frequencies = new HashMap<>();
+            for (Integer item : stream) {
+                summary.offer(item);
+                frequencies.merge(item, 1, Integer::sum);
+            }
+            Set<Integer> monitored = new HashSet<>(summary.items());
+            long threshold = stream.size() / capacity;
+            List<Integer> heavy = frequencies.entrySet().stream()
+                    .filter(entry -> entry.getValue() > threshold)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            assertTrue(heavy.size() >= 5, "seed " + seed + ": only " + heavy.size() + " heavy hitters");
+            assertTrue(monitored.containsAll(heavy), "seed " + seed + ": heavy hitters missing from " + monitored);
+        }
+    }
+
+    @Test
+    void clearForgetsEveryItem() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.offer("a");
+        summary.offer("b");
+        summary.clear();
+        assertEquals(List.of(), summary.items());
+        summary.offer("c");
+        assertEquals(List.of("c"), summary.items());
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSaving<>(0));
+    }
+}
@@ -0,0 +1,158 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+    /**
+     * The default of {@code stats-server.sketch.relative-error}.
+     */
+    private static final double RELATIVE_ERROR = 0.01625;
+    private static final int PRECISION = HyperLogLog.precisionFor(RELATIVE_ERROR);
+    private static final int TRIALS = 20;
+
+    @Test
+    void precisionMeetsTheConfiguredRelativeError() {
+        assertEquals(12, PRECISION);
+        assertTrue(HyperLogLog.relativeError(PRECISION) <= RELATIVE_ERROR);
+        assertTrue(HyperLogLog.relativeError(PRECISION - 1) > RELATIVE_ERROR);
+        assertEquals(HyperLogLog.MIN_PRECISION, HyperLogLog.precisionFor(0.9));
+        assertEquals(HyperLogLog.MAX_PRECISION, HyperLogLog.precisionFor(0.0001));
+    }
+
+    /**
+     * The configured relative error is a standard error, so single estimates may exceed it. What must hold is that
+     * the root mean square of the relative error over independent sets matches it: over 20 sets the sample value
+     * stays below 1.5 times the standard error with a probability above 99.9%. No single estimate may be off by
+     * more than four standard errors.
+     */
+    @Test
+    void relativeErrorStaysWithinTheBoundAtEveryCardinality() {
+        for (int cardinality : new int[]{10, 100, 1_000, 10_000, 100_000, 1_000_000}) {
+            double squaredErrors = 0;
+            for (int trial = 0; trial < TRIALS; trial++) {
+                HyperLogLog sketch = new HyperLogLog(PRECISION);
+                for (int i = 0; i < cardinality; i++) {
+                    sketch.offer(ip(trial, i));
+                }
+                double error = (double) (sketch.estimate() - cardinality) / cardinality;
+                assertTrue(Math.abs(error) <= 4 * RELATIVE_ERROR,
+                        "cardinality " + cardinality + ", trial " + trial + ": relative error " + error);
+                squaredErrors += error * error;
+            }
+            double rmsError = Math.sqrt(squaredErrors / TRIALS);
+            assertTrue(rmsError <= 1.5 * RELATIVE_ERROR,
+                    "cardinality " + cardinality + ": rms relative error " + rmsError);
+        }
+    }
+
+    @Test
+    void repeatedValuesAreCountedOnce() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (int repeat = 0; repeat < 100; repeat++) {
+            for (int i = 0; i < 50; i++) {
+                sketch.offer(ip(0, i));
+            }
+        }
+        assertEquals(50, sketch.estimate());
+    }
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertEquals(0, new HyperLogLog(PRECISION).estimate());
+    }
+
+    @Test
+    void mergeEqualsSketchOfTheUnion() {
+        HyperLogLog left = new HyperLogLog(PRECISION);
+        HyperLogLog right = new HyperLogLog(PRECISION);
+        HyperLogLog union = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 30_000; i++) {
+            left.offer(ip(1, i));
+            union.offer(ip(1, i));
+        }
+        for (int i = 20_000; i < 70_000; i++) {
+            right.offer(ip(1, i));
+            union.offer(ip(1, i));
+        }
+
+        left.merge(right);
+
+        assertArrayEquals(union.toBytes(), left.toBytes());
+        assertEquals(union.estimate(), left.estimate());
+    }
+
+    @Test
+    void mergeIsIdempotentAndCommutative() {
+        HyperLogLog left = new HyperLogLog(PRECISION);
+        HyperLogLog right = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 5_000; i++) {
+            left.offer(ip(2, i));
+            right.offer(ip(3, i));
+        }
+        HyperLogLog leftThenRight = HyperLogLog.fromBytes(left.toBytes());
+        leftThenRight.merge(right);
+        HyperLogLog rightThenLeft = HyperLogLog.fromBytes(right.toBytes());
+        rightThenLeft.merge(left);
+        byte[] merged = leftThenRight.toBytes();
+
+        leftThenRight.merge(right);
+        leftThenRight.merge(left);
+
+        assertArrayEquals(merged, rightThenLeft.toBytes());
+        assertArrayEquals(merged, leftThenRight.toBytes());
+    }
+
+    @Test
+    void copyIsIndependentOfTheOriginal() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 1_000; i++) {
+            sketch.offer(ip(5, i));
+        }
+        byte[] before = sketch.toBytes();
+
+        HyperLogLog copy = sketch.copy();
+        for (int i = 1_000; i < 2_000; i++) {
+            copy.offer(ip(5, i));
+        }
+
+        assertArrayEquals(before, sketch.toBytes());
+        assertTrue(copy.estimate() > sketch.estimate());
+    }
+
+    @Test
+    void mergeOfDifferentPrecisionsIsRefused() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void sparseAndDenseFormsRoundTrip() {
+        HyperLogLog sparse = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 100; i++) {
+            sparse.offer(ip(4, i));
+        }
+        HyperLogLog dense = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 100_000; i++) {
+            dense.offer(ip(4, i));
+        }
+
+        byte[] sparseBytes = sparse.toBytes();
+        byte[] denseBytes = dense.toBytes();
+
+        assertTrue(sparseBytes.length < 2 + (1 << PRECISION));
+        assertEquals(2 + (1 << PRECISION), denseBytes.length);
+        assertArrayEquals(sparseBytes, HyperLogLog.fromBytes(sparseBytes).toBytes());
+        assertArrayEquals(denseBytes, HyperLogLog.fromBytes(denseBytes).toBytes());
+        assertEquals(sparse.estimate(), HyperLogLog.fromBytes(sparseBytes).estimate());
+        assertEquals(dense.estimate(), HyperLogLog.fromBytes(denseBytes).estimate());
+    }
+
+    private static String ip(int set, int i) {
+        return set + "." + (i >>> 16) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+    }
+}